@@ -0,0 +1,111 @@
+package com.sivalab.laboperations.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.sivalab.laboperations.service.BarcodeImageCache;
+import com.sivalab.laboperations.service.BarcodePngEncoder;
+import com.sivalab.laboperations.service.BarcodeService;
+import com.sivalab.laboperations.service.RequestCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QR and Code128 encoding as used in report headers and sample labels
+ * The encode* benchmarks use a zero-byte image cache, so every call encodes; cachedQrCode measures a hit.
+ * qrCodeViaImageIO is the former BufferedImage + ImageIO path, kept as the baseline for BarcodePngEncoder;
+ * the matrixTo* pair compares just the PNG writing for an already encoded matrix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BarcodeBenchmark {
+
+    private BarcodeService uncached;
+    private BarcodeService cached;
+    private String reportQrData;
+    private BitMatrix qrMatrix;
+
+    @Setup
+    public void setUp() throws WriterException {
+        uncached = new BarcodeService(imageCache(0));
+        cached = new BarcodeService(imageCache(8 << 20));
+        reportQrData = uncached.generateReportQRData("SLN/2025/000123", "Benchmark Patient", "PAT-0001",
+                "AUTHORIZED", LocalDateTime.of(2025, 1, 15, 15, 0), "/reports/view/SLN/2025/000123");
+        qrMatrix = encodeMatrix();
+    }
+
+    @Benchmark
+    public byte[] encodeQrCode() throws WriterException, IOException {
+        return uncached.generateQRCode(reportQrData, 120);
+    }
+
+    @Benchmark
+    public byte[] encodeCode128() throws IOException {
+        return uncached.generateCode128Barcode("SLN2025000123");
+    }
+
+    @Benchmark
+    public byte[] qrCodeViaImageIO() throws WriterException, IOException {
+        return imageIOPng(encodeMatrix());
+    }
+
+    @Benchmark
+    public byte[] matrixToPng() {
+        return BarcodePngEncoder.encode(qrMatrix);
+    }
+
+    @Benchmark
+    public byte[] matrixToImageIOPng() throws IOException {
+        return imageIOPng(qrMatrix);
+    }
+
+    private static BarcodeImageCache imageCache(long maxBytes) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new BarcodeImageCache(registry, new RequestCoalescer(registry), maxBytes, 1024, Duration.ofSeconds(5));
+    }
+
+    private BitMatrix encodeMatrix() throws WriterException {
+        Map<EncodeHintType, Object> hints = new HashMap<>();
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(EncodeHintType.MARGIN, 1);
+        return new QRCodeWriter().encode(reportQrData, BarcodeFormat.QR_CODE, 120, 120, hints);
+    }
+
+    private static byte[] imageIOPng(BitMatrix matrix) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(MatrixToImageWriter.toBufferedImage(matrix), "PNG", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] cachedQrCode() throws WriterException, IOException {
+        return cached.generateQRCode(reportQrData, 120);
+    }
+}
@@ -0,0 +1,126 @@
+package com.sivalab.laboperations.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.properties.TextAlignment;
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.entity.ReportStatus;
+import com.sivalab.laboperations.entity.ReportType;
+import com.sivalab.laboperations.entity.Visit;
+import com.sivalab.laboperations.service.BarcodeImageCache;
+import com.sivalab.laboperations.service.BarcodeService;
+import com.sivalab.laboperations.service.PdfReportResources;
+import com.sivalab.laboperations.service.PdfReportService;
+import com.sivalab.laboperations.service.ReportSnapshotService;
+import com.sivalab.laboperations.service.RequestCoalescer;
+import com.sivalab.laboperations.service.ReportTemplateService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PDF report rendering cost per report
+ * letterheadLayout lays out the static letterhead and compliance line the way every render used to;
+ * letterheadTemplate copies the pre-rendered XObjects instead. renderReportHtml and renderHtmlPdf cover
+ * the compiled HTML template path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfReportBenchmark {
+
+    private PdfReportResources resources;
+    private PdfReportService pdfReportService;
+    private LabReport report;
+
+    @Setup
+    public void setUp() throws IOException {
+        resources = new PdfReportResources();
+        // the benchmark report embeds its data, so the snapshot service never touches its repositories
+        ReportSnapshotService snapshots = new ReportSnapshotService(null, null, null);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        pdfReportService = new PdfReportService(new BarcodeService(new BarcodeImageCache(registry,
+                new RequestCoalescer(registry), 8 << 20, 1024, Duration.ofSeconds(5))), resources,
+                new ReportTemplateService(snapshots), snapshots);
+
+        ObjectMapper mapper = new ObjectMapper();
+        Visit visit = new Visit(mapper.readTree("{\"name\":\"Benchmark Patient\",\"age\":42,\"gender\":\"F\","
+                + "\"phone\":\"9000000000\",\"address\":\"Hyderabad\",\"patientId\":\"PAT-0001\"}"));
+        visit.setVisitId(1L);
+        visit.setCreatedAt(LocalDateTime.of(2024, 1, 15, 9, 30));
+
+        report = new LabReport(visit, ReportType.STANDARD);
+        report.setReportId(1L);
+        report.setUlrNumber("TC-1234-24-000001");
+        report.setReportStatus(ReportStatus.AUTHORIZED);
+        report.setGeneratedAt(LocalDateTime.of(2024, 1, 15, 14, 0));
+        report.setAuthorizedBy("Dr. Benchmark");
+        report.setAuthorizedAt(LocalDateTime.of(2024, 1, 15, 15, 0));
+        report.setReportData(mapper.readTree("{\"tests\":["
+                + "{\"testName\":\"Complete Blood Count\",\"results\":{"
+                + "\"hemoglobin\":{\"value\":\"13.5\",\"unit\":\"g/dL\",\"status\":\"NORMAL\"},"
+                + "\"wbc\":{\"value\":\"7200\",\"unit\":\"/uL\",\"status\":\"NORMAL\"},"
+                + "\"platelets\":{\"value\":\"250000\",\"unit\":\"/uL\",\"status\":\"NORMAL\"},"
+                + "\"conclusion\":\"Within normal limits\"}},"
+                + "{\"testName\":\"Lipid Profile\",\"results\":{"
+                + "\"cholesterol\":{\"value\":\"185\",\"unit\":\"mg/dL\",\"status\":\"NORMAL\"},"
+                + "\"triglycerides\":{\"value\":\"160\",\"unit\":\"mg/dL\",\"status\":\"HIGH\"}}}]}"));
+    }
+
+    @Benchmark
+    public void renderReport() throws IOException {
+        pdfReportService.writePdfReport(report, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public String renderReportHtml() {
+        return pdfReportService.generateHtmlReport(report);
+    }
+
+    @Benchmark
+    public void renderHtmlPdf() throws IOException {
+        pdfReportService.writePdfFromHtml(report, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void letterheadLayout() {
+        PdfDocument pdfDoc = new PdfDocument(new PdfWriter(OutputStream.nullOutputStream()));
+        Document document = new Document(pdfDoc);
+        document.add(new Paragraph(PdfReportResources.LAB_NAME).setFontSize(18).setBold());
+        document.add(new Paragraph(PdfReportResources.LAB_ADDRESS).setFontSize(10));
+        document.add(new Paragraph(PdfReportResources.NABL_COMPLIANCE)
+                .setFontSize(8).setTextAlignment(TextAlignment.CENTER).setItalic());
+        document.close();
+    }
+
+    @Benchmark
+    public void letterheadTemplate() {
+        PdfDocument pdfDoc = new PdfDocument(new PdfWriter(OutputStream.nullOutputStream()));
+        Document document = new Document(pdfDoc);
+        PdfReportResources.DocumentResources letterhead = resources.forDocument(pdfDoc);
+        document.add(new Image(letterhead.getHeader()));
+        document.add(new Image(letterhead.getComplianceLine()));
+        document.close();
+    }
+}
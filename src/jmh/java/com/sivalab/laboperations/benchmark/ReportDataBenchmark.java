@@ -0,0 +1,114 @@
+package com.sivalab.laboperations.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.entity.LabTest;
+import com.sivalab.laboperations.entity.ReportType;
+import com.sivalab.laboperations.entity.TestStatus;
+import com.sivalab.laboperations.entity.TestTemplate;
+import com.sivalab.laboperations.entity.TestTemplateSnapshot;
+import com.sivalab.laboperations.entity.UlrSequenceConfig;
+import com.sivalab.laboperations.entity.Visit;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import com.sivalab.laboperations.repository.LabTestRepository;
+import com.sivalab.laboperations.repository.TestTemplateSnapshotRepository;
+import com.sivalab.laboperations.repository.UlrSequenceConfigRepository;
+import com.sivalab.laboperations.repository.VisitRepository;
+import com.sivalab.laboperations.service.LabReportService;
+import com.sivalab.laboperations.service.ReportSnapshotService;
+import com.sivalab.laboperations.service.UlrService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report data assembly in LabReportService.createReport for a visit with several tests
+ * Repositories are in-memory stubs, so this measures the JSON building, template snapshot lookup and
+ * ULR formatting rather than the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportDataBenchmark {
+
+    private static final int TESTS_PER_VISIT = 6;
+
+    private LabReportService labReportService;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Visit visit = new Visit(mapper.readTree("{\"name\":\"Benchmark Patient\",\"age\":42,\"patientId\":\"PAT-0001\"}"));
+        visit.setVisitId(1L);
+
+        List<LabTest> labTests = new ArrayList<>();
+        for (int i = 1; i <= TESTS_PER_VISIT; i++) {
+            TestTemplate template = new TestTemplate("Test " + i, "Benchmark test " + i, mapper.readTree("["
+                    + "{\"name\":\"p1\",\"type\":\"numeric\",\"unit\":\"mg/dL\",\"referenceRange\":\"10-20\"},"
+                    + "{\"name\":\"p2\",\"type\":\"numeric\",\"unit\":\"mg/dL\",\"referenceRange\":\"1-5\"}]"),
+                    BigDecimal.valueOf(250));
+            template.setTemplateId((long) i);
+            LabTest labTest = new LabTest();
+            labTest.setTestId((long) i);
+            labTest.setVisit(visit);
+            labTest.setTestTemplate(template);
+            labTest.setPrice(template.getBasePrice());
+            labTest.setStatus(TestStatus.COMPLETED);
+            labTest.setApproved(true);
+            labTest.setApprovedBy("Dr. Benchmark");
+            labTest.setApprovedAt(LocalDateTime.of(2025, 1, 15, 12, 0));
+            labTest.setResults(mapper.readTree("{\"p1\":{\"value\":\"14\",\"unit\":\"mg/dL\"},\"p2\":{\"value\":\"3.2\"}}"));
+            labTests.add(labTest);
+        }
+
+        Map<Long, TestTemplateSnapshot> latest = new ConcurrentHashMap<>();
+        TestTemplateSnapshotRepository snapshots = RepositoryStubs.stub(TestTemplateSnapshotRepository.class, Map.of(
+                "lockTemplate", args -> args[0],
+                "findTopByTemplateIdOrderByVersionDesc", args -> Optional.ofNullable(latest.get((Long) args[0])),
+                "findByTemplateIdIn", args -> ((Collection<?>) args[0]).stream()
+                        .map(latest::get).filter(Objects::nonNull).toList(),
+                "save", args -> {
+                    TestTemplateSnapshot snapshot = (TestTemplateSnapshot) args[0];
+                    latest.put(snapshot.getTemplateId(), snapshot);
+                    return snapshot;
+                }));
+        UlrSequenceConfig ulrConfig = new UlrSequenceConfig(2025, "SLN");
+        UlrService ulrService = new UlrService(RepositoryStubs.stub(UlrSequenceConfigRepository.class, Map.of(
+                "findByYearAndIsActive", args -> Optional.of(ulrConfig),
+                "save", args -> args[0])));
+
+        labReportService = new LabReportService(
+                RepositoryStubs.stub(LabReportRepository.class, Map.of("save", args -> args[0])),
+                RepositoryStubs.stub(VisitRepository.class, Map.of("findById", args -> Optional.of(visit))),
+                RepositoryStubs.stub(LabTestRepository.class, Map.of("findByVisitVisitId", args -> labTests)),
+                ulrService, mapper, null,
+                new ReportSnapshotService(snapshots, null, null));
+    }
+
+    @Benchmark
+    public LabReport createReport() {
+        return labReportService.createReport(1L, ReportType.STANDARD);
+    }
+}
@@ -0,0 +1,152 @@
+package com.sivalab.laboperations.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load test for comparing the platform-thread and virtual-thread profiles
+ * Keeps a fixed number of requests in flight against a running instance for a duration, then prints
+ * throughput, p50/p99/max latency and errors, and appends them to target/threading-load-test.csv.
+ * Run it once against the application started with --spring.profiles.active=prod and once with
+ * prod,virtual-threads (on Java 21+), using a database-bound endpoint and a concurrency above
+ * Tomcat's 200 platform threads:
+ *
+ *   mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=com.sivalab.laboperations.benchmark.ThreadingLoadTest
+ *       -Dexec.args="--label=virtual --url=http://localhost:8080/visits --concurrency=400 --duration=60s"
+ *
+ * Options: --url, --label, --concurrency (default 400), --duration (60s), --warmup (10s),
+ * --user and --password for HTTP basic authentication.
+ */
+public class ThreadingLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        URI url = URI.create(options.getOrDefault("url", "http://localhost:8080/visits"));
+        String label = options.getOrDefault("label", "run");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "400"));
+        Duration duration = Duration.parse("PT" + options.getOrDefault("duration", "60s"));
+        Duration warmup = Duration.parse("PT" + options.getOrDefault("warmup", "10s"));
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(url).timeout(Duration.ofSeconds(60)).GET();
+        if (options.containsKey("user")) {
+            String credentials = options.get("user") + ":" + options.getOrDefault("password", "");
+            request.header("Authorization", "Basic "
+                    + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        System.out.printf("%s: %d concurrent requests to %s, %s warmup, %s measured%n",
+                label, concurrency, url, warmup, duration);
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        LongAdder errors = new LongAdder();
+        CountDownLatch finished = new CountDownLatch(concurrency);
+        List<Caller> callers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Caller caller = new Caller(client, request.build(), measureFrom, measureUntil, errors, finished);
+            callers.add(caller);
+            caller.next();
+        }
+        finished.await();
+
+        long[] latencies = callers.stream().flatMapToLong(caller -> caller.latencies.stream().mapToLong(Long::longValue))
+                .sorted().toArray();
+        double seconds = duration.toNanos() / 1e9;
+        String result = String.format(Locale.ROOT, "%s,%d,%.1f,%.1f,%.1f,%.1f,%d", label, concurrency,
+                latencies.length / seconds, millis(percentile(latencies, 0.50)), millis(percentile(latencies, 0.99)),
+                millis(latencies.length == 0 ? 0 : latencies[latencies.length - 1]), errors.sum());
+        System.out.println("label,concurrency,requests_per_second,p50_ms,p99_ms,max_ms,errors");
+        System.out.println(result);
+
+        Path csv = Path.of("target", "threading-load-test.csv");
+        Files.createDirectories(csv.getParent());
+        if (!Files.exists(csv)) {
+            Files.writeString(csv, "label,concurrency,requests_per_second,p50_ms,p99_ms,max_ms,errors\n");
+        }
+        Files.writeString(csv, result + "\n", StandardOpenOption.APPEND);
+    }
+
+    /**
+     * One simulated client: sends the next request as soon as the previous one completes
+     * Its completions happen one after another, so it records latencies without synchronisation.
+     */
+    private static final class Caller {
+        private final HttpClient client;
+        private final HttpRequest request;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final LongAdder errors;
+        private final CountDownLatch finished;
+        private final List<Long> latencies = new ArrayList<>();
+
+        private Caller(HttpClient client, HttpRequest request, long measureFrom, long measureUntil,
+                       LongAdder errors, CountDownLatch finished) {
+            this.client = client;
+            this.request = request;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.errors = errors;
+            this.finished = finished;
+        }
+
+        private void next() {
+            long start = System.nanoTime();
+            if (start >= measureUntil) {
+                finished.countDown();
+                return;
+            }
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                long end = System.nanoTime();
+                if (start >= measureFrom && end <= measureUntil) {
+                    if (failure != null || response.statusCode() >= 400) {
+                        errors.increment();
+                    } else {
+                        latencies.add(end - start);
+                    }
+                }
+                next();
+            });
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
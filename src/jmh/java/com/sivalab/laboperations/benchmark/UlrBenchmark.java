@@ -0,0 +1,58 @@
+package com.sivalab.laboperations.benchmark;
+
+import com.sivalab.laboperations.entity.UlrSequenceConfig;
+import com.sivalab.laboperations.repository.UlrSequenceConfigRepository;
+import com.sivalab.laboperations.service.UlrService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ULR number formatting and parsing
+ * nextUlrNumber runs the sequence increment and formatting against an in-memory configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UlrBenchmark {
+
+    private UlrService ulrService;
+
+    @Setup
+    public void setUp() {
+        UlrSequenceConfig config = new UlrSequenceConfig(2025, "SLN");
+        UlrSequenceConfigRepository repository = RepositoryStubs.stub(UlrSequenceConfigRepository.class, Map.of(
+                "findByYearAndIsActive", args -> Optional.of(config),
+                "save", args -> args[0]));
+        ulrService = new UlrService(repository);
+    }
+
+    @Benchmark
+    public String nextUlrNumber() {
+        return ulrService.generateUlrNumber(2025);
+    }
+
+    @Benchmark
+    public boolean validateUlr() {
+        return ulrService.isValidUlrFormat("SLN/2025/000123");
+    }
+
+    @Benchmark
+    public Optional<Integer> extractSequence() {
+        return ulrService.extractSequenceFromUlr("SLN/2025/000123");
+    }
+}
@@ -0,0 +1,78 @@
+package com.sivalab.laboperations.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivalab.laboperations.validator.TestResultsValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result validation against a template, as done on every PATCH of test results
+ * validCbc is the common case; invalidCbc builds the error list and throws.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private TestResultsValidator validator;
+    private JsonNode parameters;
+    private JsonNode validResults;
+    private JsonNode invalidResults;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        validator = new TestResultsValidator();
+        parameters = mapper.readTree("["
+                + "{\"name\":\"hemoglobin\",\"type\":\"numeric\",\"min\":0,\"max\":25,\"referenceRange\":\"12-16\",\"precision\":1},"
+                + "{\"name\":\"wbc\",\"type\":\"numeric\",\"min\":0,\"max\":100000,\"referenceRange\":\"4000-11000\"},"
+                + "{\"name\":\"platelets\",\"type\":\"numeric\",\"min\":0,\"referenceRange\":\"150000-450000\"},"
+                + "{\"name\":\"bloodGroup\",\"type\":\"enum\",\"allowedValues\":[\"A+\",\"A-\",\"B+\",\"B-\",\"AB+\",\"AB-\",\"O+\",\"O-\"]},"
+                + "{\"name\":\"smear\",\"type\":\"string\",\"maxLength\":200,\"required\":false},"
+                + "{\"name\":\"fasting\",\"type\":\"boolean\"}]");
+        validResults = mapper.readTree("{"
+                + "\"hemoglobin\":{\"value\":\"13.5\",\"unit\":\"g/dL\",\"status\":\"NORMAL\"},"
+                + "\"wbc\":{\"value\":7200,\"unit\":\"/uL\"},"
+                + "\"platelets\":250000,"
+                + "\"bloodGroup\":\"O+\","
+                + "\"smear\":\"Normocytic normochromic\","
+                + "\"fasting\":true,"
+                + "\"conclusion\":\"Within normal limits\"}");
+        invalidResults = mapper.readTree("{"
+                + "\"hemoglobin\":{\"value\":\"13.55\"},"
+                + "\"wbc\":\"many\","
+                + "\"bloodGroup\":\"C\","
+                + "\"fasting\":true,"
+                + "\"remarks\":\"unexpected\"}");
+    }
+
+    @Benchmark
+    public void validCbc() {
+        validator.validateResults(validResults, parameters);
+    }
+
+    @Benchmark
+    public String invalidCbc() {
+        try {
+            validator.validateResults(invalidResults, parameters);
+            throw new IllegalStateException("Expected validation to fail");
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.sivalab.laboperations.config;
 
+import com.sivalab.laboperations.service.AdaptiveBulkhead;
 import io.github.resilience4j.bulkhead.Bulkhead;
-import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.ratelimiter.RateLimiter;
@@ -10,6 +11,9 @@ import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 import io.github.resilience4j.timelimiter.TimeLimiter;
 import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -18,10 +22,33 @@ import java.time.Duration;
 /**
  * Fault Tolerance Configuration for Lab Operations System
  * Implements Circuit Breaker, Retry, Rate Limiting, Bulkhead, and Time Limiter patterns
+ * Bulkhead limits adapt to observed latency (lab.concurrency.*) instead of staying at fixed values
  */
 @Configuration
 public class FaultToleranceConfig {
 
+    private final BulkheadRegistry bulkheadRegistry;
+    private final MeterRegistry meterRegistry;
+    private final boolean adaptiveConcurrency;
+    private final int minLimit;
+    private final Duration sampleWindow;
+    private final int minSamples;
+
+    @Autowired
+    public FaultToleranceConfig(BulkheadRegistry bulkheadRegistry,
+                                MeterRegistry meterRegistry,
+                                @Value("${lab.concurrency.adaptive:true}") boolean adaptiveConcurrency,
+                                @Value("${lab.concurrency.min-limit:1}") int minLimit,
+                                @Value("${lab.concurrency.sample-window:1s}") Duration sampleWindow,
+                                @Value("${lab.concurrency.min-samples:10}") int minSamples) {
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.meterRegistry = meterRegistry;
+        this.adaptiveConcurrency = adaptiveConcurrency;
+        this.minLimit = minLimit;
+        this.sampleWindow = sampleWindow;
+        this.minSamples = minSamples;
+    }
+
     /**
      * Circuit Breaker for Database Operations
      * Prevents cascading failures when database is unavailable
@@ -165,44 +192,44 @@ public class FaultToleranceConfig {
 
     /**
      * Bulkhead for Database Operations
-     * Isolates database operations to prevent resource exhaustion
+     * Isolates database operations to prevent resource exhaustion; the limit adapts to query latency
      */
     @Bean
-    public Bulkhead databaseBulkhead() {
-        BulkheadConfig config = BulkheadConfig.custom()
-                .maxConcurrentCalls(10) // Allow max 10 concurrent database calls
-                .maxWaitDuration(Duration.ofSeconds(5)) // Wait up to 5s for slot
-                .build();
-        
-        return Bulkhead.of("database", config);
+    public Bulkhead databaseBulkhead(@Value("${lab.concurrency.initial-limit.database:10}") int initialLimit) {
+        return adaptiveBulkhead("database", initialLimit);
     }
 
     /**
      * Bulkhead for PDF Generation
-     * Isolates PDF generation to prevent memory exhaustion
+     * Isolates PDF generation to prevent memory exhaustion; the limit adapts to rendering latency
      */
     @Bean
-    public Bulkhead pdfBulkhead() {
-        BulkheadConfig config = BulkheadConfig.custom()
-                .maxConcurrentCalls(3) // Allow max 3 concurrent PDF generations
-                .maxWaitDuration(Duration.ofSeconds(15)) // Longer wait for PDF
-                .build();
-        
-        return Bulkhead.of("pdf", config);
+    public Bulkhead pdfBulkhead(@Value("${lab.concurrency.initial-limit.pdf:3}") int initialLimit) {
+        return adaptiveBulkhead("pdf", initialLimit);
     }
 
     /**
      * Bulkhead for Barcode Generation
-     * Isolates barcode generation operations
+     * Isolates barcode generation operations; the limit adapts to encoding latency
      */
     @Bean
-    public Bulkhead barcodeBulkhead() {
-        BulkheadConfig config = BulkheadConfig.custom()
-                .maxConcurrentCalls(5) // Allow max 5 concurrent barcode generations
-                .maxWaitDuration(Duration.ofSeconds(3))
-                .build();
-        
-        return Bulkhead.of("barcode", config);
+    public Bulkhead barcodeBulkhead(@Value("${lab.concurrency.initial-limit.barcode:8}") int initialLimit) {
+        return adaptiveBulkhead("barcode", initialLimit);
+    }
+
+    /**
+     * Replaces the registry's bulkhead (configured under resilience4j.bulkhead.instances) with an
+     * AdaptiveBulkhead, so @Bulkhead methods get the adaptive limit; its maxConcurrentCalls is the ceiling
+     */
+    private Bulkhead adaptiveBulkhead(String name, int initialLimit) {
+        Bulkhead configured = bulkheadRegistry.bulkhead(name);
+        if (!adaptiveConcurrency) {
+            return configured;
+        }
+        AdaptiveBulkhead adaptive = new AdaptiveBulkhead(name, configured.getBulkheadConfig(), initialLimit,
+                minLimit, sampleWindow, minSamples, meterRegistry);
+        bulkheadRegistry.replace(name, adaptive);
+        return adaptive;
     }
 
     /**
@@ -0,0 +1,67 @@
+package com.sivalab.laboperations.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.sivalab.laboperations.entity.LabReport;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * JSON representation of lab reports
+ * Reports store template references and amendment patches (see ReportSnapshotService); API responses
+ * keep returning the complete report data. LabReportService resolves it in its transaction, with
+ * batched lookups (ReportSnapshotService.resolveAll); serialization only writes what was resolved.
+ */
+@Configuration
+public class ReportJsonConfig {
+
+    @Bean
+    public Module resolvedReportDataModule() {
+        return resolvedReportData();
+    }
+
+    /**
+     * Module writing LabReport.reportData in its resolved form (the stored form if it was not resolved)
+     */
+    public static Module resolvedReportData() {
+        SimpleModule module = new SimpleModule("ResolvedReportData");
+        module.setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDesc,
+                                                             List<BeanPropertyWriter> beanProperties) {
+                if (LabReport.class.isAssignableFrom(beanDesc.getBeanClass())) {
+                    beanProperties.replaceAll(writer -> "reportData".equals(writer.getName())
+                            ? new ResolvedReportDataWriter(writer) : writer);
+                }
+                return beanProperties;
+            }
+        });
+        return module;
+    }
+
+    private static final class ResolvedReportDataWriter extends BeanPropertyWriter {
+
+        private static final long serialVersionUID = 1L;
+
+        private ResolvedReportDataWriter(BeanPropertyWriter base) {
+            super(base);
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+            LabReport report = (LabReport) bean;
+            JsonNode resolved = report.getResolvedReportData();
+            gen.writeFieldName(_name);
+            prov.defaultSerializeValue(resolved != null ? resolved : report.getReportData(), gen);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.sivalab.laboperations.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Scheduling Configuration
+ * Enables @Scheduled background jobs (TAT monitoring, housekeeping)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,72 @@
+package com.sivalab.laboperations.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Threading Configuration
+ * Spring Boot's auto-configured applicationTaskExecutor runs @Async methods, async MVC requests and the
+ * resilient services.
+ * With spring.threads.virtual.enabled (the virtual-threads profile) on a Java 21+ runtime every task
+ * gets its own virtual thread, as do Tomcat requests and @Scheduled jobs; otherwise it is a platform
+ * thread pool configured by spring.task.execution.pool.*. Without the thread count as a natural limit, database
+ * access is bounded by lab.database.max-concurrency instead (see ConcurrencyLimitedDataSource).
+ */
+@Configuration
+@EnableAsync
+public class ThreadingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadingConfig.class);
+
+    /**
+     * Wraps the DataSource in a ConcurrencyLimitedDataSource when lab.database.max-concurrency is set
+     */
+    @Bean
+    public static BeanPostProcessor databaseConcurrencyLimit(Environment environment) {
+        int maxConcurrency = environment.getProperty("lab.database.max-concurrency", Integer.class, 0);
+        Duration acquireTimeout = environment.getProperty("lab.database.acquire-timeout", Duration.class,
+                Duration.ofSeconds(5));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (maxConcurrency > 0 && bean instanceof DataSource
+                        && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                    logger.info("Database access limited to {} concurrent connections ({})", maxConcurrency, beanName);
+                    return new ConcurrencyLimitedDataSource((DataSource) bean, maxConcurrency, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder databaseConcurrencyMetrics(DataSource dataSource) {
+        return registry -> {
+            if (!(dataSource instanceof ConcurrencyLimitedDataSource)) {
+                return;
+            }
+            ConcurrencyLimitedDataSource limited = (ConcurrencyLimitedDataSource) dataSource;
+            Gauge.builder("lab.database.concurrency.in-use", limited, ConcurrencyLimitedDataSource::getInUse)
+                    .description("Connections currently held against lab.database.max-concurrency")
+                    .register(registry);
+            Gauge.builder("lab.database.concurrency.waiting", limited, ConcurrencyLimitedDataSource::getWaiting)
+                    .description("Threads waiting for a database permit")
+                    .register(registry);
+            FunctionCounter.builder("lab.database.concurrency.rejected", limited,
+                            ConcurrencyLimitedDataSource::getRejectedCount)
+                    .description("Connection requests refused after waiting lab.database.acquire-timeout")
+                    .register(registry);
+        };
+    }
+}
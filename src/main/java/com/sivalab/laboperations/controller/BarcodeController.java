@@ -1,45 +1,80 @@
 package com.sivalab.laboperations.controller;
 
+import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
 import com.sivalab.laboperations.entity.LabReport;
 import com.sivalab.laboperations.entity.Sample;
 import com.sivalab.laboperations.entity.Visit;
+import com.sivalab.laboperations.service.BarcodeDecodeService;
+import com.sivalab.laboperations.service.BarcodeImageFormat;
 import com.sivalab.laboperations.service.BarcodeService;
 import com.sivalab.laboperations.service.LabReportService;
+import com.sivalab.laboperations.service.LabelFormat;
+import com.sivalab.laboperations.service.LabelSheetLayout;
+import com.sivalab.laboperations.service.LabelSheetService;
+import com.sivalab.laboperations.service.SampleLabelService;
 import com.sivalab.laboperations.service.SampleService;
 import com.sivalab.laboperations.service.VisitService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * REST Controller for barcode and QR code generation
  * Provides endpoints for generating various types of codes for lab operations
+ * Image endpoints return PNG by default and SVG with ?format=svg; sample labels are ZPL or EPL.
+ * Uploaded barcode images can be decoded back to the sample, visit or report they identify.
+ * GET images carry a strong ETag derived from (payload, size, format) and If-None-Match is answered
+ * with 304 before anything is encoded. Barcodes of fixed identifiers (sample number, visit ID, ULR)
+ * are immutable; QR payloads include status, so those images are revalidated.
  */
 @RestController
 @RequestMapping("/barcodes")
 @CrossOrigin(origins = "*")
 public class BarcodeController {
 
+    // the payload is the identifier itself, which never changes
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+    // the payload follows the entity's status and carries patient details
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final BarcodeService barcodeService;
     private final LabReportService labReportService;
     private final SampleService sampleService;
     private final VisitService visitService;
+    private final SampleLabelService sampleLabelService;
+    private final LabelSheetService labelSheetService;
+    private final BarcodeDecodeService barcodeDecodeService;
 
     @Autowired
     public BarcodeController(BarcodeService barcodeService, LabReportService labReportService,
-                           SampleService sampleService, VisitService visitService) {
+                           SampleService sampleService, VisitService visitService,
+                           SampleLabelService sampleLabelService, LabelSheetService labelSheetService,
+                           BarcodeDecodeService barcodeDecodeService) {
         this.barcodeService = barcodeService;
         this.labReportService = labReportService;
         this.sampleService = sampleService;
         this.visitService = visitService;
+        this.sampleLabelService = sampleLabelService;
+        this.labelSheetService = labelSheetService;
+        this.barcodeDecodeService = barcodeDecodeService;
     }
 
     /**
@@ -48,7 +83,11 @@ public class BarcodeController {
      */
     @GetMapping("/reports/{reportId}/qr")
     public ResponseEntity<byte[]> generateReportQRCode(@PathVariable Long reportId,
-                                                      @RequestParam(defaultValue = "200") int size) {
+                                                      @RequestParam(defaultValue = "200") int size,
+                                                      @RequestParam(defaultValue = "png") String format,
+                                                      WebRequest request) {
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
+        BarcodeService.checkImageSize(size, size);
         try {
             Optional<LabReport> reportOpt = labReportService.getReportById(reportId);
             if (reportOpt.isEmpty()) {
@@ -56,24 +95,14 @@ public class BarcodeController {
             }
 
             LabReport report = reportOpt.get();
-            Visit visit = report.getVisit();
-            String patientName = visit.getPatientDetails().get("name").asText();
-            String patientId = visit.getPatientDetails().get("patientId").asText();
-
-            String qrData = barcodeService.generateReportQRData(
-                report.getUlrNumber(), patientName, patientId,
-                report.getReportStatus().toString(), "/reports/view/" + report.getUlrNumber()
-            );
-
-            byte[] qrCode = barcodeService.generateQRCode(qrData, size);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("inline", "report_qr_" + report.getUlrNumber().replace("/", "_") + ".png");
+            String qrData = barcodeService.generateReportQRData(report);
+            String eTag = barcodeService.qrCodeETag(qrData, size, imageFormat);
+            if (request.checkNotModified(eTag)) {
+                return notModified(eTag, REVALIDATE);
+            }
+            byte[] qrCode = barcodeService.generateQRCode(qrData, size, imageFormat);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(qrCode);
+            return image(qrCode, imageFormat, "report_qr_" + report.getUlrNumber().replace("/", "_"), eTag, REVALIDATE);
 
         } catch (WriterException | IOException e) {
             return ResponseEntity.internalServerError().build();
@@ -87,7 +116,11 @@ public class BarcodeController {
     @GetMapping("/reports/{reportId}/barcode")
     public ResponseEntity<byte[]> generateReportBarcode(@PathVariable Long reportId,
                                                        @RequestParam(defaultValue = "300") int width,
-                                                       @RequestParam(defaultValue = "50") int height) {
+                                                       @RequestParam(defaultValue = "50") int height,
+                                                       @RequestParam(defaultValue = "png") String format,
+                                                       WebRequest request) {
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
+        BarcodeService.checkImageSize(width, height);
         try {
             Optional<LabReport> reportOpt = labReportService.getReportById(reportId);
             if (reportOpt.isEmpty()) {
@@ -95,15 +128,14 @@ public class BarcodeController {
             }
 
             LabReport report = reportOpt.get();
-            byte[] barcode = barcodeService.generateULRBarcode(report.getUlrNumber());
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("inline", "ulr_barcode_" + report.getUlrNumber().replace("/", "_") + ".png");
+            String data = barcodeService.ulrBarcodeData(report.getUlrNumber());
+            String eTag = barcodeService.code128BarcodeETag(data, width, height, imageFormat);
+            if (request.checkNotModified(eTag)) {
+                return notModified(eTag, IMMUTABLE);
+            }
+            byte[] barcode = barcodeService.generateCode128Barcode(data, width, height, imageFormat);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(barcode);
+            return image(barcode, imageFormat, "ulr_barcode_" + report.getUlrNumber().replace("/", "_"), eTag, IMMUTABLE);
 
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
@@ -123,13 +155,7 @@ public class BarcodeController {
             }
 
             LabReport report = reportOpt.get();
-            Visit visit = report.getVisit();
-            String patientName = visit.getPatientDetails().get("name").asText();
-            String patientId = visit.getPatientDetails().get("patientId").asText();
-
-            Map<String, byte[]> barcodes = barcodeService.generateReportBarcodePackage(
-                report.getUlrNumber(), patientName, patientId, report.getReportStatus().toString()
-            );
+            Map<String, byte[]> barcodes = barcodeService.generateReportBarcodePackage(report);
 
             // Convert byte arrays to base64 for JSON response
             Map<String, String> base64Barcodes = new java.util.HashMap<>();
@@ -151,7 +177,11 @@ public class BarcodeController {
      */
     @GetMapping("/samples/{sampleNumber}/qr")
     public ResponseEntity<byte[]> generateSampleQRCode(@PathVariable String sampleNumber,
-                                                      @RequestParam(defaultValue = "200") int size) {
+                                                      @RequestParam(defaultValue = "200") int size,
+                                                      @RequestParam(defaultValue = "png") String format,
+                                                      WebRequest request) {
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
+        BarcodeService.checkImageSize(size, size);
         try {
             Optional<Sample> sampleOpt = sampleService.getSampleByNumber(sampleNumber);
             if (sampleOpt.isEmpty()) {
@@ -168,15 +198,13 @@ public class BarcodeController {
                 "/samples/view/" + sample.getSampleNumber()
             );
 
-            byte[] qrCode = barcodeService.generateQRCode(qrData, size);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("inline", "sample_qr_" + sampleNumber + ".png");
+            String eTag = barcodeService.qrCodeETag(qrData, size, imageFormat);
+            if (request.checkNotModified(eTag)) {
+                return notModified(eTag, REVALIDATE);
+            }
+            byte[] qrCode = barcodeService.generateQRCode(qrData, size, imageFormat);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(qrCode);
+            return image(qrCode, imageFormat, "sample_qr_" + sampleNumber, eTag, REVALIDATE);
 
         } catch (WriterException | IOException e) {
             return ResponseEntity.internalServerError().build();
@@ -188,35 +216,91 @@ public class BarcodeController {
      * GET /barcodes/samples/{sampleNumber}/barcode
      */
     @GetMapping("/samples/{sampleNumber}/barcode")
-    public ResponseEntity<byte[]> generateSampleBarcode(@PathVariable String sampleNumber) {
+    public ResponseEntity<byte[]> generateSampleBarcode(@PathVariable String sampleNumber,
+                                                        @RequestParam(defaultValue = "png") String format,
+                                                        WebRequest request) {
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
         try {
             Optional<Sample> sampleOpt = sampleService.getSampleByNumber(sampleNumber);
             if (sampleOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
 
-            byte[] barcode = barcodeService.generateSampleBarcode(sampleNumber);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("inline", "sample_barcode_" + sampleNumber + ".png");
+            String eTag = barcodeService.sampleBarcodeETag(sampleNumber, imageFormat);
+            if (request.checkNotModified(eTag)) {
+                return notModified(eTag, IMMUTABLE);
+            }
+            byte[] barcode = barcodeService.generateSampleBarcode(sampleNumber, imageFormat);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(barcode);
+            return image(barcode, imageFormat, "sample_barcode_" + sampleNumber, eTag, IMMUTABLE);
 
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    /**
+     * Generate thermal printer label for sample tube
+     * GET /barcodes/samples/{sampleNumber}/label?format=zpl|epl
+     */
+    @GetMapping("/samples/{sampleNumber}/label")
+    public ResponseEntity<String> generateSampleLabel(@PathVariable String sampleNumber,
+                                                      @RequestParam(defaultValue = "zpl") String format,
+                                                      @RequestParam(defaultValue = "1") int copies) {
+        LabelFormat labelFormat = LabelFormat.from(format);
+        return sampleLabelService.renderLabel(sampleNumber, labelFormat, copies)
+                .map(label -> label(label, labelFormat, "sample_label_" + sampleNumber))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Generate thermal printer labels for several samples as one print job
+     * POST /barcodes/samples/labels?format=zpl|epl with {"sampleNumbers": [...], "copies": 1}
+     */
+    @PostMapping("/samples/labels")
+    public ResponseEntity<String> generateSampleLabels(@RequestBody Map<String, Object> request,
+                                                       @RequestParam(defaultValue = "zpl") String format) {
+        LabelFormat labelFormat = LabelFormat.from(format);
+        @SuppressWarnings("unchecked")
+        List<String> sampleNumbers = (List<String>) request.get("sampleNumbers");
+        Integer copies = (Integer) request.getOrDefault("copies", 1);
+
+        String labels = sampleLabelService.renderLabels(sampleNumbers, labelFormat, copies);
+        return label(labels, labelFormat, "sample_labels");
+    }
+
+    /**
+     * Generate printable label sheet (PDF) for many samples, e.g. for a collection drive
+     * POST /barcodes/labels/sheet with {"sampleNumbers": [...], "layout": "A4_GRID" | "ROLL"}
+     */
+    @PostMapping("/labels/sheet")
+    public ResponseEntity<StreamingResponseBody> generateLabelSheet(@RequestBody Map<String, Object> request) {
+        @SuppressWarnings("unchecked")
+        List<String> sampleNumbers = (List<String>) request.get("sampleNumbers");
+        LabelSheetLayout layout = LabelSheetLayout.from((String) request.get("layout"));
+        List<LabelSheetService.SheetLabel> labels = labelSheetService.loadLabels(sampleNumbers);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", "sample_labels.pdf");
+
+        StreamingResponseBody body = out -> labelSheetService.writeSheet(labels, layout, out);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
     /**
      * Generate QR code for visit
      * GET /barcodes/visits/{visitId}/qr
      */
     @GetMapping("/visits/{visitId}/qr")
     public ResponseEntity<byte[]> generateVisitQRCode(@PathVariable Long visitId,
-                                                     @RequestParam(defaultValue = "200") int size) {
+                                                     @RequestParam(defaultValue = "200") int size,
+                                                     @RequestParam(defaultValue = "png") String format,
+                                                     WebRequest request) {
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
+        BarcodeService.checkImageSize(size, size);
         try {
             Optional<Visit> visitOpt = visitService.getVisitById(visitId);
             if (visitOpt.isEmpty()) {
@@ -234,15 +318,13 @@ public class BarcodeController {
                 "/visits/view/" + visit.getVisitId()
             );
 
-            byte[] qrCode = barcodeService.generateQRCode(qrData, size);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("inline", "visit_qr_" + visitId + ".png");
+            String eTag = barcodeService.qrCodeETag(qrData, size, imageFormat);
+            if (request.checkNotModified(eTag)) {
+                return notModified(eTag, REVALIDATE);
+            }
+            byte[] qrCode = barcodeService.generateQRCode(qrData, size, imageFormat);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(qrCode);
+            return image(qrCode, imageFormat, "visit_qr_" + visitId, eTag, REVALIDATE);
 
         } catch (WriterException | IOException e) {
             return ResponseEntity.internalServerError().build();
@@ -254,22 +336,23 @@ public class BarcodeController {
      * GET /barcodes/visits/{visitId}/barcode
      */
     @GetMapping("/visits/{visitId}/barcode")
-    public ResponseEntity<byte[]> generateVisitBarcode(@PathVariable Long visitId) {
+    public ResponseEntity<byte[]> generateVisitBarcode(@PathVariable Long visitId,
+                                                       @RequestParam(defaultValue = "png") String format,
+                                                       WebRequest request) {
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
         try {
             Optional<Visit> visitOpt = visitService.getVisitById(visitId);
             if (visitOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
 
-            byte[] barcode = barcodeService.generateVisitBarcode(visitId);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("inline", "visit_barcode_" + visitId + ".png");
+            String eTag = barcodeService.visitBarcodeETag(visitId, imageFormat);
+            if (request.checkNotModified(eTag)) {
+                return notModified(eTag, IMMUTABLE);
+            }
+            byte[] barcode = barcodeService.generateVisitBarcode(visitId, imageFormat);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(barcode);
+            return image(barcode, imageFormat, "visit_barcode_" + visitId, eTag, IMMUTABLE);
 
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
@@ -281,7 +364,9 @@ public class BarcodeController {
      * POST /barcodes/qr/custom
      */
     @PostMapping("/qr/custom")
-    public ResponseEntity<byte[]> generateCustomQRCode(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<byte[]> generateCustomQRCode(@RequestBody Map<String, Object> request,
+                                                       @RequestParam(defaultValue = "png") String format) {
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
         try {
             String data = (String) request.get("data");
             Integer size = (Integer) request.getOrDefault("size", 200);
@@ -289,16 +374,11 @@ public class BarcodeController {
             if (data == null || data.trim().isEmpty()) {
                 return ResponseEntity.badRequest().build();
             }
+            BarcodeService.checkImageSize(size, size);
 
-            byte[] qrCode = barcodeService.generateQRCode(data, size);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("inline", "custom_qr.png");
+            byte[] qrCode = barcodeService.generateQRCode(data, size, imageFormat);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(qrCode);
+            return image(qrCode, imageFormat, "custom_qr");
 
         } catch (WriterException | IOException e) {
             return ResponseEntity.internalServerError().build();
@@ -310,34 +390,137 @@ public class BarcodeController {
      * POST /barcodes/barcode/custom
      */
     @PostMapping("/barcode/custom")
-    public ResponseEntity<byte[]> generateCustomBarcode(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<byte[]> generateCustomBarcode(@RequestBody Map<String, Object> request,
+                                                        @RequestParam(defaultValue = "png") String format) {
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
         try {
             String data = (String) request.get("data");
-            String format = (String) request.getOrDefault("format", "CODE128");
+            String symbology = (String) request.getOrDefault("format", "CODE128");
             Integer width = (Integer) request.getOrDefault("width", 300);
             Integer height = (Integer) request.getOrDefault("height", 50);
 
             if (data == null || data.trim().isEmpty()) {
                 return ResponseEntity.badRequest().build();
             }
+            BarcodeService.checkImageSize(width, height);
 
             byte[] barcode;
-            if ("CODE39".equalsIgnoreCase(format)) {
-                barcode = barcodeService.generateCode39Barcode(data, width, height);
+            if ("CODE39".equalsIgnoreCase(symbology)) {
+                barcode = barcodeService.generateCode39Barcode(data, width, height, imageFormat);
             } else {
-                barcode = barcodeService.generateCode128Barcode(data, width, height);
+                barcode = barcodeService.generateCode128Barcode(data, width, height, imageFormat);
             }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("inline", "custom_barcode.png");
-
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(barcode);
+            return image(barcode, imageFormat, "custom_barcode");
 
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Decode uploaded barcode/QR images and resolve them to samples, visits or reports
+     * POST /barcodes/decode as multipart, "file" for one image or "files" for a batch;
+     * ?format=code128|code39|qr skips format detection when the symbology is known
+     */
+    @PostMapping(value = "/decode", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> decodeUploads(@RequestParam(value = "file", required = false) MultipartFile file,
+                                           @RequestParam(value = "files", required = false) List<MultipartFile> files,
+                                           @RequestParam(required = false) String format) throws IOException {
+        BarcodeFormat expected = BarcodeDecodeService.expectedFormat(format);
+        if (file != null) {
+            return decoded(barcodeDecodeService.decode(upload(file), expected));
+        }
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("No images given, upload \"file\" or \"files\"");
+        }
+
+        List<BarcodeDecodeService.ImageUpload> uploads = new ArrayList<>(files.size());
+        for (MultipartFile upload : files) {
+            uploads.add(upload(upload));
+        }
+        List<BarcodeDecodeService.DecodeResult> results = barcodeDecodeService.decodeAll(uploads, expected);
+        long decodedCount = results.stream().filter(BarcodeDecodeService.DecodeResult::isDecoded).count();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("results", results);
+        response.put("decoded", decodedCount);
+        response.put("failed", results.size() - decodedCount);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Decode a single image sent as the raw request body
+     * POST /barcodes/decode with Content-Type image/png, image/jpeg, image/gif or image/bmp
+     */
+    @PostMapping(value = "/decode", consumes = {MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_JPEG_VALUE,
+            MediaType.IMAGE_GIF_VALUE, "image/bmp"})
+    public ResponseEntity<BarcodeDecodeService.DecodeResult> decodeImage(@RequestBody byte[] image,
+                                                                         @RequestParam(required = false) String format) {
+        BarcodeFormat expected = BarcodeDecodeService.expectedFormat(format);
+        return decoded(barcodeDecodeService.decode(new BarcodeDecodeService.ImageUpload("image", image), expected));
+    }
+
+    /**
+     * A single image with no readable barcode is 422, with the reason in the body
+     */
+    private static ResponseEntity<BarcodeDecodeService.DecodeResult> decoded(BarcodeDecodeService.DecodeResult result) {
+        return result.isDecoded() ? ResponseEntity.ok(result) : ResponseEntity.unprocessableEntity().body(result);
+    }
+
+    private static BarcodeDecodeService.ImageUpload upload(MultipartFile file) throws IOException {
+        return new BarcodeDecodeService.ImageUpload(file.getOriginalFilename(), file.getBytes());
+    }
+
+    /**
+     * Image response in the requested format, shown inline
+     */
+    private static ResponseEntity<byte[]> image(byte[] body, BarcodeImageFormat format, String baseName) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(format.getMediaType()));
+        headers.setContentDispositionFormData("inline", baseName + "." + format.getExtension());
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    /**
+     * Cacheable image response with its validator
+     */
+    private static ResponseEntity<byte[]> image(byte[] body, BarcodeImageFormat format, String baseName,
+                                                String eTag, CacheControl cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(format.getMediaType()));
+        headers.setContentDispositionFormData("inline", baseName + "." + format.getExtension());
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .eTag(eTag)
+                .cacheControl(cacheControl)
+                .body(body);
+    }
+
+    /**
+     * 304 for a client that already holds the image; Cache-Control is repeated so it can keep it
+     */
+    private static ResponseEntity<byte[]> notModified(String eTag, CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .cacheControl(cacheControl)
+                .build();
+    }
+
+    /**
+     * Printer commands, sent as a download for the print client
+     */
+    private static ResponseEntity<String> label(String commands, LabelFormat format, String baseName) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+        headers.setContentDispositionFormData("attachment", baseName + "." + format.getExtension());
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(commands);
+    }
 }
@@ -6,14 +6,25 @@ import com.sivalab.laboperations.entity.ReportStatus;
 import com.sivalab.laboperations.entity.ReportType;
 import com.sivalab.laboperations.service.LabReportService;
 import com.sivalab.laboperations.service.PdfReportService;
+import com.sivalab.laboperations.service.ReportBundleService;
+import com.sivalab.laboperations.service.ReportPdfCache;
+import com.sivalab.laboperations.service.ReportRenderJobService;
+import com.sivalab.laboperations.service.ReportSnapshotService;
+import com.sivalab.laboperations.service.ReportStatisticsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -29,11 +40,24 @@ public class LabReportController {
 
     private final LabReportService labReportService;
     private final PdfReportService pdfReportService;
+    private final ReportPdfCache reportPdfCache;
+    private final ReportRenderJobService renderJobService;
+    private final ReportBundleService reportBundleService;
+    private final ReportStatisticsService reportStatisticsService;
+    private final ReportSnapshotService reportSnapshotService;
 
     @Autowired
-    public LabReportController(LabReportService labReportService, PdfReportService pdfReportService) {
+    public LabReportController(LabReportService labReportService, PdfReportService pdfReportService,
+                               ReportPdfCache reportPdfCache, ReportRenderJobService renderJobService,
+                               ReportBundleService reportBundleService, ReportStatisticsService reportStatisticsService,
+                               ReportSnapshotService reportSnapshotService) {
         this.labReportService = labReportService;
         this.pdfReportService = pdfReportService;
+        this.reportPdfCache = reportPdfCache;
+        this.renderJobService = renderJobService;
+        this.reportBundleService = reportBundleService;
+        this.reportStatisticsService = reportStatisticsService;
+        this.reportSnapshotService = reportSnapshotService;
     }
     
     /**
@@ -159,6 +183,39 @@ public class LabReportController {
         return ResponseEntity.ok(reports);
     }
     
+    /**
+     * Download all reports generated in a date range as one merged PDF or a ZIP
+     * GET /reports/bundle?from=2024-01-15&to=2024-01-15&referrer=City Hospital&format=zip
+     */
+    @GetMapping("/bundle")
+    public ResponseEntity<StreamingResponseBody> getReportBundle(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String referrer,
+            @RequestParam(defaultValue = "PDF") ReportBundleService.BundleFormat format) {
+        List<Long> reportIds;
+        try {
+            reportIds = reportBundleService.findBundleReportIds(from, to, referrer);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (reportIds.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String fileName = "reports_" + from + (to.equals(from) ? "" : "_" + to)
+                + (format == ReportBundleService.BundleFormat.ZIP ? ".zip" : ".pdf");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(format == ReportBundleService.BundleFormat.ZIP
+                ? MediaType.parseMediaType("application/zip") : MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", fileName);
+
+        StreamingResponseBody body = out -> reportBundleService.writeBundle(reportIds, format, out);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+    
     /**
      * Get reports authorized by specific person
      * GET /reports/authorized-by/{authorizedBy}
@@ -205,7 +262,7 @@ public class LabReportController {
      */
     @GetMapping("/{reportId}")
     public ResponseEntity<LabReport> getReportById(@PathVariable Long reportId) {
-        Optional<LabReport> report = labReportService.getReportById(reportId);
+        Optional<LabReport> report = labReportService.getResolvedReportById(reportId);
         return report.map(ResponseEntity::ok)
                     .orElse(ResponseEntity.notFound().build());
     }
@@ -215,8 +272,8 @@ public class LabReportController {
      * GET /reports/statistics
      */
     @GetMapping("/statistics")
-    public ResponseEntity<LabReportService.ReportStatistics> getReportStatistics() {
-        LabReportService.ReportStatistics stats = labReportService.getReportStatistics();
+    public ResponseEntity<ReportStatisticsService.ReportStatistics> getReportStatistics() {
+        ReportStatisticsService.ReportStatistics stats = reportStatisticsService.getReportStatistics();
         return ResponseEntity.ok(stats);
     }
 
@@ -225,28 +282,15 @@ public class LabReportController {
      * GET /reports/{reportId}/pdf
      */
     @GetMapping("/{reportId}/pdf")
-    public ResponseEntity<byte[]> generatePdfReport(@PathVariable Long reportId) {
-        try {
-            Optional<LabReport> reportOpt = labReportService.getReportById(reportId);
-            if (reportOpt.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
-
-            LabReport report = reportOpt.get();
-            byte[] pdfBytes = pdfReportService.generatePdfReport(report);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", "report_" + report.getUlrNumber().replace("/", "_") + ".pdf");
-            headers.setContentLength(pdfBytes.length);
-
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(pdfBytes);
-
-        } catch (IOException e) {
-            return ResponseEntity.internalServerError().build();
+    public ResponseEntity<StreamingResponseBody> generatePdfReport(@PathVariable Long reportId,
+                                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<LabReport> reportOpt = labReportService.getReportById(reportId);
+        if (reportOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
         }
+
+        LabReport report = reportOpt.get();
+        return serveCachedPdf(report, "itext", "report_", ifNoneMatch, pdfReportService::writePdfReport);
     }
 
     /**
@@ -254,28 +298,154 @@ public class LabReportController {
      * GET /reports/{reportId}/pdf-html
      */
     @GetMapping("/{reportId}/pdf-html")
-    public ResponseEntity<byte[]> generateHtmlPdfReport(@PathVariable Long reportId) {
+    public ResponseEntity<StreamingResponseBody> generateHtmlPdfReport(@PathVariable Long reportId,
+                                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<LabReport> reportOpt = labReportService.getReportById(reportId);
+        if (reportOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        LabReport report = reportOpt.get();
+        return serveCachedPdf(report, "html", "report_html_", ifNoneMatch, pdfReportService::writePdfFromHtml);
+    }
+
+    /**
+     * Queue asynchronous PDF rendering (STAT reports jump the queue)
+     * POST /reports/{reportId}/render?priority=STAT
+     */
+    @PostMapping("/{reportId}/render")
+    public ResponseEntity<ReportRenderJobService.RenderJob> renderReport(@PathVariable Long reportId,
+                                                                         @RequestParam(required = false) ReportRenderJobService.RenderPriority priority) {
+        Optional<LabReport> reportOpt = labReportService.getReportById(reportId);
+        if (reportOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        LabReport report = reportOpt.get();
+        if (priority == null) {
+            // STAT can also be flagged in the report content
+            JsonNode reportData = reportSnapshotService.materialize(report);
+            boolean stat = reportData != null && "STAT".equalsIgnoreCase(reportData.path("priority").asText());
+            priority = stat ? ReportRenderJobService.RenderPriority.STAT : ReportRenderJobService.RenderPriority.ROUTINE;
+        }
+
         try {
-            Optional<LabReport> reportOpt = labReportService.getReportById(reportId);
-            if (reportOpt.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
+            ReportRenderJobService.RenderJob job = renderJobService.submit(report, priority);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/reports/jobs/" + job.getJobId()))
+                    .body(job);
+        } catch (ReportRenderJobService.RenderQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+    }
 
-            LabReport report = reportOpt.get();
-            byte[] pdfBytes = pdfReportService.generatePdfFromHtml(report);
+    /**
+     * Poll a render job: job status while it is queued, running or failed, the PDF once it is done
+     * GET /reports/jobs/{jobId}
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getRenderJob(@PathVariable String jobId) {
+        Optional<ReportRenderJobService.RenderJob> jobOpt = renderJobService.getJob(jobId);
+        if (jobOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", "report_html_" + report.getUlrNumber().replace("/", "_") + ".pdf");
-            headers.setContentLength(pdfBytes.length);
+        ReportRenderJobService.RenderJob job = jobOpt.get();
+        switch (job.getStatus()) {
+            case QUEUED:
+            case RUNNING:
+                return ResponseEntity.accepted().body(job);
+            case FAILED:
+                return ResponseEntity.internalServerError().body(job);
+            default:
+                break;
+        }
+
+        // pinned, so an eviction after the headers are sent cannot cut the body short
+        Optional<ReportPdfCache.CachedPdf> pdf = renderJobService.getResult(job);
+        if (pdf.isEmpty()) {
+            // evicted from the cache since the job finished; the client resubmits
+            return ResponseEntity.status(HttpStatus.GONE).body(job);
+        }
 
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", "report_" + job.getReportId() + ".pdf");
+        headers.setContentLength(pdf.get().getLength());
+        headers.setETag("\"" + pdf.get().getEtag() + "\"");
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+
+        StreamingResponseBody body = pdf.get()::writeTo;
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    /**
+     * Serve a rendered PDF from the content-addressed cache, rendering it on a miss
+     * Answers 304 when the client already holds the current rendering. A miss is rendered straight into
+     * the response (chunked, no Content-Length) while a copy is written to the disk tier, so the request
+     * never holds the whole document in memory; identical requests meanwhile get the committed file.
+     */
+    private ResponseEntity<StreamingResponseBody> serveCachedPdf(LabReport report, String variant, String filePrefix,
+                                                                 String ifNoneMatch, PdfRenderer renderer) {
+        String key = reportPdfCache.keyFor(report, variant);
+        String etag = "\"" + key + "\"";
+        if (etagMatches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", filePrefix + report.getUlrNumber().replace("/", "_") + ".pdf");
+        headers.setETag(etag);
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+
+        // pinned, so an eviction after the headers are sent cannot cut the body short
+        ReportPdfCache.CachedPdf pdf = reportPdfCache.get(key);
+        if (pdf != null) {
+            pdf = pdf.pin();
+        }
+        if (pdf != null) {
+            headers.setContentLength(pdf.getLength());
             return ResponseEntity.ok()
                     .headers(headers)
-                    .body(pdfBytes);
+                    .body(pdf::writeTo);
+        }
 
-        } catch (IOException e) {
-            return ResponseEntity.internalServerError().build();
+        // identical requests arriving together (portal, SMS link, front desk) share one rendering;
+        // also taken when the entry was evicted between lookup and pinning
+        StreamingResponseBody body = out -> reportPdfCache.getOrRender(report.getReportId(), key, out,
+                rendering -> renderer.write(report, rendering));
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    private boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
         }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface PdfRenderer {
+        void write(LabReport report, OutputStream out) throws IOException;
     }
 
     /**
@@ -291,8 +461,8 @@ public class LabReportController {
             }
 
             LabReport report = reportOpt.get();
-            // Generate HTML content for preview
-            String htmlContent = generatePreviewHtml(report);
+            // Same compiled template as the HTML-based PDF
+            String htmlContent = pdfReportService.generateHtmlReport(report);
 
             return ResponseEntity.ok()
                     .contentType(MediaType.TEXT_HTML)
@@ -303,35 +473,6 @@ public class LabReportController {
         }
     }
 
-    /**
-     * Helper method to generate HTML preview
-     */
-    private String generatePreviewHtml(LabReport report) throws IOException {
-        // This is a simplified version for preview
-        StringBuilder html = new StringBuilder();
-        html.append("<!DOCTYPE html><html><head><meta charset='UTF-8'>");
-        html.append("<style>body{font-family:Arial,sans-serif;margin:20px;}</style>");
-        html.append("</head><body>");
-        html.append("<h1>SLN CITY LABORATORY</h1>");
-        html.append("<p><strong>ULR Number:</strong> ").append(report.getUlrNumber()).append("</p>");
-        html.append("<p><strong>Report Type:</strong> ").append(report.getReportType()).append("</p>");
-        html.append("<p><strong>Status:</strong> ").append(report.getReportStatus()).append("</p>");
-
-        if (report.getVisit() != null) {
-            html.append("<h2>Patient Information</h2>");
-            html.append("<p>Visit ID: ").append(report.getVisit().getVisitId()).append("</p>");
-            html.append("<p>Visit Date: ").append(report.getVisit().getCreatedAt()).append("</p>");
-        }
-
-        if (report.getReportData() != null) {
-            html.append("<h2>Report Data</h2>");
-            html.append("<pre>").append(report.getReportData()).append("</pre>");
-        }
-
-        html.append("</body></html>");
-        return html.toString();
-    }
-
     // Request DTOs
     public static class CreateReportRequest {
         private Long visitId;
@@ -1,5 +1,8 @@
 package com.sivalab.laboperations.controller;
 
+import com.sivalab.laboperations.service.BarcodeExecutor;
+import com.sivalab.laboperations.service.BarcodeImageFormat;
+import com.sivalab.laboperations.service.BarcodeService;
 import com.sivalab.laboperations.service.ResilientBarcodeService;
 import com.sivalab.laboperations.service.SystemHealthService;
 import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
@@ -19,6 +22,7 @@ import java.util.concurrent.TimeUnit;
 /**
  * Resilient Barcode Controller with Fault Tolerance
  * Provides barcode generation endpoints with comprehensive error handling and fault tolerance
+ * Images are PNG by default and SVG with ?format=svg.
  */
 @RestController
 @RequestMapping("/api/v1/resilient/barcodes")
@@ -33,22 +37,28 @@ public class ResilientBarcodeController {
     @Autowired
     private SystemHealthService systemHealthService;
 
+    @Autowired
+    private BarcodeExecutor barcodeExecutor;
+
     /**
      * Generate QR Code with fault tolerance
      */
     @PostMapping("/qr")
     @RateLimiter(name = "api")
-    public CompletableFuture<ResponseEntity<byte[]>> generateQRCode(@RequestBody Map<String, Object> request) {
+    public CompletableFuture<ResponseEntity<byte[]>> generateQRCode(@RequestBody Map<String, Object> request,
+                                                                  @RequestParam(defaultValue = "png") String format) {
         try {
+            BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
             String data = (String) request.get("data");
             Integer size = (Integer) request.getOrDefault("size", 200);
+            BarcodeService.checkImageSize(size, size);
 
             logger.info("Generating QR code for data length: {} with size: {}", data.length(), size);
 
-            return resilientBarcodeService.generateQRCodeResilient(data, size)
+            return resilientBarcodeService.generateQRCodeResilient(data, size, imageFormat)
                 .thenApply(qrCodeBytes -> {
                     HttpHeaders headers = new HttpHeaders();
-                    headers.setContentType(MediaType.IMAGE_PNG);
+                    headers.setContentType(MediaType.parseMediaType(imageFormat.getMediaType()));
                     headers.setContentLength(qrCodeBytes.length);
                     headers.setCacheControl("max-age=3600"); // Cache for 1 hour
                     
@@ -77,18 +87,21 @@ public class ResilientBarcodeController {
      */
     @PostMapping("/code128")
     @RateLimiter(name = "api")
-    public CompletableFuture<ResponseEntity<byte[]>> generateCode128Barcode(@RequestBody Map<String, Object> request) {
+    public CompletableFuture<ResponseEntity<byte[]>> generateCode128Barcode(@RequestBody Map<String, Object> request,
+                                                                          @RequestParam(defaultValue = "png") String format) {
         try {
+            BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
             String data = (String) request.get("data");
             Integer width = (Integer) request.getOrDefault("width", 200);
             Integer height = (Integer) request.getOrDefault("height", 50);
+            BarcodeService.checkImageSize(width, height);
 
             logger.info("Generating Code128 barcode for data: {} with dimensions: {}x{}", data, width, height);
 
-            return resilientBarcodeService.generateCode128BarcodeResilient(data, width, height)
+            return resilientBarcodeService.generateCode128BarcodeResilient(data, width, height, imageFormat)
                 .thenApply(barcodeBytes -> {
                     HttpHeaders headers = new HttpHeaders();
-                    headers.setContentType(MediaType.IMAGE_PNG);
+                    headers.setContentType(MediaType.parseMediaType(imageFormat.getMediaType()));
                     headers.setContentLength(barcodeBytes.length);
                     headers.setCacheControl("max-age=3600");
                     
@@ -117,18 +130,21 @@ public class ResilientBarcodeController {
      */
     @PostMapping("/code39")
     @RateLimiter(name = "api")
-    public CompletableFuture<ResponseEntity<byte[]>> generateCode39Barcode(@RequestBody Map<String, Object> request) {
+    public CompletableFuture<ResponseEntity<byte[]>> generateCode39Barcode(@RequestBody Map<String, Object> request,
+                                                                         @RequestParam(defaultValue = "png") String format) {
         try {
+            BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
             String data = (String) request.get("data");
             Integer width = (Integer) request.getOrDefault("width", 200);
             Integer height = (Integer) request.getOrDefault("height", 50);
+            BarcodeService.checkImageSize(width, height);
 
             logger.info("Generating Code39 barcode for data: {} with dimensions: {}x{}", data, width, height);
 
-            return resilientBarcodeService.generateCode39BarcodeResilient(data, width, height)
+            return resilientBarcodeService.generateCode39BarcodeResilient(data, width, height, imageFormat)
                 .thenApply(barcodeBytes -> {
                     HttpHeaders headers = new HttpHeaders();
-                    headers.setContentType(MediaType.IMAGE_PNG);
+                    headers.setContentType(MediaType.parseMediaType(imageFormat.getMediaType()));
                     headers.setContentLength(barcodeBytes.length);
                     headers.setCacheControl("max-age=3600");
                     
@@ -159,14 +175,17 @@ public class ResilientBarcodeController {
     @RateLimiter(name = "api")
     public CompletableFuture<ResponseEntity<byte[]>> generateVisitQRCode(
             @PathVariable Long visitId,
-            @RequestParam(defaultValue = "200") int size) {
+            @RequestParam(defaultValue = "200") int size,
+            @RequestParam(defaultValue = "png") String format) {
         
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
+        BarcodeService.checkImageSize(size, size);
         logger.info("Generating visit QR code for visitId: {} with size: {}", visitId, size);
 
-        return resilientBarcodeService.generateVisitQRCodeResilient(visitId, size)
+        return resilientBarcodeService.generateVisitQRCodeResilient(visitId, size, imageFormat)
             .thenApply(qrCodeBytes -> {
                 HttpHeaders headers = new HttpHeaders();
-                headers.setContentType(MediaType.IMAGE_PNG);
+                headers.setContentType(MediaType.parseMediaType(imageFormat.getMediaType()));
                 headers.setContentLength(qrCodeBytes.length);
                 headers.setCacheControl("max-age=1800"); // Cache for 30 minutes
                 
@@ -189,14 +208,17 @@ public class ResilientBarcodeController {
     @RateLimiter(name = "api")
     public CompletableFuture<ResponseEntity<byte[]>> generateSampleQRCode(
             @PathVariable String sampleNumber,
-            @RequestParam(defaultValue = "200") int size) {
+            @RequestParam(defaultValue = "200") int size,
+            @RequestParam(defaultValue = "png") String format) {
         
+        BarcodeImageFormat imageFormat = BarcodeImageFormat.from(format);
+        BarcodeService.checkImageSize(size, size);
         logger.info("Generating sample QR code for sampleNumber: {} with size: {}", sampleNumber, size);
 
-        return resilientBarcodeService.generateSampleQRCodeResilient(sampleNumber, size)
+        return resilientBarcodeService.generateSampleQRCodeResilient(sampleNumber, size, imageFormat)
             .thenApply(qrCodeBytes -> {
                 HttpHeaders headers = new HttpHeaders();
-                headers.setContentType(MediaType.IMAGE_PNG);
+                headers.setContentType(MediaType.parseMediaType(imageFormat.getMediaType()));
                 headers.setContentLength(qrCodeBytes.length);
                 headers.setCacheControl("max-age=1800");
                 
@@ -297,6 +319,12 @@ public class ResilientBarcodeController {
                     "processors", systemMetrics.getAvailableProcessors(),
                     "activeThreads", systemMetrics.getActiveThreads()
                 ),
+                "executor", Map.of(
+                    "threads", barcodeExecutor.getPoolSize(),
+                    "active", barcodeExecutor.getActiveCount(),
+                    "queued", barcodeExecutor.getQueueDepth(),
+                    "rejected", barcodeExecutor.getRejectedCount()
+                ),
                 "endpoints", Map.of(
                     "qrGeneration", "/api/v1/resilient/barcodes/qr",
                     "code128Generation", "/api/v1/resilient/barcodes/code128",
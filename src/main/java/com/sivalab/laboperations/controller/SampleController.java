@@ -2,12 +2,21 @@ package com.sivalab.laboperations.controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.SampleDisposalManifest;
+import com.sivalab.laboperations.entity.SampleDisposalRun;
 import com.sivalab.laboperations.entity.SampleStatus;
 import com.sivalab.laboperations.entity.SampleType;
+import com.sivalab.laboperations.event.SampleOverdueEvent;
+import com.sivalab.laboperations.service.SampleDisposalJob;
 import com.sivalab.laboperations.service.SampleService;
+import com.sivalab.laboperations.service.SampleStatisticsService;
+import com.sivalab.laboperations.service.SampleTurnaroundMonitor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Optional;
@@ -22,10 +31,17 @@ import java.util.Optional;
 public class SampleController {
     
     private final SampleService sampleService;
+    private final SampleTurnaroundMonitor turnaroundMonitor;
+    private final SampleDisposalJob disposalJob;
+    private final SampleStatisticsService statisticsService;
     
     @Autowired
-    public SampleController(SampleService sampleService) {
+    public SampleController(SampleService sampleService, SampleTurnaroundMonitor turnaroundMonitor,
+                            SampleDisposalJob disposalJob, SampleStatisticsService statisticsService) {
         this.sampleService = sampleService;
+        this.turnaroundMonitor = turnaroundMonitor;
+        this.disposalJob = disposalJob;
+        this.statisticsService = statisticsService;
     }
     
     /**
@@ -248,6 +264,79 @@ public class SampleController {
         return ResponseEntity.ok(samples);
     }
     
+    /**
+     * Sample statistics for NABL dashboards (served from materialised counters)
+     * GET /samples/statistics
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<SampleStatisticsService.SampleStatistics> getSampleStatistics() {
+        return ResponseEntity.ok(statisticsService.getSampleStatistics());
+    }
+    
+    /**
+     * Get samples currently past their turnaround-time deadline
+     * GET /samples/overdue
+     */
+    @GetMapping("/overdue")
+    public ResponseEntity<List<SampleOverdueEvent>> getOverdueSamples() {
+        return ResponseEntity.ok(turnaroundMonitor.getOverdueSamples());
+    }
+    
+    /**
+     * Live feed of turnaround-time breaches
+     * GET /samples/overdue/stream
+     */
+    @GetMapping(value = "/overdue/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOverdueSamples() {
+        return turnaroundMonitor.subscribe();
+    }
+    
+    /**
+     * Trigger (or resume) the chunked disposal run in the background; poll /disposal/runs/latest for progress
+     * POST /samples/disposal/runs
+     */
+    @PostMapping("/disposal/runs")
+    public ResponseEntity<SampleDisposalRun> runDisposal() {
+        return disposalJob.startDisposal()
+                .map(run -> ResponseEntity.status(HttpStatus.ACCEPTED).body(run))
+                .orElse(ResponseEntity.status(HttpStatus.CONFLICT).build());
+    }
+    
+    /**
+     * Progress of the most recent disposal run
+     * GET /samples/disposal/runs/latest
+     */
+    @GetMapping("/disposal/runs/latest")
+    public ResponseEntity<SampleDisposalRun> getLatestDisposalRun() {
+        return disposalJob.getLatestRun()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * All batch manifests of a disposal run
+     * GET /samples/disposal/runs/{runCode}/manifests
+     */
+    @GetMapping("/disposal/runs/{runCode}/manifests")
+    public ResponseEntity<List<SampleDisposalManifest>> getDisposalRunManifests(@PathVariable String runCode) {
+        try {
+            return ResponseEntity.ok(disposalJob.getManifestsForRun(runCode));
+        } catch (Exception e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * Manifest of a single disposal batch
+     * GET /samples/disposal/batches/{disposalBatch}
+     */
+    @GetMapping("/disposal/batches/{disposalBatch}")
+    public ResponseEntity<SampleDisposalManifest> getDisposalManifest(@PathVariable String disposalBatch) {
+        return disposalJob.getManifest(disposalBatch)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
     // Request DTOs
     public static class CollectSampleRequest {
         private Long visitId;
@@ -0,0 +1,77 @@
+package com.sivalab.laboperations.controller;
+
+import com.sivalab.laboperations.dto.ScanEventRequest;
+import com.sivalab.laboperations.service.ScanIngestionService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Barcode scan ingestion
+ * Scanners post raw scan events; transitions are applied asynchronously by ScanIngestionService
+ */
+@RestController
+@RequestMapping("/scans")
+@CrossOrigin(origins = "*")
+public class ScanController {
+
+    private final ScanIngestionService scanIngestionService;
+
+    @Autowired
+    public ScanController(ScanIngestionService scanIngestionService) {
+        this.scanIngestionService = scanIngestionService;
+    }
+
+    /**
+     * Submit a scan event
+     * POST /scans
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submitScan(@Valid @RequestBody ScanEventRequest request) {
+        return accepted(scanIngestionService.submit(List.of(request)), 1);
+    }
+
+    /**
+     * Submit a burst of scan events (e.g. a scanner flushing its buffer)
+     * POST /scans/batch
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> submitScans(@Valid @RequestBody List<@Valid ScanEventRequest> requests) {
+        return accepted(scanIngestionService.submit(requests), requests.size());
+    }
+
+    /**
+     * Ingestion queue status
+     * GET /scans/queue
+     */
+    @GetMapping("/queue")
+    public ResponseEntity<Map<String, Object>> getQueueStatus() {
+        return ResponseEntity.ok(Map.of(
+            "queueDepth", scanIngestionService.getQueueDepth(),
+            "remainingCapacity", scanIngestionService.getRemainingCapacity()
+        ));
+    }
+
+    /**
+     * 202 when every scan was queued, 429 with Retry-After when the queue is full
+     */
+    private ResponseEntity<Map<String, Object>> accepted(int accepted, int submitted) {
+        Map<String, Object> body = Map.of(
+            "accepted", accepted,
+            "rejected", submitted - accepted,
+            "queueDepth", scanIngestionService.getQueueDepth()
+        );
+        if (accepted < submitted) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(body);
+        }
+        return ResponseEntity.accepted().body(body);
+    }
+}
@@ -0,0 +1,149 @@
+package com.sivalab.laboperations.controller;
+
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.StorageBox;
+import com.sivalab.laboperations.service.SampleService;
+import com.sivalab.laboperations.service.SampleStorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NABL-compliant Sample Storage Controller
+ * Freezer/rack/box/slot layout, sample location lookups and bulk re-shelving
+ */
+@RestController
+@RequestMapping("/storage")
+@CrossOrigin(origins = "*")
+public class StorageController {
+
+    private final SampleStorageService storageService;
+    private final SampleService sampleService;
+
+    @Autowired
+    public StorageController(SampleStorageService storageService, SampleService sampleService) {
+        this.storageService = storageService;
+        this.sampleService = sampleService;
+    }
+
+    /**
+     * Register a storage box
+     * POST /storage/boxes
+     */
+    @PostMapping("/boxes")
+    public ResponseEntity<StorageBox> createBox(@RequestBody CreateBoxRequest request) {
+        try {
+            StorageBox box = storageService.createBox(
+                request.getFreezerCode(),
+                request.getRackCode(),
+                request.getBoxCode(),
+                request.getRows(),
+                request.getColumns(),
+                request.getStorageTemperature()
+            );
+            return ResponseEntity.ok(box);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * List storage boxes
+     * GET /storage/boxes
+     */
+    @GetMapping("/boxes")
+    public ResponseEntity<List<StorageBox>> getBoxes() {
+        return ResponseEntity.ok(storageService.getBoxes());
+    }
+
+    /**
+     * Occupied slots per box
+     * GET /storage/occupancy
+     */
+    @GetMapping("/occupancy")
+    public ResponseEntity<Map<String, Integer>> getOccupancy() {
+        return ResponseEntity.ok(storageService.getOccupancy());
+    }
+
+    /**
+     * What is in box Y (slot label to sample number)
+     * GET /storage/boxes/{freezerCode}/{rackCode}/{boxCode}
+     */
+    @GetMapping("/boxes/{freezerCode}/{rackCode}/{boxCode}")
+    public ResponseEntity<Map<String, String>> getBoxContents(@PathVariable String freezerCode,
+                                                               @PathVariable String rackCode,
+                                                               @PathVariable String boxCode) {
+        Map<String, String> contents = storageService.getBoxContents(freezerCode + "/" + rackCode + "/" + boxCode);
+        return contents != null ? ResponseEntity.ok(contents) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Where is sample X
+     * GET /storage/samples/{sampleNumber}
+     */
+    @GetMapping("/samples/{sampleNumber}")
+    public ResponseEntity<Map<String, String>> locateSample(@PathVariable String sampleNumber) {
+        String location = storageService.locateSample(sampleNumber);
+        if (location == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("sampleNumber", sampleNumber, "storageLocation", location));
+    }
+
+    /**
+     * Bulk re-shelve samples into a freezer, rack or box
+     * POST /storage/reshelve
+     */
+    @PostMapping("/reshelve")
+    public ResponseEntity<List<Sample>> reshelveSamples(@RequestBody ReshelveRequest request) {
+        try {
+            List<Sample> samples = sampleService.reshelveSamples(
+                request.getSampleNumbers(),
+                request.getTargetLocation(),
+                request.getPerformedBy()
+            );
+            return ResponseEntity.ok(samples);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Request DTOs
+    public static class CreateBoxRequest {
+        private String freezerCode;
+        private String rackCode;
+        private String boxCode;
+        private Integer rows;
+        private Integer columns;
+        private Double storageTemperature;
+
+        public String getFreezerCode() { return freezerCode; }
+        public void setFreezerCode(String freezerCode) { this.freezerCode = freezerCode; }
+        public String getRackCode() { return rackCode; }
+        public void setRackCode(String rackCode) { this.rackCode = rackCode; }
+        public String getBoxCode() { return boxCode; }
+        public void setBoxCode(String boxCode) { this.boxCode = boxCode; }
+        public Integer getRows() { return rows; }
+        public void setRows(Integer rows) { this.rows = rows; }
+        public Integer getColumns() { return columns; }
+        public void setColumns(Integer columns) { this.columns = columns; }
+        public Double getStorageTemperature() { return storageTemperature; }
+        public void setStorageTemperature(Double storageTemperature) { this.storageTemperature = storageTemperature; }
+    }
+
+    public static class ReshelveRequest {
+        private List<String> sampleNumbers;
+        private String targetLocation;
+        private String performedBy;
+
+        public List<String> getSampleNumbers() { return sampleNumbers; }
+        public void setSampleNumbers(List<String> sampleNumbers) { this.sampleNumbers = sampleNumbers; }
+        public String getTargetLocation() { return targetLocation; }
+        public void setTargetLocation(String targetLocation) { this.targetLocation = targetLocation; }
+        public String getPerformedBy() { return performedBy; }
+        public void setPerformedBy(String performedBy) { this.performedBy = performedBy; }
+    }
+}
@@ -0,0 +1,25 @@
+package com.sivalab.laboperations.dto;
+
+import com.sivalab.laboperations.entity.SampleStatus;
+
+/**
+ * Workflow step a barcode scan stands for, with the sample status it leads to
+ */
+public enum ScanAction {
+    RECEIVE(SampleStatus.RECEIVED),
+    PROCESS(SampleStatus.PROCESSING),
+    ANALYZE(SampleStatus.IN_ANALYSIS),
+    COMPLETE(SampleStatus.ANALYSIS_COMPLETE),
+    REVIEW(SampleStatus.REVIEWED),
+    STORE(SampleStatus.STORED);
+    
+    private final SampleStatus targetStatus;
+    
+    ScanAction(SampleStatus targetStatus) {
+        this.targetStatus = targetStatus;
+    }
+    
+    public SampleStatus getTargetStatus() {
+        return targetStatus;
+    }
+}
@@ -0,0 +1,83 @@
+package com.sivalab.laboperations.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+
+public class ScanEventRequest {
+    
+    @NotBlank(message = "Sample number is required")
+    private String sampleNumber;
+    
+    @NotBlank(message = "Station is required")
+    private String station;
+    
+    @NotNull(message = "Action is required")
+    private ScanAction action;
+    
+    private LocalDateTime scannedAt; // Optional, defaults to time of receipt
+    
+    private String scannedBy; // Optional, defaults to the station
+    
+    private String location; // Storage location, required for STORE scans
+    
+    // Constructors
+    public ScanEventRequest() {}
+    
+    public ScanEventRequest(String sampleNumber, String station, ScanAction action, LocalDateTime scannedAt) {
+        this.sampleNumber = sampleNumber;
+        this.station = station;
+        this.action = action;
+        this.scannedAt = scannedAt;
+    }
+    
+    // Getters and Setters
+    public String getSampleNumber() {
+        return sampleNumber;
+    }
+    
+    public void setSampleNumber(String sampleNumber) {
+        this.sampleNumber = sampleNumber;
+    }
+    
+    public String getStation() {
+        return station;
+    }
+    
+    public void setStation(String station) {
+        this.station = station;
+    }
+    
+    public ScanAction getAction() {
+        return action;
+    }
+    
+    public void setAction(ScanAction action) {
+        this.action = action;
+    }
+    
+    public LocalDateTime getScannedAt() {
+        return scannedAt;
+    }
+    
+    public void setScannedAt(LocalDateTime scannedAt) {
+        this.scannedAt = scannedAt;
+    }
+    
+    public String getScannedBy() {
+        return scannedBy;
+    }
+    
+    public void setScannedBy(String scannedBy) {
+        this.scannedBy = scannedBy;
+    }
+    
+    public String getLocation() {
+        return location;
+    }
+    
+    public void setLocation(String location) {
+        this.location = location;
+    }
+}
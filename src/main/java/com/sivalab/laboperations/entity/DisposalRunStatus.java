@@ -0,0 +1,20 @@
+package com.sivalab.laboperations.entity;
+
+/**
+ * Lifecycle of a scheduled sample disposal run
+ */
+public enum DisposalRunStatus {
+    RUNNING("Running - chunks are being disposed, resumable from checkpoint"),
+    COMPLETED("Completed - no eligible samples left for the run's cutoff"),
+    FAILED("Failed - stopped on an error, resumed on the next trigger");
+    
+    private final String description;
+    
+    DisposalRunStatus(String description) {
+        this.description = description;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+}
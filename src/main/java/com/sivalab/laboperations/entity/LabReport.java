@@ -1,5 +1,6 @@
 package com.sivalab.laboperations.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.*;
 import org.hibernate.annotations.JdbcTypeCode;
@@ -59,6 +60,10 @@ public class LabReport {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // complete report data for API responses, filled in by ReportSnapshotService.resolveAll
+    @Transient
+    private JsonNode resolvedReportData;
+    
     // Constructors
     public LabReport() {}
     
@@ -148,6 +153,16 @@ public class LabReport {
     
     public void setReportData(JsonNode reportData) {
         this.reportData = reportData;
+        this.resolvedReportData = null;
+    }
+    
+    @JsonIgnore
+    public JsonNode getResolvedReportData() {
+        return resolvedReportData;
+    }
+    
+    public void setResolvedReportData(JsonNode resolvedReportData) {
+        this.resolvedReportData = resolvedReportData;
     }
     
     public String getTemplateVersion() {
@@ -136,6 +136,14 @@ public class Sample {
     @Column(name = "quality_indicators", columnDefinition = "json")
     private JsonNode qualityIndicators; // pH, appearance, etc.
     
+    // NABL Turnaround time: last reported breach, written only by SampleTurnaroundMonitor
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tat_breach_phase", insertable = false, updatable = false)
+    private SampleStatus tatBreachPhase;
+    
+    @Column(name = "tat_breach_reported_at", insertable = false, updatable = false)
+    private LocalDateTime tatBreachReportedAt;
+    
     // Audit fields
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
@@ -261,6 +269,10 @@ public class Sample {
     public JsonNode getQualityIndicators() { return qualityIndicators; }
     public void setQualityIndicators(JsonNode qualityIndicators) { this.qualityIndicators = qualityIndicators; }
     
+    public SampleStatus getTatBreachPhase() { return tatBreachPhase; }
+    
+    public LocalDateTime getTatBreachReportedAt() { return tatBreachReportedAt; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
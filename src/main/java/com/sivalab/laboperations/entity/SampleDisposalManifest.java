@@ -0,0 +1,82 @@
+package com.sivalab.laboperations.entity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * NABL Requirement: Disposal records
+ * One manifest per disposal batch listing every sample disposed in it
+ */
+@Entity
+@Table(name = "sample_disposal_manifests")
+public class SampleDisposalManifest {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "manifest_id")
+    private Long manifestId;
+    
+    @Column(name = "run_id", nullable = false)
+    private Long runId;
+    
+    @Column(name = "disposal_batch", unique = true, nullable = false, length = 100)
+    private String disposalBatch;
+    
+    @Column(name = "sample_count", nullable = false)
+    private Integer sampleCount;
+    
+    @Column(name = "disposal_method", nullable = false)
+    private String disposalMethod;
+    
+    @Column(name = "disposed_by", nullable = false)
+    private String disposedBy;
+    
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "samples", columnDefinition = "json")
+    private JsonNode samples; // [{sampleNumber, sampleType, receivedAt, storageLocation}]
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    // Constructors
+    public SampleDisposalManifest() {}
+    
+    public SampleDisposalManifest(Long runId, String disposalBatch, String disposalMethod,
+                                  String disposedBy, JsonNode samples) {
+        this.runId = runId;
+        this.disposalBatch = disposalBatch;
+        this.disposalMethod = disposalMethod;
+        this.disposedBy = disposedBy;
+        this.samples = samples;
+        this.sampleCount = samples.size();
+    }
+    
+    // Getters and Setters
+    public Long getManifestId() { return manifestId; }
+    public void setManifestId(Long manifestId) { this.manifestId = manifestId; }
+    
+    public Long getRunId() { return runId; }
+    public void setRunId(Long runId) { this.runId = runId; }
+    
+    public String getDisposalBatch() { return disposalBatch; }
+    public void setDisposalBatch(String disposalBatch) { this.disposalBatch = disposalBatch; }
+    
+    public Integer getSampleCount() { return sampleCount; }
+    public void setSampleCount(Integer sampleCount) { this.sampleCount = sampleCount; }
+    
+    public String getDisposalMethod() { return disposalMethod; }
+    public void setDisposalMethod(String disposalMethod) { this.disposalMethod = disposalMethod; }
+    
+    public String getDisposedBy() { return disposedBy; }
+    public void setDisposedBy(String disposedBy) { this.disposedBy = disposedBy; }
+    
+    public JsonNode getSamples() { return samples; }
+    public void setSamples(JsonNode samples) { this.samples = samples; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,143 @@
+package com.sivalab.laboperations.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint for a chunked sample disposal run
+ * Updated in the same transaction as every disposed chunk, so a crashed run resumes after the last committed sample
+ */
+@Entity
+@Table(name = "sample_disposal_runs")
+public class SampleDisposalRun {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "run_id")
+    private Long runId;
+    
+    @Column(name = "run_code", unique = true, nullable = false, length = 50)
+    private String runCode;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private DisposalRunStatus status = DisposalRunStatus.RUNNING;
+    
+    @Column(name = "cutoff_date", nullable = false)
+    private LocalDateTime cutoffDate;
+    
+    @Column(name = "disposal_method", nullable = false)
+    private String disposalMethod;
+    
+    @Column(name = "disposed_by", nullable = false)
+    private String disposedBy;
+    
+    @Column(name = "last_sample_id", nullable = false)
+    private Long lastSampleId = 0L;
+    
+    @Column(name = "batches_completed", nullable = false)
+    private Integer batchesCompleted = 0;
+    
+    @Column(name = "samples_disposed", nullable = false)
+    private Long samplesDisposed = 0L;
+    
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+    
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    // Constructors
+    public SampleDisposalRun() {}
+    
+    public SampleDisposalRun(String runCode, LocalDateTime cutoffDate, String disposalMethod, String disposedBy) {
+        this.runCode = runCode;
+        this.cutoffDate = cutoffDate;
+        this.disposalMethod = disposalMethod;
+        this.disposedBy = disposedBy;
+        this.startedAt = LocalDateTime.now();
+        this.updatedAt = this.startedAt;
+    }
+    
+    /**
+     * Advance the checkpoint past a committed chunk
+     */
+    public void recordBatch(Long lastSampleId, int disposedInBatch) {
+        this.lastSampleId = lastSampleId;
+        this.batchesCompleted = batchesCompleted + 1;
+        this.samplesDisposed = samplesDisposed + disposedInBatch;
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    public void markCompleted() {
+        this.status = DisposalRunStatus.COMPLETED;
+        this.completedAt = LocalDateTime.now();
+        this.updatedAt = this.completedAt;
+        this.errorMessage = null;
+    }
+    
+    public void markFailed(String errorMessage) {
+        this.status = DisposalRunStatus.FAILED;
+        this.errorMessage = errorMessage;
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    public void markResumed() {
+        this.status = DisposalRunStatus.RUNNING;
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    /**
+     * Disposal batch code for the next chunk of this run
+     */
+    public String nextBatchCode() {
+        return String.format("%s-%04d", runCode, batchesCompleted + 1);
+    }
+    
+    // Getters and Setters
+    public Long getRunId() { return runId; }
+    public void setRunId(Long runId) { this.runId = runId; }
+    
+    public String getRunCode() { return runCode; }
+    public void setRunCode(String runCode) { this.runCode = runCode; }
+    
+    public DisposalRunStatus getStatus() { return status; }
+    public void setStatus(DisposalRunStatus status) { this.status = status; }
+    
+    public LocalDateTime getCutoffDate() { return cutoffDate; }
+    public void setCutoffDate(LocalDateTime cutoffDate) { this.cutoffDate = cutoffDate; }
+    
+    public String getDisposalMethod() { return disposalMethod; }
+    public void setDisposalMethod(String disposalMethod) { this.disposalMethod = disposalMethod; }
+    
+    public String getDisposedBy() { return disposedBy; }
+    public void setDisposedBy(String disposedBy) { this.disposedBy = disposedBy; }
+    
+    public Long getLastSampleId() { return lastSampleId; }
+    public void setLastSampleId(Long lastSampleId) { this.lastSampleId = lastSampleId; }
+    
+    public Integer getBatchesCompleted() { return batchesCompleted; }
+    public void setBatchesCompleted(Integer batchesCompleted) { this.batchesCompleted = batchesCompleted; }
+    
+    public Long getSamplesDisposed() { return samplesDisposed; }
+    public void setSamplesDisposed(Long samplesDisposed) { this.samplesDisposed = samplesDisposed; }
+    
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+}
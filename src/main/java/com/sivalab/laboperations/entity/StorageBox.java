@@ -0,0 +1,92 @@
+package com.sivalab.laboperations.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * NABL Requirement: Sample storage traceability
+ * A box of rows x columns slots, shelved in a rack of a freezer
+ * Location path: FREEZER/RACK/BOX, slots are addressed as A1, A2 ... (row letter, column number)
+ */
+@Entity
+@Table(name = "storage_boxes",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"freezer_code", "rack_code", "box_code"}))
+public class StorageBox {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "box_id")
+    private Long boxId;
+    
+    @Column(name = "freezer_code", nullable = false, length = 50)
+    private String freezerCode;
+    
+    @Column(name = "rack_code", nullable = false, length = 50)
+    private String rackCode;
+    
+    @Column(name = "box_code", nullable = false, length = 50)
+    private String boxCode;
+    
+    @Column(name = "slot_rows", nullable = false)
+    private Integer rows;
+    
+    @Column(name = "slot_columns", nullable = false)
+    private Integer columns;
+    
+    @Column(name = "storage_temperature")
+    private Double storageTemperature;
+    
+    @Column(name = "is_active")
+    private Boolean isActive = true;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    // Constructors
+    public StorageBox() {}
+    
+    public StorageBox(String freezerCode, String rackCode, String boxCode, Integer rows, Integer columns) {
+        this.freezerCode = freezerCode;
+        this.rackCode = rackCode;
+        this.boxCode = boxCode;
+        this.rows = rows;
+        this.columns = columns;
+    }
+    
+    public String getPath() {
+        return freezerCode + "/" + rackCode + "/" + boxCode;
+    }
+    
+    public int getCapacity() {
+        return rows * columns;
+    }
+    
+    // Getters and Setters
+    public Long getBoxId() { return boxId; }
+    public void setBoxId(Long boxId) { this.boxId = boxId; }
+    
+    public String getFreezerCode() { return freezerCode; }
+    public void setFreezerCode(String freezerCode) { this.freezerCode = freezerCode; }
+    
+    public String getRackCode() { return rackCode; }
+    public void setRackCode(String rackCode) { this.rackCode = rackCode; }
+    
+    public String getBoxCode() { return boxCode; }
+    public void setBoxCode(String boxCode) { this.boxCode = boxCode; }
+    
+    public Integer getRows() { return rows; }
+    public void setRows(Integer rows) { this.rows = rows; }
+    
+    public Integer getColumns() { return columns; }
+    public void setColumns(Integer columns) { this.columns = columns; }
+    
+    public Double getStorageTemperature() { return storageTemperature; }
+    public void setStorageTemperature(Double storageTemperature) { this.storageTemperature = storageTemperature; }
+    
+    public Boolean getIsActive() { return isActive; }
+    public void setIsActive(Boolean isActive) { this.isActive = isActive; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,56 @@
+package com.sivalab.laboperations.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Occupied storage slot: which sample sits in which slot of which box
+ */
+@Entity
+@Table(name = "storage_slot_assignments",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"box_id", "slot_index"}))
+public class StorageSlotAssignment {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "assignment_id")
+    private Long assignmentId;
+    
+    @Column(name = "box_id", nullable = false)
+    private Long boxId;
+    
+    @Column(name = "slot_index", nullable = false)
+    private Integer slotIndex; // row * columns + column, zero based
+    
+    @Column(name = "sample_number", unique = true, nullable = false, length = 50)
+    private String sampleNumber;
+    
+    @Column(name = "stored_at", nullable = false)
+    private LocalDateTime storedAt = LocalDateTime.now();
+    
+    // Constructors
+    public StorageSlotAssignment() {}
+    
+    public StorageSlotAssignment(Long boxId, Integer slotIndex, String sampleNumber) {
+        this.boxId = boxId;
+        this.slotIndex = slotIndex;
+        this.sampleNumber = sampleNumber;
+    }
+    
+    // Getters and Setters
+    public Long getAssignmentId() { return assignmentId; }
+    public void setAssignmentId(Long assignmentId) { this.assignmentId = assignmentId; }
+    
+    public Long getBoxId() { return boxId; }
+    public void setBoxId(Long boxId) { this.boxId = boxId; }
+    
+    public Integer getSlotIndex() { return slotIndex; }
+    public void setSlotIndex(Integer slotIndex) { this.slotIndex = slotIndex; }
+    
+    public String getSampleNumber() { return sampleNumber; }
+    public void setSampleNumber(String sampleNumber) { this.sampleNumber = sampleNumber; }
+    
+    public LocalDateTime getStoredAt() { return storedAt; }
+    public void setStoredAt(LocalDateTime storedAt) { this.storedAt = storedAt; }
+}
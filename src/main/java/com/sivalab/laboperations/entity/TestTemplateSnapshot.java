@@ -0,0 +1,75 @@
+package com.sivalab.laboperations.entity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * NABL Requirement: Reports must be reproducible
+ * Immutable version of a test template as it was when reports were generated. Reports reference a
+ * snapshot by (templateId, version) instead of embedding the template parameters.
+ */
+@Entity
+@Immutable
+@Table(name = "test_template_snapshots",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"template_id", "version"}))
+public class TestTemplateSnapshot {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "snapshot_id")
+    private Long snapshotId;
+    
+    @Column(name = "template_id", nullable = false)
+    private Long templateId;
+    
+    @Column(name = "version", nullable = false)
+    private Integer version;
+    
+    @Column(name = "name", nullable = false)
+    private String name;
+    
+    @Column(name = "description")
+    private String description;
+    
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "parameters", nullable = false, columnDefinition = "json")
+    private JsonNode parameters;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    // Constructors
+    public TestTemplateSnapshot() {}
+    
+    public TestTemplateSnapshot(TestTemplate template, Integer version) {
+        this.templateId = template.getTemplateId();
+        this.version = version;
+        this.name = template.getName();
+        this.description = template.getDescription();
+        this.parameters = template.getParameters().deepCopy();
+    }
+    
+    /**
+     * Whether the template still has the content captured by this snapshot
+     */
+    public boolean matches(TestTemplate template) {
+        return Objects.equals(name, template.getName())
+                && Objects.equals(description, template.getDescription())
+                && Objects.equals(parameters, template.getParameters());
+    }
+    
+    // Getters (snapshots are never modified)
+    public Long getSnapshotId() { return snapshotId; }
+    public Long getTemplateId() { return templateId; }
+    public Integer getVersion() { return version; }
+    public String getName() { return name; }
+    public String getDescription() { return description; }
+    public JsonNode getParameters() { return parameters; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,29 @@
+package com.sivalab.laboperations.event;
+
+import com.sivalab.laboperations.entity.SampleStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Raised when a sample misses its turnaround-time deadline for the phase it is in
+ */
+public class SampleOverdueEvent {
+
+    private final String sampleNumber;
+    private final SampleStatus status;
+    private final LocalDateTime deadline;
+    private final LocalDateTime detectedAt;
+
+    public SampleOverdueEvent(String sampleNumber, SampleStatus status,
+                              LocalDateTime deadline, LocalDateTime detectedAt) {
+        this.sampleNumber = sampleNumber;
+        this.status = status;
+        this.deadline = deadline;
+        this.detectedAt = detectedAt;
+    }
+
+    public String getSampleNumber() { return sampleNumber; }
+    public SampleStatus getStatus() { return status; }
+    public LocalDateTime getDeadline() { return deadline; }
+    public LocalDateTime getDetectedAt() { return detectedAt; }
+}
@@ -0,0 +1,48 @@
+package com.sivalab.laboperations.event;
+
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.SampleStatus;
+import com.sivalab.laboperations.entity.SampleType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by SampleService for every sample lifecycle transition.
+ * Carries a snapshot of the fields listeners need so they never touch the managed entity
+ * after the transaction has committed.
+ */
+public class SampleStatusChangedEvent {
+
+    private final String sampleNumber;
+    private final SampleType sampleType;
+    private final SampleStatus previousStatus; // null when the sample was just collected
+    private final SampleStatus newStatus;
+    private final LocalDateTime receivedAt;
+    private final LocalDateTime processingStartedAt;
+    private final LocalDateTime occurredAt;
+
+    public SampleStatusChangedEvent(Sample sample, SampleStatus previousStatus) {
+        this.sampleNumber = sample.getSampleNumber();
+        this.sampleType = sample.getSampleType();
+        this.previousStatus = previousStatus;
+        this.newStatus = sample.getStatus();
+        this.receivedAt = sample.getReceivedAt();
+        this.processingStartedAt = sample.getProcessingStartedAt();
+        this.occurredAt = LocalDateTime.now();
+    }
+
+    public String getSampleNumber() { return sampleNumber; }
+    public SampleType getSampleType() { return sampleType; }
+    public SampleStatus getPreviousStatus() { return previousStatus; }
+    public SampleStatus getNewStatus() { return newStatus; }
+    public LocalDateTime getReceivedAt() { return receivedAt; }
+    public LocalDateTime getProcessingStartedAt() { return processingStartedAt; }
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+
+    /**
+     * True when the transition actually changed the status (re-saves in the same status are ignored by counters)
+     */
+    public boolean isStatusChange() {
+        return previousStatus != newStatus;
+    }
+}
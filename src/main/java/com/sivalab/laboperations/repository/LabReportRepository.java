@@ -8,7 +8,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +21,11 @@ public interface LabReportRepository extends JpaRepository<LabReport, Long> {
      * Find report by ULR number
      */
     Optional<LabReport> findByUlrNumber(String ulrNumber);
+
+    /**
+     * Find reports by ULR numbers
+     */
+    List<LabReport> findByUlrNumberIn(Collection<String> ulrNumbers);
     
     /**
      * Find reports by visit ID
@@ -47,6 +54,13 @@ public interface LabReportRepository extends JpaRepository<LabReport, Long> {
     List<LabReport> findByGeneratedAtBetween(@Param("startDate") LocalDateTime startDate, 
                                            @Param("endDate") LocalDateTime endDate);
     
+    /**
+     * Report IDs with the visit's patient details, for bundle export, in generation order
+     */
+    @Query("SELECT r.reportId, v.patientDetails FROM LabReport r JOIN r.visit v " +
+           "WHERE r.generatedAt >= :from AND r.generatedAt < :to ORDER BY r.generatedAt, r.reportId")
+    List<Object[]> findBundleCandidates(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+    
     /**
      * Find reports authorized by specific person
      */
@@ -70,11 +84,25 @@ public interface LabReportRepository extends JpaRepository<LabReport, Long> {
      */
     long countByReportStatus(ReportStatus status);
     
+    /**
+     * Report counts per status in one query
+     */
+    @Query("SELECT r.reportStatus, COUNT(r) FROM LabReport r GROUP BY r.reportStatus")
+    List<Object[]> countReportsByStatus();
+
+    /**
+     * Count reports generated in [from, to); a plain range on generated_at so its index is used
+     */
+    @Query("SELECT COUNT(r) FROM LabReport r WHERE r.generatedAt >= :from AND r.generatedAt < :to")
+    long countReportsGeneratedBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
     /**
      * Count reports generated today
      */
-    @Query("SELECT COUNT(r) FROM LabReport r WHERE CAST(r.generatedAt AS date) = CURRENT_DATE")
-    long countReportsGeneratedToday();
+    default long countReportsGeneratedToday() {
+        LocalDate today = LocalDate.now();
+        return countReportsGeneratedBetween(today.atStartOfDay(), today.plusDays(1).atStartOfDay());
+    }
 
     /**
      * Count reports by year
@@ -0,0 +1,25 @@
+package com.sivalab.laboperations.repository;
+
+import com.sivalab.laboperations.entity.SampleDisposalManifest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for per-batch disposal manifests
+ */
+@Repository
+public interface SampleDisposalManifestRepository extends JpaRepository<SampleDisposalManifest, Long> {
+    
+    /**
+     * Find manifest for a disposal batch
+     */
+    Optional<SampleDisposalManifest> findByDisposalBatch(String disposalBatch);
+    
+    /**
+     * Find all manifests of a run in batch order
+     */
+    List<SampleDisposalManifest> findByRunIdOrderByManifestIdAsc(Long runId);
+}
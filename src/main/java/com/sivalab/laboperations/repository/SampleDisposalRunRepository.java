@@ -0,0 +1,31 @@
+package com.sivalab.laboperations.repository;
+
+import com.sivalab.laboperations.entity.DisposalRunStatus;
+import com.sivalab.laboperations.entity.SampleDisposalRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for disposal run checkpoints
+ */
+@Repository
+public interface SampleDisposalRunRepository extends JpaRepository<SampleDisposalRun, Long> {
+    
+    /**
+     * Find unfinished runs (RUNNING after a crash, or FAILED) oldest first
+     */
+    List<SampleDisposalRun> findByStatusInOrderByStartedAtAsc(List<DisposalRunStatus> statuses);
+    
+    /**
+     * Find the most recently started run
+     */
+    Optional<SampleDisposalRun> findFirstByOrderByStartedAtDesc();
+    
+    /**
+     * Find run by its code
+     */
+    Optional<SampleDisposalRun> findByRunCode(String runCode);
+}
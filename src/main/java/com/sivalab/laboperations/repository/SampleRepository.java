@@ -3,12 +3,17 @@ package com.sivalab.laboperations.repository;
 import com.sivalab.laboperations.entity.Sample;
 import com.sivalab.laboperations.entity.SampleStatus;
 import com.sivalab.laboperations.entity.SampleType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +28,17 @@ public interface SampleRepository extends JpaRepository<Sample, Long> {
      */
     Optional<Sample> findBySampleNumber(String sampleNumber);
     
+    /**
+     * Find samples by sample numbers
+     */
+    List<Sample> findBySampleNumberIn(Collection<String> sampleNumbers);
+
+    /**
+     * Find samples by sample numbers together with their visits (for labels)
+     */
+    @Query("SELECT s FROM Sample s JOIN FETCH s.visit WHERE s.sampleNumber IN :sampleNumbers")
+    List<Sample> findWithVisitBySampleNumberIn(@Param("sampleNumbers") Collection<String> sampleNumbers);
+    
     /**
      * Find all samples for a visit
      */
@@ -89,6 +105,15 @@ public interface SampleRepository extends JpaRepository<Sample, Long> {
     @Query("SELECT s FROM Sample s WHERE s.status = 'STORED' AND s.receivedAt < :cutoffDate")
     List<Sample> findSamplesRequiringDisposal(@Param("cutoffDate") LocalDateTime cutoffDate);
     
+    /**
+     * Next chunk of sample IDs requiring disposal, keyset-paginated on sampleId
+     */
+    @Query("SELECT s.sampleId FROM Sample s WHERE s.status = 'STORED' AND s.receivedAt < :cutoffDate " +
+           "AND s.sampleId > :afterId ORDER BY s.sampleId")
+    List<Long> findDisposalCandidateIds(@Param("cutoffDate") LocalDateTime cutoffDate,
+                                        @Param("afterId") Long afterId,
+                                        Pageable pageable);
+    
     /**
      * Count samples by status
      */
@@ -101,6 +126,20 @@ public interface SampleRepository extends JpaRepository<Sample, Long> {
     @Query("SELECT s.sampleType, COUNT(s) FROM Sample s GROUP BY s.sampleType")
     List<Object[]> countSamplesByType();
     
+    /**
+     * Count samples by status and type, with the number flagged as rejected
+     * Returns [status, sampleType, count, rejectedCount] rows
+     */
+    @Query("SELECT s.status, s.sampleType, COUNT(s), SUM(CASE WHEN s.rejected = true THEN 1 ELSE 0 END) " +
+           "FROM Sample s GROUP BY s.status, s.sampleType")
+    List<Object[]> countSamplesByStatusAndType();
+
+    /**
+     * Current status of the given samples, as (sampleNumber, status) rows
+     */
+    @Query("SELECT s.sampleNumber, s.status FROM Sample s WHERE s.sampleNumber IN :sampleNumbers")
+    List<Object[]> findStatusesBySampleNumberIn(@Param("sampleNumbers") Collection<String> sampleNumbers);
+    
     /**
      * Find samples with quality issues (rejected or on hold)
      */
@@ -162,7 +201,27 @@ public interface SampleRepository extends JpaRepository<Sample, Long> {
            "s.status IN ('RECEIVED', 'ACCESSIONED', 'PROCESSING') AND " +
            "s.receivedAt < :overdueTime")
     List<Sample> findOverdueSamples(@Param("overdueTime") LocalDateTime overdueTime);
-    
+
+    /**
+     * Snapshot of samples with a running turnaround-time deadline
+     * Returns [sampleNumber, status, receivedAt, processingStartedAt, tatBreachPhase] rows
+     */
+    @Query("SELECT s.sampleNumber, s.status, s.receivedAt, s.processingStartedAt, s.tatBreachPhase FROM Sample s " +
+           "WHERE s.status IN ('RECEIVED', 'ACCESSIONED', 'PROCESSING')")
+    List<Object[]> findTurnaroundTrackingSnapshot();
+
+    /**
+     * Record that the sample's turnaround breach in this phase has been reported.
+     * Runs in its own transaction: breaches are reported after the triggering transaction has committed.
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("UPDATE Sample s SET s.tatBreachPhase = :phase, s.tatBreachReportedAt = :reportedAt " +
+           "WHERE s.sampleNumber = :sampleNumber")
+    int markTurnaroundBreachReported(@Param("sampleNumber") String sampleNumber,
+                                     @Param("phase") SampleStatus phase,
+                                     @Param("reportedAt") LocalDateTime reportedAt);
+
     /**
      * Find samples by receipt condition
      */
@@ -0,0 +1,25 @@
+package com.sivalab.laboperations.repository;
+
+import com.sivalab.laboperations.entity.StorageBox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for freezer/rack/box storage layout
+ */
+@Repository
+public interface StorageBoxRepository extends JpaRepository<StorageBox, Long> {
+    
+    /**
+     * Find box by its full location path
+     */
+    Optional<StorageBox> findByFreezerCodeAndRackCodeAndBoxCode(String freezerCode, String rackCode, String boxCode);
+    
+    /**
+     * Find all active boxes
+     */
+    List<StorageBox> findByIsActiveTrue();
+}
@@ -0,0 +1,36 @@
+package com.sivalab.laboperations.repository;
+
+import com.sivalab.laboperations.entity.StorageSlotAssignment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for occupied storage slots
+ */
+@Repository
+public interface StorageSlotAssignmentRepository extends JpaRepository<StorageSlotAssignment, Long> {
+    
+    /**
+     * Find the slot a sample occupies
+     */
+    Optional<StorageSlotAssignment> findBySampleNumber(String sampleNumber);
+    
+    /**
+     * Find slots held by the given samples
+     */
+    List<StorageSlotAssignment> findBySampleNumberIn(Collection<String> sampleNumbers);
+    
+    /**
+     * Release slots held by the given samples
+     */
+    @Modifying
+    @Query("DELETE FROM StorageSlotAssignment a WHERE a.sampleNumber IN :sampleNumbers")
+    int deleteBySampleNumberIn(@Param("sampleNumbers") Collection<String> sampleNumbers);
+}
@@ -0,0 +1,40 @@
+package com.sivalab.laboperations.repository;
+
+import com.sivalab.laboperations.entity.TestTemplateSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for immutable test template snapshots
+ */
+@Repository
+public interface TestTemplateSnapshotRepository extends JpaRepository<TestTemplateSnapshot, Long> {
+    
+    /**
+     * Find a specific snapshot version
+     */
+    Optional<TestTemplateSnapshot> findByTemplateIdAndVersion(Long templateId, Integer version);
+    
+    /**
+     * Find every snapshot of the given templates (batched lookup when resolving many reports)
+     */
+    List<TestTemplateSnapshot> findByTemplateIdIn(Collection<Long> templateIds);
+    
+    /**
+     * Find the newest snapshot of a template
+     */
+    Optional<TestTemplateSnapshot> findTopByTemplateIdOrderByVersionDesc(Long templateId);
+    
+    /**
+     * Lock the template row until the current transaction ends, so snapshot versions of one template
+     * are allocated one transaction at a time (across all nodes)
+     */
+    @Query(value = "SELECT template_id FROM test_templates WHERE template_id = :templateId FOR UPDATE", nativeQuery = true)
+    Long lockTemplate(@Param("templateId") Long templateId);
+}
@@ -0,0 +1,272 @@
+package com.sivalab.laboperations.service;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.event.BulkheadEvent;
+import io.github.resilience4j.bulkhead.event.BulkheadOnCallFinishedEvent;
+import io.github.resilience4j.bulkhead.event.BulkheadOnCallPermittedEvent;
+import io.github.resilience4j.bulkhead.event.BulkheadOnCallRejectedEvent;
+import io.github.resilience4j.core.EventConsumer;
+import io.github.resilience4j.core.EventProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resilience4j bulkhead whose concurrency limit follows the observed latency of its calls
+ * Registered in the BulkheadRegistry under the name of the bulkhead it replaces, so @Bulkhead methods
+ * and the actuator use it unchanged. The configured maxConcurrentCalls becomes the ceiling, and the
+ * limit moves between the floor and that ceiling with a GradientConcurrencyLimit. The resilient
+ * services hand back CompletableFutures that complete on other threads, so calls are not timed one
+ * by one; each window's average latency comes from Little's law instead, as the time integral of the
+ * calls in flight divided by the calls completed. A window closes after sampleWindow once minSamples
+ * calls have completed, which stretches it for rarely used bulkheads. Callers beyond the limit wait
+ * up to maxWaitDuration, in arrival order, and are then rejected with BulkheadFullException.
+ */
+public class AdaptiveBulkhead implements Bulkhead {
+
+    private final String name;
+    private final long sampleWindowNanos;
+    private final int minSamples;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition permitFreed = lock.newCondition();
+    private final GradientConcurrencyLimit gradient;
+    private final Events events = new Events();
+    private final Counter rejectedCounter;
+    private volatile BulkheadConfig config;
+    private volatile int limit;
+    private volatile int inFlight;
+
+    // current window, guarded by lock
+    private long windowStart;
+    private long lastChange;
+    private double inFlightNanos;
+    private long completed;
+    private int peakInFlight;
+
+    public AdaptiveBulkhead(String name, BulkheadConfig config, int initialLimit, int minLimit,
+                            Duration sampleWindow, int minSamples, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.config = config;
+        this.sampleWindowNanos = sampleWindow.toNanos();
+        this.minSamples = minSamples;
+        this.gradient = new GradientConcurrencyLimit(initialLimit, minLimit, config.getMaxConcurrentCalls());
+        this.limit = gradient.getLimit();
+        this.windowStart = System.nanoTime();
+        this.lastChange = windowStart;
+
+        Gauge.builder("lab.concurrency.limit", this, bulkhead -> bulkhead.limit)
+                .description("Concurrent calls currently allowed by the adaptive limit")
+                .tag("resource", name)
+                .register(meterRegistry);
+        Gauge.builder("lab.concurrency.in-flight", this, bulkhead -> bulkhead.inFlight)
+                .description("Calls currently holding a permit")
+                .tag("resource", name)
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("lab.concurrency.rejected")
+                .description("Calls refused after waiting maxWaitDuration for a permit")
+                .tag("resource", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean tryAcquirePermission() {
+        boolean permitted = enter();
+        if (permitted) {
+            publish(new BulkheadOnCallPermittedEvent(name));
+        } else {
+            rejectedCounter.increment();
+            publish(new BulkheadOnCallRejectedEvent(name));
+        }
+        return permitted;
+    }
+
+    @Override
+    public void acquirePermission() {
+        if (!tryAcquirePermission()) {
+            throw BulkheadFullException.createBulkheadFullException(this);
+        }
+    }
+
+    @Override
+    public void releasePermission() {
+        exit(false);
+    }
+
+    @Override
+    public void onComplete() {
+        exit(true);
+        publish(new BulkheadOnCallFinishedEvent(name));
+    }
+
+    /**
+     * Takes the new maxConcurrentCalls as the ceiling; the limit drops to it when above
+     */
+    @Override
+    public void changeConfig(BulkheadConfig newConfig) {
+        lock.lock();
+        try {
+            config = newConfig;
+            gradient.setMaxLimit(newConfig.getMaxConcurrentCalls());
+            limit = gradient.getLimit();
+            permitFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public BulkheadConfig getBulkheadConfig() {
+        return config;
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return new Metrics() {
+            @Override
+            public int getAvailableConcurrentCalls() {
+                return Math.max(0, limit - inFlight);
+            }
+
+            @Override
+            public int getMaxAllowedConcurrentCalls() {
+                return limit;
+            }
+        };
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+        return Map.of();
+    }
+
+    @Override
+    public EventPublisher getEventPublisher() {
+        return events;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getRejectedCount() {
+        return (long) rejectedCounter.count();
+    }
+
+    private boolean enter() {
+        // one deadline covers waiting for the lock and for a permit
+        long deadline = System.nanoTime() + config.getMaxWaitDuration().toNanos();
+        try {
+            if (!lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            while (inFlight >= limit) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                permitFreed.awaitNanos(remaining);
+            }
+            accumulate(System.nanoTime());
+            inFlight++;
+            peakInFlight = Math.max(peakInFlight, inFlight);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void exit(boolean completedCall) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            accumulate(now);
+            inFlight--;
+            if (completedCall) {
+                completed++;
+                if (now - windowStart >= sampleWindowNanos && completed >= minSamples) {
+                    int previous = limit;
+                    limit = gradient.update(inFlightNanos / completed, peakInFlight);
+                    windowStart = now;
+                    inFlightNanos = 0;
+                    completed = 0;
+                    peakInFlight = inFlight;
+                    if (limit > previous) {
+                        permitFreed.signalAll();
+                        return;
+                    }
+                }
+            }
+            permitFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void accumulate(long now) {
+        inFlightNanos += (double) inFlight * (now - lastChange);
+        lastChange = now;
+    }
+
+    private void publish(BulkheadEvent event) {
+        if (events.hasConsumers()) {
+            events.consumeEvent(event);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveBulkhead '" + name + "' (limit " + limit + " of " + gradient.getMaxLimit() + ")";
+    }
+
+    private static final class Events extends EventProcessor<BulkheadEvent>
+            implements EventPublisher, EventConsumer<BulkheadEvent> {
+
+        @Override
+        public EventPublisher onCallRejected(EventConsumer<BulkheadOnCallRejectedEvent> consumer) {
+            registerConsumer(BulkheadOnCallRejectedEvent.class.getName(), consumer);
+            return this;
+        }
+
+        @Override
+        public EventPublisher onCallPermitted(EventConsumer<BulkheadOnCallPermittedEvent> consumer) {
+            registerConsumer(BulkheadOnCallPermittedEvent.class.getName(), consumer);
+            return this;
+        }
+
+        @Override
+        public EventPublisher onCallFinished(EventConsumer<BulkheadOnCallFinishedEvent> consumer) {
+            registerConsumer(BulkheadOnCallFinishedEvent.class.getName(), consumer);
+            return this;
+        }
+
+        @Override
+        public void consumeEvent(BulkheadEvent event) {
+            processEvent(event);
+        }
+    }
+}
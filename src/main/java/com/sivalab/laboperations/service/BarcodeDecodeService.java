@@ -0,0 +1,420 @@
+package com.sivalab.laboperations.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.oned.Code128Reader;
+import com.google.zxing.oned.Code39Reader;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.Visit;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import com.sivalab.laboperations.repository.SampleRepository;
+import com.sivalab.laboperations.repository.VisitRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decoding of uploaded barcode and QR images (label verification, photos of tubes)
+ * Images are decoded with ZXing restricted to the formats this lab prints (Code128, Code39, QR).
+ * When the caller names the expected format, that format's reader is used directly and format
+ * detection is skipped; a TRY_HARDER pass runs only when the quick pass finds nothing. Batches are
+ * decoded on the bounded BarcodeExecutor (on the request thread when it is saturated), and the
+ * decoded values of a batch are resolved to samples, visits and reports with one IN query per kind.
+ * The pixel dimensions are read from the image header first, and images larger than
+ * lab.barcodes.decode.max-pixels are refused before a raster is allocated for them.
+ */
+@Service
+public class BarcodeDecodeService {
+
+    private static final Map<DecodeHintType, Object> HINTS = hints(false);
+    private static final Map<DecodeHintType, Object> TRY_HARDER_HINTS = hints(true);
+    // "SLN2025000001", the Code128 form of ULR "SLN/2025/000001"
+    private static final Pattern COMPACT_ULR = Pattern.compile("([A-Za-z]+)(\\d{4})(\\d{6})");
+    private static final Pattern ULR = Pattern.compile("[A-Za-z]+/\\d{4}/\\d{6}");
+    private static final Pattern DIGITS = Pattern.compile("\\d{1,18}");
+
+    public enum ReferenceType { SAMPLE, VISIT, REPORT }
+
+    private final SampleRepository sampleRepository;
+    private final VisitRepository visitRepository;
+    private final LabReportRepository labReportRepository;
+    private final BarcodeExecutor barcodeExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxBatch;
+    private final long maxPixels;
+    private final Counter decoded;
+    private final Counter failed;
+
+    @Autowired
+    public BarcodeDecodeService(SampleRepository sampleRepository,
+                                VisitRepository visitRepository,
+                                LabReportRepository labReportRepository,
+                                BarcodeExecutor barcodeExecutor,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${lab.barcodes.decode.max-batch:50}") int maxBatch,
+                                @Value("${lab.barcodes.decode.max-pixels:24000000}") long maxPixels) {
+        this.sampleRepository = sampleRepository;
+        this.visitRepository = visitRepository;
+        this.labReportRepository = labReportRepository;
+        this.barcodeExecutor = barcodeExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxBatch = maxBatch;
+        this.maxPixels = maxPixels;
+        this.decoded = Counter.builder("lab.barcodes.decode").tag("result", "decoded")
+                .description("Uploaded barcode images decoded").register(meterRegistry);
+        this.failed = Counter.builder("lab.barcodes.decode").tag("result", "failed")
+                .description("Uploaded barcode images with no readable barcode").register(meterRegistry);
+    }
+
+    /**
+     * Decode one image and resolve it, on the calling thread
+     */
+    public DecodeResult decode(ImageUpload image, BarcodeFormat expected) {
+        DecodeResult result = decodeImage(image, expected);
+        resolve(List.of(result));
+        return result;
+    }
+
+    /**
+     * Decode a batch in parallel; results are in upload order
+     */
+    public List<DecodeResult> decodeAll(List<ImageUpload> images, BarcodeFormat expected) {
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("No images given");
+        }
+        if (images.size() > maxBatch) {
+            throw new IllegalArgumentException("At most " + maxBatch + " images per batch, got " + images.size());
+        }
+        List<CompletableFuture<DecodeResult>> pending = new ArrayList<>(images.size());
+        for (ImageUpload image : images) {
+            CompletableFuture<DecodeResult> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> decodeImage(image, expected), barcodeExecutor.executor());
+            } catch (RejectedExecutionException e) {
+                future = CompletableFuture.completedFuture(decodeImage(image, expected));
+            }
+            pending.add(future.exceptionally(ex -> DecodeResult.failed(image.getName(), ex.getMessage())));
+        }
+        List<DecodeResult> results = new ArrayList<>(images.size());
+        for (CompletableFuture<DecodeResult> future : pending) {
+            results.add(future.join());
+        }
+        resolve(results);
+        return results;
+    }
+
+    private DecodeResult decodeImage(ImageUpload upload, BarcodeFormat expected) {
+        BufferedImage image;
+        try {
+            image = readImage(upload.getContent());
+        } catch (ImageTooLargeException e) {
+            failed.increment();
+            return DecodeResult.failed(upload.getName(), e.getMessage());
+        } catch (IOException e) {
+            image = null;
+        }
+        if (image == null) {
+            failed.increment();
+            return DecodeResult.failed(upload.getName(), "Unsupported or unreadable image");
+        }
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+        Result result;
+        try {
+            result = readerFor(expected).decode(bitmap, HINTS);
+        } catch (ReaderException quickPass) {
+            try {
+                result = readerFor(expected).decode(bitmap, TRY_HARDER_HINTS);
+            } catch (ReaderException e) {
+                failed.increment();
+                return DecodeResult.failed(upload.getName(), "No " + (expected != null ? expected + " " : "")
+                        + "barcode found");
+            }
+        }
+        decoded.increment();
+        return new DecodeResult(upload.getName(), result.getText(), result.getBarcodeFormat().name(), null);
+    }
+
+    /**
+     * Decode the image, or null when no ImageIO reader supports it
+     * A few kilobytes of compressed data can declare a huge raster, so the size is checked first.
+     */
+    private BufferedImage readImage(byte[] content) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new ImageTooLargeException("Image of " + width + "x" + height
+                            + " pixels exceeds the limit of " + maxPixels + " pixels");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * A reader for just the expected format, or one that tries each supported format
+     * Readers hold per-decode state, so each decode gets its own.
+     */
+    private static Reader readerFor(BarcodeFormat expected) {
+        if (expected == null) {
+            return new MultiFormatReader();
+        }
+        switch (expected) {
+            case QR_CODE:
+                return new QRCodeReader();
+            case CODE_128:
+                return new Code128Reader();
+            case CODE_39:
+                return new Code39Reader();
+            default:
+                throw new IllegalArgumentException("Unsupported barcode format: " + expected);
+        }
+    }
+
+    /**
+     * Attach the sample, visit or report each decoded value refers to
+     */
+    private void resolve(List<DecodeResult> results) {
+        Map<DecodeResult, Reference> wanted = new HashMap<>();
+        Map<ReferenceType, Set<String>> keys = new EnumMap<>(ReferenceType.class);
+        for (DecodeResult result : results) {
+            Reference reference = result.getText() != null ? referenceFor(result.getText()) : null;
+            if (reference != null) {
+                wanted.put(result, reference);
+                keys.computeIfAbsent(reference.type, type -> new HashSet<>()).add(reference.identifier);
+            }
+        }
+        if (wanted.isEmpty()) {
+            return;
+        }
+
+        Map<String, Reference> found = readOnlyTransaction.execute(status -> {
+            Map<String, Reference> references = new HashMap<>();
+            if (keys.containsKey(ReferenceType.SAMPLE)) {
+                for (Sample sample : sampleRepository.findBySampleNumberIn(keys.get(ReferenceType.SAMPLE))) {
+                    Reference reference = new Reference(ReferenceType.SAMPLE, sample.getSampleNumber(),
+                            sample.getSampleId(), String.valueOf(sample.getStatus()));
+                    references.put(reference.key(), reference);
+                }
+            }
+            if (keys.containsKey(ReferenceType.VISIT)) {
+                List<Long> visitIds = keys.get(ReferenceType.VISIT).stream().map(Long::valueOf).toList();
+                for (Visit visit : visitRepository.findAllById(visitIds)) {
+                    Reference reference = new Reference(ReferenceType.VISIT, String.valueOf(visit.getVisitId()),
+                            visit.getVisitId(), String.valueOf(visit.getStatus()));
+                    references.put(reference.key(), reference);
+                }
+            }
+            if (keys.containsKey(ReferenceType.REPORT)) {
+                for (LabReport report : labReportRepository.findByUlrNumberIn(keys.get(ReferenceType.REPORT))) {
+                    Reference reference = new Reference(ReferenceType.REPORT, report.getUlrNumber(),
+                            report.getReportId(), String.valueOf(report.getReportStatus()));
+                    references.put(reference.key(), reference);
+                }
+            }
+            return references;
+        });
+
+        wanted.forEach((result, reference) -> result.reference = found.get(reference.key()));
+    }
+
+    /**
+     * What a decoded value points at: our QR payloads name it on a tagged line; linear codes are a
+     * visit ID (digits), a ULR (with or without slashes) or otherwise a sample number
+     */
+    static Reference referenceFor(String text) {
+        if (text.startsWith("LAB_SAMPLE\n")) {
+            return lineValue(text, "Sample: ", ReferenceType.SAMPLE);
+        }
+        if (text.startsWith("PATIENT_VISIT\n")) {
+            Reference visit = lineValue(text, "Visit ID: ", ReferenceType.VISIT);
+            return visit != null && DIGITS.matcher(visit.identifier).matches() ? visit : null;
+        }
+        if (text.startsWith("LAB_REPORT\n")) {
+            return lineValue(text, "ULR: ", ReferenceType.REPORT);
+        }
+        String value = text.trim();
+        if (value.isEmpty() || value.indexOf('\n') >= 0) {
+            return null;
+        }
+        if (DIGITS.matcher(value).matches()) {
+            return new Reference(ReferenceType.VISIT, String.valueOf(Long.parseLong(value)), null, null);
+        }
+        if (ULR.matcher(value).matches()) {
+            return new Reference(ReferenceType.REPORT, value, null, null);
+        }
+        Matcher compactUlr = COMPACT_ULR.matcher(value);
+        if (compactUlr.matches()) {
+            return new Reference(ReferenceType.REPORT,
+                    compactUlr.group(1) + "/" + compactUlr.group(2) + "/" + compactUlr.group(3), null, null);
+        }
+        return new Reference(ReferenceType.SAMPLE, value, null, null);
+    }
+
+    private static Reference lineValue(String text, String label, ReferenceType type) {
+        for (String line : text.split("\n")) {
+            if (line.startsWith(label)) {
+                String value = line.substring(label.length()).trim();
+                return value.isEmpty() ? null : new Reference(type, value, null, null);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Expected format from a request value such as "code128", "CODE_39" or "qr"; null/blank means detect
+     */
+    public static BarcodeFormat expectedFormat(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        switch (value.trim().toUpperCase(Locale.ROOT).replace("-", "").replace("_", "")) {
+            case "CODE128":
+                return BarcodeFormat.CODE_128;
+            case "CODE39":
+                return BarcodeFormat.CODE_39;
+            case "QR":
+            case "QRCODE":
+                return BarcodeFormat.QR_CODE;
+            default:
+                throw new IllegalArgumentException("Unsupported barcode format: " + value);
+        }
+    }
+
+    private static Map<DecodeHintType, Object> hints(boolean tryHarder) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS,
+                List.of(BarcodeFormat.CODE_128, BarcodeFormat.CODE_39, BarcodeFormat.QR_CODE));
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        if (tryHarder) {
+            hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        }
+        return hints;
+    }
+
+    /**
+     * Image whose declared size exceeds lab.barcodes.decode.max-pixels
+     */
+    private static final class ImageTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private ImageTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * One uploaded image
+     */
+    public static class ImageUpload {
+        private final String name;
+        private final byte[] content;
+
+        public ImageUpload(String name, byte[] content) {
+            this.name = name;
+            this.content = content;
+        }
+
+        public String getName() { return name; }
+        public byte[] getContent() { return content; }
+    }
+
+    /**
+     * Decoded text and format, or the reason decoding failed, plus what the text refers to if known
+     */
+    public static class DecodeResult {
+        private final String name;
+        private final String text;
+        private final String format;
+        private final String error;
+        private volatile Reference reference;
+
+        public DecodeResult(String name, String text, String format, String error) {
+            this.name = name;
+            this.text = text;
+            this.format = format;
+            this.error = error;
+        }
+
+        static DecodeResult failed(String name, String error) {
+            return new DecodeResult(name, null, null, error);
+        }
+
+        public String getName() { return name; }
+        public String getText() { return text; }
+        public String getFormat() { return format; }
+        public String getError() { return error; }
+        public Reference getReference() { return reference; }
+        public boolean isDecoded() { return text != null; }
+    }
+
+    /**
+     * A sample, visit or report found for a decoded value
+     */
+    public static class Reference {
+        private final ReferenceType type;
+        private final String identifier;
+        private final Long id;
+        private final String status;
+
+        public Reference(ReferenceType type, String identifier, Long id, String status) {
+            this.type = type;
+            this.identifier = identifier;
+            this.id = id;
+            this.status = status;
+        }
+
+        private String key() {
+            return type + ":" + identifier;
+        }
+
+        public ReferenceType getType() { return type; }
+        public String getIdentifier() { return identifier; }
+        public Long getId() { return id; }
+        public String getStatus() { return status; }
+    }
+}
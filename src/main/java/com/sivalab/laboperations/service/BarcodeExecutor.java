@@ -0,0 +1,104 @@
+package com.sivalab.laboperations.service;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor for barcode and QR encoding (and decoding of uploaded barcode images)
+ * Encoding is CPU bound, so it runs on its own fixed pool of platform threads (one per core by default)
+ * instead of ForkJoinPool.commonPool(), which parallel streams and the rest of the JVM share. Work beyond
+ * the threads plus the queue is rejected with RejectedExecutionException. The "barcode" bulkhead's
+ * adaptive limit is capped at the same capacity, so annotated callers wait for (or are refused) a
+ * permit rather than filling the queue. The pool is handed out through executor() rather than by
+ * implementing Executor, so it is never mistaken for the application task executor.
+ */
+@Component
+public class BarcodeExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BarcodeExecutor.class);
+    private static final String BULKHEAD = "barcode";
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejectedCounter;
+
+    @Autowired
+    public BarcodeExecutor(MeterRegistry meterRegistry,
+                           BulkheadRegistry bulkheadRegistry,
+                           @Value("${lab.barcodes.executor.threads:0}") int threads,
+                           @Value("${lab.barcodes.executor.queue-capacity:64}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.rejectedCounter = Counter.builder("lab.barcodes.executor.rejected")
+                .description("Barcode encodings refused because the barcode executor was saturated")
+                .register(meterRegistry);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "barcode-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, pool) -> {
+                    rejectedCounter.increment();
+                    throw new RejectedExecutionException("Barcode executor saturated: " + pool.getActiveCount()
+                            + " encoding, " + pool.getQueue().size() + " queued");
+                });
+
+        Gauge.builder("lab.barcodes.executor.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Barcode encodings currently running")
+                .register(meterRegistry);
+        Gauge.builder("lab.barcodes.executor.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Barcode encodings waiting for a barcode thread")
+                .register(meterRegistry);
+
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(BULKHEAD);
+        bulkhead.changeConfig(BulkheadConfig.from(bulkhead.getBulkheadConfig())
+                .maxConcurrentCalls(poolSize + queueCapacity)
+                .build());
+        logger.info("Barcode executor: {} threads, queue {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * The bounded encoding pool, for CompletableFuture.supplyAsync and friends
+     */
+    public Executor executor() {
+        return executor;
+    }
+
+    public int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return (long) rejectedCounter.count();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,234 @@
+package com.sivalab.laboperations.service;
+
+import com.google.zxing.WriterException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded LRU cache of encoded barcode and QR images
+ * Keyed by (format, payload, width, height). Payloads are deterministic for a given sample, visit or
+ * report state, so report PDFs, the barcode endpoints and label printing all reuse one encoding.
+ * Encoding happens outside the lock, and concurrent misses for the same key share one encoding
+ * through the RequestCoalescer. Cached arrays are shared and must not be modified by callers.
+ * The same key gives each image a strong HTTP entity tag, so conditional requests can be answered
+ * without encoding (or even looking up) the image.
+ */
+@Component
+public class BarcodeImageCache {
+
+    // map entry, key object and array headers
+    private static final int ENTRY_OVERHEAD = 96;
+    // bump when the rendering of an unchanged key changes, so clients holding old tags refetch
+    private static final String RENDER_VERSION = "1";
+
+    private final RequestCoalescer coalescer;
+    private final long maxBytes;
+    private final int maxPayloadLength;
+    private final Duration encodeTimeout;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Key, byte[]> images = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    @Autowired
+    public BarcodeImageCache(MeterRegistry meterRegistry,
+                             RequestCoalescer coalescer,
+                             @Value("${lab.barcodes.image-cache.max-bytes:8388608}") long maxBytes,
+                             @Value("${lab.barcodes.image-cache.max-payload-length:1024}") int maxPayloadLength,
+                             @Value("${lab.barcodes.image-cache.coalesce-timeout:5s}") Duration encodeTimeout) {
+        this.coalescer = coalescer;
+        this.maxBytes = maxBytes;
+        this.maxPayloadLength = maxPayloadLength;
+        this.encodeTimeout = encodeTimeout;
+        this.hits = Counter.builder("lab.barcodes.image.cache").tag("result", "hit")
+                .description("Barcode image cache lookups").register(meterRegistry);
+        this.misses = Counter.builder("lab.barcodes.image.cache").tag("result", "miss")
+                .description("Barcode image cache lookups").register(meterRegistry);
+        this.evictions = Counter.builder("lab.barcodes.image.cache.evictions")
+                .description("Barcode images evicted to stay within the byte budget").register(meterRegistry);
+        Gauge.builder("lab.barcodes.image.cache.bytes", this, cache -> cache.bytes)
+                .description("Bytes held by the barcode image cache").register(meterRegistry);
+        Gauge.builder("lab.barcodes.image.cache.entries", this, BarcodeImageCache::size)
+                .description("Images held by the barcode image cache").register(meterRegistry);
+        Gauge.builder("lab.barcodes.image.cache.hit.ratio", this, BarcodeImageCache::hitRatio)
+                .description("Share of barcode image lookups served from the cache since startup")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cached image for the key, encoding and caching it on a miss
+     * Payloads longer than the configured limit are encoded every time and never cached.
+     */
+    public byte[] get(String format, String payload, int width, int height, Encoder encoder)
+            throws WriterException, IOException {
+        if (payload == null || payload.length() > maxPayloadLength) {
+            misses.increment();
+            return encoder.encode();
+        }
+        Key key = new Key(format, payload, width, height);
+        lock.lock();
+        try {
+            byte[] image = images.get(key);
+            if (image != null) {
+                hits.increment();
+                return image;
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        try {
+            return coalescer.execute("barcode", key, encodeTimeout, () -> {
+                byte[] image;
+                try {
+                    image = encoder.encode();
+                } catch (WriterException e) {
+                    throw new EncodingFailed(e);
+                }
+                put(key, image);
+                return image;
+            });
+        } catch (EncodingFailed e) {
+            throw e.writerException;
+        }
+    }
+
+    /**
+     * Strong entity tag for the image a key produces, e.g. "\"3f2a...\"" (quoted, 32 hex digits)
+     * Derived from the key alone, so it is stable across restarts and instances.
+     */
+    public static String entityTag(String format, String payload, int width, int height) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        // the payload goes last, so no separator inside it can make two keys collide
+        digest.update((RENDER_VERSION + '\0' + format + '\0' + width + 'x' + height + '\0')
+                .getBytes(StandardCharsets.UTF_8));
+        digest.update(payload.getBytes(StandardCharsets.UTF_8));
+        return '"' + HexFormat.of().formatHex(digest.digest(), 0, 16) + '"';
+    }
+
+    /**
+     * Hits over all lookups since startup, 0 before the first lookup
+     */
+    public double hitRatio() {
+        double hitCount = hits.count();
+        double total = hitCount + misses.count();
+        return total == 0 ? 0 : hitCount / total;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return images.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(Key key, byte[] image) {
+        long entrySize = sizeOf(key, image);
+        if (entrySize > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            byte[] previous = images.put(key, image);
+            if (previous != null) {
+                bytes -= sizeOf(key, previous);
+            }
+            bytes += entrySize;
+            Iterator<Map.Entry<Key, byte[]>> eldest = images.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<Key, byte[]> entry = eldest.next();
+                bytes -= sizeOf(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long sizeOf(Key key, byte[] image) {
+        return ENTRY_OVERHEAD + 2L * key.payload.length() + image.length;
+    }
+
+    /**
+     * Produces the image on a cache miss
+     */
+    @FunctionalInterface
+    public interface Encoder {
+        byte[] encode() throws WriterException, IOException;
+    }
+
+    /**
+     * Carries a WriterException through the coalescer, whose calls have a single checked exception type
+     */
+    private static final class EncodingFailed extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final WriterException writerException;
+
+        private EncodingFailed(WriterException writerException) {
+            super(writerException);
+            this.writerException = writerException;
+        }
+    }
+
+    private static final class Key {
+        private final String format;
+        private final String payload;
+        private final int width;
+        private final int height;
+        private final int hash;
+
+        private Key(String format, String payload, int width, int height) {
+            this.format = format;
+            this.payload = payload;
+            this.width = width;
+            this.height = height;
+            this.hash = Objects.hash(format, payload, width, height);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return width == other.width && height == other.height
+                    && format.equals(other.format) && payload.equals(other.payload);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.sivalab.laboperations.service;
+
+import java.util.Locale;
+
+/**
+ * Output formats for barcode and QR images
+ */
+public enum BarcodeImageFormat {
+    PNG("image/png", "png"),
+    SVG("image/svg+xml", "svg");
+
+    private final String mediaType;
+    private final String extension;
+
+    BarcodeImageFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Format from a request parameter such as "png" or "svg"
+     */
+    public static BarcodeImageFormat from(String value) {
+        if (value == null || value.isBlank()) {
+            return PNG;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported barcode image format: " + value);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.sivalab.laboperations.service;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG encoder for barcodes
+ * Writes 1-bit grayscale PNGs straight from the module bits: QR codes from a ZXing BitMatrix, linear
+ * codes from a module pattern with an optional human readable line. No ARGB BufferedImage or ImageIO
+ * round trip; the raw scanlines, Deflater and output buffer are pooled, so an encoding allocates little
+ * more than the returned array. Pixels are identical to the ImageIO output (black modules on white).
+ */
+public final class BarcodePngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+    private static final int POOL_SIZE = 16;
+    // scratch arrays grown past this by one large image are dropped rather than kept in the pool
+    private static final int MAX_POOLED_BYTES = 256 * 1024;
+    private static final BlockingQueue<Buffers> BUFFERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private BarcodePngEncoder() {
+    }
+
+    /**
+     * PNG of a matrix, one pixel per matrix bit (set bits are black)
+     */
+    public static byte[] encode(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int rowBytes = (width + 7) / 8;
+        Buffers buffers = borrow();
+        try {
+            byte[] raw = buffers.raw(height * (rowBytes + 1));
+            BitArray row = new BitArray(width);
+            int offset = 0;
+            for (int y = 0; y < height; y++) {
+                raw[offset++] = 0; // filter: none
+                packRow(matrix.getRow(y, row).getBitArray(), raw, offset, rowBytes);
+                offset += rowBytes;
+            }
+            return buffers.png(width, height, raw, offset);
+        } finally {
+            release(buffers);
+        }
+    }
+
+    /**
+     * PNG of a linear barcode
+     * Each module is moduleWidth pixels wide, with quietZoneModules of white either side. Bars are
+     * barHeight pixels tall; when text is given it is drawn centred in a textHeight band underneath.
+     */
+    public static byte[] encodeLinear(boolean[] modules, int moduleWidth, int quietZoneModules,
+                                      int barHeight, String text, int textHeight) {
+        int width = (modules.length + 2 * quietZoneModules) * moduleWidth;
+        int rowBytes = (width + 7) / 8;
+        byte[] textBand = text != null && textHeight > 0 ? renderText(text, width, textHeight) : null;
+        int height = barHeight + (textBand != null ? textHeight : 0);
+
+        Buffers buffers = borrow();
+        try {
+            byte[] raw = buffers.raw(height * (rowBytes + 1));
+            // the bar row is identical on every line; deflate collapses the repeats
+            byte[] barRow = buffers.row(rowBytes);
+            Arrays.fill(barRow, 0, rowBytes, (byte) 0xFF);
+            int x = quietZoneModules * moduleWidth;
+            for (boolean module : modules) {
+                if (module) {
+                    for (int i = 0; i < moduleWidth; i++) {
+                        int pixel = x + i;
+                        barRow[pixel >>> 3] &= (byte) ~(0x80 >>> (pixel & 7));
+                    }
+                }
+                x += moduleWidth;
+            }
+            int offset = 0;
+            for (int y = 0; y < barHeight; y++) {
+                raw[offset++] = 0;
+                System.arraycopy(barRow, 0, raw, offset, rowBytes);
+                offset += rowBytes;
+            }
+            if (textBand != null) {
+                for (int y = 0; y < textHeight; y++) {
+                    raw[offset++] = 0;
+                    System.arraycopy(textBand, y * rowBytes, raw, offset, rowBytes);
+                    offset += rowBytes;
+                }
+            }
+            return buffers.png(width, height, raw, offset);
+        } finally {
+            release(buffers);
+        }
+    }
+
+    /**
+     * BitMatrix rows are 32-bit words, least significant bit first, set = black; PNG wants bytes, most
+     * significant bit first, set = white
+     */
+    private static void packRow(int[] words, byte[] out, int offset, int rowBytes) {
+        for (int i = 0; i < rowBytes; i++) {
+            int word = words[i >>> 2];
+            int bits = (word >>> ((i & 3) * 8)) & 0xFF;
+            out[offset + i] = (byte) ~(Integer.reverse(bits) >>> 24);
+        }
+    }
+
+    /**
+     * The human readable line as packed 1-bit rows (0 = black), the same layout as a PNG scanline
+     */
+    private static byte[] renderText(String text, int width, int height) {
+        BufferedImage band = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = band.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setColor(Color.BLACK);
+            graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, height));
+            FontMetrics metrics = graphics.getFontMetrics();
+            int x = Math.max(0, (width - metrics.stringWidth(text)) / 2);
+            graphics.drawString(text, x, height - metrics.getDescent());
+        } finally {
+            graphics.dispose();
+        }
+        return ((DataBufferByte) band.getRaster().getDataBuffer()).getData();
+    }
+
+    private static Buffers borrow() {
+        Buffers buffers = BUFFERS.poll();
+        return buffers != null ? buffers : new Buffers();
+    }
+
+    private static void release(Buffers buffers) {
+        buffers.deflater.reset();
+        buffers.trim();
+        if (!BUFFERS.offer(buffers)) {
+            buffers.deflater.end();
+        }
+    }
+
+    /**
+     * Reusable scratch space for one encoding at a time
+     */
+    private static final class Buffers {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final CRC32 crc = new CRC32();
+        private byte[] raw = new byte[8192];
+        private byte[] row = new byte[128];
+        private byte[] out = new byte[4096];
+        private int length;
+
+        private void trim() {
+            if (raw.length > MAX_POOLED_BYTES) {
+                raw = new byte[8192];
+            }
+            if (row.length > MAX_POOLED_BYTES) {
+                row = new byte[128];
+            }
+            if (out.length > MAX_POOLED_BYTES) {
+                out = new byte[4096];
+            }
+        }
+
+        private byte[] raw(int size) {
+            if (raw.length < size) {
+                raw = new byte[size];
+            }
+            return raw;
+        }
+
+        private byte[] row(int size) {
+            if (row.length < size) {
+                row = new byte[size];
+            }
+            return row;
+        }
+
+        private byte[] png(int width, int height, byte[] data, int dataLength) {
+            length = 0;
+            write(SIGNATURE, 0, SIGNATURE.length);
+
+            byte[] header = new byte[13];
+            putInt(header, 0, width);
+            putInt(header, 4, height);
+            header[8] = 1;  // bit depth
+            header[9] = 0;  // grayscale
+            header[10] = 0; // deflate
+            header[11] = 0; // adaptive filtering
+            header[12] = 0; // no interlace
+            chunk(IHDR, header, 0, header.length);
+
+            // deflate straight into the output buffer, after room for the IDAT length and type
+            int idatStart = length;
+            ensure(8);
+            length += 8;
+            deflater.setInput(data, 0, dataLength);
+            deflater.finish();
+            while (!deflater.finished()) {
+                ensure(1024);
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            int idatLength = length - idatStart - 8;
+            putInt(out, idatStart, idatLength);
+            System.arraycopy(IDAT, 0, out, idatStart + 4, 4);
+            crc.reset();
+            crc.update(out, idatStart + 4, idatLength + 4);
+            writeInt((int) crc.getValue());
+
+            chunk(IEND, header, 0, 0);
+            return Arrays.copyOf(out, length);
+        }
+
+        private void chunk(byte[] type, byte[] data, int offset, int dataLength) {
+            writeInt(dataLength);
+            write(type, 0, 4);
+            write(data, offset, dataLength);
+            crc.reset();
+            crc.update(type);
+            crc.update(data, offset, dataLength);
+            writeInt((int) crc.getValue());
+        }
+
+        private void writeInt(int value) {
+            ensure(4);
+            putInt(out, length, value);
+            length += 4;
+        }
+
+        private void write(byte[] bytes, int offset, int count) {
+            ensure(count);
+            System.arraycopy(bytes, offset, out, length, count);
+            length += count;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, length + extra));
+            }
+        }
+
+        private static void putInt(byte[] bytes, int offset, int value) {
+            bytes[offset] = (byte) (value >>> 24);
+            bytes[offset + 1] = (byte) (value >>> 16);
+            bytes[offset + 2] = (byte) (value >>> 8);
+            bytes[offset + 3] = (byte) value;
+        }
+    }
+}
@@ -3,18 +3,21 @@ package com.sivalab.laboperations.service;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.oned.Code39Writer;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
-import org.krysalis.barcode4j.impl.code128.Code128Bean;
-import org.krysalis.barcode4j.impl.code39.Code39Bean;
-import org.krysalis.barcode4j.output.bitmap.BitmapCanvasProvider;
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.entity.Visit;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -24,6 +27,8 @@ import java.util.Map;
  * - QR codes for comprehensive data (reports, patient info)
  * - Code128 for sample numbers and ULR numbers
  * - Code39 for visit IDs and simple identifiers
+ * Payloads are derived only from the entity's state and encoded images are shared through the
+ * BarcodeImageCache, so a report or sample always gets the same image until its state changes.
  */
 @Service
 public class BarcodeService {
@@ -31,25 +36,106 @@ public class BarcodeService {
     private static final int DEFAULT_QR_SIZE = 200;
     private static final int DEFAULT_BARCODE_WIDTH = 300;
     private static final int DEFAULT_BARCODE_HEIGHT = 50;
+    public static final int LINEAR_QUIET_ZONE_MODULES = 10;
+    public static final int MAX_IMAGE_DIMENSION = 2000;
+    private static final Map<EncodeHintType, Object> QR_HINTS = Map.of(
+        EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M,
+        EncodeHintType.CHARACTER_SET, "UTF-8",
+        EncodeHintType.MARGIN, 1);
+
+    private final BarcodeImageCache imageCache;
+
+    @Autowired
+    public BarcodeService(BarcodeImageCache imageCache) {
+        this.imageCache = imageCache;
+    }
+
+    /**
+     * Reject requested image dimensions outside 1..MAX_IMAGE_DIMENSION pixels
+     * Width and size are request parameters; the cap bounds the raster and scratch buffers one request can claim.
+     */
+    public static void checkImageSize(int width, int height) {
+        if (width < 1 || height < 1 || width > MAX_IMAGE_DIMENSION || height > MAX_IMAGE_DIMENSION) {
+            throw new IllegalArgumentException("Image size " + width + "x" + height
+                    + " is outside 1.." + MAX_IMAGE_DIMENSION + " pixels");
+        }
+    }
 
     /**
      * Generate QR code for comprehensive data (JSON format)
      * Used for: Lab reports, patient information, sample details
      */
     public byte[] generateQRCode(String data, int size) throws WriterException, IOException {
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        
-        Map<EncodeHintType, Object> hints = new HashMap<>();
-        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-        hints.put(EncodeHintType.MARGIN, 1);
-        
-        BitMatrix bitMatrix = qrCodeWriter.encode(data, BarcodeFormat.QR_CODE, size, size, hints);
-        BufferedImage qrImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
-        
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        javax.imageio.ImageIO.write(qrImage, "PNG", baos);
-        return baos.toByteArray();
+        return imageCache.get("QR", data, size, size, () -> encodeQRCode(data, size));
+    }
+
+    /**
+     * Generate QR code as PNG or SVG
+     */
+    public byte[] generateQRCode(String data, int size, BarcodeImageFormat format) throws WriterException, IOException {
+        if (format == BarcodeImageFormat.PNG) {
+            return generateQRCode(data, size);
+        }
+        return imageCache.get(qrCacheKey(format), data, size, size, () -> {
+            BitMatrix modules = encodeQRModules(data);
+            return svg(out -> BarcodeVectorWriter.writeSvg(modules, size, out));
+        });
+    }
+
+    /**
+     * Strong ETag of the image generateQRCode(data, size, format) returns, computed without encoding
+     */
+    public String qrCodeETag(String data, int size, BarcodeImageFormat format) {
+        return BarcodeImageCache.entityTag(qrCacheKey(format), data, size, size);
+    }
+
+    private static String qrCacheKey(BarcodeImageFormat format) {
+        return format == BarcodeImageFormat.SVG ? "QR_SVG" : "QR";
+    }
+
+    private byte[] encodeQRCode(String data, int size) throws WriterException {
+        BitMatrix bitMatrix = new QRCodeWriter().encode(data, BarcodeFormat.QR_CODE, size, size, QR_HINTS);
+        return BarcodePngEncoder.encode(bitMatrix);
+    }
+
+    /**
+     * QR code modules, one matrix bit per module including the quiet zone, for vector rendering.
+     * Shared through the image cache as packed bits, so each call returns a fresh matrix.
+     */
+    public BitMatrix qrModules(String data) throws WriterException, IOException {
+        return unpackModules(imageCache.get("QR_MODULES", data, 0, 0, () -> packModules(encodeQRModules(data))));
+    }
+
+    private BitMatrix encodeQRModules(String data) throws WriterException {
+        return new QRCodeWriter().encode(data, BarcodeFormat.QR_CODE, 0, 0, QR_HINTS);
+    }
+
+    private static byte[] packModules(BitMatrix modules) {
+        int width = modules.getWidth();
+        int height = modules.getHeight();
+        ByteBuffer packed = ByteBuffer.allocate(8 + (width * height + 7) / 8).putInt(width).putInt(height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (modules.get(x, y)) {
+                    int bit = y * width + x;
+                    packed.put(8 + bit / 8, (byte) (packed.get(8 + bit / 8) | (1 << (bit % 8))));
+                }
+            }
+        }
+        return packed.array();
+    }
+
+    private static BitMatrix unpackModules(byte[] packed) {
+        ByteBuffer buffer = ByteBuffer.wrap(packed);
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        BitMatrix modules = new BitMatrix(width, height);
+        for (int bit = 0; bit < width * height; bit++) {
+            if ((packed[8 + bit / 8] & (1 << (bit % 8))) != 0) {
+                modules.set(bit % width, bit / width);
+            }
+        }
+        return modules;
     }
 
     /**
@@ -64,21 +150,22 @@ public class BarcodeService {
      * Used for: Sample numbers, ULR numbers, batch numbers
      */
     public byte[] generateCode128Barcode(String data, int width, int height) throws IOException {
-        Code128Bean bean = new Code128Bean();
-        bean.setModuleWidth(0.3); // Width of the narrowest bar
-        bean.setBarHeight(height * 0.8); // Height of bars (80% of total height)
-        bean.setFontSize(8.0); // Font size for human readable text
-        bean.setQuietZone(10.0); // Quiet zone on sides
-        bean.doQuietZone(true);
-        
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        BitmapCanvasProvider canvas = new BitmapCanvasProvider(
-            baos, "image/png", width, height, false, 0);
-        
-        bean.generateBarcode(canvas, data);
-        canvas.finish();
-        
-        return baos.toByteArray();
+        return generateCode128Barcode(data, width, height, BarcodeImageFormat.PNG);
+    }
+
+    /**
+     * Generate Code128 barcode as PNG or SVG
+     */
+    public byte[] generateCode128Barcode(String data, int width, int height, BarcodeImageFormat format)
+            throws IOException {
+        return linearBarcode(BarcodeFormat.CODE_128, data, width, height, format);
+    }
+
+    /**
+     * Strong ETag of the image generateCode128Barcode(data, width, height, format) returns
+     */
+    public String code128BarcodeETag(String data, int width, int height, BarcodeImageFormat format) {
+        return BarcodeImageCache.entityTag(linearCacheKey(BarcodeFormat.CODE_128, format), data, width, height);
     }
 
     /**
@@ -93,22 +180,64 @@ public class BarcodeService {
      * Used for: Visit IDs, patient IDs, simple identifiers
      */
     public byte[] generateCode39Barcode(String data, int width, int height) throws IOException {
-        Code39Bean bean = new Code39Bean();
-        bean.setModuleWidth(0.3);
-        bean.setBarHeight(height * 0.8);
-        bean.setFontSize(8.0);
-        bean.setQuietZone(10.0);
-        bean.doQuietZone(true);
-        bean.setChecksumMode(org.krysalis.barcode4j.ChecksumMode.CP_AUTO);
-        
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        BitmapCanvasProvider canvas = new BitmapCanvasProvider(
-            baos, "image/png", width, height, false, 0);
-        
-        bean.generateBarcode(canvas, data);
-        canvas.finish();
-        
-        return baos.toByteArray();
+        return generateCode39Barcode(data, width, height, BarcodeImageFormat.PNG);
+    }
+
+    /**
+     * Generate Code39 barcode as PNG or SVG
+     */
+    public byte[] generateCode39Barcode(String data, int width, int height, BarcodeImageFormat format)
+            throws IOException {
+        return linearBarcode(BarcodeFormat.CODE_39, data, width, height, format);
+    }
+
+    /**
+     * Linear barcode modules (true = bar), without the quiet zone, for vector rendering
+     */
+    public boolean[] encodeLinearModules(BarcodeFormat symbology, String data) {
+        switch (symbology) {
+            case CODE_128:
+                return new Code128Writer().encode(data);
+            case CODE_39:
+                return new Code39Writer().encode(data);
+            default:
+                throw new IllegalArgumentException("Unsupported linear barcode format: " + symbology);
+        }
+    }
+
+    private byte[] linearBarcode(BarcodeFormat symbology, String data, int width, int height,
+                                 BarcodeImageFormat format) throws IOException {
+        return cached(linearCacheKey(symbology, format), data, width, height,
+                () -> encodeLinearBarcode(encodeLinearModules(symbology, data), data, width, height, format));
+    }
+
+    // "CODE128", "CODE39_SVG", ...
+    private static String linearCacheKey(BarcodeFormat symbology, BarcodeImageFormat format) {
+        return symbology.name().replace("_", "") + (format == BarcodeImageFormat.SVG ? "_SVG" : "");
+    }
+
+    /**
+     * Render a linear barcode of roughly width x height pixels
+     * Bars are 80% of the height and the human readable text the rest. PNG modules are a whole number
+     * of pixels (as wide as the requested width allows) so bar edges stay sharp for scanners; SVG is
+     * exactly the requested width.
+     */
+    private byte[] encodeLinearBarcode(boolean[] modules, String data, int width, int height,
+                                       BarcodeImageFormat format) throws IOException {
+        int barHeight = Math.max(1, Math.round(height * 0.8f));
+        if (format == BarcodeImageFormat.SVG) {
+            return svg(out -> BarcodeVectorWriter.writeLinearSvg(modules, LINEAR_QUIET_ZONE_MODULES, width,
+                                                                 barHeight, data, height - barHeight, out));
+        }
+        int moduleWidth = Math.max(1, width / (modules.length + 2 * LINEAR_QUIET_ZONE_MODULES));
+        return BarcodePngEncoder.encodeLinear(modules, moduleWidth, LINEAR_QUIET_ZONE_MODULES,
+                                              barHeight, data, height - barHeight);
+    }
+
+    private static byte[] svg(SvgBody body) throws IOException {
+        StringBuilder out = new StringBuilder(2048);
+        body.write(out);
+        return out.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     /**
@@ -120,21 +249,33 @@ public class BarcodeService {
 
     /**
      * Generate QR code data for lab report
-     * Contains: ULR number, patient info, report status, access URL
+     * Contains: ULR number, patient info, report status, authorisation time (once authorised), access URL.
+     * The payload depends only on the report, so re-rendering an unchanged report yields the same image.
      */
-    public String generateReportQRData(String ulrNumber, String patientName, String patientId, 
-                                      String reportStatus, String accessUrl) {
-        return String.format(
-            "LAB_REPORT\n" +
-            "ULR: %s\n" +
-            "Patient: %s\n" +
-            "ID: %s\n" +
-            "Status: %s\n" +
-            "URL: %s\n" +
-            "Generated: %s",
-            ulrNumber, patientName, patientId, reportStatus, accessUrl,
-            java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-        );
+    public String generateReportQRData(String ulrNumber, String patientName, String patientId,
+                                      String reportStatus, LocalDateTime authorizedAt, String accessUrl) {
+        StringBuilder data = new StringBuilder(160)
+            .append("LAB_REPORT\n")
+            .append("ULR: ").append(ulrNumber).append('\n')
+            .append("Patient: ").append(patientName).append('\n')
+            .append("ID: ").append(patientId).append('\n')
+            .append("Status: ").append(reportStatus).append('\n');
+        if (authorizedAt != null) {
+            data.append("Authorized: ").append(authorizedAt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append('\n');
+        }
+        return data.append("URL: ").append(accessUrl).toString();
+    }
+
+    /**
+     * Generate QR code data for a lab report from its current state
+     */
+    public String generateReportQRData(LabReport report) {
+        Visit visit = report.getVisit();
+        return generateReportQRData(report.getUlrNumber(),
+            visit.getPatientDetails().get("name").asText(),
+            visit.getPatientDetails().get("patientId").asText(),
+            report.getReportStatus().toString(), report.getAuthorizedAt(),
+            "/reports/view/" + report.getUlrNumber());
     }
 
     /**
@@ -178,24 +319,50 @@ public class BarcodeService {
      * Removes special characters and formats for barcode compatibility
      */
     public byte[] generateULRBarcode(String ulrNumber) throws IOException {
-        // Convert ULR format "SLN/2025/000001" to barcode-friendly format "SLN2025000001"
-        String barcodeData = ulrNumber.replaceAll("[^A-Za-z0-9]", "");
-        return generateCode128Barcode(barcodeData);
+        return generateULRBarcode(ulrNumber, BarcodeImageFormat.PNG);
+    }
+
+    public byte[] generateULRBarcode(String ulrNumber, BarcodeImageFormat format) throws IOException {
+        return generateCode128Barcode(ulrBarcodeData(ulrNumber), DEFAULT_BARCODE_WIDTH, DEFAULT_BARCODE_HEIGHT, format);
+    }
+
+    /**
+     * Convert ULR format "SLN/2025/000001" to barcode-friendly format "SLN2025000001"
+     */
+    public String ulrBarcodeData(String ulrNumber) {
+        return ulrNumber.replaceAll("[^A-Za-z0-9]", "");
     }
 
     /**
      * Generate barcode for sample number (Code128 format)
      */
     public byte[] generateSampleBarcode(String sampleNumber) throws IOException {
+        return generateSampleBarcode(sampleNumber, BarcodeImageFormat.PNG);
+    }
+
+    public byte[] generateSampleBarcode(String sampleNumber, BarcodeImageFormat format) throws IOException {
         // Sample numbers are already barcode-friendly
-        return generateCode128Barcode(sampleNumber);
+        return generateCode128Barcode(sampleNumber, DEFAULT_BARCODE_WIDTH, DEFAULT_BARCODE_HEIGHT, format);
+    }
+
+    public String sampleBarcodeETag(String sampleNumber, BarcodeImageFormat format) {
+        return code128BarcodeETag(sampleNumber, DEFAULT_BARCODE_WIDTH, DEFAULT_BARCODE_HEIGHT, format);
     }
 
     /**
      * Generate barcode for visit ID (Code39 format)
      */
     public byte[] generateVisitBarcode(Long visitId) throws IOException {
-        return generateCode39Barcode(String.valueOf(visitId));
+        return generateVisitBarcode(visitId, BarcodeImageFormat.PNG);
+    }
+
+    public byte[] generateVisitBarcode(Long visitId, BarcodeImageFormat format) throws IOException {
+        return generateCode39Barcode(String.valueOf(visitId), DEFAULT_BARCODE_WIDTH, DEFAULT_BARCODE_HEIGHT, format);
+    }
+
+    public String visitBarcodeETag(Long visitId, BarcodeImageFormat format) {
+        return BarcodeImageCache.entityTag(linearCacheKey(BarcodeFormat.CODE_39, format), String.valueOf(visitId),
+                DEFAULT_BARCODE_WIDTH, DEFAULT_BARCODE_HEIGHT);
     }
 
     /**
@@ -205,11 +372,24 @@ public class BarcodeService {
     public Map<String, byte[]> generateReportBarcodePackage(String ulrNumber, String patientName, 
                                                            String patientId, String reportStatus) 
             throws WriterException, IOException {
+        String qrData = generateReportQRData(ulrNumber, patientName, patientId, reportStatus, null,
+                                           "/reports/view/" + ulrNumber);
+        return reportBarcodePackage(qrData, ulrNumber, patientId);
+    }
+
+    /**
+     * Generate comprehensive barcode package for a lab report from its current state
+     */
+    public Map<String, byte[]> generateReportBarcodePackage(LabReport report) throws WriterException, IOException {
+        return reportBarcodePackage(generateReportQRData(report), report.getUlrNumber(),
+                                    report.getVisit().getPatientDetails().get("patientId").asText());
+    }
+
+    private Map<String, byte[]> reportBarcodePackage(String qrData, String ulrNumber, String patientId)
+            throws WriterException, IOException {
         Map<String, byte[]> barcodes = new HashMap<>();
         
         // QR code with comprehensive data
-        String qrData = generateReportQRData(ulrNumber, patientName, patientId, reportStatus, 
-                                           "/reports/view/" + ulrNumber);
         barcodes.put("qr_code", generateQRCode(qrData));
         
         // ULR barcode for quick scanning
@@ -263,4 +443,22 @@ public class BarcodeService {
         
         return barcodes;
     }
+
+    /**
+     * Writes one SVG document
+     */
+    @FunctionalInterface
+    private interface SvgBody {
+        void write(StringBuilder out) throws IOException;
+    }
+
+    private byte[] cached(String format, String data, int width, int height, BarcodeImageCache.Encoder encoder)
+            throws IOException {
+        try {
+            return imageCache.get(format, data, width, height, encoder);
+        } catch (WriterException e) {
+            // linear encoders do not throw WriterException
+            throw new IOException(e);
+        }
+    }
 }
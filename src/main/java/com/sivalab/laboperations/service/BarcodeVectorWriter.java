@@ -0,0 +1,188 @@
+package com.sivalab.laboperations.service;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+
+import java.io.IOException;
+
+/**
+ * Vector output for barcodes
+ * Writes QR codes (from a ZXing BitMatrix at one bit per module) and linear codes (from a module
+ * pattern) as SVG straight to an Appendable, or draws them as filled paths in a PDF form XObject.
+ * Adjacent dark modules in a row are merged into one rectangle, so a QR code is a single short path
+ * and a linear code one rectangle per bar. Coordinates are in modules; the caller only sets the
+ * rendered size, and nothing is rasterised.
+ */
+public final class BarcodeVectorWriter {
+
+    private static final String SVG_OPEN = "<svg xmlns=\"http://www.w3.org/2000/svg\" shape-rendering=\"crispEdges\"";
+
+    private BarcodeVectorWriter() {
+    }
+
+    /**
+     * SVG of a matrix at size x size pixels, one matrix bit per module (set bits are dark)
+     */
+    public static void writeSvg(BitMatrix matrix, int size, Appendable out) throws IOException {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        out.append(SVG_OPEN)
+           .append(" width=\"").append(Integer.toString(size))
+           .append("\" height=\"").append(Integer.toString(size))
+           .append("\" viewBox=\"0 0 ").append(Integer.toString(width)).append(' ').append(Integer.toString(height))
+           .append("\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path d=\"");
+        matrixRuns(matrix, (x, y, length) -> {
+            String run = Integer.toString(length);
+            out.append('M').append(Integer.toString(x)).append(' ').append(Integer.toString(y))
+               .append('h').append(run).append("v1h-").append(run).append('z');
+        });
+        out.append("\"/></svg>");
+    }
+
+    /**
+     * SVG of a linear barcode, laid out like BarcodePngEncoder.encodeLinear
+     * The image is width pixels wide with quietZoneModules of white either side. Bars are barHeight
+     * pixels tall; when text is given it is set centred in a textHeight band underneath.
+     */
+    public static void writeLinearSvg(boolean[] modules, int quietZoneModules, int width, int barHeight,
+                                      String text, int textHeight, Appendable out) throws IOException {
+        boolean hasText = text != null && textHeight > 0;
+        int height = barHeight + (hasText ? textHeight : 0);
+        int totalModules = modules.length + 2 * quietZoneModules;
+        // pixels to modules, so bars land on whole units
+        float scale = totalModules / (float) width;
+        String bars = decimal(barHeight * scale);
+
+        out.append(SVG_OPEN)
+           .append(" width=\"").append(Integer.toString(width))
+           .append("\" height=\"").append(Integer.toString(height))
+           .append("\" viewBox=\"0 0 ").append(Integer.toString(totalModules)).append(' ').append(decimal(height * scale))
+           .append("\" preserveAspectRatio=\"none\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path d=\"");
+        moduleRuns(modules, (x, y, length) -> {
+            String run = Integer.toString(length);
+            out.append('M').append(Integer.toString(quietZoneModules + x)).append(" 0h").append(run)
+               .append('v').append(bars).append("h-").append(run).append('z');
+        });
+        out.append("\"/>");
+        if (hasText) {
+            float fontSize = textHeight * scale;
+            out.append("<text x=\"").append(decimal(totalModules / 2f))
+               .append("\" y=\"").append(decimal(height * scale - fontSize * 0.15f))
+               .append("\" font-family=\"sans-serif\" font-size=\"").append(decimal(fontSize))
+               .append("\" text-anchor=\"middle\">");
+            escape(text, out);
+            out.append("</text>");
+        }
+        out.append("</svg>");
+    }
+
+    /**
+     * Form XObject of a matrix, one unit per module; scale it when placing (e.g. Image.setWidth)
+     */
+    public static PdfFormXObject toFormXObject(BitMatrix matrix, PdfDocument document) {
+        int height = matrix.getHeight();
+        PdfFormXObject xObject = new PdfFormXObject(new Rectangle(matrix.getWidth(), height));
+        PdfCanvas canvas = new PdfCanvas(xObject, document);
+        // PDF y runs upwards
+        matrixRuns(matrix, (x, y, length) -> canvas.rectangle(x, height - y - 1, length, 1));
+        canvas.fill();
+        canvas.release();
+        return xObject;
+    }
+
+    /**
+     * Form XObject of a linear barcode's bars, one unit per module and barHeight modules tall, with
+     * quietZoneModules either side
+     */
+    public static PdfFormXObject toFormXObject(boolean[] modules, int quietZoneModules, float barHeight,
+                                               PdfDocument document) {
+        PdfFormXObject xObject = new PdfFormXObject(
+                new Rectangle(modules.length + 2 * quietZoneModules, barHeight));
+        PdfCanvas canvas = new PdfCanvas(xObject, document);
+        moduleRuns(modules, (x, y, length) -> canvas.rectangle(quietZoneModules + x, 0, length, barHeight));
+        canvas.fill();
+        canvas.release();
+        return xObject;
+    }
+
+    private static <E extends Exception> void matrixRuns(BitMatrix matrix, RunConsumer<E> consumer) throws E {
+        int width = matrix.getWidth();
+        BitArray row = new BitArray(width);
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            matrix.getRow(y, row);
+            int x = row.getNextSet(0);
+            while (x < width) {
+                int end = row.getNextUnset(x);
+                consumer.accept(x, y, end - x);
+                x = row.getNextSet(end);
+            }
+        }
+    }
+
+    private static <E extends Exception> void moduleRuns(boolean[] modules, RunConsumer<E> consumer) throws E {
+        int x = 0;
+        while (x < modules.length) {
+            if (!modules[x]) {
+                x++;
+                continue;
+            }
+            int end = x;
+            while (end < modules.length && modules[end]) {
+                end++;
+            }
+            consumer.accept(x, 0, end - x);
+            x = end;
+        }
+    }
+
+    /**
+     * Up to two decimals, without trailing zeros
+     */
+    private static String decimal(float value) {
+        long hundredths = Math.round(value * 100.0);
+        long whole = hundredths / 100;
+        int fraction = (int) (hundredths % 100);
+        if (fraction == 0) {
+            return Long.toString(whole);
+        }
+        return whole + (fraction % 10 == 0 ? "." + fraction / 10 : (fraction < 10 ? ".0" : ".") + fraction);
+    }
+
+    /**
+     * XML text; control characters are valid Code128 data but mostly illegal in XML 1.0, so they become '?'
+     */
+    private static void escape(String text, Appendable out) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                default:
+                    out.append(c < ' ' ? '?' : c);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * A horizontal run of dark modules
+     */
+    @FunctionalInterface
+    private interface RunConsumer<E extends Exception> {
+        void accept(int x, int y, int length) throws E;
+    }
+}
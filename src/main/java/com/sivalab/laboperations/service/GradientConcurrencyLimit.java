@@ -0,0 +1,81 @@
+package com.sivalab.laboperations.service;
+
+/**
+ * Gradient concurrency limit: moves a limit from the ratio of long-term to recent latency
+ * Each sample is the average latency of one window. While recent latency stays near the long-term
+ * average the limit grows by about sqrt(limit) per window; when queueing makes it rise the limit
+ * shrinks towards limit * long / recent (at most halving per window). Changes are smoothed, and the
+ * limit never grows while less than half of it is in use, so a quiet night does not leave it inflated
+ * for the morning. The long-term average slowly forgets, and drops faster once recent latency has
+ * been far below it, so a permanently faster backend is adopted as the new baseline.
+ * Not thread-safe; callers serialize updates.
+ */
+public class GradientConcurrencyLimit {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+    private static final int WARMUP_SAMPLES = 10;
+
+    private final int minLimit;
+    private int maxLimit;
+    private double limit;
+    private double longLatency;
+    private int samples;
+
+    public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limit bounds " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Limit after a window with the given average latency (any unit) and peak in-flight calls
+     */
+    public int update(double latency, int peakInFlight) {
+        if (latency <= 0) {
+            return getLimit();
+        }
+        // a plain average during warmup, then an exponential average over LONG_WINDOW samples
+        samples++;
+        double weight = samples <= WARMUP_SAMPLES ? 1.0 / samples : 2.0 / (LONG_WINDOW + 1);
+        longLatency = samples == 1 ? latency : longLatency + (latency - longLatency) * weight;
+        if (longLatency / latency > 2) {
+            longLatency *= 0.95;
+        }
+
+        if (peakInFlight < limit / 2) {
+            return getLimit();
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / latency));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+        return getLimit();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * New ceiling; the limit is lowered to it when above
+     */
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.limit = Math.min(this.limit, this.maxLimit);
+    }
+
+    /**
+     * Long-term average latency, in the unit of the samples
+     */
+    public double getLongLatency() {
+        return longLatency;
+    }
+}
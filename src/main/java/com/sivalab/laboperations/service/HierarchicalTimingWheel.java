@@ -0,0 +1,194 @@
+package com.sivalab.laboperations.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel keyed by an identifier (sample number, job id, ...)
+ *
+ * Each level has 64 slots; level 0 slots are one tick wide and every higher level is 64 times
+ * coarser. Scheduling and cancelling are O(1); advancing touches only the slot that is due plus
+ * the occasional cascade from a coarser level, so the cost does not depend on how many deadlines
+ * are armed. With a one second tick the four default levels cover about 194 days; later deadlines
+ * are parked in the outermost level and re-placed each time it cascades.
+ *
+ * Not thread-safe: callers serialise access.
+ */
+public class HierarchicalTimingWheel<K> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final int levels;
+    private final List<List<Set<Entry<K>>>> wheel;
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private final long maxDelta;
+
+    private long currentTick;
+
+    public HierarchicalTimingWheel(long tickMillis, int levels, long startMillis) {
+        if (tickMillis <= 0 || levels <= 0 || levels * SLOT_BITS >= 63) {
+            throw new IllegalArgumentException("Invalid timing wheel geometry: tick=" + tickMillis + "ms, levels=" + levels);
+        }
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.maxDelta = (1L << (SLOT_BITS * levels)) - 1;
+        this.currentTick = startMillis / tickMillis;
+        this.wheel = new ArrayList<>(levels);
+        for (int level = 0; level < levels; level++) {
+            List<Set<Entry<K>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new HashSet<>());
+            }
+            wheel.add(slots);
+        }
+    }
+
+    public HierarchicalTimingWheel(long tickMillis, long startMillis) {
+        this(tickMillis, 4, startMillis);
+    }
+
+    /**
+     * Arm (or re-arm) a deadline for the key.
+     * Returns true when the deadline has already passed; the key is then not armed and the caller fires it directly.
+     */
+    public boolean schedule(K key, long deadlineMillis) {
+        cancel(key);
+        long expirationTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        if (expirationTick <= currentTick) {
+            return true;
+        }
+        Entry<K> entry = new Entry<>(key, deadlineMillis, expirationTick);
+        entries.put(key, entry);
+        place(entry);
+        return false;
+    }
+
+    /**
+     * Disarm the deadline for the key, if any
+     */
+    public boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        entry.bucket.remove(entry);
+        entry.bucket = null;
+        return true;
+    }
+
+    /**
+     * Advance the wheel to the given wall-clock time and return every key whose deadline has passed
+     */
+    public List<Expired<K>> advanceTo(long nowMillis) {
+        List<Expired<K>> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            Set<Entry<K>> due = wheel.get(0).get((int) (currentTick & SLOT_MASK));
+            if (due.isEmpty()) {
+                continue;
+            }
+            for (Entry<K> entry : due) {
+                entries.remove(entry.key);
+                entry.bucket = null;
+                expired.add(new Expired<>(entry.key, entry.deadlineMillis));
+            }
+            due.clear();
+        }
+        return expired;
+    }
+
+    public boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    public Long deadlineOf(K key) {
+        Entry<K> entry = entries.get(key);
+        return entry != null ? entry.deadlineMillis : null;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        for (List<Set<Entry<K>>> level : wheel) {
+            level.forEach(Set::clear);
+        }
+        entries.clear();
+    }
+
+    /**
+     * Re-distribute coarse slots that have become due into finer levels.
+     * Level n is cascaded when every level below it has wrapped around to slot 0.
+     */
+    private void cascade() {
+        for (int level = 1; level < levels; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            Set<Entry<K>> bucket = wheel.get(level).get((int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            List<Entry<K>> moving = new ArrayList<>(bucket);
+            bucket.clear();
+            for (Entry<K> entry : moving) {
+                place(entry);
+            }
+        }
+    }
+
+    private void place(Entry<K> entry) {
+        long delta = entry.expirationTick - currentTick;
+        long placementTick = delta > maxDelta ? currentTick + maxDelta : entry.expirationTick;
+        delta = Math.max(placementTick - currentTick, 0);
+
+        int level = 0;
+        while (level < levels - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        // delta == 0 only happens while cascading, before the current level 0 slot is drained
+        int slot = (int) ((placementTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Set<Entry<K>> bucket = wheel.get(level).get(slot);
+        bucket.add(entry);
+        entry.bucket = bucket;
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final long deadlineMillis;
+        private final long expirationTick;
+        private Set<Entry<K>> bucket;
+
+        private Entry(K key, long deadlineMillis, long expirationTick) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+            this.expirationTick = expirationTick;
+        }
+    }
+
+    /**
+     * A key whose deadline fired, with the deadline it was armed for
+     */
+    public static final class Expired<K> {
+        private final K key;
+        private final long deadlineMillis;
+
+        private Expired(K key, long deadlineMillis) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public K getKey() { return key; }
+        public long getDeadlineMillis() { return deadlineMillis; }
+    }
+}
@@ -0,0 +1,74 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * JSON Merge Patch (RFC 7386)
+ * Objects are patched member by member, a null member removes it and any other value (arrays
+ * included) replaces it. Used to store amended reports as changes against the report they amend.
+ */
+public final class JsonMergePatch {
+
+    private JsonMergePatch() {
+    }
+
+    /**
+     * Patch that turns source into target; an empty object when they are equal
+     * Explicit nulls in target cannot be expressed and are dropped, as in the RFC.
+     */
+    public static JsonNode diff(JsonNode source, JsonNode target) {
+        if (source == null || !source.isObject() || target == null || !target.isObject()) {
+            return target == null ? JsonNodeFactory.instance.nullNode() : target.deepCopy();
+        }
+        ObjectNode patch = JsonNodeFactory.instance.objectNode();
+        Iterator<String> removed = source.fieldNames();
+        while (removed.hasNext()) {
+            String field = removed.next();
+            if (!target.has(field)) {
+                patch.putNull(field);
+            }
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = target.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode before = source.get(field.getKey());
+            JsonNode after = field.getValue();
+            if (after.equals(before)) {
+                continue;
+            }
+            if (before != null && before.isObject() && after.isObject()) {
+                patch.set(field.getKey(), diff(before, after));
+            } else {
+                patch.set(field.getKey(), after.deepCopy());
+            }
+        }
+        return patch;
+    }
+
+    /**
+     * Apply a merge patch; the target is not modified
+     */
+    public static JsonNode apply(JsonNode target, JsonNode patch) {
+        if (patch == null || !patch.isObject()) {
+            return patch == null ? null : patch.deepCopy();
+        }
+        ObjectNode result = target != null && target.isObject()
+                ? ((ObjectNode) target).deepCopy()
+                : JsonNodeFactory.instance.objectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getValue().isNull()) {
+                result.remove(field.getKey());
+            } else {
+                result.set(field.getKey(), apply(result.get(field.getKey()), field.getValue()));
+            }
+        }
+        return result;
+    }
+}
@@ -28,18 +28,24 @@ public class LabReportService {
     private final LabTestRepository labTestRepository;
     private final UlrService ulrService;
     private final ObjectMapper objectMapper;
+    private final ReportPdfCache reportPdfCache;
+    private final ReportSnapshotService reportSnapshotService;
 
     @Autowired
     public LabReportService(LabReportRepository labReportRepository,
                            VisitRepository visitRepository,
                            LabTestRepository labTestRepository,
                            UlrService ulrService,
-                           ObjectMapper objectMapper) {
+                           ObjectMapper objectMapper,
+                           ReportPdfCache reportPdfCache,
+                           ReportSnapshotService reportSnapshotService) {
         this.labReportRepository = labReportRepository;
         this.visitRepository = visitRepository;
         this.labTestRepository = labTestRepository;
         this.ulrService = ulrService;
         this.objectMapper = objectMapper;
+        this.reportPdfCache = reportPdfCache;
+        this.reportSnapshotService = reportSnapshotService;
     }
     
     /**
@@ -62,19 +68,18 @@ public class LabReportService {
         JsonNode reportData = generateReportData(visit, labTests);
         report.setReportData(reportData);
 
-        return labReportRepository.save(report);
+        return resolved(labReportRepository.save(report));
     }
 
     /**
      * Generate comprehensive report data including all test results
+     * Patient details stay on the visit and template parameters are referenced by snapshot version.
      */
     private JsonNode generateReportData(Visit visit, List<LabTest> labTests) {
         ObjectNode reportData = objectMapper.createObjectNode();
 
         // Add patient information
         ObjectNode patientInfo = objectMapper.createObjectNode();
-        JsonNode patientDetails = visit.getPatientDetails();
-        patientInfo.set("details", patientDetails);
         patientInfo.put("visitId", visit.getVisitId());
         patientInfo.put("visitDate", visit.getCreatedAt().toString());
         patientInfo.put("status", visit.getStatus().toString());
@@ -100,8 +105,9 @@ public class LabReportService {
                 testNode.put("approvedAt", labTest.getApprovedAt().toString());
             }
 
-            // Add test parameters from template
-            testNode.set("parameters", labTest.getTestTemplate().getParameters());
+            // Reference the template parameters as they are now
+            TestTemplateSnapshot snapshot = reportSnapshotService.snapshotOf(labTest.getTestTemplate());
+            testNode.set(ReportSnapshotService.TEMPLATE_REF, reportSnapshotService.templateRef(snapshot));
 
             // Add test results if available
             if (labTest.getResults() != null) {
@@ -131,10 +137,11 @@ public class LabReportService {
         LabReport report = labReportRepository.findById(reportId)
                 .orElseThrow(() -> new RuntimeException("Report not found with ID: " + reportId));
         
-        report.setReportData(reportData);
+        report.setReportData(reportSnapshotService.toStoredForm(report, reportData));
         report.markAsGenerated(templateVersion);
+        reportPdfCache.invalidate(reportId);
         
-        return labReportRepository.save(report);
+        return resolved(labReportRepository.save(report));
     }
     
     /**
@@ -149,7 +156,8 @@ public class LabReportService {
         }
         
         report.authorize(authorizedBy);
-        return labReportRepository.save(report);
+        reportPdfCache.invalidate(reportId);
+        return resolved(labReportRepository.save(report));
     }
     
     /**
@@ -164,7 +172,7 @@ public class LabReportService {
         }
         
         report.markAsSent();
-        return labReportRepository.save(report);
+        return resolved(labReportRepository.save(report));
     }
     
     /**
@@ -175,12 +183,20 @@ public class LabReportService {
         return labReportRepository.findById(reportId);
     }
 
+    /**
+     * Get report by ID with its complete report data, for API responses
+     */
+    @Transactional(readOnly = true)
+    public Optional<LabReport> getResolvedReportById(Long reportId) {
+        return labReportRepository.findById(reportId).map(this::resolved);
+    }
+
     /**
      * Get report by ULR number
      */
     @Transactional(readOnly = true)
     public Optional<LabReport> getReportByUlrNumber(String ulrNumber) {
-        return labReportRepository.findByUlrNumber(ulrNumber);
+        return labReportRepository.findByUlrNumber(ulrNumber).map(this::resolved);
     }
     
     /**
@@ -188,7 +204,7 @@ public class LabReportService {
      */
     @Transactional(readOnly = true)
     public List<LabReport> getReportsForVisit(Long visitId) {
-        return labReportRepository.findByVisitVisitId(visitId);
+        return resolved(labReportRepository.findByVisitVisitId(visitId));
     }
     
     /**
@@ -197,7 +213,7 @@ public class LabReportService {
     @Transactional(readOnly = true)
     public Optional<LabReport> getLatestReportForVisit(Long visitId) {
         List<LabReport> reports = labReportRepository.findLatestReportForVisit(visitId);
-        return reports.isEmpty() ? Optional.empty() : Optional.of(reports.get(0));
+        return reports.isEmpty() ? Optional.empty() : Optional.of(resolved(reports.get(0)));
     }
     
     /**
@@ -205,7 +221,7 @@ public class LabReportService {
      */
     @Transactional(readOnly = true)
     public List<LabReport> getReportsByStatus(ReportStatus status) {
-        return labReportRepository.findByReportStatus(status);
+        return resolved(labReportRepository.findByReportStatus(status));
     }
     
     /**
@@ -213,7 +229,7 @@ public class LabReportService {
      */
     @Transactional(readOnly = true)
     public List<LabReport> getReportsPendingAuthorization() {
-        return labReportRepository.findPendingAuthorization();
+        return resolved(labReportRepository.findPendingAuthorization());
     }
     
     /**
@@ -221,7 +237,7 @@ public class LabReportService {
      */
     @Transactional(readOnly = true)
     public List<LabReport> getReportsGeneratedBetween(LocalDateTime startDate, LocalDateTime endDate) {
-        return labReportRepository.findByGeneratedAtBetween(startDate, endDate);
+        return resolved(labReportRepository.findByGeneratedAtBetween(startDate, endDate));
     }
     
     /**
@@ -229,7 +245,7 @@ public class LabReportService {
      */
     @Transactional(readOnly = true)
     public List<LabReport> getReportsAuthorizedBy(String authorizedBy) {
-        return labReportRepository.findByAuthorizedBy(authorizedBy);
+        return resolved(labReportRepository.findByAuthorizedBy(authorizedBy));
     }
     
     /**
@@ -242,11 +258,14 @@ public class LabReportService {
         // Create amended report
         LabReport amendedReport = new LabReport(originalReport.getVisit(), ReportType.AMENDED);
         
-        // Copy original report data
-        amendedReport.setReportData(originalReport.getReportData());
+        // Amendments store only their changes against the original
+        amendedReport.setReportData(reportSnapshotService.amendmentOf(originalReport));
         amendedReport.setTemplateVersion(originalReport.getTemplateVersion());
         
-        return labReportRepository.save(amendedReport);
+        // The original is superseded; stop serving its cached renderings
+        reportPdfCache.invalidate(originalReportId);
+        
+        return resolved(labReportRepository.save(amendedReport));
     }
     
     /**
@@ -258,27 +277,24 @@ public class LabReportService {
         
         // Create supplementary report
         LabReport supplementaryReport = new LabReport(originalReport.getVisit(), ReportType.SUPPLEMENTARY);
-        supplementaryReport.setReportData(additionalData);
+        supplementaryReport.setReportData(reportSnapshotService.toStoredForm(supplementaryReport, additionalData));
         
-        return labReportRepository.save(supplementaryReport);
+        return resolved(labReportRepository.save(supplementaryReport));
     }
     
     /**
-     * Get report statistics
+     * Fill in the complete report data for the response while the transaction is still open
      */
-    @Transactional(readOnly = true)
-    public ReportStatistics getReportStatistics() {
-        long totalReports = labReportRepository.count();
-        long draftReports = labReportRepository.countByReportStatus(ReportStatus.DRAFT);
-        long generatedReports = labReportRepository.countByReportStatus(ReportStatus.GENERATED);
-        long authorizedReports = labReportRepository.countByReportStatus(ReportStatus.AUTHORIZED);
-        long sentReports = labReportRepository.countByReportStatus(ReportStatus.SENT);
-        long todayReports = labReportRepository.countReportsGeneratedToday();
-        
-        return new ReportStatistics(totalReports, draftReports, generatedReports, 
-                                  authorizedReports, sentReports, todayReports);
+    private LabReport resolved(LabReport report) {
+        reportSnapshotService.resolveAll(List.of(report));
+        return report;
     }
-    
+
+    private List<LabReport> resolved(List<LabReport> reports) {
+        reportSnapshotService.resolveAll(reports);
+        return reports;
+    }
+
     /**
      * Validate report data for NABL compliance
      */
@@ -299,34 +315,4 @@ public class LabReportService {
         // Additional NABL compliance checks can be added here
         return true;
     }
-    
-    /**
-     * Inner class for report statistics
-     */
-    public static class ReportStatistics {
-        private final long totalReports;
-        private final long draftReports;
-        private final long generatedReports;
-        private final long authorizedReports;
-        private final long sentReports;
-        private final long todayReports;
-        
-        public ReportStatistics(long totalReports, long draftReports, long generatedReports,
-                              long authorizedReports, long sentReports, long todayReports) {
-            this.totalReports = totalReports;
-            this.draftReports = draftReports;
-            this.generatedReports = generatedReports;
-            this.authorizedReports = authorizedReports;
-            this.sentReports = sentReports;
-            this.todayReports = todayReports;
-        }
-        
-        // Getters
-        public long getTotalReports() { return totalReports; }
-        public long getDraftReports() { return draftReports; }
-        public long getGeneratedReports() { return generatedReports; }
-        public long getAuthorizedReports() { return authorizedReports; }
-        public long getSentReports() { return sentReports; }
-        public long getTodayReports() { return todayReports; }
-    }
 }
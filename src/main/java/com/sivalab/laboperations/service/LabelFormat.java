@@ -0,0 +1,35 @@
+package com.sivalab.laboperations.service;
+
+import java.util.Locale;
+
+/**
+ * Printer command languages for thermal labels
+ */
+public enum LabelFormat {
+    ZPL("zpl"),
+    EPL("epl");
+
+    private final String extension;
+
+    LabelFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Format from a request parameter such as "zpl" or "epl"
+     */
+    public static LabelFormat from(String value) {
+        if (value == null || value.isBlank()) {
+            return ZPL;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported label format: " + value);
+        }
+    }
+}
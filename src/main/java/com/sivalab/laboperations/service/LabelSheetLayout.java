@@ -0,0 +1,61 @@
+package com.sivalab.laboperations.service;
+
+import java.util.Locale;
+
+/**
+ * Page layouts for printed label sheets
+ * A4_GRID is 3 x 8 labels of 70 x 37 mm on A4 sheet labels; ROLL is one label per page at the
+ * configured tube label size (lab.labels.width-mm / height-mm), for roll printers driven as PDF printers.
+ */
+public enum LabelSheetLayout {
+    A4_GRID(210, 297, 3, 8),
+    ROLL(0, 0, 1, 1);
+
+    private final float pageWidthMm;
+    private final float pageHeightMm;
+    private final int columns;
+    private final int rows;
+
+    LabelSheetLayout(float pageWidthMm, float pageHeightMm, int columns, int rows) {
+        this.pageWidthMm = pageWidthMm;
+        this.pageHeightMm = pageHeightMm;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Page width in mm, 0 for the configured label size
+     */
+    public float getPageWidthMm() {
+        return pageWidthMm;
+    }
+
+    /**
+     * Page height in mm, 0 for the configured label size
+     */
+    public float getPageHeightMm() {
+        return pageHeightMm;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Layout from a request value such as "a4_grid" or "roll"
+     */
+    public static LabelSheetLayout from(String value) {
+        if (value == null || value.isBlank()) {
+            return A4_GRID;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported label sheet layout: " + value);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.sivalab.laboperations.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.repository.SampleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Printable label sheets for collection drives
+ * All samples are looked up with one IN query up front, so unknown sample numbers are refused before
+ * anything is written. Code128 patterns are then encoded on the BarcodeExecutor, a window ahead of the
+ * writer, and the labels are laid out in order as vector barcodes and text in one multi-page PDF
+ * (a PdfDocument is single-threaded, so only the encoding runs in parallel). When the barcode threads
+ * are saturated the request thread encodes instead. The standard Helvetica fonts only cover WinAnsiEncoding,
+ * so characters they cannot show (e.g. Telugu or Devanagari names) are printed as '?' and logged rather
+ * than silently left out.
+ */
+@Service
+public class LabelSheetService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LabelSheetService.class);
+
+    private static final float MM = 72f / 25.4f;
+    private static final float PADDING = 3 * MM;
+    private static final float MAX_FONT_SIZE = 10;
+    // in WinAnsiEncoding, so the standard Helvetica fonts can show it
+    private static final String ELLIPSIS = "\u2026";
+    private static final char UNSUPPORTED = '?';
+
+    private final SampleRepository sampleRepository;
+    private final BarcodeService barcodeService;
+    private final BarcodeExecutor barcodeExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MeterRegistry meterRegistry;
+    private final PageSize rollPageSize;
+    private final int maxBatch;
+
+    @Autowired
+    public LabelSheetService(SampleRepository sampleRepository,
+                             BarcodeService barcodeService,
+                             BarcodeExecutor barcodeExecutor,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${lab.labels.width-mm:50}") float labelWidthMm,
+                             @Value("${lab.labels.height-mm:25}") float labelHeightMm,
+                             @Value("${lab.labels.max-batch:500}") int maxBatch) {
+        this.sampleRepository = sampleRepository;
+        this.barcodeService = barcodeService;
+        this.barcodeExecutor = barcodeExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        this.rollPageSize = new PageSize(labelWidthMm * MM, labelHeightMm * MM);
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Label text for the samples in the order given (repeats print repeatedly)
+     */
+    public List<SheetLabel> loadLabels(List<String> sampleNumbers) {
+        if (sampleNumbers == null || sampleNumbers.isEmpty()) {
+            throw new IllegalArgumentException("No sample numbers given");
+        }
+        if (sampleNumbers.size() > maxBatch) {
+            throw new IllegalArgumentException("At most " + maxBatch + " labels per sheet, got " + sampleNumbers.size());
+        }
+        Map<String, SheetLabel> bySampleNumber = readOnlyTransaction.execute(status -> {
+            Map<String, SheetLabel> labels = new HashMap<>();
+            for (Sample sample : sampleRepository.findWithVisitBySampleNumberIn(new LinkedHashSet<>(sampleNumbers))) {
+                labels.put(sample.getSampleNumber(), new SheetLabel(sample.getSampleNumber(),
+                        SampleLabelService.patientName(sample), SampleLabelService.detail(sample)));
+            }
+            return labels;
+        });
+
+        List<SheetLabel> labels = new ArrayList<>(sampleNumbers.size());
+        List<String> missing = new ArrayList<>();
+        for (String sampleNumber : sampleNumbers) {
+            SheetLabel label = bySampleNumber.get(sampleNumber);
+            if (label == null) {
+                missing.add(sampleNumber);
+            } else {
+                labels.add(label);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Samples not found: " + missing);
+        }
+        return labels;
+    }
+
+    /**
+     * Stream the labels as a PDF, filling each page left to right, top to bottom
+     * The stream is left open for the caller.
+     */
+    public void writeSheet(List<SheetLabel> labels, LabelSheetLayout layout, OutputStream out) throws IOException {
+        Timer.Sample timer = Timer.start(meterRegistry);
+        PageSize pageSize = layout == LabelSheetLayout.ROLL ? rollPageSize
+                : new PageSize(layout.getPageWidthMm() * MM, layout.getPageHeightMm() * MM);
+        float cellWidth = pageSize.getWidth() / layout.getColumns();
+        float cellHeight = pageSize.getHeight() / layout.getRows();
+        int perPage = layout.getColumns() * layout.getRows();
+
+        PdfWriter writer = new PdfWriter(out);
+        writer.setCloseStream(false);
+        PdfDocument pdf = new PdfDocument(writer);
+        int window = barcodeExecutor.getPoolSize() * 2;
+        Deque<Future<boolean[]>> pending = new ArrayDeque<>(window);
+        Iterator<SheetLabel> next = labels.iterator();
+        try {
+            PdfFont regular = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            PdfFont bold = PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD);
+            PdfCanvas canvas = null;
+            int index = 0;
+            for (SheetLabel label : labels) {
+                while (pending.size() < window && next.hasNext()) {
+                    pending.add(encode(next.next().getSampleNumber()));
+                }
+                boolean[] modules = await(pending.poll());
+
+                int slot = index++ % perPage;
+                if (slot == 0) {
+                    if (canvas != null) {
+                        canvas.release();
+                    }
+                    canvas = new PdfCanvas(pdf.addNewPage(pageSize));
+                }
+                float x = (slot % layout.getColumns()) * cellWidth;
+                float y = pageSize.getHeight() - (slot / layout.getColumns() + 1) * cellHeight;
+                drawLabel(canvas, pdf, label, modules, new Rectangle(x, y, cellWidth, cellHeight), regular, bold);
+            }
+            if (canvas != null) {
+                canvas.release();
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+            pdf.close();
+        }
+        timer.stop(meterRegistry.timer("lab.labels.sheet", "layout", layout.name()));
+    }
+
+    /**
+     * Bars in the upper half of the cell, then sample number, patient name and sample details
+     */
+    private static void drawLabel(PdfCanvas canvas, PdfDocument pdf, SheetLabel label, boolean[] modules,
+                                  Rectangle cell, PdfFont regular, PdfFont bold) {
+        float left = cell.getX() + PADDING;
+        float width = cell.getWidth() - 2 * PADDING;
+        float top = cell.getTop() - PADDING;
+        float barHeight = (cell.getHeight() - 2 * PADDING) / 2;
+
+        int totalModules = modules.length + 2 * BarcodeService.LINEAR_QUIET_ZONE_MODULES;
+        PdfFormXObject bars = BarcodeVectorWriter.toFormXObject(modules, BarcodeService.LINEAR_QUIET_ZONE_MODULES,
+                totalModules * barHeight / width, pdf);
+        canvas.addXObjectFittedIntoRectangle(bars, new Rectangle(left, top - barHeight, width, barHeight));
+
+        // three lines share the lower half
+        float numberSize = Math.min(MAX_FONT_SIZE, barHeight / 3.5f);
+        float textSize = numberSize * 0.85f;
+        String sampleNumber = printable(bold, label.getSampleNumber());
+        String patientName = printable(regular, label.getPatientName());
+        String detail = printable(regular, label.getDetail());
+        if (!sampleNumber.equals(label.getSampleNumber()) || !patientName.equals(label.getPatientName())
+                || !detail.equals(label.getDetail())) {
+            logger.warn("Label of sample {} has characters the label font cannot show; printed as '{}'",
+                    label.getSampleNumber(), UNSUPPORTED);
+        }
+        float baseline = top - barHeight - numberSize * 1.1f;
+        text(canvas, bold, numberSize, left, baseline, width, sampleNumber);
+        baseline -= textSize * 1.2f;
+        text(canvas, regular, textSize, left, baseline, width, patientName);
+        baseline -= textSize * 1.2f;
+        text(canvas, regular, textSize, left, baseline, width, detail);
+    }
+
+    /**
+     * The text with every character the font has no glyph for replaced by UNSUPPORTED
+     */
+    private static String printable(PdfFont font, String text) {
+        StringBuilder printable = new StringBuilder(text.length());
+        text.codePoints().forEach(codePoint -> {
+            if (font.containsGlyph(codePoint)) {
+                printable.appendCodePoint(codePoint);
+            } else {
+                printable.append(UNSUPPORTED);
+            }
+        });
+        return printable.toString();
+    }
+
+    /**
+     * Show the text, cut to the longest prefix that fits with an ellipsis appended
+     * The prefix shrinks by one character per step and never below one, so the loop always ends.
+     */
+    private static void text(PdfCanvas canvas, PdfFont font, float size, float x, float y, float maxWidth, String text) {
+        String kept = text;
+        String fitted = text;
+        while (kept.length() > 1 && font.getWidth(fitted, size) > maxWidth) {
+            kept = kept.substring(0, kept.length() - 1);
+            fitted = kept + ELLIPSIS;
+        }
+        canvas.beginText().setFontAndSize(font, size).moveText(x, y).showText(fitted).endText();
+    }
+
+    private Future<boolean[]> encode(String sampleNumber) {
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> barcodeService.encodeLinearModules(BarcodeFormat.CODE_128, sampleNumber), barcodeExecutor.executor());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(barcodeService.encodeLinearModules(BarcodeFormat.CODE_128, sampleNumber));
+        }
+    }
+
+    private static boolean[] await(Future<boolean[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Label sheet interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Label barcode encoding failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * What one label shows, detached from the persistence context
+     */
+    public static class SheetLabel {
+        private final String sampleNumber;
+        private final String patientName;
+        private final String detail;
+
+        public SheetLabel(String sampleNumber, String patientName, String detail) {
+            this.sampleNumber = sampleNumber;
+            this.patientName = patientName;
+            this.detail = detail;
+        }
+
+        public String getSampleNumber() { return sampleNumber; }
+        public String getPatientName() { return patientName; }
+        public String getDetail() { return detail; }
+    }
+}
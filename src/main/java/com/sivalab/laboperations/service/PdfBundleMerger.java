@@ -0,0 +1,142 @@
+package com.sivalab.laboperations.service;
+
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfStream;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Appends the pages of report PDFs to one bundle document, writing shared resources once
+ * Every report carries its own copy of the letterhead XObjects and the standard fonts. Page XObjects
+ * and fonts are fingerprinted by content, so identical ones from later reports point at the first
+ * copy instead of being copied again. Only the fingerprints and references are kept; each report's
+ * pages and copied objects are flushed as soon as it is appended, so memory does not grow with the
+ * bundle (unlike iText's smart mode, which keeps every object it has written).
+ * Page content and resources are copied; annotations and outlines are not (reports have none).
+ */
+public class PdfBundleMerger {
+
+    private static final int MAX_DEPTH = 32;
+
+    private final PdfDocument bundle;
+    private final Map<String, PdfIndirectReference> sharedResources = new HashMap<>();
+    private long unshareable;
+
+    public PdfBundleMerger(PdfDocument bundle) {
+        this.bundle = bundle;
+    }
+
+    /**
+     * Copy all pages of the source to the end of the bundle and flush them
+     */
+    public void append(PdfDocument source) {
+        for (int i = 1; i <= source.getNumberOfPages(); i++) {
+            PdfPage page = source.getPage(i);
+            PdfPage copy = bundle.addNewPage(new PageSize(page.getPageSize()));
+            copy.setRotation(page.getRotation());
+            copy.getFirstContentStream().setData(page.getContentBytes());
+            copy.getPdfObject().put(PdfName.Resources, copyResources(page.getResources().getPdfObject()));
+            copy.flush();
+        }
+        bundle.flushCopiedObjects(source);
+    }
+
+    public int getSharedResourceCount() {
+        return sharedResources.size();
+    }
+
+    private PdfDictionary copyResources(PdfDictionary resources) {
+        PdfDictionary copy = new PdfDictionary();
+        for (PdfName category : resources.keySet()) {
+            PdfObject value = resources.get(category, false);
+            PdfObject entries = resources.get(category);
+            if ((PdfName.XObject.equals(category) || PdfName.Font.equals(category)) && entries instanceof PdfDictionary) {
+                PdfDictionary shared = new PdfDictionary();
+                for (PdfName name : ((PdfDictionary) entries).keySet()) {
+                    shared.put(name, sharedCopy(((PdfDictionary) entries).get(name, false)));
+                }
+                copy.put(category, shared);
+            } else {
+                copy.put(category, value.copyTo(bundle, false));
+            }
+        }
+        return copy;
+    }
+
+    private PdfObject sharedCopy(PdfObject resource) {
+        if (!resource.isIndirectReference()) {
+            return resource.copyTo(bundle, false);
+        }
+        PdfObject object = ((PdfIndirectReference) resource).getRefersTo();
+        String fingerprint = fingerprint(object);
+        PdfIndirectReference copied = sharedResources.get(fingerprint);
+        if (copied == null) {
+            copied = object.copyTo(bundle, false).getIndirectReference();
+            sharedResources.put(fingerprint, copied);
+        }
+        return copied;
+    }
+
+    /**
+     * SHA-256 of the object's content, following references (other documents' object numbers do not count)
+     */
+    private String fingerprint(PdfObject object) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, object, 0);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void update(MessageDigest digest, PdfObject object, int depth) {
+        if (object != null && object.isIndirectReference()) {
+            object = ((PdfIndirectReference) object).getRefersTo();
+        }
+        if (depth > MAX_DEPTH) {
+            // too deep to compare (or cyclic): never matches another resource
+            text(digest, "unshareable " + unshareable++);
+        } else if (object == null) {
+            text(digest, "null");
+        } else if (object.isDictionary() || object.isStream()) {
+            PdfDictionary dictionary = (PdfDictionary) object;
+            text(digest, "<<");
+            for (PdfName key : new TreeSet<>(dictionary.keySet())) {
+                text(digest, key.toString());
+                update(digest, dictionary.get(key, false), depth + 1);
+            }
+            text(digest, ">>");
+            if (object.isStream()) {
+                digest.update(((PdfStream) object).getBytes(false));
+            }
+        } else if (object.isArray()) {
+            PdfArray array = (PdfArray) object;
+            text(digest, "[");
+            for (int i = 0; i < array.size(); i++) {
+                update(digest, array.get(i, false), depth + 1);
+            }
+            text(digest, "]");
+        } else {
+            text(digest, object.getClass().getSimpleName() + ":" + object);
+        }
+    }
+
+    private static void text(MessageDigest digest, String text) {
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,200 @@
+package com.sivalab.laboperations.service;
+
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.Style;
+import com.itextpdf.layout.element.AreaBreak;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.properties.TextAlignment;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Resources for PdfReportService renders
+ * The static letterhead and NABL compliance line are laid out once into a small template PDF; each report
+ * copies them in as form XObjects instead of laying the paragraphs out again. Fonts and paragraph styles
+ * cannot be shared between renders: iText fonts belong to one document and styles are mutable. They are
+ * created once per document instead (DocumentResources), rather than once per paragraph.
+ * The template is read through a pool of read-only source documents, one borrower at a time.
+ */
+@Component
+public class PdfReportResources {
+
+    public static final String LAB_NAME = "SLN CITY LABORATORY";
+    public static final String LAB_ADDRESS = "NABL Accredited Laboratory\nAddress: Lab Address Here\nPhone: +91-XXXXXXXXXX";
+    public static final String NABL_COMPLIANCE = "This report is generated in compliance with NABL 112 requirements.";
+
+    // Letterhead fits the 70% lab-info cell of the A4 header table
+    private static final float LETTERHEAD_WIDTH = 350;
+    private static final float LETTERHEAD_HEIGHT = 88;
+    private static final float FOOTER_WIDTH = 520;
+    private static final float FOOTER_HEIGHT = 14;
+    private static final int POOL_SIZE = 8;
+
+    private final byte[] template;
+    private final BlockingQueue<PdfDocument> sources = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    public PdfReportResources() {
+        this.template = renderTemplate();
+    }
+
+    /**
+     * Copy the letterhead and compliance line into the target document, with that document's styles
+     */
+    public DocumentResources forDocument(PdfDocument target) {
+        PdfDocument source = sources.poll();
+        if (source == null) {
+            source = new PdfDocument(newReader());
+        }
+        try {
+            return new DocumentResources(source.getPage(1).copyAsFormXObject(target),
+                    source.getPage(2).copyAsFormXObject(target));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!sources.offer(source)) {
+                source.close();
+            }
+        }
+    }
+
+    private PdfReader newReader() {
+        try {
+            return new PdfReader(new ByteArrayInputStream(template));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Page 1 is the letterhead, page 2 the compliance line, each page sized to its content
+     */
+    private static byte[] renderTemplate() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PdfDocument pdfDoc = new PdfDocument(new PdfWriter(baos));
+        Document document = new Document(pdfDoc, new PageSize(LETTERHEAD_WIDTH, LETTERHEAD_HEIGHT));
+        document.setMargins(0, 0, 0, 0);
+
+        document.add(new Paragraph(LAB_NAME)
+                .setFontSize(18)
+                .setBold()
+                .setMarginTop(0));
+        document.add(new Paragraph(LAB_ADDRESS)
+                .setFontSize(10));
+
+        document.add(new AreaBreak(new PageSize(FOOTER_WIDTH, FOOTER_HEIGHT)));
+        document.add(new Paragraph(NABL_COMPLIANCE)
+                .setItalic()
+                .setFontSize(8)
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMargin(0));
+        int pages = pdfDoc.getNumberOfPages();
+        document.close();
+        if (pages != 2) {
+            throw new IllegalStateException("Letterhead template overflowed its page (" + pages + " pages)");
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Template XObjects copied into one report document, and that document's fonts and styles
+     * Not thread-safe, like the document it belongs to. Fonts are created on first use.
+     */
+    public static final class DocumentResources {
+        private final PdfFormXObject header;
+        private final PdfFormXObject complianceLine;
+        private PdfFont boldFont;
+        private PdfFont italicFont;
+        private Style sectionHeading;
+        private Style testHeading;
+        private Style label;
+        private Style italic;
+        private Style note;
+        private Style footerNote;
+
+        private DocumentResources(PdfFormXObject header, PdfFormXObject complianceLine) {
+            this.header = header;
+            this.complianceLine = complianceLine;
+        }
+
+        public PdfFormXObject getHeader() { return header; }
+        public PdfFormXObject getComplianceLine() { return complianceLine; }
+
+        public Style sectionHeading() {
+            if (sectionHeading == null) {
+                sectionHeading = new Style().setFont(boldFont()).setFontSize(14);
+            }
+            return sectionHeading;
+        }
+
+        public Style testHeading() {
+            if (testHeading == null) {
+                testHeading = new Style().setFont(boldFont()).setFontSize(12);
+            }
+            return testHeading;
+        }
+
+        public Style label() {
+            if (label == null) {
+                label = new Style().setFont(boldFont());
+            }
+            return label;
+        }
+
+        public Style italic() {
+            if (italic == null) {
+                italic = new Style().setFont(italicFont());
+            }
+            return italic;
+        }
+
+        public Style note() {
+            if (note == null) {
+                note = new Style().setFont(italicFont()).setFontSize(10);
+            }
+            return note;
+        }
+
+        public Style footerNote() {
+            if (footerNote == null) {
+                footerNote = new Style().setFont(italicFont()).setFontSize(8).setTextAlignment(TextAlignment.CENTER);
+            }
+            return footerNote;
+        }
+
+        private PdfFont boldFont() {
+            if (boldFont == null) {
+                boldFont = createFont(StandardFonts.HELVETICA_BOLD);
+            }
+            return boldFont;
+        }
+
+        private PdfFont italicFont() {
+            if (italicFont == null) {
+                italicFont = createFont(StandardFonts.HELVETICA_OBLIQUE);
+            }
+            return italicFont;
+        }
+
+        private static PdfFont createFont(String name) {
+            try {
+                return PdfFontFactory.createFont(name);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
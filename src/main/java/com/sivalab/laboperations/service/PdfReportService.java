@@ -1,9 +1,9 @@
 package com.sivalab.laboperations.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
-import com.itextpdf.html2pdf.HtmlConverter;
-import com.itextpdf.io.image.ImageDataFactory;
+import com.google.zxing.common.BitMatrix;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.layout.Document;
@@ -21,22 +21,36 @@ import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Service for generating NABL-compliant PDF reports
+ * Header QR and ULR barcodes are drawn as vector paths rather than embedded PNGs.
  */
 @Service
 public class PdfReportService {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+    // header barcode sizes in points
+    private static final float QR_WIDTH = 120;
+    private static final float ULR_BARCODE_WIDTH = 100;
+    private static final float ULR_BARCODE_HEIGHT = 14;
 
     private final BarcodeService barcodeService;
+    private final PdfReportResources resources;
+    private final ReportTemplateService reportTemplateService;
+    private final ReportSnapshotService reportSnapshotService;
 
     @Autowired
-    public PdfReportService(BarcodeService barcodeService) {
+    public PdfReportService(BarcodeService barcodeService, PdfReportResources resources,
+                            ReportTemplateService reportTemplateService,
+                            ReportSnapshotService reportSnapshotService) {
         this.barcodeService = barcodeService;
+        this.resources = resources;
+        this.reportTemplateService = reportTemplateService;
+        this.reportSnapshotService = reportSnapshotService;
     }
     
     /**
@@ -44,76 +58,76 @@ public class PdfReportService {
      */
     public byte[] generatePdfReport(LabReport labReport) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        PdfWriter writer = new PdfWriter(baos);
+        writePdfReport(labReport, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Write the PDF report to the given stream as it is laid out
+     * The stream is flushed but left open for the caller.
+     */
+    public void writePdfReport(LabReport labReport, OutputStream out) throws IOException {
+        PdfWriter writer = new PdfWriter(out);
+        writer.setCloseStream(false);
         PdfDocument pdfDoc = new PdfDocument(writer);
         Document document = new Document(pdfDoc);
+        PdfReportResources.DocumentResources docResources = resources.forDocument(pdfDoc);
         
         try {
             // Add header
-            addReportHeader(document, labReport);
+            addReportHeader(document, labReport, docResources);
             
             // Add patient information
-            addPatientInformation(document, labReport.getVisit());
+            addPatientInformation(document, labReport.getVisit(), docResources);
             
             // Add test results
-            addTestResults(document, labReport);
+            addTestResults(document, reportSnapshotService.resolve(labReport), docResources);
             
             // Add footer
-            addReportFooter(document, labReport);
+            addReportFooter(document, labReport, docResources);
             
         } finally {
             document.close();
         }
-        
-        return baos.toByteArray();
     }
     
     /**
      * Generate PDF using HTML template
      */
     public byte[] generatePdfFromHtml(LabReport labReport) throws IOException {
-        String htmlContent = generateHtmlReport(labReport);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        HtmlConverter.convertToPdf(htmlContent, baos);
+        writePdfFromHtml(labReport, baos);
         return baos.toByteArray();
     }
+
+    /**
+     * Write the HTML-template PDF to the given stream, leaving it open for the caller
+     */
+    public void writePdfFromHtml(LabReport labReport, OutputStream out) throws IOException {
+        reportTemplateService.writeReportPdf(labReport, out);
+    }
     
     /**
      * Add report header with lab information, ULR number, and barcodes
      */
-    private void addReportHeader(Document document, LabReport labReport) {
+    private void addReportHeader(Document document, LabReport labReport, PdfReportResources.DocumentResources docResources) {
         try {
             // Create header table with lab info and QR code
             Table mainHeaderTable = new Table(UnitValue.createPercentArray(new float[]{70, 30}));
             mainHeaderTable.setWidth(UnitValue.createPercentValue(100));
 
-            // Left side - Lab information
+            // Left side - Lab information (pre-rendered letterhead)
             Cell labInfoCell = new Cell();
-            Paragraph labName = new Paragraph("SLN CITY LABORATORY")
-                    .setFontSize(18)
-                    .setBold();
-            labInfoCell.add(labName);
-
-            Paragraph labAddress = new Paragraph("NABL Accredited Laboratory\nAddress: Lab Address Here\nPhone: +91-XXXXXXXXXX")
-                    .setFontSize(10);
-            labInfoCell.add(labAddress);
+            labInfoCell.add(new Image(docResources.getHeader()));
 
             mainHeaderTable.addCell(labInfoCell);
 
             // Right side - QR Code
             Cell qrCell = new Cell();
             try {
-                Visit visit = labReport.getVisit();
-                String patientName = visit.getPatientDetails().get("name").asText();
-                String patientId = visit.getPatientDetails().get("patientId").asText();
-
-                String qrData = barcodeService.generateReportQRData(
-                    labReport.getUlrNumber(), patientName, patientId,
-                    labReport.getReportStatus().toString(), "/reports/view/" + labReport.getUlrNumber()
-                );
-
-                byte[] qrCodeBytes = barcodeService.generateQRCode(qrData, 120);
-                Image qrImage = new Image(ImageDataFactory.create(qrCodeBytes));
+                BitMatrix qrModules = barcodeService.qrModules(barcodeService.generateReportQRData(labReport));
+                Image qrImage = new Image(BarcodeVectorWriter.toFormXObject(qrModules, document.getPdfDocument()));
+                qrImage.setWidth(QR_WIDTH);
                 qrImage.setHorizontalAlignment(HorizontalAlignment.CENTER);
                 qrCell.add(qrImage);
 
@@ -129,15 +143,20 @@ public class PdfReportService {
             Table infoTable = new Table(UnitValue.createPercentArray(new float[]{40, 40, 20}));
             infoTable.setWidth(UnitValue.createPercentValue(100));
 
-            infoTable.addCell(new Cell().add(new Paragraph("ULR Number: " + labReport.getUlrNumber()).setBold()));
-            infoTable.addCell(new Cell().add(new Paragraph("Report Type: " + labReport.getReportType()).setBold()));
+            infoTable.addCell(new Cell().add(new Paragraph("ULR Number: " + labReport.getUlrNumber()).addStyle(docResources.label())));
+            infoTable.addCell(new Cell().add(new Paragraph("Report Type: " + labReport.getReportType()).addStyle(docResources.label())));
 
             // ULR Barcode
             Cell barcodeCell = new Cell();
             try {
-                byte[] barcodeBytes = barcodeService.generateULRBarcode(labReport.getUlrNumber());
-                Image barcodeImage = new Image(ImageDataFactory.create(barcodeBytes));
-                barcodeImage.setWidth(100);
+                // bars only; the ULR itself is printed in the first cell
+                boolean[] bars = barcodeService.encodeLinearModules(BarcodeFormat.CODE_128,
+                        barcodeService.ulrBarcodeData(labReport.getUlrNumber()));
+                float barHeight = (bars.length + 2 * BarcodeService.LINEAR_QUIET_ZONE_MODULES)
+                        * ULR_BARCODE_HEIGHT / ULR_BARCODE_WIDTH;
+                Image barcodeImage = new Image(BarcodeVectorWriter.toFormXObject(bars,
+                        BarcodeService.LINEAR_QUIET_ZONE_MODULES, barHeight, document.getPdfDocument()));
+                barcodeImage.setWidth(ULR_BARCODE_WIDTH);
                 barcodeImage.setHorizontalAlignment(HorizontalAlignment.CENTER);
                 barcodeCell.add(barcodeImage);
             } catch (Exception e) {
@@ -164,30 +183,21 @@ public class PdfReportService {
 
         } catch (Exception e) {
             // Fallback to simple header if barcode generation fails
-            addSimpleHeader(document, labReport);
+            addSimpleHeader(document, labReport, docResources);
         }
     }
 
     /**
      * Fallback simple header without barcodes
      */
-    private void addSimpleHeader(Document document, LabReport labReport) {
-        Paragraph labName = new Paragraph("SLN CITY LABORATORY")
-                .setTextAlignment(TextAlignment.CENTER)
-                .setFontSize(18)
-                .setBold();
-        document.add(labName);
-
-        Paragraph labAddress = new Paragraph("NABL Accredited Laboratory\nAddress: Lab Address Here\nPhone: +91-XXXXXXXXXX")
-                .setTextAlignment(TextAlignment.CENTER)
-                .setFontSize(10);
-        document.add(labAddress);
+    private void addSimpleHeader(Document document, LabReport labReport, PdfReportResources.DocumentResources docResources) {
+        document.add(new Image(docResources.getHeader()).setHorizontalAlignment(HorizontalAlignment.CENTER));
 
         Table headerTable = new Table(UnitValue.createPercentArray(new float[]{50, 50}));
         headerTable.setWidth(UnitValue.createPercentValue(100));
 
-        headerTable.addCell(new Cell().add(new Paragraph("ULR Number: " + labReport.getUlrNumber()).setBold()));
-        headerTable.addCell(new Cell().add(new Paragraph("Report Type: " + labReport.getReportType()).setBold()));
+        headerTable.addCell(new Cell().add(new Paragraph("ULR Number: " + labReport.getUlrNumber()).addStyle(docResources.label())));
+        headerTable.addCell(new Cell().add(new Paragraph("Report Type: " + labReport.getReportType()).addStyle(docResources.label())));
 
         if (labReport.getGeneratedAt() != null) {
             headerTable.addCell(new Cell().add(new Paragraph("Report Date: " + labReport.getGeneratedAt().format(DATE_FORMATTER))));
@@ -203,10 +213,10 @@ public class PdfReportService {
     /**
      * Add patient information section
      */
-    private void addPatientInformation(Document document, Visit visit) throws IOException {
+    private void addPatientInformation(Document document, Visit visit,
+                                       PdfReportResources.DocumentResources docResources) throws IOException {
         Paragraph patientHeader = new Paragraph("PATIENT INFORMATION")
-                .setBold()
-                .setFontSize(14);
+                .addStyle(docResources.sectionHeading());
         document.add(patientHeader);
         
         // Get patient details from JSON
@@ -215,12 +225,12 @@ public class PdfReportService {
         Table patientTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}));
         patientTable.setWidth(UnitValue.createPercentValue(100));
         
-        addPatientField(patientTable, "Name", patientDetails.get("name"));
-        addPatientField(patientTable, "Age", patientDetails.get("age"));
-        addPatientField(patientTable, "Gender", patientDetails.get("gender"));
-        addPatientField(patientTable, "Phone", patientDetails.get("phone"));
-        addPatientField(patientTable, "Address", patientDetails.get("address"));
-        addPatientField(patientTable, "Visit Date", visit.getCreatedAt().format(DATE_FORMATTER));
+        addPatientField(patientTable, docResources, "Name", patientDetails.get("name"));
+        addPatientField(patientTable, docResources, "Age", patientDetails.get("age"));
+        addPatientField(patientTable, docResources, "Gender", patientDetails.get("gender"));
+        addPatientField(patientTable, docResources, "Phone", patientDetails.get("phone"));
+        addPatientField(patientTable, docResources, "Address", patientDetails.get("address"));
+        addPatientField(patientTable, docResources, "Visit Date", visit.getCreatedAt().format(DATE_FORMATTER));
         
         document.add(patientTable);
         document.add(new Paragraph("\n"));
@@ -229,14 +239,13 @@ public class PdfReportService {
     /**
      * Add test results section
      */
-    private void addTestResults(Document document, LabReport labReport) throws IOException {
+    private void addTestResults(Document document, JsonNode reportData,
+                                PdfReportResources.DocumentResources docResources) throws IOException {
         Paragraph testsHeader = new Paragraph("LABORATORY RESULTS")
-                .setBold()
-                .setFontSize(14);
+                .addStyle(docResources.sectionHeading());
         document.add(testsHeader);
 
-        if (labReport.getReportData() != null) {
-            JsonNode reportData = labReport.getReportData();
+        if (reportData != null) {
 
             // Add test results
             if (reportData.has("tests")) {
@@ -245,8 +254,7 @@ public class PdfReportService {
                     // Add test name header
                     String testName = getJsonValue(test, "testName");
                     Paragraph testHeader = new Paragraph(testName)
-                            .setBold()
-                            .setFontSize(12);
+                            .addStyle(docResources.testHeading());
                     document.add(testHeader);
 
                     // Create results table for this test
@@ -254,10 +262,10 @@ public class PdfReportService {
                     resultsTable.setWidth(UnitValue.createPercentValue(100));
 
                     // Add table headers
-                    resultsTable.addHeaderCell(new Cell().add(new Paragraph("Parameter").setBold()));
-                    resultsTable.addHeaderCell(new Cell().add(new Paragraph("Result").setBold()));
-                    resultsTable.addHeaderCell(new Cell().add(new Paragraph("Unit").setBold()));
-                    resultsTable.addHeaderCell(new Cell().add(new Paragraph("Status").setBold()));
+                    resultsTable.addHeaderCell(new Cell().add(new Paragraph("Parameter").addStyle(docResources.label())));
+                    resultsTable.addHeaderCell(new Cell().add(new Paragraph("Result").addStyle(docResources.label())));
+                    resultsTable.addHeaderCell(new Cell().add(new Paragraph("Unit").addStyle(docResources.label())));
+                    resultsTable.addHeaderCell(new Cell().add(new Paragraph("Status").addStyle(docResources.label())));
 
                     // Add test results if available
                     if (test.has("results")) {
@@ -278,14 +286,13 @@ public class PdfReportService {
                         if (results.has("conclusion")) {
                             document.add(resultsTable);
                             Paragraph conclusion = new Paragraph("Conclusion: " + getJsonValue(results, "conclusion"))
-                                    .setItalic()
-                                    .setFontSize(10);
+                                    .addStyle(docResources.note());
                             document.add(conclusion);
                         } else {
                             document.add(resultsTable);
                         }
                     } else {
-                        resultsTable.addCell(new Cell().add(new Paragraph("No results available").setItalic()));
+                        resultsTable.addCell(new Cell().add(new Paragraph("No results available").addStyle(docResources.italic())));
                         resultsTable.addCell(new Cell().add(new Paragraph("-")));
                         resultsTable.addCell(new Cell().add(new Paragraph("-")));
                         resultsTable.addCell(new Cell().add(new Paragraph("-")));
@@ -295,10 +302,10 @@ public class PdfReportService {
                     document.add(new Paragraph("\n"));
                 }
             } else {
-                document.add(new Paragraph("No test results available.").setItalic());
+                document.add(new Paragraph("No test results available.").addStyle(docResources.italic()));
             }
         } else {
-            document.add(new Paragraph("No test results available.").setItalic());
+            document.add(new Paragraph("No test results available.").addStyle(docResources.italic()));
         }
 
         document.add(new Paragraph("\n"));
@@ -307,12 +314,11 @@ public class PdfReportService {
     /**
      * Add report footer with authorization and NABL compliance info
      */
-    private void addReportFooter(Document document, LabReport labReport) {
+    private void addReportFooter(Document document, LabReport labReport, PdfReportResources.DocumentResources docResources) {
         // Authorization section
         if (labReport.getAuthorizedBy() != null && labReport.getAuthorizedAt() != null) {
             Paragraph authSection = new Paragraph("AUTHORIZATION")
-                    .setBold()
-                    .setFontSize(12);
+                    .addStyle(docResources.testHeading());
             document.add(authSection);
             
             Table authTable = new Table(UnitValue.createPercentArray(new float[]{50, 50}));
@@ -326,28 +332,27 @@ public class PdfReportService {
         
         // NABL compliance footer
         document.add(new Paragraph("\n"));
-        Paragraph nablFooter = new Paragraph("This report is generated in compliance with NABL 112 requirements.\n" +
-                "ULR Number: " + labReport.getUlrNumber() + " ensures unique identification.\n" +
+        document.add(new Image(docResources.getComplianceLine()).setHorizontalAlignment(HorizontalAlignment.CENTER));
+        Paragraph nablFooter = new Paragraph("ULR Number: " + labReport.getUlrNumber() + " ensures unique identification.\n" +
                 "Report Status: " + labReport.getReportStatus())
-                .setFontSize(8)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setItalic();
+                .addStyle(docResources.footerNote())
+                .setMarginTop(0);
         document.add(nablFooter);
     }
     
     /**
      * Helper method to add patient fields to table
      */
-    private void addPatientField(Table table, String label, JsonNode value) {
-        table.addCell(new Cell().add(new Paragraph(label + ":").setBold()));
+    private void addPatientField(Table table, PdfReportResources.DocumentResources docResources, String label, JsonNode value) {
+        table.addCell(new Cell().add(new Paragraph(label + ":").addStyle(docResources.label())));
         table.addCell(new Cell().add(new Paragraph(value != null ? value.asText() : "N/A")));
     }
     
     /**
      * Helper method to add patient fields to table with string value
      */
-    private void addPatientField(Table table, String label, String value) {
-        table.addCell(new Cell().add(new Paragraph(label + ":").setBold()));
+    private void addPatientField(Table table, PdfReportResources.DocumentResources docResources, String label, String value) {
+        table.addCell(new Cell().add(new Paragraph(label + ":").addStyle(docResources.label())));
         table.addCell(new Cell().add(new Paragraph(value != null ? value : "N/A")));
     }
     
@@ -360,85 +365,10 @@ public class PdfReportService {
     }
     
     /**
-     * Generate HTML template for PDF conversion
+     * Generate report HTML (the same compiled template is used for preview and PDF conversion)
      */
-    public String generateHtmlReport(LabReport labReport) throws IOException {
-        StringBuilder html = new StringBuilder();
-        
-        html.append("<!DOCTYPE html>");
-        html.append("<html><head>");
-        html.append("<meta charset='UTF-8'>");
-        html.append("<style>");
-        html.append("body { font-family: Arial, sans-serif; margin: 20px; }");
-        html.append(".header { text-align: center; border-bottom: 2px solid #000; padding-bottom: 10px; }");
-        html.append(".patient-info { margin: 20px 0; }");
-        html.append(".results-table { width: 100%; border-collapse: collapse; margin: 20px 0; }");
-        html.append(".results-table th, .results-table td { border: 1px solid #000; padding: 8px; text-align: left; }");
-        html.append(".results-table th { background-color: #f2f2f2; }");
-        html.append(".footer { margin-top: 30px; text-align: center; font-size: 10px; }");
-        html.append("</style>");
-        html.append("</head><body>");
-        
-        // Header
-        html.append("<div class='header'>");
-        html.append("<h1>SLN CITY LABORATORY</h1>");
-        html.append("<p>NABL Accredited Laboratory<br>Address: Lab Address Here<br>Phone: +91-XXXXXXXXXX</p>");
-        html.append("<p><strong>ULR Number: ").append(labReport.getUlrNumber()).append("</strong></p>");
-        html.append("</div>");
-        
-        // Patient Information
-        html.append("<div class='patient-info'>");
-        html.append("<h2>PATIENT INFORMATION</h2>");
-        
-        JsonNode patientDetails = labReport.getVisit().getPatientDetails();
-        html.append("<table>");
-        html.append("<tr><td><strong>Name:</strong></td><td>").append(getJsonValue(patientDetails, "name")).append("</td></tr>");
-        html.append("<tr><td><strong>Age:</strong></td><td>").append(getJsonValue(patientDetails, "age")).append("</td></tr>");
-        html.append("<tr><td><strong>Gender:</strong></td><td>").append(getJsonValue(patientDetails, "gender")).append("</td></tr>");
-        html.append("<tr><td><strong>Phone:</strong></td><td>").append(getJsonValue(patientDetails, "phone")).append("</td></tr>");
-        html.append("</table>");
-        html.append("</div>");
-        
-        // Test Results
-        html.append("<h2>LABORATORY RESULTS</h2>");
-        if (labReport.getReportData() != null) {
-            JsonNode reportData = labReport.getReportData();
-            html.append("<table class='results-table'>");
-            html.append("<thead><tr><th>Test Parameter</th><th>Result</th><th>Unit</th><th>Reference Range</th></tr></thead>");
-            html.append("<tbody>");
-            
-            if (reportData.has("tests")) {
-                JsonNode tests = reportData.get("tests");
-                for (JsonNode test : tests) {
-                    if (test.has("parameters")) {
-                        JsonNode parameters = test.get("parameters");
-                        for (JsonNode param : parameters) {
-                            html.append("<tr>");
-                            html.append("<td>").append(getJsonValue(param, "name")).append("</td>");
-                            html.append("<td>").append(getJsonValue(param, "value")).append("</td>");
-                            html.append("<td>").append(getJsonValue(param, "unit")).append("</td>");
-                            html.append("<td>").append(getJsonValue(param, "range")).append("</td>");
-                            html.append("</tr>");
-                        }
-                    }
-                }
-            }
-            
-            html.append("</tbody></table>");
-        }
-        
-        // Footer
-        html.append("<div class='footer'>");
-        html.append("<p>This report is generated in compliance with NABL 112 requirements.</p>");
-        html.append("<p>ULR Number: ").append(labReport.getUlrNumber()).append(" ensures unique identification.</p>");
-        if (labReport.getAuthorizedBy() != null) {
-            html.append("<p>Authorized By: ").append(labReport.getAuthorizedBy()).append("</p>");
-        }
-        html.append("</div>");
-        
-        html.append("</body></html>");
-        
-        return html.toString();
+    public String generateHtmlReport(LabReport labReport) {
+        return reportTemplateService.renderReportHtml(labReport);
     }
     
 
@@ -0,0 +1,254 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Report bundle export for referring hospitals
+ * All reports generated in a date range (optionally for one referrer, taken from the visit's patient
+ * details) are streamed as one merged PDF or a ZIP of individual PDFs. Reports are rendered on a small
+ * shared pool, at most a window's worth ahead of the writer, and written in order; each PDF goes
+ * through the ReportPdfCache, so memory stays bounded by the window rather than the bundle size. Rendered
+ * entries are pinned until written, so cache evictions cannot pull a file out from under the writer.
+ * Merged PDFs are appended page by page with PdfBundleMerger, which writes the letterhead and fonts
+ * shared by the reports once.
+ */
+@Service
+public class ReportBundleService {
+
+    private static final String VARIANT = "itext";
+    // an entry evicted between rendering and pinning is rendered again, this many times at most
+    private static final int PIN_ATTEMPTS = 3;
+
+    public enum BundleFormat { PDF, ZIP }
+
+    private final LabReportRepository labReportRepository;
+    private final PdfReportService pdfReportService;
+    private final ReportPdfCache reportPdfCache;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor executor;
+    private final int window;
+    private final int maxReports;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public ReportBundleService(LabReportRepository labReportRepository,
+                               PdfReportService pdfReportService,
+                               ReportPdfCache reportPdfCache,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${lab.reports.bundle.parallelism:3}") int parallelism,
+                               @Value("${lab.reports.bundle.max-reports:500}") int maxReports) {
+        this.labReportRepository = labReportRepository;
+        this.pdfReportService = pdfReportService;
+        this.reportPdfCache = reportPdfCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        this.window = parallelism * 2;
+        this.maxReports = maxReports;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        // when every bundle thread is busy the requesting thread renders, which throttles the request
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 4), runnable -> {
+                    Thread thread = new Thread(runnable, "report-bundle-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * IDs of the reports generated between the dates (inclusive), optionally for one referrer
+     */
+    public List<Long> findBundleReportIds(LocalDate from, LocalDate to, String referrer) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Bundle range ends before it starts");
+        }
+        List<Long> reportIds = new ArrayList<>();
+        for (Object[] row : labReportRepository.findBundleCandidates(from.atStartOfDay(), to.plusDays(1).atStartOfDay())) {
+            if (referrer == null || referrer.equalsIgnoreCase(referrerOf((JsonNode) row[1]))) {
+                reportIds.add((Long) row[0]);
+            }
+        }
+        if (reportIds.size() > maxReports) {
+            throw new IllegalArgumentException("Bundle has " + reportIds.size() + " reports, limit is " + maxReports);
+        }
+        return reportIds;
+    }
+
+    /**
+     * Stream the reports, in order, as a merged PDF or a ZIP of PDFs
+     */
+    public void writeBundle(List<Long> reportIds, BundleFormat format, OutputStream out) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        if (format == BundleFormat.ZIP) {
+            writeZip(reportIds, out);
+        } else {
+            writeMergedPdf(reportIds, out);
+        }
+        sample.stop(meterRegistry.timer("lab.reports.bundle", "format", format.name()));
+    }
+
+    private void writeMergedPdf(List<Long> reportIds, OutputStream out) throws IOException {
+        PdfWriter writer = new PdfWriter(out);
+        writer.setCloseStream(false);
+        PdfDocument bundle = new PdfDocument(writer);
+        PdfBundleMerger merger = new PdfBundleMerger(bundle);
+        try {
+            renderInOrder(reportIds, rendered -> {
+                try (InputStream in = rendered.pdf.openStream();
+                     PdfDocument source = new PdfDocument(new PdfReader(in))) {
+                    merger.append(source);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            // closing an incomplete (possibly empty) bundle must not hide the failure
+            try {
+                bundle.close();
+            } catch (RuntimeException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        bundle.close();
+    }
+
+    private void writeZip(List<Long> reportIds, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        renderInOrder(reportIds, rendered -> {
+            zip.putNextEntry(new ZipEntry("report_" + rendered.ulrNumber.replace("/", "_") + ".pdf"));
+            rendered.pdf.writeTo(zip);
+            zip.closeEntry();
+        });
+        zip.finish();
+    }
+
+    /**
+     * Keep up to the window of reports rendering ahead of the writer, consuming them in list order
+     */
+    private void renderInOrder(List<Long> reportIds, RenderedConsumer consumer) throws IOException {
+        Deque<Future<RenderedReport>> pending = new ArrayDeque<>(window);
+        Iterator<Long> next = reportIds.iterator();
+        try {
+            while (next.hasNext() || !pending.isEmpty()) {
+                while (pending.size() < window && next.hasNext()) {
+                    Long reportId = next.next();
+                    pending.add(executor.submit(() -> render(reportId)));
+                }
+                RenderedReport rendered = await(pending.poll());
+                try {
+                    consumer.accept(rendered);
+                } finally {
+                    rendered.pdf.release();
+                }
+            }
+        } finally {
+            pending.forEach(ReportBundleService::discard);
+        }
+    }
+
+    /**
+     * Cancel a look-ahead rendering the writer will not consume, releasing its pin if it already finished
+     */
+    private static void discard(Future<RenderedReport> future) {
+        if (future.cancel(true) || future.isCancelled()) {
+            return;
+        }
+        try {
+            future.get().pdf.release();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // the bundle is already failing; this rendering's error adds nothing
+        }
+    }
+
+    private RenderedReport render(Long reportId) {
+        return readOnlyTransaction.execute(status -> {
+            LabReport report = labReportRepository.findById(reportId)
+                    .orElseThrow(() -> new RuntimeException("Report not found with ID: " + reportId));
+            String key = reportPdfCache.keyFor(report, VARIANT);
+            try {
+                // pinned, so an eviction while the PDF waits in the window cannot break the bundle mid-response
+                for (int attempt = 0; attempt < PIN_ATTEMPTS; attempt++) {
+                    ReportPdfCache.CachedPdf pdf = reportPdfCache.getOrRender(reportId, key,
+                            out -> pdfReportService.writePdfReport(report, out)).pin();
+                    if (pdf != null) {
+                        return new RenderedReport(report.getUlrNumber(), pdf);
+                    }
+                }
+                throw new IOException("Rendered PDF for report " + reportId + " was evicted before it could be pinned");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static RenderedReport await(Future<RenderedReport> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Report bundle interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Report bundle rendering failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static String referrerOf(JsonNode patientDetails) {
+        JsonNode referrer = patientDetails != null ? patientDetails.get("referrer") : null;
+        return referrer != null ? referrer.asText() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface RenderedConsumer {
+        void accept(RenderedReport rendered) throws IOException;
+    }
+
+    private static final class RenderedReport {
+        private final String ulrNumber;
+        private final ReportPdfCache.CachedPdf pdf;
+
+        private RenderedReport(String ulrNumber, ReportPdfCache.CachedPdf pdf) {
+            this.ulrNumber = ulrNumber;
+            this.pdf = pdf;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.sivalab.laboperations.service;
+
+import org.owasp.encoder.Encode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled HTML report template
+ * Templates are parsed once into a tree of literal text, variables and sections; rendering only walks
+ * the tree. Syntax: {{name}} writes a value HTML-escaped, {{#name}}...{{/name}} repeats the block for
+ * each element of a collection (or once for any other present value, with a map becoming the inner
+ * scope) and {{^name}}...{{/name}} renders the block when the value is missing, false or empty.
+ * Names are looked up from the innermost scope outwards.
+ */
+public final class ReportHtmlTemplate {
+
+    private final String name;
+    private final List<Node> nodes;
+
+    private ReportHtmlTemplate(String name, List<Node> nodes) {
+        this.name = name;
+        this.nodes = nodes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static ReportHtmlTemplate compile(String name, String source) {
+        Deque<Section> open = new ArrayDeque<>();
+        List<Node> root = new ArrayList<>();
+        List<Node> current = root;
+        int position = 0;
+        while (position < source.length()) {
+            int start = source.indexOf("{{", position);
+            if (start < 0) {
+                current.add(new Text(source.substring(position)));
+                break;
+            }
+            int end = source.indexOf("}}", start + 2);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed tag in template " + name + " at offset " + start);
+            }
+            if (start > position) {
+                current.add(new Text(source.substring(position, start)));
+            }
+            String tag = source.substring(start + 2, end).trim();
+            if (tag.startsWith("#") || tag.startsWith("^")) {
+                Section section = new Section(tag.substring(1).trim(), tag.charAt(0) == '^');
+                current.add(section);
+                open.push(section);
+                current = section.children;
+            } else if (tag.startsWith("/")) {
+                String closing = tag.substring(1).trim();
+                if (open.isEmpty() || !open.peek().name.equals(closing)) {
+                    throw new IllegalArgumentException("Unexpected {{/" + closing + "}} in template " + name);
+                }
+                open.pop();
+                current = open.isEmpty() ? root : open.peek().children;
+            } else {
+                current.add(new Variable(tag));
+            }
+            position = end + 2;
+        }
+        if (!open.isEmpty()) {
+            throw new IllegalArgumentException("Unclosed {{#" + open.peek().name + "}} in template " + name);
+        }
+        return new ReportHtmlTemplate(name, List.copyOf(root));
+    }
+
+    public String render(Map<String, ?> model) {
+        StringBuilder out = new StringBuilder(4096);
+        Deque<Object> scopes = new ArrayDeque<>();
+        scopes.push(model);
+        renderNodes(nodes, scopes, out);
+        return out.toString();
+    }
+
+    private static void renderNodes(List<Node> nodes, Deque<Object> scopes, StringBuilder out) {
+        for (Node node : nodes) {
+            if (node instanceof Text) {
+                out.append(((Text) node).text);
+            } else if (node instanceof Variable) {
+                Object value = lookup(scopes, ((Variable) node).name);
+                if (value != null) {
+                    out.append(Encode.forHtml(value.toString()));
+                }
+            } else {
+                renderSection((Section) node, scopes, out);
+            }
+        }
+    }
+
+    private static void renderSection(Section section, Deque<Object> scopes, StringBuilder out) {
+        Object value = lookup(scopes, section.name);
+        boolean empty = value == null || Boolean.FALSE.equals(value)
+                || (value instanceof Collection && ((Collection<?>) value).isEmpty());
+        if (section.inverted) {
+            if (empty) {
+                renderNodes(section.children, scopes, out);
+            }
+            return;
+        }
+        if (empty) {
+            return;
+        }
+        if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                scopes.push(element);
+                renderNodes(section.children, scopes, out);
+                scopes.pop();
+            }
+        } else if (value instanceof Map) {
+            scopes.push(value);
+            renderNodes(section.children, scopes, out);
+            scopes.pop();
+        } else {
+            renderNodes(section.children, scopes, out);
+        }
+    }
+
+    private static Object lookup(Deque<Object> scopes, String name) {
+        for (Object scope : scopes) {
+            if (scope instanceof Map && ((Map<?, ?>) scope).containsKey(name)) {
+                return ((Map<?, ?>) scope).get(name);
+            }
+        }
+        return null;
+    }
+
+    private interface Node {
+    }
+
+    private static final class Text implements Node {
+        private final String text;
+
+        private Text(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Variable implements Node {
+        private final String name;
+
+        private Variable(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Section implements Node {
+        private final String name;
+        private final boolean inverted;
+        private final List<Node> children = new ArrayList<>();
+
+        private Section(String name, boolean inverted) {
+            this.name = name;
+            this.inverted = inverted;
+        }
+    }
+}
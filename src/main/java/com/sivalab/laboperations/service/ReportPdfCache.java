@@ -0,0 +1,716 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sivalab.laboperations.entity.LabReport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Content-addressed cache of rendered report PDFs
+ * The key is a SHA-256 of everything the rendered document depends on (renderer version, report ID, report
+ * data, status, template version, ULR and signatory), so it doubles as the response ETag and changes automatically
+ * when a report is regenerated, authorised or amended. A bounded in-memory LRU tier sits in front of an
+ * on-disk LRU tier; disk hits are copied to the response with FileChannel.transferTo.
+ * Concurrent misses for the same key share one rendering through the RequestCoalescer: the first
+ * streams it to its client and the disk tier, the others are served the committed file.
+ */
+@Service
+public class ReportPdfCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportPdfCache.class);
+    private static final String FILE_SUFFIX = ".pdf";
+    private static final int PROMOTION_FRACTION = 16;
+    // bump when the renderers' output for unchanged report data changes (layout, fonts, template, barcodes),
+    // so re-indexed disk entries and clients holding old ETags are not served stale PDFs
+    private static final String RENDER_VERSION = "2";
+
+    private final Function<LabReport, JsonNode> reportContent;
+    private final RequestCoalescer coalescer;
+    private final Duration renderTimeout;
+    private final long memoryMaxBytes;
+    private final long diskMaxBytes;
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Long, Set<String>> keysByReport = new HashMap<>();
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    @Autowired
+    public ReportPdfCache(MeterRegistry meterRegistry,
+                          ReportSnapshotService reportSnapshotService,
+                          RequestCoalescer coalescer,
+                          @Value("${lab.reports.pdf-cache.memory-max-bytes:33554432}") long memoryMaxBytes,
+                          @Value("${lab.reports.pdf-cache.disk-max-bytes:536870912}") long diskMaxBytes,
+                          @Value("${lab.reports.pdf-cache.directory:${java.io.tmpdir}/lab-report-pdf-cache}") String directory,
+                          @Value("${lab.reports.pdf-cache.coalesce-timeout:30s}") Duration renderTimeout) {
+        this(meterRegistry, reportSnapshotService::materialize, coalescer, memoryMaxBytes, diskMaxBytes, directory,
+             renderTimeout);
+    }
+
+    ReportPdfCache(MeterRegistry meterRegistry, Function<LabReport, JsonNode> reportContent,
+                   RequestCoalescer coalescer, long memoryMaxBytes, long diskMaxBytes, String directory,
+                   Duration renderTimeout) {
+        this.reportContent = reportContent;
+        this.coalescer = coalescer;
+        this.renderTimeout = renderTimeout;
+        this.memoryMaxBytes = memoryMaxBytes;
+        this.diskMaxBytes = diskMaxBytes;
+        this.directory = Path.of(directory);
+
+        this.memoryHits = Counter.builder("lab.reports.pdf.cache").tag("result", "memory-hit")
+                .description("Rendered PDF cache lookups").register(meterRegistry);
+        this.diskHits = Counter.builder("lab.reports.pdf.cache").tag("result", "disk-hit")
+                .description("Rendered PDF cache lookups").register(meterRegistry);
+        this.misses = Counter.builder("lab.reports.pdf.cache").tag("result", "miss")
+                .description("Rendered PDF cache lookups").register(meterRegistry);
+        Gauge.builder("lab.reports.pdf.cache.bytes", this, cache -> cache.memoryBytes)
+                .tag("tier", "memory").description("Bytes held by the rendered PDF cache").register(meterRegistry);
+        Gauge.builder("lab.reports.pdf.cache.bytes", this, cache -> cache.diskBytes)
+                .tag("tier", "disk").description("Bytes held by the rendered PDF cache").register(meterRegistry);
+
+        loadDiskTier();
+    }
+
+    /**
+     * Cache key / ETag for a report rendering; variant distinguishes renderers (iText layout, HTML)
+     */
+    public String keyFor(LabReport report, String variant) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, RENDER_VERSION);
+            update(digest, variant);
+            update(digest, String.valueOf(report.getReportId()));
+            update(digest, String.valueOf(report.getReportStatus()));
+            update(digest, report.getTemplateVersion());
+            update(digest, report.getUlrNumber());
+            update(digest, report.getAuthorizedBy());
+            // amendments are hashed with the content of the report they amend applied
+            JsonNode content = reportContent.apply(report);
+            update(digest, content != null ? content.toString() : null);
+            // report ID prefix lets the disk tier be re-indexed for invalidation after a restart
+            return report.getReportId() + "-" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Look up a rendered PDF; null on a miss
+     * Small disk hits are promoted back into the memory tier.
+     */
+    public CachedPdf get(String key) {
+        DiskEntry onDisk;
+        lock.lock();
+        try {
+            byte[] bytes = memory.get(key);
+            if (bytes != null) {
+                memoryHits.increment();
+                return new CachedPdf(key, bytes, null, bytes.length);
+            }
+            onDisk = disk.get(key);
+            if (onDisk == null || !Files.exists(onDisk.path)) {
+                if (onDisk != null) {
+                    removeDiskEntry(key);
+                }
+                misses.increment();
+                return null;
+            }
+            diskHits.increment();
+        } finally {
+            lock.unlock();
+        }
+
+        if (onDisk.size <= memoryMaxBytes / PROMOTION_FRACTION) {
+            try {
+                byte[] bytes = Files.readAllBytes(onDisk.path);
+                lock.lock();
+                try {
+                    if (disk.containsKey(key)) {
+                        addToMemory(key, bytes);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                return new CachedPdf(key, bytes, null, bytes.length);
+            } catch (IOException e) {
+                logger.debug("Could not promote cached PDF {} to memory", key, e);
+            }
+        }
+        return new CachedPdf(key, null, onDisk.path, onDisk.size);
+    }
+
+    /**
+     * Store a rendered PDF in both tiers
+     */
+    public CachedPdf put(Long reportId, String key, byte[] pdf) {
+        Path file = directory.resolve(key + FILE_SUFFIX);
+        boolean onDisk = writeFile(file, pdf);
+
+        lock.lock();
+        try {
+            keysByReport.computeIfAbsent(reportId, id -> new HashSet<>()).add(key);
+            addToMemory(key, pdf);
+            if (onDisk) {
+                addToDisk(key, file, pdf.length);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new CachedPdf(key, pdf, null, pdf.length);
+    }
+
+    /**
+     * Write the cached PDF for the key to the target, rendering it on a miss
+     * A miss is rendered straight into the target while a copy goes to the disk tier, so the whole
+     * document is never held in memory. Concurrent misses for the key wait for that one rendering and are
+     * then served the committed file. If the target fails (the client went away) the rendering still
+     * runs to completion for the cache and the waiters, and the failure is rethrown afterwards.
+     */
+    public void getOrRender(Long reportId, String key, OutputStream target, Renderer renderer) throws IOException {
+        CachedPdf cached = get(key);
+        if (cached != null) {
+            cached = cached.pin();
+        }
+        if (cached != null) {
+            cached.writeTo(target);
+            return;
+        }
+        DetachableOutputStream client = new DetachableOutputStream(target);
+        coalescer.execute("pdf", key, renderTimeout, () -> {
+            client.used = true;
+            return renderToDisk(reportId, key, client, renderer);
+        });
+        if (client.used) {
+            client.rethrow();
+            return;
+        }
+        serveShared(key, target, renderer);
+    }
+
+    /**
+     * Cached PDF for the key, rendering it into the disk tier on a miss
+     * Shares renderings with concurrent getOrRender calls for the key. Only when the disk tier is
+     * unavailable is the rendering kept in memory instead.
+     */
+    public CachedPdf getOrRender(Long reportId, String key, Renderer renderer) throws IOException {
+        CachedPdf cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        coalescer.execute("pdf", key, renderTimeout,
+                () -> renderToDisk(reportId, key, OutputStream.nullOutputStream(), renderer));
+        cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        renderer.write(out);
+        return put(reportId, key, out.toByteArray());
+    }
+
+    private Boolean renderToDisk(Long reportId, String key, OutputStream target, Renderer renderer)
+            throws IOException {
+        try (CachingOutputStream rendering = open(target, reportId, key)) {
+            renderer.write(rendering);
+            return rendering.commit();
+        }
+    }
+
+    /**
+     * Serve a rendering another request committed; render again if it could not be cached or is gone
+     */
+    private void serveShared(String key, OutputStream target, Renderer renderer) throws IOException {
+        CachedPdf committed = get(key);
+        if (committed == null) {
+            renderer.write(target);
+            return;
+        }
+        try {
+            committed.writeTo(target);
+        } catch (NoSuchFileException e) {
+            // evicted between lookup and copy; nothing has been written yet
+            renderer.write(target);
+        }
+    }
+
+    /**
+     * Stream a rendering to the target while copying it into the disk tier
+     * The copy only becomes a cache entry when commit() is called after rendering succeeded; closing
+     * without committing discards it. Failures on the cache side never fail the target stream.
+     */
+    public CachingOutputStream open(OutputStream target, Long reportId, String key) {
+        return new CachingOutputStream(target, reportId, key);
+    }
+
+    private void addToMemory(String key, byte[] pdf) {
+        if (pdf.length > memoryMaxBytes) {
+            return;
+        }
+        byte[] previous = memory.put(key, pdf);
+        memoryBytes += pdf.length - (previous != null ? previous.length : 0);
+        evictMemory();
+    }
+
+    private void addToDisk(String key, Path file, long size) {
+        DiskEntry previous = disk.put(key, new DiskEntry(file, size));
+        diskBytes += size - (previous != null ? previous.size : 0);
+        evictDisk();
+    }
+
+    /**
+     * Drop every cached rendering of the report (called when it is regenerated, authorised or amended)
+     */
+    public void invalidate(Long reportId) {
+        List<Path> toDelete = new ArrayList<>();
+        lock.lock();
+        try {
+            Set<String> keys = keysByReport.remove(reportId);
+            if (keys == null) {
+                return;
+            }
+            for (String key : keys) {
+                byte[] bytes = memory.remove(key);
+                if (bytes != null) {
+                    memoryBytes -= bytes.length;
+                }
+                DiskEntry entry = disk.remove(key);
+                if (entry != null) {
+                    diskBytes -= entry.size;
+                    toDelete.add(entry.path);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        toDelete.forEach(this::deleteQuietly);
+    }
+
+    private void evictMemory() {
+        Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > memoryMaxBytes && eldest.hasNext()) {
+            Map.Entry<String, byte[]> entry = eldest.next();
+            memoryBytes -= entry.getValue().length;
+            eldest.remove();
+            forgetReportKey(entry.getKey());
+        }
+    }
+
+    private void evictDisk() {
+        Iterator<Map.Entry<String, DiskEntry>> eldest = disk.entrySet().iterator();
+        while (diskBytes > diskMaxBytes && eldest.hasNext()) {
+            Map.Entry<String, DiskEntry> entry = eldest.next();
+            diskBytes -= entry.getValue().size;
+            eldest.remove();
+            forgetReportKey(entry.getKey());
+            deleteQuietly(entry.getValue().path);
+        }
+    }
+
+    private void removeDiskEntry(String key) {
+        DiskEntry entry = disk.remove(key);
+        if (entry != null) {
+            diskBytes -= entry.size;
+        }
+    }
+
+    private void forgetReportKey(String key) {
+        if (memory.containsKey(key) || disk.containsKey(key)) {
+            return;
+        }
+        Long reportId = reportIdOf(key);
+        Set<String> keys = reportId != null ? keysByReport.get(reportId) : null;
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByReport.remove(reportId);
+            }
+        }
+    }
+
+    /**
+     * Re-index PDFs left on disk by a previous run; keys are content hashes so they are still valid
+     */
+    private void loadDiskTier() {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    String key = name.substring(0, name.length() - FILE_SUFFIX.length());
+                    Long reportId = reportIdOf(key);
+                    if (reportId == null) {
+                        continue;
+                    }
+                    long size = Files.size(file);
+                    disk.put(key, new DiskEntry(file, size));
+                    diskBytes += size;
+                    keysByReport.computeIfAbsent(reportId, id -> new HashSet<>()).add(key);
+                }
+            }
+            // renderings interrupted by a shutdown
+            try (DirectoryStream<Path> partial = Files.newDirectoryStream(directory, "render*.tmp")) {
+                partial.forEach(this::deleteQuietly);
+            }
+            evictDisk();
+        } catch (IOException e) {
+            logger.warn("Rendered PDF disk cache unavailable at {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private boolean writeFile(Path file, byte[] pdf) {
+        try {
+            Path temp = Files.createTempFile(directory, "render", ".tmp");
+            Files.write(temp, pdf);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not write rendered PDF {} to disk cache: {}", file.getFileName(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("Could not delete cached PDF {}", file, e);
+        }
+    }
+
+    private static Long reportIdOf(String key) {
+        int separator = key.indexOf('-');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            return Long.parseLong(key.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        digest.update((byte) (value != null ? 1 : 0));
+        // length prefix keeps field boundaries unambiguous
+        int length = bytes.length;
+        digest.update(new byte[] {(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    /**
+     * Tee to the response and a temporary file in the cache directory
+     */
+    public final class CachingOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final Long reportId;
+        private final String key;
+        private Path temp;
+        private OutputStream copy;
+        private long size;
+        private boolean done;
+
+        private CachingOutputStream(OutputStream target, Long reportId, String key) {
+            this.target = target;
+            this.reportId = reportId;
+            this.key = key;
+            try {
+                this.temp = Files.createTempFile(directory, "render", ".tmp");
+                this.copy = new BufferedOutputStream(Files.newOutputStream(temp));
+            } catch (IOException e) {
+                logger.warn("Rendered PDF {} will not be cached: {}", key, e.getMessage());
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            if (copy != null) {
+                try {
+                    copy.write(b);
+                    size++;
+                } catch (IOException e) {
+                    discard(e);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            if (copy != null) {
+                try {
+                    copy.write(b, off, len);
+                    size += len;
+                } catch (IOException e) {
+                    discard(e);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        /**
+         * Rendering finished: publish the copy as a disk-tier entry; false if it could not be cached
+         */
+        public boolean commit() {
+            if (done || copy == null) {
+                return false;
+            }
+            done = true;
+            try {
+                copy.close();
+                Path file = directory.resolve(key + FILE_SUFFIX);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                lock.lock();
+                try {
+                    keysByReport.computeIfAbsent(reportId, id -> new HashSet<>()).add(key);
+                    addToDisk(key, file, size);
+                } finally {
+                    lock.unlock();
+                }
+                return true;
+            } catch (IOException e) {
+                discard(e);
+                return false;
+            }
+        }
+
+        /**
+         * Discard an uncommitted copy; the target stream is left open for the servlet container
+         */
+        @Override
+        public void close() {
+            if (!done) {
+                done = true;
+                closeCopy();
+            }
+        }
+
+        private void discard(IOException cause) {
+            logger.warn("Rendered PDF {} will not be cached: {}", key, cause.getMessage());
+            closeCopy();
+        }
+
+        private void closeCopy() {
+            if (copy != null) {
+                try {
+                    copy.close();
+                } catch (IOException ignored) {
+                    // the temporary file is deleted below
+                }
+                copy = null;
+            }
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    /**
+     * Passes writes to the client until it fails, then drops them and keeps the first failure
+     */
+    private static final class DetachableOutputStream extends OutputStream {
+        private final OutputStream target;
+        private IOException failure;
+        private boolean used;
+
+        private DetachableOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            if (failure == null) {
+                try {
+                    target.write(b);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (failure == null) {
+                try {
+                    target.write(b, off, len);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (failure == null) {
+                try {
+                    target.flush();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+
+        private void rethrow() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Writes one rendering of the report to the stream
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static final class DiskEntry {
+        private final Path path;
+        private final long size;
+
+        private DiskEntry(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A cache hit: either in-memory bytes or a file on disk
+     */
+    public static final class CachedPdf {
+        private final String etag;
+        private final byte[] bytes;
+        private final Path file;
+        private final long length;
+        private final FileChannel channel;
+
+        private CachedPdf(String etag, byte[] bytes, Path file, long length) {
+            this(etag, bytes, file, length, null);
+        }
+
+        private CachedPdf(String etag, byte[] bytes, Path file, long length, FileChannel channel) {
+            this.etag = etag;
+            this.bytes = bytes;
+            this.file = file;
+            this.length = length;
+            this.channel = channel;
+        }
+
+        public String getEtag() { return etag; }
+        public long getLength() { return length; }
+
+        /**
+         * Read the PDF; a pinned disk entry is read from its open file, which closing the stream releases
+         */
+        public InputStream openStream() throws IOException {
+            if (bytes != null) {
+                return new ByteArrayInputStream(bytes);
+            }
+            return channel != null ? Channels.newInputStream(channel) : Files.newInputStream(file);
+        }
+
+        /**
+         * Open a disk entry now, so it can still be written if it is evicted before the response is;
+         * null if it is already gone. Memory entries are returned as they are. The file is closed by writeTo.
+         */
+        public CachedPdf pin() {
+            if (bytes != null || channel != null) {
+                return this;
+            }
+            try {
+                FileChannel opened = FileChannel.open(file, StandardOpenOption.READ);
+                try {
+                    return new CachedPdf(etag, null, file, opened.size(), opened);
+                } catch (IOException e) {
+                    opened.close();
+                    throw e;
+                }
+            } catch (IOException e) {
+                logger.debug("Cached PDF {} is gone: {}", etag, e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Close a pinned file that will not be written after all; does nothing otherwise
+         */
+        public void release() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Could not release cached PDF {}", etag, e);
+            }
+        }
+
+        /**
+         * Copy the PDF to the response; disk entries go through FileChannel.transferTo
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            if (bytes != null) {
+                out.write(bytes);
+                return;
+            }
+            try (FileChannel channel = this.channel != null ? this.channel : FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = 0;
+                long size = channel.size();
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous PDF rendering
+ * Render jobs run on a dedicated pool sized from the pdf bulkhead's starting limit, so report bursts
+ * no longer hold Tomcat request threads. STAT jobs are taken from the queue before routine ones; within a lane jobs
+ * run in submission order. Finished PDFs are streamed into the ReportPdfCache disk tier and served from there.
+ */
+@Service
+public class ReportRenderJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportRenderJobService.class);
+    private static final String VARIANT = "itext";
+
+    public enum RenderPriority { STAT, ROUTINE }
+
+    public enum JobStatus { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final LabReportRepository labReportRepository;
+    private final PdfReportService pdfReportService;
+    private final ReportPdfCache reportPdfCache;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final Semaphore queueSlots;
+    private final Duration jobTtl;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, RenderJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, RenderJob> activeJobsByKey = new ConcurrentHashMap<>();
+    private final Map<RenderPriority, AtomicInteger> queued = Map.of(
+            RenderPriority.STAT, new AtomicInteger(), RenderPriority.ROUTINE, new AtomicInteger());
+
+    private final Counter rejectedCounter;
+    private final Map<RenderPriority, Timer> renderTimers = new ConcurrentHashMap<>();
+    private final Map<RenderPriority, Timer> waitTimers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReportRenderJobService(LabReportRepository labReportRepository,
+                                  PdfReportService pdfReportService,
+                                  ReportPdfCache reportPdfCache,
+                                  PlatformTransactionManager transactionManager,
+                                  @Qualifier("pdfBulkhead") Bulkhead pdfBulkhead,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${lab.reports.render.queue-capacity:200}") int queueCapacity,
+                                  @Value("${lab.reports.render.job-ttl:30m}") Duration jobTtl) {
+        this.labReportRepository = labReportRepository;
+        this.pdfReportService = pdfReportService;
+        this.reportPdfCache = reportPdfCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.queueCapacity = queueCapacity;
+        this.queueSlots = new Semaphore(queueCapacity);
+        this.jobTtl = jobTtl;
+
+        int threads = pdfBulkhead.getMetrics().getMaxAllowedConcurrentCalls();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-render-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        for (RenderPriority priority : RenderPriority.values()) {
+            Gauge.builder("lab.reports.render.queue.depth", queued.get(priority), AtomicInteger::get)
+                    .description("Render jobs waiting for a render thread")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry);
+            renderTimers.put(priority, Timer.builder("lab.reports.render.time")
+                    .description("Time spent rendering a PDF job")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry));
+            waitTimers.put(priority, Timer.builder("lab.reports.render.wait")
+                    .description("Time a render job spent queued")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("lab.reports.render.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Render jobs currently running")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("lab.reports.render.rejected")
+                .description("Render jobs refused because the queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a render job for the report
+     * Returns an existing job when the same rendering is already queued or running, and a completed
+     * job straight away when the rendering is already cached. Throws when the queue is full.
+     */
+    public RenderJob submit(LabReport report, RenderPriority priority) {
+        String key = reportPdfCache.keyFor(report, VARIANT);
+        RenderJob active = activeJobsByKey.get(key);
+        if (active != null) {
+            return active;
+        }
+
+        RenderJob job = new RenderJob(UUID.randomUUID().toString(), report.getReportId(), key, priority);
+        if (reportPdfCache.get(key) != null) {
+            job.complete();
+            jobs.put(job.jobId, job);
+            return job;
+        }
+
+        // the executor's queue is unbounded: a slot is reserved before anything is queued
+        if (!queueSlots.tryAcquire()) {
+            rejectedCounter.increment();
+            throw new RenderQueueFullException("PDF render queue is full (" + queueCapacity + " jobs)");
+        }
+        RenderJob existing = activeJobsByKey.putIfAbsent(key, job);
+        if (existing != null) {
+            queueSlots.release();
+            return existing;
+        }
+        jobs.put(job.jobId, job);
+        queued.get(priority).incrementAndGet();
+        try {
+            executor.execute(new RenderTask(job, sequence.incrementAndGet()));
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            queued.get(priority).decrementAndGet();
+            queueSlots.release();
+            jobs.remove(job.jobId);
+            activeJobsByKey.remove(key, job);
+            throw e;
+        }
+        return job;
+    }
+
+    public Optional<RenderJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Rendered PDF of a completed job, pinned so it can still be written if it is evicted before the
+     * response is; empty if it has already been evicted from the cache
+     */
+    public Optional<ReportPdfCache.CachedPdf> getResult(RenderJob job) {
+        return Optional.ofNullable(reportPdfCache.get(job.resultKey)).map(ReportPdfCache.CachedPdf::pin);
+    }
+
+    /**
+     * Forget finished jobs after their TTL
+     */
+    @Scheduled(fixedDelayString = "${lab.reports.render.cleanup-interval-ms:60000}")
+    public void expireJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(jobTtl);
+        jobs.values().removeIf(job -> job.completedAt != null && job.completedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void render(RenderJob job) {
+        queued.get(job.priority).decrementAndGet();
+        queueSlots.release();
+        waitTimers.get(job.priority).record(Duration.between(job.submittedAt, LocalDateTime.now()));
+        job.start();
+        long start = System.nanoTime();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                LabReport report = labReportRepository.findById(job.reportId)
+                        .orElseThrow(() -> new RuntimeException("Report not found with ID: " + job.reportId));
+                // the report may have changed since submission; the job serves what was actually rendered
+                String key = reportPdfCache.keyFor(report, VARIANT);
+                try (ReportPdfCache.CachingOutputStream out =
+                             reportPdfCache.open(OutputStream.nullOutputStream(), report.getReportId(), key)) {
+                    pdfReportService.writePdfReport(report, out);
+                    if (!out.commit()) {
+                        throw new IOException("Rendered PDF could not be written to the cache");
+                    }
+                    job.resultKey = key;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            job.complete();
+        } catch (RuntimeException e) {
+            logger.warn("PDF render job {} for report {} failed: {}", job.jobId, job.reportId, e.getMessage());
+            job.fail(e.getMessage());
+        } finally {
+            renderTimers.get(job.priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            activeJobsByKey.remove(job.cacheKey, job);
+        }
+    }
+
+    /**
+     * Queue entry: STAT before ROUTINE, then submission order
+     */
+    private final class RenderTask implements Runnable, Comparable<RenderTask> {
+        private final RenderJob job;
+        private final long sequenceNumber;
+
+        private RenderTask(RenderJob job, long sequenceNumber) {
+            this.job = job;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public void run() {
+            render(job);
+        }
+
+        @Override
+        public int compareTo(RenderTask other) {
+            int byPriority = job.priority.compareTo(other.job.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+
+    /**
+     * Thrown when no more render jobs can be queued
+     */
+    public static class RenderQueueFullException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public RenderQueueFullException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Render job status, as returned to pollers
+     */
+    public static class RenderJob {
+        private final String jobId;
+        private final Long reportId;
+        private final String cacheKey;
+        private final RenderPriority priority;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private volatile String resultKey;
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime completedAt;
+        private volatile String error;
+
+        private RenderJob(String jobId, Long reportId, String cacheKey, RenderPriority priority) {
+            this.jobId = jobId;
+            this.reportId = reportId;
+            this.cacheKey = cacheKey;
+            this.resultKey = cacheKey;
+            this.priority = priority;
+        }
+
+        private void start() {
+            startedAt = LocalDateTime.now();
+            status = JobStatus.RUNNING;
+        }
+
+        private void complete() {
+            completedAt = LocalDateTime.now();
+            status = JobStatus.COMPLETED;
+        }
+
+        private void fail(String message) {
+            error = message;
+            completedAt = LocalDateTime.now();
+            status = JobStatus.FAILED;
+        }
+
+        public String getJobId() { return jobId; }
+        public Long getReportId() { return reportId; }
+        public RenderPriority getPriority() { return priority; }
+        public JobStatus getStatus() { return status; }
+        public LocalDateTime getSubmittedAt() { return submittedAt; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getCompletedAt() { return completedAt; }
+        public String getError() { return error; }
+    }
+}
@@ -0,0 +1,273 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.entity.LabTest;
+import com.sivalab.laboperations.entity.TestTemplate;
+import com.sivalab.laboperations.entity.TestTemplateSnapshot;
+import com.sivalab.laboperations.entity.Visit;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import com.sivalab.laboperations.repository.LabTestRepository;
+import com.sivalab.laboperations.repository.TestTemplateSnapshotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * NABL Requirement: Reproducible reports without duplicated report content
+ * Reports store test template parameters as references to immutable, versioned template snapshots
+ * ("templateRef": {templateId, version}) and leave the patient details on the visit. Amended reports
+ * store only a JSON merge patch against the report they amend ({"amendmentOf": id, "changes": ...}).
+ * materialize() applies the amendment chain; resolve() additionally expands the references for
+ * rendering, and resolveAll() does so for API responses with batched lookups. Snapshots never change,
+ * so their parameters are cached indefinitely.
+ */
+@Service
+public class ReportSnapshotService {
+
+    public static final String TEMPLATE_REF = "templateRef";
+    public static final String AMENDMENT_OF = "amendmentOf";
+    public static final String CHANGES = "changes";
+    private static final int MAX_AMENDMENT_DEPTH = 32;
+
+    private final TestTemplateSnapshotRepository snapshotRepository;
+    private final LabReportRepository labReportRepository;
+    private final LabTestRepository labTestRepository;
+
+    private final Map<Long, TestTemplateSnapshot> latestByTemplate = new ConcurrentHashMap<>();
+    private final Map<String, JsonNode> parametersByRef = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReportSnapshotService(TestTemplateSnapshotRepository snapshotRepository,
+                                 LabReportRepository labReportRepository,
+                                 LabTestRepository labTestRepository) {
+        this.snapshotRepository = snapshotRepository;
+        this.labReportRepository = labReportRepository;
+        this.labTestRepository = labTestRepository;
+    }
+
+    /**
+     * Snapshot matching the template's current content, creating the next version if it changed
+     * Must run inside the caller's transaction. The template row stays locked until that transaction
+     * ends, so a concurrent report (on any node) waits and then sees the committed version instead of
+     * allocating the same one.
+     */
+    public TestTemplateSnapshot snapshotOf(TestTemplate template) {
+        TestTemplateSnapshot cached = latestByTemplate.get(template.getTemplateId());
+        if (cached != null && cached.matches(template)) {
+            return cached;
+        }
+        snapshotRepository.lockTemplate(template.getTemplateId());
+        Optional<TestTemplateSnapshot> latest = snapshotRepository.findTopByTemplateIdOrderByVersionDesc(template.getTemplateId());
+        if (latest.isPresent() && latest.get().matches(template)) {
+            // only committed snapshots are cached
+            latestByTemplate.put(template.getTemplateId(), latest.get());
+            return latest.get();
+        }
+        int version = latest.map(snapshot -> snapshot.getVersion() + 1).orElse(1);
+        return snapshotRepository.save(new TestTemplateSnapshot(template, version));
+    }
+
+    public ObjectNode templateRef(TestTemplateSnapshot snapshot) {
+        ObjectNode ref = JsonNodeFactory.instance.objectNode();
+        ref.put("templateId", snapshot.getTemplateId());
+        ref.put("version", snapshot.getVersion());
+        return ref;
+    }
+
+    /**
+     * Stored form of an amendment that does not change anything yet
+     */
+    public JsonNode amendmentOf(LabReport original) {
+        ObjectNode amendment = JsonNodeFactory.instance.objectNode();
+        amendment.put(AMENDMENT_OF, original.getReportId());
+        amendment.set(CHANGES, JsonNodeFactory.instance.objectNode());
+        return amendment;
+    }
+
+    /**
+     * Convert full report data into the form stored on the report
+     * Template parameters that match a snapshot become references, patient details equal to the
+     * visit's are dropped and amendments keep only their changes against the amended report.
+     */
+    public JsonNode toStoredForm(LabReport report, JsonNode reportData) {
+        if (reportData == null || !reportData.isObject()) {
+            return reportData;
+        }
+        JsonNode compact = compact(reportData, report.getVisit());
+        JsonNode stored = report.getReportData();
+        if (stored != null && stored.has(AMENDMENT_OF)) {
+            Long baseId = stored.get(AMENDMENT_OF).asLong();
+            ObjectNode amendment = JsonNodeFactory.instance.objectNode();
+            amendment.put(AMENDMENT_OF, baseId);
+            amendment.set(CHANGES, JsonMergePatch.diff(materialize(loadReport(baseId), 1), compact));
+            return amendment;
+        }
+        return compact;
+    }
+
+    /**
+     * Report data with amendments applied, references left in place (stable input for cache keys)
+     */
+    public JsonNode materialize(LabReport report) {
+        return materialize(report, 0);
+    }
+
+    /**
+     * Complete report data for rendering
+     */
+    public JsonNode resolve(LabReport report) {
+        return expand(materialize(report), report.getVisit());
+    }
+
+    /**
+     * Resolve the data of every report for an API response (setResolvedReportData)
+     * Amended reports and template snapshots are loaded with one query per amendment level and one
+     * for all templates, instead of per report. Must run inside the caller's transaction.
+     */
+    public void resolveAll(Collection<LabReport> reports) {
+        Map<Long, LabReport> loaded = new HashMap<>();
+        for (LabReport report : reports) {
+            if (report.getReportId() != null) {
+                loaded.put(report.getReportId(), report);
+            }
+        }
+        Set<Long> missing = unloadedBases(reports, loaded);
+        for (int depth = 0; !missing.isEmpty() && depth < MAX_AMENDMENT_DEPTH; depth++) {
+            List<LabReport> bases = labReportRepository.findAllById(missing);
+            bases.forEach(base -> loaded.put(base.getReportId(), base));
+            missing = unloadedBases(bases, loaded);
+        }
+        Function<Long, LabReport> loader = reportId -> {
+            LabReport report = loaded.get(reportId);
+            return report != null ? report : loadReport(reportId);
+        };
+
+        List<JsonNode> materialized = new ArrayList<>(reports.size());
+        Set<Long> templateIds = new HashSet<>();
+        for (LabReport report : reports) {
+            JsonNode data = materialize(report, 0, loader);
+            materialized.add(data);
+            JsonNode tests = data != null ? data.get("tests") : null;
+            if (tests != null && tests.isArray()) {
+                for (JsonNode test : tests) {
+                    JsonNode ref = test.get(TEMPLATE_REF);
+                    if (ref != null && !test.has("parameters") && !parametersByRef.containsKey(refKey(ref))) {
+                        templateIds.add(ref.get("templateId").asLong());
+                    }
+                }
+            }
+        }
+        if (!templateIds.isEmpty()) {
+            for (TestTemplateSnapshot snapshot : snapshotRepository.findByTemplateIdIn(templateIds)) {
+                parametersByRef.putIfAbsent(snapshot.getTemplateId() + ":" + snapshot.getVersion(), snapshot.getParameters());
+            }
+        }
+        Iterator<JsonNode> data = materialized.iterator();
+        for (LabReport report : reports) {
+            report.setResolvedReportData(expand(data.next(), report.getVisit()));
+        }
+    }
+
+    private Set<Long> unloadedBases(Collection<LabReport> reports, Map<Long, LabReport> loaded) {
+        Set<Long> missing = new HashSet<>();
+        for (LabReport report : reports) {
+            JsonNode stored = report.getReportData();
+            if (stored != null && stored.has(AMENDMENT_OF) && !loaded.containsKey(stored.get(AMENDMENT_OF).asLong())) {
+                missing.add(stored.get(AMENDMENT_OF).asLong());
+            }
+        }
+        return missing;
+    }
+
+    private JsonNode materialize(LabReport report, int depth) {
+        return materialize(report, depth, this::loadReport);
+    }
+
+    private JsonNode materialize(LabReport report, int depth, Function<Long, LabReport> loader) {
+        JsonNode stored = report.getReportData();
+        if (stored == null || !stored.has(AMENDMENT_OF)) {
+            return stored;
+        }
+        if (depth >= MAX_AMENDMENT_DEPTH) {
+            throw new IllegalStateException("Amendment chain too deep at report " + report.getReportId());
+        }
+        JsonNode base = materialize(loader.apply(stored.get(AMENDMENT_OF).asLong()), depth + 1, loader);
+        return JsonMergePatch.apply(base, stored.get(CHANGES));
+    }
+
+    private JsonNode compact(JsonNode reportData, Visit visit) {
+        ObjectNode compact = ((ObjectNode) reportData).deepCopy();
+        JsonNode patient = compact.get("patient");
+        if (patient != null && patient.isObject() && visit != null
+                && visit.getPatientDetails() != null && visit.getPatientDetails().equals(patient.get("details"))) {
+            ((ObjectNode) patient).remove("details");
+        }
+        JsonNode tests = compact.get("tests");
+        if (tests != null && tests.isArray()) {
+            for (JsonNode test : tests) {
+                if (test.isObject() && test.has("parameters") && test.hasNonNull("testId")) {
+                    Optional<LabTest> labTest = labTestRepository.findById(test.get("testId").asLong());
+                    if (labTest.isPresent()) {
+                        TestTemplateSnapshot snapshot = snapshotOf(labTest.get().getTestTemplate());
+                        if (snapshot.getParameters().equals(test.get("parameters"))) {
+                            ((ObjectNode) test).remove("parameters");
+                            ((ObjectNode) test).set(TEMPLATE_REF, templateRef(snapshot));
+                        }
+                    }
+                }
+            }
+        }
+        return compact;
+    }
+
+    private JsonNode expand(JsonNode reportData, Visit visit) {
+        if (reportData == null || !reportData.isObject()) {
+            return reportData;
+        }
+        ObjectNode expanded = ((ObjectNode) reportData).deepCopy();
+        JsonNode patient = expanded.get("patient");
+        if (patient != null && patient.isObject() && !patient.has("details") && visit != null) {
+            ((ObjectNode) patient).set("details", visit.getPatientDetails());
+        }
+        JsonNode tests = expanded.get("tests");
+        if (tests != null && tests.isArray()) {
+            for (JsonNode test : tests) {
+                JsonNode ref = test.get(TEMPLATE_REF);
+                if (ref != null && !test.has("parameters")) {
+                    ((ObjectNode) test).set("parameters", parametersOf(ref.get("templateId").asLong(), ref.get("version").asInt()));
+                }
+            }
+        }
+        return expanded;
+    }
+
+    private static String refKey(JsonNode ref) {
+        return ref.get("templateId").asLong() + ":" + ref.get("version").asInt();
+    }
+
+    private JsonNode parametersOf(Long templateId, Integer version) {
+        return parametersByRef.computeIfAbsent(templateId + ":" + version, key -> snapshotRepository
+                .findByTemplateIdAndVersion(templateId, version)
+                .map(TestTemplateSnapshot::getParameters)
+                .orElseThrow(() -> new RuntimeException("Template snapshot not found: " + key)));
+    }
+
+    private LabReport loadReport(Long reportId) {
+        return labReportRepository.findById(reportId)
+                .orElseThrow(() -> new RuntimeException("Report not found with ID: " + reportId));
+    }
+}
@@ -0,0 +1,174 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.ReportStatus;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Report statistics for the dashboard
+ * Counted with one GROUP BY report_status query plus a generated_at range count (so the index on
+ * generated_at is used), and served from a short-lived snapshot. Once the snapshot is older than the
+ * TTL the next read returns it anyway and triggers a single background refresh (stale-while-revalidate),
+ * so dashboard polling never waits on the database. Only the very first read loads synchronously.
+ */
+@Service
+public class ReportStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportStatisticsService.class);
+
+    private final LabReportRepository labReportRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long ttlNanos;
+    private final Timer refreshTimer;
+    private final ThreadPoolExecutor refresher;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final ReentrantLock initialLoad = new ReentrantLock();
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public ReportStatisticsService(LabReportRepository labReportRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${lab.reports.stats.ttl:10s}") Duration ttl) {
+        this.labReportRepository = labReportRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.ttlNanos = ttl.toNanos();
+        this.refreshTimer = Timer.builder("lab.reports.stats.refresh")
+                .description("Time spent recounting report statistics")
+                .register(meterRegistry);
+        // one refresh at a time; refresh requests while one is pending are dropped
+        this.refresher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), runnable -> {
+                    Thread thread = new Thread(runnable, "report-stats-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Current statistics, at most one TTL (plus one refresh) old
+     */
+    public ReportStatistics getReportStatistics() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return loadInitial();
+        }
+        if (System.nanoTime() - current.loadedAt > ttlNanos && refreshing.compareAndSet(false, true)) {
+            refresher.execute(this::refresh);
+        }
+        return current.statistics;
+    }
+
+    private ReportStatistics loadInitial() {
+        initialLoad.lock();
+        try {
+            if (snapshot == null) {
+                snapshot = new Snapshot(load());
+            }
+            return snapshot.statistics;
+        } finally {
+            initialLoad.unlock();
+        }
+    }
+
+    private void refresh() {
+        try {
+            snapshot = new Snapshot(load());
+        } catch (RuntimeException e) {
+            // keep serving the previous snapshot; the next read past the TTL retries
+            logger.warn("Report statistics refresh failed: {}", e.getMessage());
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private ReportStatistics load() {
+        return refreshTimer.record(() -> readOnlyTransaction.execute(status -> {
+            Map<ReportStatus, Long> byStatus = new EnumMap<>(ReportStatus.class);
+            long total = 0;
+            for (Object[] row : labReportRepository.countReportsByStatus()) {
+                long count = ((Number) row[1]).longValue();
+                if (row[0] != null) {
+                    byStatus.put((ReportStatus) row[0], count);
+                }
+                total += count;
+            }
+            LocalDate today = LocalDate.now();
+            long todayReports = labReportRepository.countReportsGeneratedBetween(
+                    today.atStartOfDay(), today.plusDays(1).atStartOfDay());
+
+            return new ReportStatistics(total,
+                    byStatus.getOrDefault(ReportStatus.DRAFT, 0L),
+                    byStatus.getOrDefault(ReportStatus.GENERATED, 0L),
+                    byStatus.getOrDefault(ReportStatus.AUTHORIZED, 0L),
+                    byStatus.getOrDefault(ReportStatus.SENT, 0L),
+                    todayReports);
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private static final class Snapshot {
+        private final ReportStatistics statistics;
+        private final long loadedAt;
+
+        private Snapshot(ReportStatistics statistics) {
+            this.statistics = statistics;
+            this.loadedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Inner class for report statistics
+     */
+    public static class ReportStatistics {
+        private final long totalReports;
+        private final long draftReports;
+        private final long generatedReports;
+        private final long authorizedReports;
+        private final long sentReports;
+        private final long todayReports;
+
+        public ReportStatistics(long totalReports, long draftReports, long generatedReports,
+                              long authorizedReports, long sentReports, long todayReports) {
+            this.totalReports = totalReports;
+            this.draftReports = draftReports;
+            this.generatedReports = generatedReports;
+            this.authorizedReports = authorizedReports;
+            this.sentReports = sentReports;
+            this.todayReports = todayReports;
+        }
+
+        // Getters
+        public long getTotalReports() { return totalReports; }
+        public long getDraftReports() { return draftReports; }
+        public long getGeneratedReports() { return generatedReports; }
+        public long getAuthorizedReports() { return authorizedReports; }
+        public long getSentReports() { return sentReports; }
+        public long getTodayReports() { return todayReports; }
+    }
+}
@@ -0,0 +1,117 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.itextpdf.html2pdf.ConverterProperties;
+import com.itextpdf.html2pdf.HtmlConverter;
+import com.itextpdf.html2pdf.resolver.font.DefaultFontProvider;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.sivalab.laboperations.entity.LabReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * HTML report templates
+ * The report template is compiled once at startup; the HTML preview and the html2pdf rendering both
+ * come from it. Font discovery for html2pdf is done once per pooled ConverterProperties rather than on
+ * every conversion. A FontProvider caches font selections and is not safe for concurrent use, so each
+ * conversion borrows its own properties from the pool.
+ */
+@Service
+public class ReportTemplateService {
+
+    private static final String REPORT_TEMPLATE = "reports/lab-report.html";
+    private static final int POOL_SIZE = 8;
+
+    private final ReportSnapshotService reportSnapshotService;
+    private final ReportHtmlTemplate reportTemplate;
+    private final BlockingQueue<ConverterProperties> converterProperties = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    @Autowired
+    public ReportTemplateService(ReportSnapshotService reportSnapshotService) {
+        this.reportSnapshotService = reportSnapshotService;
+        this.reportTemplate = load(REPORT_TEMPLATE);
+    }
+
+    /**
+     * Report HTML, as previewed and as converted to PDF
+     */
+    public String renderReportHtml(LabReport labReport) {
+        return reportTemplate.render(reportModel(labReport));
+    }
+
+    /**
+     * Convert the report HTML to PDF into the given stream, leaving it open for the caller
+     */
+    public void writeReportPdf(LabReport labReport, OutputStream out) throws IOException {
+        String html = renderReportHtml(labReport);
+        PdfWriter writer = new PdfWriter(out);
+        writer.setCloseStream(false);
+
+        ConverterProperties properties = converterProperties.poll();
+        if (properties == null) {
+            properties = new ConverterProperties().setFontProvider(new DefaultFontProvider(true, true, false));
+        }
+        try {
+            HtmlConverter.convertToPdf(html, writer, properties);
+        } finally {
+            converterProperties.offer(properties);
+        }
+    }
+
+    private Map<String, Object> reportModel(LabReport labReport) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("ulrNumber", labReport.getUlrNumber());
+        model.put("authorizedBy", labReport.getAuthorizedBy());
+
+        JsonNode patientDetails = labReport.getVisit().getPatientDetails();
+        model.put("patientName", jsonValue(patientDetails, "name"));
+        model.put("patientAge", jsonValue(patientDetails, "age"));
+        model.put("patientGender", jsonValue(patientDetails, "gender"));
+        model.put("patientPhone", jsonValue(patientDetails, "phone"));
+
+        JsonNode reportData = reportSnapshotService.resolve(labReport);
+        model.put("hasReportData", reportData != null);
+        List<Map<String, String>> parameters = new ArrayList<>();
+        if (reportData != null && reportData.has("tests")) {
+            for (JsonNode test : reportData.get("tests")) {
+                if (test.has("parameters")) {
+                    for (JsonNode param : test.get("parameters")) {
+                        parameters.add(Map.of(
+                                "name", jsonValue(param, "name"),
+                                "value", jsonValue(param, "value"),
+                                "unit", jsonValue(param, "unit"),
+                                "range", jsonValue(param, "range")));
+                    }
+                }
+            }
+        }
+        model.put("parameters", parameters);
+        return model;
+    }
+
+    private static String jsonValue(JsonNode node, String fieldName) {
+        JsonNode field = node != null ? node.get(fieldName) : null;
+        return field != null ? field.asText() : "N/A";
+    }
+
+    private static ReportHtmlTemplate load(String path) {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return ReportHtmlTemplate.compile(path, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load report template " + path, e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.sivalab.laboperations.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single-flight execution of expensive computations (PDF renders, barcode encodings)
+ * The first caller for a key runs the computation on its own thread; callers arriving with the same
+ * key while it runs wait for it and get its result, or its exception. A flight can be joined until
+ * its timeout: a waiter still waiting then stops and computes on its own, and a caller arriving after
+ * the timeout starts a new flight, so one stuck computation never holds up a key for long.
+ * Results are shared between threads and must not be modified.
+ */
+@Component
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<Map.Entry<String, Object>, Flight> flights = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public RequestCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("lab.coalescing.in-flight", flights, Map::size)
+                .description("Computations currently shared by concurrent identical requests")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Result of the computation for the key, shared with concurrent callers of the same group and key
+     */
+    public <T, E extends Exception> T execute(String group, Object key, Duration timeout, Call<T, E> call) throws E {
+        Map.Entry<String, Object> flightKey = Map.entry(group, key);
+        Flight flight = new Flight(System.nanoTime() + timeout.toNanos());
+        Flight current = flights.putIfAbsent(flightKey, flight);
+        while (current != null) {
+            long remaining = current.deadline - System.nanoTime();
+            if (remaining > 0) {
+                return await(group, current, remaining, call);
+            }
+            // the running flight is past its timeout; later callers share this one instead
+            if (flights.replace(flightKey, current, flight)) {
+                break;
+            }
+            current = flights.putIfAbsent(flightKey, flight);
+        }
+
+        count(group, "leader");
+        // the flight is closed before its result is published, so nobody joins a finished flight
+        T result;
+        try {
+            result = call.call();
+        } catch (Throwable e) {
+            flights.remove(flightKey, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+        flights.remove(flightKey, flight);
+        flight.result.complete(result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, E extends Exception> T await(String group, Flight flight, long remainingNanos, Call<T, E> call)
+            throws E {
+        try {
+            T result = (T) flight.result.get(remainingNanos, TimeUnit.NANOSECONDS);
+            count(group, "coalesced");
+            return result;
+        } catch (TimeoutException e) {
+            count(group, "timed-out");
+            return call.call();
+        } catch (ExecutionException e) {
+            count(group, "coalesced");
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // the leader ran the same call, so its only checked exception is an E
+            throw (E) cause;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for a shared " + group + " computation");
+        }
+    }
+
+    private void count(String group, String result) {
+        meterRegistry.counter("lab.coalescing.requests", "group", group, "result", result).increment();
+    }
+
+    /**
+     * The computation to share
+     */
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private static final class Flight {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final long deadline;
+
+        private Flight(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.sivalab.laboperations.service;
 
+import io.github.resilience4j.bulkhead.BulkheadFullException;
 import io.github.resilience4j.bulkhead.annotation.Bulkhead;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
@@ -13,10 +14,14 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 /**
  * Resilient Barcode Service with Fault Tolerance Patterns
  * Wraps the original BarcodeService with circuit breaker, retry, rate limiting, etc.
+ * Encoding runs on the bounded BarcodeExecutor. When it or the bulkhead is saturated the call fails
+ * fast (no error image is encoded), so callers can answer 503.
  */
 @Service
 public class ResilientBarcodeService {
@@ -26,6 +31,9 @@ public class ResilientBarcodeService {
     @Autowired
     private BarcodeService barcodeService;
 
+    @Autowired
+    private BarcodeExecutor barcodeExecutor;
+
     /**
      * Generate QR Code with fault tolerance
      */
@@ -34,11 +42,11 @@ public class ResilientBarcodeService {
     @RateLimiter(name = "barcode")
     @Bulkhead(name = "barcode")
     @TimeLimiter(name = "barcode")
-    public CompletableFuture<byte[]> generateQRCodeResilient(String data, int size) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<byte[]> generateQRCodeResilient(String data, int size, BarcodeImageFormat format) {
+        return supplyAsync(() -> {
             try {
                 logger.debug("Generating QR code for data: {} with size: {}", data, size);
-                byte[] result = barcodeService.generateQRCode(data, size);
+                byte[] result = barcodeService.generateQRCode(data, size, format);
                 logger.debug("Successfully generated QR code of {} bytes", result.length);
                 return result;
             } catch (Exception e) {
@@ -56,11 +64,12 @@ public class ResilientBarcodeService {
     @RateLimiter(name = "barcode")
     @Bulkhead(name = "barcode")
     @TimeLimiter(name = "barcode")
-    public CompletableFuture<byte[]> generateCode128BarcodeResilient(String data, int width, int height) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<byte[]> generateCode128BarcodeResilient(String data, int width, int height,
+                                                                     BarcodeImageFormat format) {
+        return supplyAsync(() -> {
             try {
                 logger.debug("Generating Code128 barcode for data: {} with dimensions: {}x{}", data, width, height);
-                byte[] result = barcodeService.generateCode128Barcode(data, width, height);
+                byte[] result = barcodeService.generateCode128Barcode(data, width, height, format);
                 logger.debug("Successfully generated Code128 barcode of {} bytes", result.length);
                 return result;
             } catch (Exception e) {
@@ -78,11 +87,12 @@ public class ResilientBarcodeService {
     @RateLimiter(name = "barcode")
     @Bulkhead(name = "barcode")
     @TimeLimiter(name = "barcode")
-    public CompletableFuture<byte[]> generateCode39BarcodeResilient(String data, int width, int height) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<byte[]> generateCode39BarcodeResilient(String data, int width, int height,
+                                                                    BarcodeImageFormat format) {
+        return supplyAsync(() -> {
             try {
                 logger.debug("Generating Code39 barcode for data: {} with dimensions: {}x{}", data, width, height);
-                byte[] result = barcodeService.generateCode39Barcode(data, width, height);
+                byte[] result = barcodeService.generateCode39Barcode(data, width, height, format);
                 logger.debug("Successfully generated Code39 barcode of {} bytes", result.length);
                 return result;
             } catch (Exception e) {
@@ -100,12 +110,13 @@ public class ResilientBarcodeService {
     @RateLimiter(name = "barcode")
     @Bulkhead(name = "barcode")
     @TimeLimiter(name = "barcode")
-    public CompletableFuture<byte[]> generateVisitQRCodeResilient(Long visitId, int size) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<byte[]> generateVisitQRCodeResilient(Long visitId, int size, BarcodeImageFormat format) {
+        return supplyAsync(() -> {
             try {
                 logger.debug("Generating visit QR code for visitId: {} with size: {}", visitId, size);
-                String visitData = "VISIT_ID:" + visitId + "_SIZE:" + size + "_TIMESTAMP:" + System.currentTimeMillis();
-                byte[] result = barcodeService.generateQRCode(visitData, size);
+                // deterministic, so repeat requests are served from the shared barcode image cache
+                String visitData = "VISIT_ID:" + visitId + "_SIZE:" + size;
+                byte[] result = barcodeService.generateQRCode(visitData, size, format);
                 logger.debug("Successfully generated visit QR code of {} bytes", result.length);
                 return result;
             } catch (Exception e) {
@@ -123,12 +134,12 @@ public class ResilientBarcodeService {
     @RateLimiter(name = "barcode")
     @Bulkhead(name = "barcode")
     @TimeLimiter(name = "barcode")
-    public CompletableFuture<byte[]> generateSampleQRCodeResilient(String sampleNumber, int size) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<byte[]> generateSampleQRCodeResilient(String sampleNumber, int size, BarcodeImageFormat format) {
+        return supplyAsync(() -> {
             try {
                 logger.debug("Generating sample QR code for sampleNumber: {} with size: {}", sampleNumber, size);
-                String sampleData = "SAMPLE:" + sampleNumber + "_SIZE:" + size + "_TIMESTAMP:" + System.currentTimeMillis();
-                byte[] result = barcodeService.generateQRCode(sampleData, size);
+                String sampleData = "SAMPLE:" + sampleNumber + "_SIZE:" + size;
+                byte[] result = barcodeService.generateQRCode(sampleData, size, format);
                 logger.debug("Successfully generated sample QR code of {} bytes", result.length);
                 return result;
             } catch (Exception e) {
@@ -148,7 +159,7 @@ public class ResilientBarcodeService {
     @TimeLimiter(name = "barcode")
     public CompletableFuture<Map<String, byte[]>> generateReportBarcodePackageResilient(
             String ulrNumber, String patientName, String patientId, String reportStatus) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync(() -> {
             try {
                 logger.debug("Generating report barcode package for ULR: {}", ulrNumber);
                 Map<String, byte[]> result = barcodeService.generateReportBarcodePackage(
@@ -167,27 +178,41 @@ public class ResilientBarcodeService {
     /**
      * Fallback method for QR code generation failures
      */
-    public CompletableFuture<byte[]> fallbackQRCode(String data, int size, Exception ex) {
+    public CompletableFuture<byte[]> fallbackQRCode(String data, int size, BarcodeImageFormat format, Exception ex) {
+        if (isSaturated(ex)) {
+            return CompletableFuture.failedFuture(ex);
+        }
         logger.warn("QR code generation fallback triggered for data: {} due to: {}", data, ex.getMessage());
-        return CompletableFuture.completedFuture(generateErrorQRCode(data, size));
+        return CompletableFuture.completedFuture(generateErrorQRCode(data, size, format));
     }
 
-    public CompletableFuture<byte[]> fallbackVisitQRCode(Long visitId, int size, Exception ex) {
+    public CompletableFuture<byte[]> fallbackVisitQRCode(Long visitId, int size, BarcodeImageFormat format, Exception ex) {
+        if (isSaturated(ex)) {
+            return CompletableFuture.failedFuture(ex);
+        }
         logger.warn("Visit QR code generation fallback triggered for visitId: {} due to: {}", visitId, ex.getMessage());
-        return CompletableFuture.completedFuture(generateErrorQRCode("VISIT_" + visitId, size));
+        return CompletableFuture.completedFuture(generateErrorQRCode("VISIT_" + visitId, size, format));
     }
 
-    public CompletableFuture<byte[]> fallbackSampleQRCode(String sampleNumber, int size, Exception ex) {
+    public CompletableFuture<byte[]> fallbackSampleQRCode(String sampleNumber, int size, BarcodeImageFormat format,
+                                                          Exception ex) {
+        if (isSaturated(ex)) {
+            return CompletableFuture.failedFuture(ex);
+        }
         logger.warn("Sample QR code generation fallback triggered for sample: {} due to: {}", sampleNumber, ex.getMessage());
-        return CompletableFuture.completedFuture(generateErrorQRCode("SAMPLE_" + sampleNumber, size));
+        return CompletableFuture.completedFuture(generateErrorQRCode("SAMPLE_" + sampleNumber, size, format));
     }
 
     /**
      * Fallback method for barcode generation failures
      */
-    public CompletableFuture<byte[]> fallbackBarcode(String data, int width, int height, Exception ex) {
+    public CompletableFuture<byte[]> fallbackBarcode(String data, int width, int height, BarcodeImageFormat format,
+                                                     Exception ex) {
+        if (isSaturated(ex)) {
+            return CompletableFuture.failedFuture(ex);
+        }
         logger.warn("Barcode generation fallback triggered for data: {} due to: {}", data, ex.getMessage());
-        return CompletableFuture.completedFuture(generateErrorBarcode(data, width, height));
+        return CompletableFuture.completedFuture(generateErrorBarcode(data, width, height, format));
     }
 
     /**
@@ -195,21 +220,42 @@ public class ResilientBarcodeService {
      */
     public CompletableFuture<Map<String, byte[]>> fallbackBarcodePackage(
             String ulrNumber, String patientName, String patientId, String reportStatus, Exception ex) {
+        if (isSaturated(ex)) {
+            return CompletableFuture.failedFuture(ex);
+        }
         logger.warn("Barcode package generation fallback triggered for ULR: {} due to: {}", ulrNumber, ex.getMessage());
         return CompletableFuture.completedFuture(Map.of(
-            "qrCode", generateErrorQRCode("ULR_" + ulrNumber, 200),
-            "barcode", generateErrorBarcode(ulrNumber, 200, 50)
+            "qrCode", generateErrorQRCode("ULR_" + ulrNumber, 200, BarcodeImageFormat.PNG),
+            "barcode", generateErrorBarcode(ulrNumber, 200, 50, BarcodeImageFormat.PNG)
         ));
     }
 
+    /**
+     * Run on the BarcodeExecutor; a rejection fails the future (whether or not the aspects wrap the call)
+     */
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, barcodeExecutor.executor());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Saturation is passed on rather than answered with an error image, which would mean more encoding
+     */
+    private static boolean isSaturated(Throwable ex) {
+        return ex instanceof BulkheadFullException || ex instanceof RejectedExecutionException;
+    }
+
     /**
      * Generate a simple error QR code when primary generation fails
      */
-    private byte[] generateErrorQRCode(String data, int size) {
+    private byte[] generateErrorQRCode(String data, int size, BarcodeImageFormat format) {
         try {
             // Generate a simple QR code with error message
             String errorData = "ERROR_GENERATING_QR_FOR_" + data;
-            return barcodeService.generateQRCode(errorData, Math.max(size, 100));
+            return barcodeService.generateQRCode(errorData, Math.max(size, 100), format);
         } catch (Exception e) {
             logger.error("Even fallback QR code generation failed", e);
             // Return a minimal placeholder
@@ -220,11 +266,11 @@ public class ResilientBarcodeService {
     /**
      * Generate a simple error barcode when primary generation fails
      */
-    private byte[] generateErrorBarcode(String data, int width, int height) {
+    private byte[] generateErrorBarcode(String data, int width, int height, BarcodeImageFormat format) {
         try {
             // Generate a simple barcode with error message
             String errorData = "ERROR_" + data.substring(0, Math.min(data.length(), 10));
-            return barcodeService.generateCode128Barcode(errorData, Math.max(width, 100), Math.max(height, 30));
+            return barcodeService.generateCode128Barcode(errorData, Math.max(width, 100), Math.max(height, 30), format);
         } catch (Exception e) {
             logger.error("Even fallback barcode generation failed", e);
             // Return a minimal placeholder
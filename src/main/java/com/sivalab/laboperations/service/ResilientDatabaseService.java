@@ -7,6 +7,8 @@ import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
@@ -34,6 +36,11 @@ public class ResilientDatabaseService {
     @Autowired
     private DataSource dataSource;
 
+    /** Platform pool, or a virtual thread per call in the virtual-threads profile (see ThreadingConfig) */
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor taskExecutor;
+
     /**
      * Execute query with fault tolerance
      */
@@ -57,7 +64,7 @@ public class ResilientDatabaseService {
                 logger.error("Database query failed: {}", sql, e);
                 throw new RuntimeException("Database query execution failed", e);
             }
-        });
+        }, taskExecutor);
     }
 
     /**
@@ -84,7 +91,7 @@ public class ResilientDatabaseService {
                 logger.error("Database update failed: {}", sql, e);
                 throw new RuntimeException("Database update execution failed", e);
             }
-        });
+        }, taskExecutor);
     }
 
     /**
@@ -113,7 +120,7 @@ public class ResilientDatabaseService {
                 logger.error("Database batch update failed: {}", sql, e);
                 throw new RuntimeException("Database batch update execution failed", e);
             }
-        });
+        }, taskExecutor);
     }
 
     /**
@@ -139,7 +146,7 @@ public class ResilientDatabaseService {
                 logger.error("Database single value query failed: {}", sql, e);
                 throw new RuntimeException("Database single value query execution failed", e);
             }
-        });
+        }, taskExecutor);
     }
 
     /**
@@ -163,7 +170,7 @@ public class ResilientDatabaseService {
                 logger.error("Database connectivity check failed", e);
                 throw new RuntimeException("Database connectivity check failed", e);
             }
-        });
+        }, taskExecutor);
     }
 
     /**
@@ -195,7 +202,7 @@ public class ResilientDatabaseService {
                 logger.error("Failed to retrieve database statistics", e);
                 throw new RuntimeException("Database statistics retrieval failed", e);
             }
-        });
+        }, taskExecutor);
     }
 
     // Fallback Methods
@@ -11,6 +11,8 @@ import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
@@ -32,6 +34,14 @@ public class ResilientPdfReportService {
     @Autowired
     private PdfReportService pdfReportService;
 
+    @Autowired
+    private ReportSnapshotService reportSnapshotService;
+
+    /** Platform pool, or a virtual thread per call in the virtual-threads profile (see ThreadingConfig) */
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor taskExecutor;
+
     /**
      * Generate PDF report with fault tolerance
      */
@@ -57,7 +67,7 @@ public class ResilientPdfReportService {
                 logger.error("Failed to generate PDF report for ULR: {}", labReport.getUlrNumber(), e);
                 throw new RuntimeException("PDF report generation failed", e);
             }
-        });
+        }, taskExecutor);
     }
 
     /**
@@ -85,7 +95,7 @@ public class ResilientPdfReportService {
                 logger.error("Failed to generate HTML report for ULR: {}", labReport.getUlrNumber(), e);
                 throw new RuntimeException("HTML report generation failed", e);
             }
-        });
+        }, taskExecutor);
     }
 
     /**
@@ -114,7 +124,7 @@ public class ResilientPdfReportService {
                 logger.error("Failed to generate PDF report with barcodes for ULR: {}", labReport.getUlrNumber(), e);
                 throw new RuntimeException("PDF report with barcodes generation failed", e);
             }
-        });
+        }, taskExecutor);
     }
 
     // Fallback Methods
@@ -134,7 +144,7 @@ public class ResilientPdfReportService {
                 logger.error("Even fallback PDF generation failed for ULR: {}", labReport.getUlrNumber(), e);
                 return generateMinimalPdf(labReport);
             }
-        });
+        }, taskExecutor);
     }
 
     /**
@@ -153,7 +163,7 @@ public class ResilientPdfReportService {
                 logger.error("Fallback PDF generation also failed for ULR: {}", labReport.getUlrNumber(), e);
                 return generateSimpleFallbackPdf(labReport);
             }
-        });
+        }, taskExecutor);
     }
 
     /**
@@ -256,7 +266,12 @@ public class ResilientPdfReportService {
         
         if (labReport.getReportData() != null) {
             content.append("=== REPORT DATA ===\n");
-            content.append(labReport.getReportData().toString()).append("\n\n");
+            try {
+                content.append(reportSnapshotService.resolve(labReport).toPrettyString()).append("\n\n");
+            } catch (RuntimeException e) {
+                logger.warn("Could not resolve report data for fallback report {}", labReport.getUlrNumber(), e);
+                content.append("Report data is temporarily unavailable.\n\n");
+            }
         }
         
         content.append("=== END OF REPORT ===\n");
@@ -0,0 +1,244 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sivalab.laboperations.entity.DisposalRunStatus;
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.SampleDisposalManifest;
+import com.sivalab.laboperations.entity.SampleDisposalRun;
+import com.sivalab.laboperations.repository.SampleDisposalManifestRepository;
+import com.sivalab.laboperations.repository.SampleDisposalRunRepository;
+import com.sivalab.laboperations.repository.SampleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * NABL Requirement: Sample retention and disposal
+ * Disposes STORED samples past their retention window in fixed-size chunks. Each chunk is disposed,
+ * written to its manifest and checkpointed in one transaction, so a run interrupted by a crash or
+ * an error resumes after the last committed chunk on the next trigger. Runs triggered over HTTP are
+ * processed on the job's own thread, outside the request and its open persistence context.
+ */
+@Service
+public class SampleDisposalJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(SampleDisposalJob.class);
+    private static final DateTimeFormatter RUN_CODE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final SampleRepository sampleRepository;
+    private final SampleDisposalRunRepository runRepository;
+    private final SampleDisposalManifestRepository manifestRepository;
+    private final SampleService sampleService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sample-disposal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final boolean enabled;
+    private final Duration retention;
+    private final int chunkSize;
+    private final String disposedBy;
+    private final String disposalMethod;
+
+    @Autowired
+    public SampleDisposalJob(SampleRepository sampleRepository,
+                             SampleDisposalRunRepository runRepository,
+                             SampleDisposalManifestRepository manifestRepository,
+                             SampleService sampleService,
+                             ObjectMapper objectMapper,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${lab.disposal.enabled:false}") boolean enabled,
+                             @Value("${lab.disposal.retention:7d}") Duration retention,
+                             @Value("${lab.disposal.chunk-size:500}") int chunkSize,
+                             @Value("${lab.disposal.disposed-by:System}") String disposedBy,
+                             @Value("${lab.disposal.method:AUTOCLAVE}") String disposalMethod) {
+        this.sampleRepository = sampleRepository;
+        this.runRepository = runRepository;
+        this.manifestRepository = manifestRepository;
+        this.sampleService = sampleService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.retention = retention;
+        this.chunkSize = chunkSize;
+        this.disposedBy = disposedBy;
+        this.disposalMethod = disposalMethod;
+    }
+
+    /**
+     * Nightly disposal run, off unless lab.disposal.enabled is set
+     */
+    @Scheduled(cron = "${lab.disposal.cron:0 30 2 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            runDisposal();
+        }
+    }
+
+    /**
+     * Resume the oldest unfinished run, or start a new one with cutoff = now - retention.
+     * Returns empty when another run is already in progress on this node.
+     */
+    public Optional<SampleDisposalRun> runDisposal() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Sample disposal run already in progress, skipping trigger");
+            return Optional.empty();
+        }
+        try {
+            SampleDisposalRun run = resumeOrStartRun();
+            return Optional.of(processRun(run));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Resume or start a run like runDisposal, but process it on the job's own thread.
+     * Returns the run as started, or empty when another run is already in progress on this node;
+     * progress is then read from getLatestRun.
+     */
+    public Optional<SampleDisposalRun> startDisposal() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Sample disposal run already in progress, skipping trigger");
+            return Optional.empty();
+        }
+        try {
+            SampleDisposalRun run = resumeOrStartRun();
+            runner.execute(() -> {
+                try {
+                    processRun(runRepository.findById(run.getRunId()).orElse(run));
+                } finally {
+                    running.set(false);
+                }
+            });
+            return Optional.of(run);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private SampleDisposalRun resumeOrStartRun() {
+        List<SampleDisposalRun> unfinished = runRepository.findByStatusInOrderByStartedAtAsc(
+                List.of(DisposalRunStatus.RUNNING, DisposalRunStatus.FAILED));
+        if (!unfinished.isEmpty()) {
+            SampleDisposalRun run = unfinished.get(0);
+            logger.info("Resuming disposal run {} after sample ID {} ({} samples already disposed)",
+                    run.getRunCode(), run.getLastSampleId(), run.getSamplesDisposed());
+            run.markResumed();
+            return runRepository.save(run);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        SampleDisposalRun run = new SampleDisposalRun("DSP-" + now.format(RUN_CODE_FORMAT),
+                now.minus(retention), disposalMethod, disposedBy);
+        logger.info("Starting disposal run {} for samples received before {}", run.getRunCode(), run.getCutoffDate());
+        return runRepository.save(run);
+    }
+
+    private SampleDisposalRun processRun(SampleDisposalRun run) {
+        try {
+            while (true) {
+                SampleDisposalRun current = run;
+                SampleDisposalRun advanced = transactionTemplate.execute(status -> disposeNextChunk(current));
+                if (advanced == null) {
+                    break;
+                }
+                run = advanced;
+            }
+            run.markCompleted();
+            run = runRepository.save(run);
+            logger.info("Disposal run {} completed: {} samples in {} batches",
+                    run.getRunCode(), run.getSamplesDisposed(), run.getBatchesCompleted());
+            return run;
+        } catch (RuntimeException e) {
+            logger.error("Disposal run {} failed after sample ID {}", run.getRunCode(), run.getLastSampleId(), e);
+            SampleDisposalRun failed = runRepository.findById(run.getRunId()).orElse(run);
+            failed.markFailed(e.getMessage());
+            return runRepository.save(failed);
+        }
+    }
+
+    /**
+     * Dispose one chunk, write its manifest and move the checkpoint; returns null when nothing is left
+     */
+    private SampleDisposalRun disposeNextChunk(SampleDisposalRun run) {
+        List<Long> ids = sampleRepository.findDisposalCandidateIds(
+                run.getCutoffDate(), run.getLastSampleId(), PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return null;
+        }
+
+        String batchCode = run.nextBatchCode();
+        List<Sample> disposed = sampleService.disposeSamplesInBatch(
+                ids, run.getDisposedBy(), run.getDisposalMethod(), batchCode);
+
+        if (!disposed.isEmpty()) {
+            manifestRepository.save(new SampleDisposalManifest(run.getRunId(), batchCode,
+                    run.getDisposalMethod(), run.getDisposedBy(), buildManifest(disposed)));
+        }
+
+        run.recordBatch(ids.get(ids.size() - 1), disposed.size());
+        return runRepository.save(run);
+    }
+
+    private ArrayNode buildManifest(List<Sample> samples) {
+        ArrayNode entries = objectMapper.createArrayNode();
+        for (Sample sample : samples) {
+            ObjectNode entry = entries.addObject();
+            entry.put("sampleNumber", sample.getSampleNumber());
+            entry.put("sampleType", sample.getSampleType().getCode());
+            entry.put("receivedAt", sample.getReceivedAt() != null ? sample.getReceivedAt().toString() : null);
+            entry.put("storageLocation", sample.getStorageLocation());
+        }
+        return entries;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * Most recent run, for status reporting
+     */
+    public Optional<SampleDisposalRun> getLatestRun() {
+        return runRepository.findFirstByOrderByStartedAtDesc();
+    }
+
+    public Optional<SampleDisposalManifest> getManifest(String disposalBatch) {
+        return manifestRepository.findByDisposalBatch(disposalBatch);
+    }
+
+    public List<SampleDisposalManifest> getManifestsForRun(String runCode) {
+        SampleDisposalRun run = runRepository.findByRunCode(runCode)
+                .orElseThrow(() -> new RuntimeException("Disposal run not found: " + runCode));
+        return manifestRepository.findByRunIdOrderByManifestIdAsc(run.getRunId());
+    }
+}
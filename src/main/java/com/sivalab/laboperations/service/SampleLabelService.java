@@ -0,0 +1,232 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.zxing.oned.Code128Writer;
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.repository.SampleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Sample tube labels in printer command languages (ZPL for Zebra, EPL for older Eltron/Zebra heads)
+ * The Code128 barcode and the text are drawn by the printer from its own barcode and font commands,
+ * so a label is a few hundred bytes of text and nothing is rasterised here. The label shows the
+ * sample number (as barcode and text), patient name, sample type and collection time; geometry comes
+ * from lab.labels.* and the barcode's module width is the widest that fits the label.
+ */
+@Service
+public class SampleLabelService {
+
+    private static final DateTimeFormatter COLLECTED_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+    private static final int MAX_COPIES = 99;
+    private static final int MAX_MODULE_WIDTH = 3;
+
+    private final SampleRepository sampleRepository;
+    private final int maxBatch;
+
+    // label layout in printer dots
+    private final int width;
+    private final int height;
+    private final int margin;
+    private final int gap;
+    private final int barcodeTop;
+    private final int barcodeHeight;
+    private final int numberTop;
+    private final int numberHeight;
+    private final int patientTop;
+    private final int detailTop;
+    private final int textHeight;
+    private final int eplCharWidth;
+
+    @Autowired
+    public SampleLabelService(SampleRepository sampleRepository,
+                              @Value("${lab.labels.dpi:203}") int dpi,
+                              @Value("${lab.labels.width-mm:50}") double widthMm,
+                              @Value("${lab.labels.height-mm:25}") double heightMm,
+                              @Value("${lab.labels.max-batch:500}") int maxBatch) {
+        this.sampleRepository = sampleRepository;
+        this.maxBatch = maxBatch;
+        this.width = dots(widthMm, dpi);
+        this.height = dots(heightMm, dpi);
+        this.margin = dots(2, dpi);
+        this.gap = dots(3, dpi);
+        this.barcodeTop = dots(1.5, dpi);
+        this.barcodeHeight = dots(9, dpi);
+        this.numberTop = dots(11.5, dpi);
+        this.numberHeight = dots(3, dpi);
+        this.patientTop = dots(15, dpi);
+        this.detailTop = dots(18.5, dpi);
+        this.textHeight = dots(2.6, dpi);
+        this.eplCharWidth = dots(1.5, dpi);
+    }
+
+    /**
+     * Label for one sample, or empty if there is no such sample
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> renderLabel(String sampleNumber, LabelFormat format, int copies) {
+        List<Sample> samples = sampleRepository.findWithVisitBySampleNumberIn(List.of(sampleNumber));
+        if (samples.isEmpty()) {
+            return Optional.empty();
+        }
+        StringBuilder out = new StringBuilder(512);
+        writeLabel(samples.get(0), format, copies, out);
+        return Optional.of(out.toString());
+    }
+
+    /**
+     * Labels for several samples in the order given, as one print job
+     * Samples and visits are loaded with a single query; unknown sample numbers fail the whole batch
+     * rather than printing a partial run.
+     */
+    @Transactional(readOnly = true)
+    public String renderLabels(List<String> sampleNumbers, LabelFormat format, int copies) {
+        if (sampleNumbers == null || sampleNumbers.isEmpty()) {
+            throw new IllegalArgumentException("No sample numbers given");
+        }
+        if (sampleNumbers.size() > maxBatch) {
+            throw new IllegalArgumentException("At most " + maxBatch + " labels per batch, got " + sampleNumbers.size());
+        }
+        Map<String, Sample> samples = new HashMap<>();
+        for (Sample sample : sampleRepository.findWithVisitBySampleNumberIn(new LinkedHashSet<>(sampleNumbers))) {
+            samples.put(sample.getSampleNumber(), sample);
+        }
+        List<String> missing = new ArrayList<>();
+        for (String sampleNumber : sampleNumbers) {
+            if (!samples.containsKey(sampleNumber)) {
+                missing.add(sampleNumber);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Samples not found: " + missing);
+        }
+
+        StringBuilder out = new StringBuilder(sampleNumbers.size() * 400);
+        for (String sampleNumber : sampleNumbers) {
+            writeLabel(samples.get(sampleNumber), format, copies, out);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Append one label for the sample (its visit must be loaded)
+     */
+    public void writeLabel(Sample sample, LabelFormat format, int copies, StringBuilder out) {
+        if (copies < 1 || copies > MAX_COPIES) {
+            throw new IllegalArgumentException("Copies must be between 1 and " + MAX_COPIES);
+        }
+        String sampleNumber = sample.getSampleNumber();
+        String patientName = patientName(sample);
+        String detail = detail(sample);
+
+        // the printer encodes the barcode; the module count is only needed to size and centre it
+        int modules = new Code128Writer().encode(sampleNumber).length;
+        int moduleWidth = Math.max(1, Math.min(MAX_MODULE_WIDTH, (width - 2 * margin) / modules));
+        int barcodeLeft = Math.max(margin, (width - modules * moduleWidth) / 2);
+
+        if (format == LabelFormat.ZPL) {
+            int maxChars = (width - 2 * margin) * 100 / (textHeight * 55);
+            out.append("^XA\n^CI28\n^PW").append(width).append("\n^LL").append(height).append('\n');
+            out.append("^FO").append(barcodeLeft).append(',').append(barcodeTop)
+               .append("^BY").append(moduleWidth).append("^BCN,").append(barcodeHeight).append(",N,N,N,A^FH^FD");
+            zplField(sampleNumber, out);
+            zplText(margin, numberTop, numberHeight, sampleNumber, out);
+            zplText(margin, patientTop, textHeight, truncate(patientName, maxChars), out);
+            zplText(margin, detailTop, textHeight, truncate(detail, maxChars), out);
+            out.append("^PQ").append(copies).append("\n^XZ\n");
+        } else {
+            int maxChars = (width - 2 * margin) / eplCharWidth;
+            out.append("\nN\nq").append(width).append("\nQ").append(height).append(',').append(gap).append('\n');
+            out.append('B').append(barcodeLeft).append(',').append(barcodeTop).append(",0,1,")
+               .append(moduleWidth).append(',').append(moduleWidth).append(',').append(barcodeHeight).append(",N,");
+            eplField(sampleNumber, out);
+            eplText(margin, numberTop, 3, sampleNumber, out);
+            eplText(margin, patientTop, 2, truncate(patientName, maxChars), out);
+            eplText(margin, detailTop, 2, truncate(detail, maxChars), out);
+            out.append('P').append(copies).append('\n');
+        }
+    }
+
+    private static void zplText(int x, int y, int fontHeight, String text, StringBuilder out) {
+        out.append("^FO").append(x).append(',').append(y)
+           .append("^A0N,").append(fontHeight).append(',').append(fontHeight).append("^FH^FD");
+        zplField(text, out);
+    }
+
+    /**
+     * Field data with ^FH hex escapes for the characters ZPL treats as commands
+     */
+    private static void zplField(String text, StringBuilder out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '^':
+                    out.append("_5E");
+                    break;
+                case '~':
+                    out.append("_7E");
+                    break;
+                case '_':
+                    out.append("_5F");
+                    break;
+                default:
+                    out.append(c < ' ' ? ' ' : c);
+                    break;
+            }
+        }
+        out.append("^FS\n");
+    }
+
+    private static void eplText(int x, int y, int font, String text, StringBuilder out) {
+        out.append('A').append(x).append(',').append(y).append(",0,").append(font).append(",1,1,N,");
+        eplField(text, out);
+    }
+
+    /**
+     * Quoted field data; EPL fonts are single-byte, so anything outside printable ASCII becomes '?'
+     */
+    private static void eplField(String text, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else {
+                out.append(c < ' ' || c > '~' ? '?' : c);
+            }
+        }
+        out.append("\"\n");
+    }
+
+    static String patientName(Sample sample) {
+        JsonNode patientDetails = sample.getVisit().getPatientDetails();
+        JsonNode name = patientDetails != null ? patientDetails.get("name") : null;
+        return name != null ? name.asText() : "";
+    }
+
+    /**
+     * Sample type and collection time, the label's last line
+     */
+    static String detail(Sample sample) {
+        return sample.getSampleType().getDisplayName()
+                + (sample.getCollectedAt() != null ? "  " + sample.getCollectedAt().format(COLLECTED_FORMATTER) : "");
+    }
+
+    private static String truncate(String text, int maxChars) {
+        return text.length() <= maxChars ? text : text.substring(0, Math.max(0, maxChars - 1)) + ".";
+    }
+
+    private static int dots(double mm, int dpi) {
+        return (int) Math.round(mm * dpi / 25.4);
+    }
+}
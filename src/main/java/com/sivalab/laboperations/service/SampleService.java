@@ -5,15 +5,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.sivalab.laboperations.entity.*;
+import com.sivalab.laboperations.event.SampleStatusChangedEvent;
 import com.sivalab.laboperations.repository.SampleRepository;
 import com.sivalab.laboperations.repository.VisitRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -28,14 +31,20 @@ public class SampleService {
     private final SampleRepository sampleRepository;
     private final VisitRepository visitRepository;
     private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SampleStorageService storageService;
     
     @Autowired
     public SampleService(SampleRepository sampleRepository, 
                         VisitRepository visitRepository,
-                        ObjectMapper objectMapper) {
+                        ObjectMapper objectMapper,
+                        ApplicationEventPublisher eventPublisher,
+                        SampleStorageService storageService) {
         this.sampleRepository = sampleRepository;
         this.visitRepository = visitRepository;
         this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.storageService = storageService;
     }
     
     /**
@@ -58,7 +67,7 @@ public class SampleService {
         // Initialize chain of custody
         sample.setChainOfCustody(createInitialChainOfCustody(collectedBy));
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, null);
     }
     
     /**
@@ -67,24 +76,34 @@ public class SampleService {
      */
     public Sample receiveSample(String sampleNumber, String receivedBy, 
                                Double receiptTemperature, String receiptCondition) {
+        return receiveSample(sampleNumber, receivedBy, receiptTemperature, receiptCondition, LocalDateTime.now(), null);
+    }
+    
+    /**
+     * Record sample receipt at the given time (e.g. when the tube was scanned, not when the scan was applied)
+     * The scanning station, if any, is recorded on the chain-of-custody event.
+     */
+    public Sample receiveSample(String sampleNumber, String receivedBy, Double receiptTemperature,
+                               String receiptCondition, LocalDateTime receivedAt, String station) {
         Sample sample = sampleRepository.findBySampleNumber(sampleNumber)
                 .orElseThrow(() -> new RuntimeException("Sample not found: " + sampleNumber));
+        SampleStatus previousStatus = sample.getStatus();
         
         // Validate status transition
         if (!sample.getStatus().canTransitionTo(SampleStatus.RECEIVED)) {
             throw new RuntimeException("Invalid status transition from " + sample.getStatus() + " to RECEIVED");
         }
         
-        sample.setReceivedAt(LocalDateTime.now());
+        sample.setReceivedAt(receivedAt);
         sample.setReceivedBy(receivedBy);
         sample.setReceiptTemperature(receiptTemperature);
         sample.setReceiptCondition(receiptCondition);
         sample.setStatus(SampleStatus.RECEIVED);
         
         // Update chain of custody
-        updateChainOfCustody(sample, "RECEIVED", receivedBy, "Sample received at laboratory");
+        updateChainOfCustody(sample, "RECEIVED", receivedBy, "Sample received at laboratory", receivedAt, station);
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, previousStatus);
     }
     
     /**
@@ -95,6 +114,7 @@ public class SampleService {
                               Double volumeReceived, String containerType, String preservative) {
         Sample sample = sampleRepository.findBySampleNumber(sampleNumber)
                 .orElseThrow(() -> new RuntimeException("Sample not found: " + sampleNumber));
+        SampleStatus previousStatus = sample.getStatus();
         
         // Perform quality checks
         boolean qualityAcceptable = performQualityChecks(sample, volumeReceived);
@@ -110,10 +130,11 @@ public class SampleService {
             
             updateChainOfCustody(sample, "ACCEPTED", acceptedBy, "Sample accepted for testing");
         } else {
-            rejectSample(sampleNumber, acceptedBy, "Failed quality control checks");
+            // rejectSample records and announces the REJECTED transition itself
+            return rejectSample(sampleNumber, acceptedBy, "Failed quality control checks");
         }
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, previousStatus);
     }
     
     /**
@@ -123,6 +144,7 @@ public class SampleService {
     public Sample rejectSample(String sampleNumber, String rejectedBy, String rejectionReason) {
         Sample sample = sampleRepository.findBySampleNumber(sampleNumber)
                 .orElseThrow(() -> new RuntimeException("Sample not found: " + sampleNumber));
+        SampleStatus previousStatus = sample.getStatus();
         
         sample.setStatus(SampleStatus.REJECTED);
         sample.setRejected(true);
@@ -132,7 +154,7 @@ public class SampleService {
         
         updateChainOfCustody(sample, "REJECTED", rejectedBy, "Sample rejected: " + rejectionReason);
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, previousStatus);
     }
     
     /**
@@ -141,23 +163,33 @@ public class SampleService {
      */
     public Sample startProcessing(String sampleNumber, String processedBy, 
                                  String storageLocation, Double storageTemperature) {
+        return startProcessing(sampleNumber, processedBy, storageLocation, storageTemperature, LocalDateTime.now(), null);
+    }
+    
+    /**
+     * Start sample processing at the given time (e.g. when the tube was scanned, not when the scan was applied)
+     * The scanning station, if any, is recorded on the chain-of-custody event.
+     */
+    public Sample startProcessing(String sampleNumber, String processedBy, String storageLocation,
+                                 Double storageTemperature, LocalDateTime processingStartedAt, String station) {
         Sample sample = sampleRepository.findBySampleNumber(sampleNumber)
                 .orElseThrow(() -> new RuntimeException("Sample not found: " + sampleNumber));
+        SampleStatus previousStatus = sample.getStatus();
         
         if (!sample.getStatus().canTransitionTo(SampleStatus.PROCESSING)) {
             throw new RuntimeException("Invalid status transition from " + sample.getStatus() + " to PROCESSING");
         }
         
         sample.setStatus(SampleStatus.PROCESSING);
-        sample.setProcessingStartedAt(LocalDateTime.now());
+        sample.setProcessingStartedAt(processingStartedAt);
         sample.setProcessedBy(processedBy);
         sample.setStorageLocation(storageLocation);
         sample.setStorageTemperature(storageTemperature);
         sample.setStorageConditions(sample.getSampleType().getStorageTemperature());
         
-        updateChainOfCustody(sample, "PROCESSING", processedBy, "Sample processing started");
+        updateChainOfCustody(sample, "PROCESSING", processedBy, "Sample processing started", processingStartedAt, station);
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, previousStatus);
     }
     
     /**
@@ -167,6 +199,7 @@ public class SampleService {
     public Sample startAnalysis(String sampleNumber, String analyst) {
         Sample sample = sampleRepository.findBySampleNumber(sampleNumber)
                 .orElseThrow(() -> new RuntimeException("Sample not found: " + sampleNumber));
+        SampleStatus previousStatus = sample.getStatus();
         
         if (!sample.getStatus().canTransitionTo(SampleStatus.IN_ANALYSIS)) {
             throw new RuntimeException("Invalid status transition from " + sample.getStatus() + " to IN_ANALYSIS");
@@ -175,7 +208,7 @@ public class SampleService {
         sample.setStatus(SampleStatus.IN_ANALYSIS);
         updateChainOfCustody(sample, "IN_ANALYSIS", analyst, "Sample analysis started");
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, previousStatus);
     }
     
     /**
@@ -185,6 +218,7 @@ public class SampleService {
     public Sample completeAnalysis(String sampleNumber, String analyst, JsonNode qualityIndicators) {
         Sample sample = sampleRepository.findBySampleNumber(sampleNumber)
                 .orElseThrow(() -> new RuntimeException("Sample not found: " + sampleNumber));
+        SampleStatus previousStatus = sample.getStatus();
         
         sample.setStatus(SampleStatus.ANALYSIS_COMPLETE);
         sample.setProcessingCompletedAt(LocalDateTime.now());
@@ -192,7 +226,7 @@ public class SampleService {
         
         updateChainOfCustody(sample, "ANALYSIS_COMPLETE", analyst, "Sample analysis completed");
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, previousStatus);
     }
     
     /**
@@ -202,11 +236,12 @@ public class SampleService {
     public Sample reviewSample(String sampleNumber, String reviewer) {
         Sample sample = sampleRepository.findBySampleNumber(sampleNumber)
                 .orElseThrow(() -> new RuntimeException("Sample not found: " + sampleNumber));
+        SampleStatus previousStatus = sample.getStatus();
         
         sample.setStatus(SampleStatus.REVIEWED);
         updateChainOfCustody(sample, "REVIEWED", reviewer, "Results reviewed and approved");
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, previousStatus);
     }
     
     /**
@@ -215,17 +250,58 @@ public class SampleService {
      */
     public Sample storeSample(String sampleNumber, String storageLocation, 
                              Double storageTemperature, String storageConditions) {
+        return storeSample(sampleNumber, storageLocation, storageTemperature, storageConditions, "System", null);
+    }
+    
+    /**
+     * Store a sample on behalf of a person or scanner
+     * The scanning station, if any, is recorded on the chain-of-custody event, never as the storage location.
+     */
+    public Sample storeSample(String sampleNumber, String storageLocation, Double storageTemperature,
+                             String storageConditions, String storedBy, String station) {
         Sample sample = sampleRepository.findBySampleNumber(sampleNumber)
                 .orElseThrow(() -> new RuntimeException("Sample not found: " + sampleNumber));
+        SampleStatus previousStatus = sample.getStatus();
+        
+        // Managed freezer/rack/box locations resolve to a concrete slot; free text is kept as-is
+        String slotLocation = storageService.assignSlot(sampleNumber, storageLocation);
         
         sample.setStatus(SampleStatus.STORED);
-        sample.setStorageLocation(storageLocation);
+        sample.setStorageLocation(slotLocation != null ? slotLocation : storageLocation);
         sample.setStorageTemperature(storageTemperature);
         sample.setStorageConditions(storageConditions);
         
-        updateChainOfCustody(sample, "STORED", "System", "Sample stored for retention");
+        updateChainOfCustody(sample, "STORED", storedBy, "Sample stored for retention at " + sample.getStorageLocation(),
+                LocalDateTime.now(), station);
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, previousStatus);
+    }
+    
+    /**
+     * NABL Requirement: Sample storage traceability
+     * Bulk re-shelve STORED samples into free slots of a freezer, rack or box
+     */
+    public List<Sample> reshelveSamples(List<String> sampleNumbers, String targetLocation, String performedBy) {
+        List<Sample> samples = sampleRepository.findBySampleNumberIn(sampleNumbers);
+        if (samples.size() != sampleNumbers.size()) {
+            throw new RuntimeException("Samples not found for re-shelving: " + sampleNumbers.stream()
+                    .filter(number -> samples.stream().noneMatch(s -> s.getSampleNumber().equals(number)))
+                    .collect(Collectors.joining(", ")));
+        }
+        for (Sample sample : samples) {
+            if (sample.getStatus() != SampleStatus.STORED) {
+                throw new RuntimeException("Only stored samples can be re-shelved: " + sample.getSampleNumber());
+            }
+        }
+        
+        Map<String, String> newLocations = storageService.moveSamples(sampleNumbers, targetLocation);
+        for (Sample sample : samples) {
+            String previousLocation = sample.getStorageLocation();
+            sample.setStorageLocation(newLocations.get(sample.getSampleNumber()));
+            updateChainOfCustody(sample, "RESHELVED", performedBy,
+                               "Sample moved from " + previousLocation + " to " + sample.getStorageLocation());
+        }
+        return sampleRepository.saveAll(samples);
     }
     
     /**
@@ -236,6 +312,9 @@ public class SampleService {
                                String disposalMethod, String disposalBatch) {
         Sample sample = sampleRepository.findBySampleNumber(sampleNumber)
                 .orElseThrow(() -> new RuntimeException("Sample not found: " + sampleNumber));
+        SampleStatus previousStatus = sample.getStatus();
+        
+        storageService.releaseSlots(List.of(sampleNumber));
         
         sample.setStatus(SampleStatus.DISPOSED);
         sample.setDisposedAt(LocalDateTime.now());
@@ -246,7 +325,46 @@ public class SampleService {
         updateChainOfCustody(sample, "DISPOSED", disposedBy, 
                            "Sample disposed via " + disposalMethod + " (Batch: " + disposalBatch + ")");
         
-        return sampleRepository.save(sample);
+        return saveTransition(sample, previousStatus);
+    }
+    
+    /**
+     * NABL Requirement: Sample Disposal Documentation
+     * Dispose a chunk of samples under one disposal batch with a single batched write.
+     * Samples that are no longer STORED are skipped; the disposed samples are returned.
+     */
+    public List<Sample> disposeSamplesInBatch(List<Long> sampleIds, String disposedBy,
+                                              String disposalMethod, String disposalBatch) {
+        LocalDateTime disposedAt = LocalDateTime.now();
+        List<Sample> samples = sampleRepository.findAllById(sampleIds).stream()
+                .filter(sample -> sample.getStatus() == SampleStatus.STORED)
+                .collect(Collectors.toList());
+        
+        for (Sample sample : samples) {
+            sample.setStatus(SampleStatus.DISPOSED);
+            sample.setDisposedAt(disposedAt);
+            sample.setDisposedBy(disposedBy);
+            sample.setDisposalMethod(disposalMethod);
+            sample.setDisposalBatch(disposalBatch);
+            
+            updateChainOfCustody(sample, "DISPOSED", disposedBy,
+                               "Sample disposed via " + disposalMethod + " (Batch: " + disposalBatch + ")");
+        }
+        
+        storageService.releaseSlots(samples.stream().map(Sample::getSampleNumber).collect(Collectors.toList()));
+        
+        List<Sample> saved = sampleRepository.saveAll(samples);
+        saved.forEach(sample -> eventPublisher.publishEvent(new SampleStatusChangedEvent(sample, SampleStatus.STORED)));
+        return saved;
+    }
+    
+    /**
+     * Persist a lifecycle transition and announce it; listeners act after the transaction commits
+     */
+    private Sample saveTransition(Sample sample, SampleStatus previousStatus) {
+        Sample saved = sampleRepository.save(sample);
+        eventPublisher.publishEvent(new SampleStatusChangedEvent(saved, previousStatus));
+        return saved;
     }
     
     /**
@@ -312,6 +430,16 @@ public class SampleService {
      * Update chain of custody
      */
     private void updateChainOfCustody(Sample sample, String event, String person, String description) {
+        updateChainOfCustody(sample, event, person, description, LocalDateTime.now());
+    }
+    
+    private void updateChainOfCustody(Sample sample, String event, String person, String description,
+                                      LocalDateTime timestamp) {
+        updateChainOfCustody(sample, event, person, description, timestamp, null);
+    }
+    
+    private void updateChainOfCustody(Sample sample, String event, String person, String description,
+                                      LocalDateTime timestamp, String station) {
         ObjectNode custody = (ObjectNode) sample.getChainOfCustody();
         if (custody == null) {
             custody = objectMapper.createObjectNode();
@@ -321,10 +449,13 @@ public class SampleService {
         ArrayNode events = (ArrayNode) custody.get("events");
         
         ObjectNode newEvent = objectMapper.createObjectNode();
-        newEvent.put("timestamp", LocalDateTime.now().toString());
+        newEvent.put("timestamp", timestamp.toString());
         newEvent.put("event", event);
         newEvent.put("person", person);
         newEvent.put("description", description);
+        if (station != null) {
+            newEvent.put("station", station);
+        }
         
         events.add(newEvent);
         sample.setChainOfCustody(custody);
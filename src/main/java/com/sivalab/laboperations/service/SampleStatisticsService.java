@@ -0,0 +1,325 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.SampleStatus;
+import com.sivalab.laboperations.entity.SampleType;
+import com.sivalab.laboperations.event.SampleStatusChangedEvent;
+import com.sivalab.laboperations.repository.SampleRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * NABL Requirement: Sample statistics for quality indicators
+ * Materialised sample counters keyed by (status, sampleType). Every committed SampleService transition
+ * moves one count between cells, so dashboards read the statistics without aggregating the samples
+ * table. The counters are rebuilt at startup and periodically reconciled with a single GROUP BY query
+ * to correct any drift (e.g. rows changed outside SampleService). Transitions are recorded from just
+ * before the query; those the query's snapshot does not contain yet (told apart by reading the samples'
+ * statuses in the same snapshot) are replayed onto the rebuilt counters before they replace the live ones.
+ */
+@Service
+public class SampleStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SampleStatisticsService.class);
+
+    private static final SampleStatus[] STATUSES = SampleStatus.values();
+    private static final SampleType[] TYPES = SampleType.values();
+    private static final Set<SampleStatus> ACTIVE_STATUSES =
+            EnumSet.of(SampleStatus.PROCESSING, SampleStatus.ALIQUOTED, SampleStatus.IN_ANALYSIS);
+
+    private final SampleRepository sampleRepository;
+    private final TransactionTemplate snapshotTransaction;
+
+    private volatile Counters counters = new Counters();
+
+    // transitions recorded during a rebuild, guarded by countersLock; null when no rebuild is running
+    private List<SampleStatusChangedEvent> pendingTransitions;
+    private final ReentrantLock countersLock = new ReentrantLock();
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+
+    @Autowired
+    public SampleStatisticsService(SampleRepository sampleRepository, MeterRegistry meterRegistry,
+                                   PlatformTransactionManager transactionManager) {
+        this.sampleRepository = sampleRepository;
+        // both reconciliation queries must read the same snapshot
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        for (SampleStatus status : STATUSES) {
+            Gauge.builder("lab.samples.count", this, service -> service.countByStatus(status))
+                    .description("Samples currently in each lifecycle status")
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Move one count from the previous (status, type) cell to the new one once the transition is committed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSampleStatusChanged(SampleStatusChangedEvent event) {
+        if (!event.isStatusChange() || event.getSampleType() == null) {
+            return;
+        }
+        countersLock.lock();
+        try {
+            counters.apply(event);
+            if (pendingTransitions != null) {
+                pendingTransitions.add(event);
+            }
+        } finally {
+            countersLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild the counters from the database
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${lab.stats.reconcile-interval-ms:300000}",
+               initialDelayString = "${lab.stats.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            rebuild();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void rebuild() {
+        // start recording before the snapshot, so no transition committed after it is missed
+        countersLock.lock();
+        try {
+            pendingTransitions = new ArrayList<>();
+        } finally {
+            countersLock.unlock();
+        }
+
+        Counters rebuilt = new Counters();
+        Counters previous;
+        try {
+            previous = snapshotTransaction.execute(status -> {
+                for (Object[] row : sampleRepository.countSamplesByStatusAndType()) {
+                    SampleStatus sampleStatus = (SampleStatus) row[0];
+                    SampleType type = (SampleType) row[1];
+                    if (sampleStatus == null || type == null) {
+                        continue;
+                    }
+                    rebuilt.add(sampleStatus, type, ((Number) row[2]).longValue());
+                    if (row[3] != null) {
+                        rebuilt.rejected.addAndGet(type.ordinal(), ((Number) row[3]).longValue());
+                    }
+                }
+                return replayAndSwap(rebuilt);
+            });
+        } finally {
+            countersLock.lock();
+            try {
+                pendingTransitions = null;
+            } finally {
+                countersLock.unlock();
+            }
+        }
+        if (previous.total() != rebuilt.total()) {
+            logger.info("Sample statistics reconciled: {} samples (counters had {})", rebuilt.total(), previous.total());
+        }
+    }
+
+    /**
+     * Replay the recorded transitions the snapshot does not contain, then swap in the rebuilt counters
+     * Recorded transitions may have committed before the snapshot was taken, so the status of each
+     * recorded sample is read in the same snapshot. Runs in the snapshot transaction.
+     */
+    private Counters replayAndSwap(Counters rebuilt) {
+        Map<String, SampleStatus> snapshotStatuses = new HashMap<>();
+        while (true) {
+            Set<String> unseen = new HashSet<>();
+            countersLock.lock();
+            try {
+                for (SampleStatusChangedEvent event : pendingTransitions) {
+                    if (!snapshotStatuses.containsKey(event.getSampleNumber())) {
+                        unseen.add(event.getSampleNumber());
+                    }
+                }
+                if (unseen.isEmpty()) {
+                    int replayed = replay(rebuilt, snapshotStatuses);
+                    if (replayed > 0) {
+                        logger.debug("Replayed {} sample transitions committed after the reconciliation snapshot", replayed);
+                    }
+                    Counters previous = counters;
+                    counters = rebuilt;
+                    pendingTransitions = null;
+                    return previous;
+                }
+            } finally {
+                countersLock.unlock();
+            }
+            // samples not in the snapshot keep a null status
+            unseen.forEach(sampleNumber -> snapshotStatuses.put(sampleNumber, null));
+            for (Object[] row : sampleRepository.findStatusesBySampleNumberIn(unseen)) {
+                snapshotStatuses.put((String) row[0], (SampleStatus) row[1]);
+            }
+        }
+    }
+
+    private int replay(Counters rebuilt, Map<String, SampleStatus> snapshotStatuses) {
+        Map<String, List<SampleStatusChangedEvent>> bySample = new LinkedHashMap<>();
+        for (SampleStatusChangedEvent event : pendingTransitions) {
+            bySample.computeIfAbsent(event.getSampleNumber(), sampleNumber -> new ArrayList<>()).add(event);
+        }
+        int replayed = 0;
+        for (Map.Entry<String, List<SampleStatusChangedEvent>> entry : bySample.entrySet()) {
+            List<SampleStatusChangedEvent> transitions = entry.getValue();
+            for (int i = countedInSnapshot(transitions, snapshotStatuses.get(entry.getKey())); i < transitions.size(); i++) {
+                rebuilt.apply(transitions.get(i));
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Number of leading transitions of one sample already counted by the snapshot: those up to the one
+     * that left the sample in its snapshot status
+     */
+    private static int countedInSnapshot(List<SampleStatusChangedEvent> transitions, SampleStatus snapshotStatus) {
+        if (transitions.get(0).getPreviousStatus() == snapshotStatus) {
+            return 0;
+        }
+        for (int i = 0; i < transitions.size(); i++) {
+            if (transitions.get(i).getNewStatus() == snapshotStatus) {
+                return i + 1;
+            }
+        }
+        // changed outside SampleService: the snapshot is authoritative
+        return transitions.size();
+    }
+
+    /**
+     * Sample statistics, read from the counters
+     */
+    public SampleStatistics getSampleStatistics() {
+        Counters current = counters;
+        Map<SampleStatus, Long> byStatus = new EnumMap<>(SampleStatus.class);
+        Map<SampleType, Long> byType = new EnumMap<>(SampleType.class);
+        long total = 0;
+        long rejected = 0;
+        for (SampleStatus status : STATUSES) {
+            for (SampleType type : TYPES) {
+                long count = current.get(status, type);
+                if (count != 0) {
+                    byStatus.merge(status, count, Long::sum);
+                    byType.merge(type, count, Long::sum);
+                    total += count;
+                }
+            }
+        }
+        for (SampleType type : TYPES) {
+            rejected += current.rejected.get(type.ordinal());
+        }
+        long active = ACTIVE_STATUSES.stream().mapToLong(status -> byStatus.getOrDefault(status, 0L)).sum();
+
+        return new SampleStatistics(total, rejected, byStatus.getOrDefault(SampleStatus.DISPOSED, 0L),
+                active, byStatus, byType);
+    }
+
+    public long countByStatus(SampleStatus status) {
+        Counters current = counters;
+        long count = 0;
+        for (SampleType type : TYPES) {
+            count += current.get(status, type);
+        }
+        return count;
+    }
+
+    public long countByStatusAndType(SampleStatus status, SampleType type) {
+        return counters.get(status, type);
+    }
+
+    /**
+     * One cell per (status, type) pair, plus the rejected flag count per type
+     */
+    private static final class Counters {
+        private final AtomicLongArray cells = new AtomicLongArray(STATUSES.length * TYPES.length);
+        private final AtomicLongArray rejected = new AtomicLongArray(TYPES.length);
+
+        private void apply(SampleStatusChangedEvent event) {
+            if (event.getPreviousStatus() != null) {
+                add(event.getPreviousStatus(), event.getSampleType(), -1);
+            }
+            add(event.getNewStatus(), event.getSampleType(), 1);
+            if (event.getNewStatus() == SampleStatus.REJECTED) {
+                rejected.incrementAndGet(event.getSampleType().ordinal());
+            }
+        }
+
+        private void add(SampleStatus status, SampleType type, long delta) {
+            cells.addAndGet(status.ordinal() * TYPES.length + type.ordinal(), delta);
+        }
+
+        private long get(SampleStatus status, SampleType type) {
+            return cells.get(status.ordinal() * TYPES.length + type.ordinal());
+        }
+
+        private long total() {
+            long total = 0;
+            for (int i = 0; i < cells.length(); i++) {
+                total += cells.get(i);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Inner class for sample statistics
+     */
+    public static class SampleStatistics {
+        private final long totalSamples;
+        private final long rejectedSamples;
+        private final long disposedSamples;
+        private final long activeSamples;
+        private final Map<SampleStatus, Long> samplesByStatus;
+        private final Map<SampleType, Long> samplesByType;
+
+        public SampleStatistics(long totalSamples, long rejectedSamples, long disposedSamples, long activeSamples,
+                                Map<SampleStatus, Long> samplesByStatus, Map<SampleType, Long> samplesByType) {
+            this.totalSamples = totalSamples;
+            this.rejectedSamples = rejectedSamples;
+            this.disposedSamples = disposedSamples;
+            this.activeSamples = activeSamples;
+            this.samplesByStatus = samplesByStatus;
+            this.samplesByType = samplesByType;
+        }
+
+        public long getTotalSamples() { return totalSamples; }
+        public long getRejectedSamples() { return rejectedSamples; }
+        public long getDisposedSamples() { return disposedSamples; }
+        public long getActiveSamples() { return activeSamples; }
+        public Map<SampleStatus, Long> getSamplesByStatus() { return samplesByStatus; }
+        public Map<SampleType, Long> getSamplesByType() { return samplesByType; }
+    }
+}
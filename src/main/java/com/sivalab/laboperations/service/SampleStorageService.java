@@ -0,0 +1,373 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.StorageBox;
+import com.sivalab.laboperations.entity.StorageSlotAssignment;
+import com.sivalab.laboperations.repository.StorageBoxRepository;
+import com.sivalab.laboperations.repository.StorageSlotAssignmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * NABL Requirement: Sample storage traceability
+ * Structured freezer/rack/box/slot storage. Slot assignments are persisted in their own table and
+ * mirrored in an in-memory occupancy index that is rebuilt at startup. Slots are reserved in the
+ * index under its lock; the assignment is written afterwards, outside the lock, and the reservation
+ * is undone if the surrounding transaction rolls back. Released slots only become free once the
+ * release has committed.
+ */
+@Service
+@Transactional
+public class SampleStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SampleStorageService.class);
+
+    private final StorageBoxRepository boxRepository;
+    private final StorageSlotAssignmentRepository assignmentRepository;
+    private final StorageOccupancyIndex index = new StorageOccupancyIndex();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Autowired
+    public SampleStorageService(StorageBoxRepository boxRepository,
+                                StorageSlotAssignmentRepository assignmentRepository) {
+        this.boxRepository = boxRepository;
+        this.assignmentRepository = assignmentRepository;
+    }
+
+    /**
+     * Load boxes and slot assignments into the occupancy index
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildIndex() {
+        List<StorageBox> boxes = boxRepository.findByIsActiveTrue();
+        List<StorageSlotAssignment> assignments = assignmentRepository.findAll();
+        lock.lock();
+        try {
+            index.clear();
+            for (StorageBox box : boxes) {
+                index.addBox(box.getBoxId(), box.getFreezerCode(), box.getRackCode(), box.getBoxCode(),
+                        box.getRows(), box.getColumns());
+            }
+            for (StorageSlotAssignment assignment : assignments) {
+                StorageOccupancyIndex.Slot slot = new StorageOccupancyIndex.Slot(assignment.getBoxId(), assignment.getSlotIndex());
+                try {
+                    index.reserve(slot, assignment.getSampleNumber());
+                } catch (RuntimeException e) {
+                    logger.warn("Skipping slot assignment {} for sample {}: {}",
+                            assignment.getAssignmentId(), assignment.getSampleNumber(), e.getMessage());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Storage index rebuilt: {} boxes, {} stored samples", boxes.size(), index.sampleCount());
+    }
+
+    /**
+     * Register a new storage box
+     */
+    public StorageBox createBox(String freezerCode, String rackCode, String boxCode,
+                                Integer rows, Integer columns, Double storageTemperature) {
+        validateCode(freezerCode, "Freezer code");
+        validateCode(rackCode, "Rack code");
+        validateCode(boxCode, "Box code");
+        if (rows == null || columns == null || rows <= 0 || rows > StorageOccupancyIndex.MAX_ROWS || columns <= 0) {
+            throw new RuntimeException("Box must have 1-" + StorageOccupancyIndex.MAX_ROWS + " rows and at least one column");
+        }
+        if (boxRepository.findByFreezerCodeAndRackCodeAndBoxCode(freezerCode, rackCode, boxCode).isPresent()) {
+            throw new RuntimeException("Storage box already exists: " + freezerCode + "/" + rackCode + "/" + boxCode);
+        }
+
+        StorageBox box = new StorageBox(freezerCode, rackCode, boxCode, rows, columns);
+        box.setStorageTemperature(storageTemperature);
+        StorageBox saved = boxRepository.save(box);
+
+        afterCommit(() -> index.addBox(saved.getBoxId(), freezerCode, rackCode, boxCode, rows, columns));
+        return saved;
+    }
+
+    /**
+     * Allocate a slot for the sample
+     * The location may name a freezer, a rack (FREEZER/RACK), a box (FREEZER/RACK/BOX) or an exact slot
+     * (FREEZER/RACK/BOX/A1). Returns the full slot location, or null when the location is not a managed
+     * storage location (free-text locations are stored as-is).
+     */
+    public String assignSlot(String sampleNumber, String location) {
+        Reservation reservation;
+        lock.lock();
+        try {
+            if (!index.isManagedLocation(location)) {
+                return null;
+            }
+            reservation = reserve(sampleNumber, allocate(location));
+        } finally {
+            lock.unlock();
+        }
+        persist(List.of(reservation));
+        return reservation.location;
+    }
+
+    /**
+     * Bulk re-shelve: move every sample into free slots of the target location
+     * All or nothing: if the target runs out of space the transaction rolls back and every reservation is undone.
+     * Returns sample number to new slot location, in input order.
+     */
+    public Map<String, String> moveSamples(List<String> sampleNumbers, String targetLocation) {
+        if (new HashSet<>(sampleNumbers).size() != sampleNumbers.size()) {
+            throw new RuntimeException("Duplicate sample numbers in re-shelve request");
+        }
+        List<Reservation> reservations = new ArrayList<>(sampleNumbers.size());
+        lock.lock();
+        try {
+            if (!index.isManagedLocation(targetLocation)) {
+                throw new RuntimeException("Unknown storage location: " + targetLocation);
+            }
+            for (String sampleNumber : sampleNumbers) {
+                reservations.add(reserve(sampleNumber, allocate(targetLocation)));
+            }
+        } catch (RuntimeException e) {
+            undo(reservations);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        persist(reservations);
+
+        Map<String, String> moved = new LinkedHashMap<>();
+        for (Reservation reservation : reservations) {
+            moved.put(reservation.sampleNumber, reservation.location);
+        }
+        return moved;
+    }
+
+    /**
+     * Release the slots held by the given samples (disposal); slots become free once the transaction commits
+     */
+    public void releaseSlots(Collection<String> sampleNumbers) {
+        if (sampleNumbers.isEmpty()) {
+            return;
+        }
+        List<StorageSlotAssignment> assignments = assignmentRepository.findBySampleNumberIn(sampleNumbers);
+        if (assignments.isEmpty()) {
+            return;
+        }
+        assignmentRepository.deleteAll(assignments);
+        afterCommit(() -> {
+            for (StorageSlotAssignment assignment : assignments) {
+                index.vacate(new StorageOccupancyIndex.Slot(assignment.getBoxId(), assignment.getSlotIndex()),
+                        assignment.getSampleNumber());
+            }
+        });
+    }
+
+    /**
+     * Where is the sample? Full slot location, or null when it is not in managed storage
+     */
+    @Transactional(readOnly = true)
+    public String locateSample(String sampleNumber) {
+        lock.lock();
+        try {
+            StorageOccupancyIndex.Slot slot = index.locate(sampleNumber);
+            return slot != null ? index.describe(slot) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * What is in the box? Slot label to sample number (null for free slots), or null for an unknown box
+     */
+    @Transactional(readOnly = true)
+    public Map<String, String> getBoxContents(String boxPath) {
+        lock.lock();
+        try {
+            return index.contents(boxPath);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Occupied slot count per box path
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Integer> getOccupancy() {
+        lock.lock();
+        try {
+            Map<String, Integer> occupancy = new LinkedHashMap<>();
+            index.boxPaths().stream().sorted()
+                    .forEach(path -> occupancy.put(path, index.occupiedSlots(path)));
+            return occupancy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<StorageBox> getBoxes() {
+        return boxRepository.findByIsActiveTrue();
+    }
+
+    /**
+     * Exact slot if the location names one and it is free, otherwise the first free slot in the scope
+     */
+    private StorageOccupancyIndex.Slot allocate(String location) {
+        StorageOccupancyIndex.Slot exact = index.parseSlot(location);
+        if (exact != null) {
+            if (!index.isFree(exact)) {
+                throw new RuntimeException("Storage slot is occupied: " + location);
+            }
+            return exact;
+        }
+        StorageOccupancyIndex.Slot free = index.findFreeSlot(location);
+        if (free == null) {
+            throw new RuntimeException("No free storage slot in " + location);
+        }
+        return free;
+    }
+
+    /**
+     * Hold the slot for the sample in the index; its previous slot stays occupied until the move commits
+     * Called with the lock held.
+     */
+    private Reservation reserve(String sampleNumber, StorageOccupancyIndex.Slot slot) {
+        StorageOccupancyIndex.Slot previous = index.locate(sampleNumber);
+        index.reserve(slot, sampleNumber);
+        return new Reservation(sampleNumber, slot, previous, index.describe(slot));
+    }
+
+    /**
+     * Write the reserved assignments, without the lock so other storage operations do not wait on the
+     * database. On commit the previous slots are freed; on rollback the reservations are undone.
+     */
+    private void persist(List<Reservation> reservations) {
+        TransactionSynchronization completion = new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.lock();
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        for (Reservation reservation : reservations) {
+                            if (reservation.previous != null) {
+                                index.vacate(reservation.previous, reservation.sampleNumber);
+                            }
+                        }
+                    } else {
+                        undo(reservations);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(completion);
+        }
+        try {
+            Map<String, StorageSlotAssignment> existing = new HashMap<>();
+            for (StorageSlotAssignment assignment : assignmentRepository.findBySampleNumberIn(
+                    reservations.stream().map(reservation -> reservation.sampleNumber).toList())) {
+                existing.put(assignment.getSampleNumber(), assignment);
+            }
+            LocalDateTime storedAt = LocalDateTime.now();
+            List<StorageSlotAssignment> assignments = new ArrayList<>(reservations.size());
+            for (Reservation reservation : reservations) {
+                StorageOccupancyIndex.Slot slot = reservation.slot;
+                StorageSlotAssignment assignment = existing.computeIfAbsent(reservation.sampleNumber,
+                        sampleNumber -> new StorageSlotAssignment(slot.getBoxId(), slot.getSlotIndex(), sampleNumber));
+                assignment.setBoxId(slot.getBoxId());
+                assignment.setSlotIndex(slot.getSlotIndex());
+                assignment.setStoredAt(storedAt);
+                assignments.add(assignment);
+            }
+            assignmentRepository.saveAll(assignments);
+        } catch (RuntimeException e) {
+            if (!inTransaction) {
+                completion.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+            throw e;
+        }
+        if (!inTransaction) {
+            completion.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    /**
+     * Free the reserved slots and point the samples back at their previous slots, latest first
+     * Called with the lock held.
+     */
+    private void undo(List<Reservation> reservations) {
+        for (int i = reservations.size() - 1; i >= 0; i--) {
+            Reservation reservation = reservations.get(i);
+            index.vacate(reservation.slot, reservation.sampleNumber);
+            if (reservation.previous != null) {
+                index.restoreLocation(reservation.sampleNumber, reservation.previous);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lock.lock();
+                try {
+                    action.run();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    private void registerSynchronization(TransactionSynchronization synchronization) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(synchronization);
+        } else {
+            synchronization.afterCommit();
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    private void validateCode(String code, String name) {
+        if (code == null || code.isBlank() || code.contains("/")) {
+            throw new RuntimeException(name + " is required and must not contain '/'");
+        }
+    }
+
+    /**
+     * A slot held in the index for a sample whose assignment is not yet committed
+     */
+    private static final class Reservation {
+        private final String sampleNumber;
+        private final StorageOccupancyIndex.Slot slot;
+        private final StorageOccupancyIndex.Slot previous;
+        private final String location;
+
+        private Reservation(String sampleNumber, StorageOccupancyIndex.Slot slot,
+                            StorageOccupancyIndex.Slot previous, String location) {
+            this.sampleNumber = sampleNumber;
+            this.slot = slot;
+            this.previous = previous;
+            this.location = location;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.SampleStatus;
+import com.sivalab.laboperations.event.SampleOverdueEvent;
+import com.sivalab.laboperations.event.SampleStatusChangedEvent;
+import com.sivalab.laboperations.repository.SampleRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * NABL Requirement: Turnaround time (TAT) monitoring
+ * Keeps one in-memory deadline per sample in a hierarchical timing wheel instead of polling
+ * SampleRepository.findOverdueSamples. Deadlines are armed on receipt and on processing start,
+ * disarmed on every other transition, and rebuilt from the database when the application starts.
+ * Each reported breach is marked on the sample, so it is reported exactly once across restarts.
+ * The wheel is guarded by a ReentrantLock rather than a monitor, so status changes handled on virtual
+ * threads park instead of pinning their carrier while the scheduler tick holds it.
+ */
+@Service
+public class SampleTurnaroundMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SampleTurnaroundMonitor.class);
+
+    private final SampleRepository sampleRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration receiptDeadline;
+    private final Duration processingDeadline;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final HierarchicalTimingWheel<String> wheel;
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private final Map<String, SampleStatus> armedPhase = new ConcurrentHashMap<>();
+    private final Map<String, SampleOverdueEvent> overdueSamples = new ConcurrentHashMap<>();
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final Map<SampleStatus, Counter> overdueCounters = new EnumMap<>(SampleStatus.class);
+
+    @Autowired
+    public SampleTurnaroundMonitor(SampleRepository sampleRepository,
+                                   ApplicationEventPublisher eventPublisher,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${lab.tat.receipt-deadline:4h}") Duration receiptDeadline,
+                                   @Value("${lab.tat.processing-deadline:24h}") Duration processingDeadline,
+                                   @Value("${lab.tat.tick-interval-ms:1000}") long tickIntervalMs) {
+        this.sampleRepository = sampleRepository;
+        this.eventPublisher = eventPublisher;
+        this.receiptDeadline = receiptDeadline;
+        this.processingDeadline = processingDeadline;
+        this.wheel = new HierarchicalTimingWheel<>(tickIntervalMs, System.currentTimeMillis());
+
+        for (SampleStatus phase : List.of(SampleStatus.RECEIVED, SampleStatus.ACCESSIONED, SampleStatus.PROCESSING)) {
+            overdueCounters.put(phase, Counter.builder("lab.samples.tat.breaches")
+                    .description("Samples that missed their turnaround-time deadline")
+                    .tag("phase", phase.name())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("lab.samples.tat.armed", armedPhase, Map::size)
+                .description("Samples with a running turnaround-time deadline")
+                .register(meterRegistry);
+        Gauge.builder("lab.samples.tat.overdue", overdueSamples, Map::size)
+                .description("Samples currently past their turnaround-time deadline")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rebuild the wheel from the database so deadlines survive restarts
+     * Breaches that happened while the application was down are reported now; breaches already reported
+     * for the sample's current phase (see fire) are only listed as overdue again, so a restart does not
+     * count, log or publish the same breach twice.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFromDatabase() {
+        List<Object[]> rows = sampleRepository.findTurnaroundTrackingSnapshot();
+        List<SampleOverdueEvent> alreadyReported = new ArrayList<>();
+        List<SampleOverdueEvent> unreported = new ArrayList<>();
+        wheelLock.lock();
+        try {
+            wheel.clear();
+            armedPhase.clear();
+            overdueSamples.clear();
+            for (Object[] row : rows) {
+                String sampleNumber = (String) row[0];
+                SampleStatus status = (SampleStatus) row[1];
+                LocalDateTime deadline = deadlineFor(status, (LocalDateTime) row[2], (LocalDateTime) row[3]);
+                if (deadline != null) {
+                    SampleOverdueEvent overdue = arm(sampleNumber, status, deadline);
+                    if (overdue != null && status == row[4]) {
+                        alreadyReported.add(overdue);
+                    } else if (overdue != null) {
+                        unreported.add(overdue);
+                    }
+                }
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+        alreadyReported.forEach(overdue -> overdueSamples.put(overdue.getSampleNumber(), overdue));
+        unreported.forEach(this::fire);
+        logger.info("TAT monitor rebuilt: {} deadlines armed, {} samples already overdue ({} breached while down)",
+                armedPhase.size(), alreadyReported.size() + unreported.size(), unreported.size());
+    }
+
+    /**
+     * Arm or disarm the sample's deadline once the transition is committed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSampleStatusChanged(SampleStatusChangedEvent event) {
+        LocalDateTime deadline = deadlineFor(event.getNewStatus(), event.getReceivedAt(), event.getProcessingStartedAt());
+        SampleOverdueEvent overdue = null;
+        wheelLock.lock();
+        try {
+            if (deadline == null) {
+                wheel.cancel(event.getSampleNumber());
+                armedPhase.remove(event.getSampleNumber());
+                overdueSamples.remove(event.getSampleNumber());
+            } else if (event.isStatusChange()) {
+                overdueSamples.remove(event.getSampleNumber());
+                overdue = arm(event.getSampleNumber(), event.getNewStatus(), deadline);
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+        if (overdue != null) {
+            fire(overdue);
+        }
+    }
+
+    /**
+     * Advance the wheel; only the slots that are due are touched
+     */
+    @Scheduled(fixedRateString = "${lab.tat.tick-interval-ms:1000}")
+    public void tick() {
+        List<SampleOverdueEvent> fired = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        wheelLock.lock();
+        try {
+            for (HierarchicalTimingWheel.Expired<String> expired : wheel.advanceTo(System.currentTimeMillis())) {
+                SampleStatus phase = armedPhase.remove(expired.getKey());
+                if (phase != null) {
+                    fired.add(new SampleOverdueEvent(expired.getKey(), phase, toLocal(expired.getDeadlineMillis()), now));
+                }
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+        fired.forEach(this::fire);
+    }
+
+    /**
+     * Samples currently past their deadline, oldest deadline first
+     */
+    public List<SampleOverdueEvent> getOverdueSamples() {
+        List<SampleOverdueEvent> result = new ArrayList<>(overdueSamples.values());
+        result.sort(Comparator.comparing(SampleOverdueEvent::getDeadline));
+        return result;
+    }
+
+    /**
+     * Live feed of overdue events (Server-Sent Events)
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitters.add(emitter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        return emitter;
+    }
+
+    public int getArmedCount() {
+        return armedPhase.size();
+    }
+
+    private SampleOverdueEvent arm(String sampleNumber, SampleStatus phase, LocalDateTime deadline) {
+        boolean alreadyDue = wheel.schedule(sampleNumber, deadline.atZone(zone).toInstant().toEpochMilli());
+        if (alreadyDue) {
+            armedPhase.remove(sampleNumber);
+            return new SampleOverdueEvent(sampleNumber, phase, deadline, LocalDateTime.now());
+        }
+        armedPhase.put(sampleNumber, phase);
+        return null;
+    }
+
+    private void fire(SampleOverdueEvent event) {
+        overdueSamples.put(event.getSampleNumber(), event);
+        Counter counter = overdueCounters.get(event.getStatus());
+        if (counter != null) {
+            counter.increment();
+        }
+        logger.warn("Sample {} breached its {} turnaround deadline ({})",
+                event.getSampleNumber(), event.getStatus(), event.getDeadline());
+        eventPublisher.publishEvent(event);
+
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("sample-overdue").data(event));
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+            }
+        }
+
+        // Marked after reporting: a crash in between reports the breach again on restart rather than losing it
+        try {
+            sampleRepository.markTurnaroundBreachReported(event.getSampleNumber(), event.getStatus(),
+                    event.getDetectedAt());
+        } catch (RuntimeException e) {
+            logger.warn("Could not record the reported TAT breach of sample {}: {}",
+                    event.getSampleNumber(), e.getMessage());
+        }
+    }
+
+    /**
+     * RECEIVED/ACCESSIONED samples must start processing within the receipt TAT,
+     * PROCESSING samples must finish within the processing TAT; other phases are not tracked
+     */
+    private LocalDateTime deadlineFor(SampleStatus status, LocalDateTime receivedAt, LocalDateTime processingStartedAt) {
+        switch (status) {
+            case RECEIVED:
+            case ACCESSIONED:
+                return receivedAt != null ? receivedAt.plus(receiptDeadline) : null;
+            case PROCESSING:
+                return processingStartedAt != null ? processingStartedAt.plus(processingDeadline) : null;
+            default:
+                return null;
+        }
+    }
+
+    private LocalDateTime toLocal(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+    }
+}
@@ -0,0 +1,325 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.dto.ScanAction;
+import com.sivalab.laboperations.dto.ScanEventRequest;
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.repository.SampleRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * High-rate barcode scan ingestion
+ * Scans are accepted into a bounded queue and applied by a single writer thread, so scan bursts
+ * use one database connection instead of one request thread each. The writer drains the queue in
+ * batches, drops repeat scans of the same sample and action within the coalescing window, scans
+ * that would not change the sample and STORE scans without a location, then applies the rest as
+ * SampleService transitions in one transaction per batch (falling back to one transaction per scan
+ * if the batch fails). Receipt and
+ * processing start are recorded at the scan's scannedAt (capped at the time it was queued), so a
+ * queue backlog does not shift the turnaround-time clock.
+ */
+@Service
+public class ScanIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanIngestionService.class);
+
+    private final SampleService sampleService;
+    private final SampleRepository sampleRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final BlockingQueue<QueuedScan> queue;
+    private final int batchSize;
+    private final long coalesceWindowMillis;
+
+    // Owned by the writer thread
+    private final Map<String, Long> lastAppliedScan = new HashMap<>();
+    private long lastPruneMillis;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final Counter receivedCounter;
+    private final Counter rejectedCounter;
+    private final Counter coalescedCounter;
+    private final Counter appliedCounter;
+    private final Counter failedCounter;
+    private final Timer batchTimer;
+    private final Timer lagTimer;
+
+    @Autowired
+    public ScanIngestionService(SampleService sampleService,
+                                SampleRepository sampleRepository,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${lab.scans.queue-capacity:10000}") int queueCapacity,
+                                @Value("${lab.scans.batch-size:200}") int batchSize,
+                                @Value("${lab.scans.coalesce-window:5s}") Duration coalesceWindow) {
+        this.sampleService = sampleService;
+        this.sampleRepository = sampleRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.coalesceWindowMillis = coalesceWindow.toMillis();
+
+        Gauge.builder("lab.scans.queue.depth", queue, BlockingQueue::size)
+                .description("Scans waiting to be applied")
+                .register(meterRegistry);
+        Gauge.builder("lab.scans.queue.remaining", queue, BlockingQueue::remainingCapacity)
+                .description("Free capacity of the scan queue")
+                .register(meterRegistry);
+        this.receivedCounter = Counter.builder("lab.scans.received")
+                .description("Scans accepted into the queue").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("lab.scans.rejected")
+                .description("Scans refused because the queue was full").register(meterRegistry);
+        this.coalescedCounter = Counter.builder("lab.scans.coalesced")
+                .description("Duplicate or no-op scans dropped by the writer").register(meterRegistry);
+        this.appliedCounter = Counter.builder("lab.scans.applied")
+                .description("Scans applied as sample transitions").register(meterRegistry);
+        this.failedCounter = Counter.builder("lab.scans.failed")
+                .description("Scans that could not be applied").register(meterRegistry);
+        this.batchTimer = Timer.builder("lab.scans.batch")
+                .description("Time to apply one batch of scans").register(meterRegistry);
+        this.lagTimer = Timer.builder("lab.scans.lag")
+                .description("Time from scan receipt to its transition being applied").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::drainLoop, "scan-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Queue scans without blocking; returns how many were accepted before the queue filled up
+     */
+    public int submit(List<ScanEventRequest> scans) {
+        long now = System.nanoTime();
+        int accepted = 0;
+        for (ScanEventRequest scan : scans) {
+            LocalDateTime queuedAt = LocalDateTime.now();
+            if (scan.getScannedAt() == null || scan.getScannedAt().isAfter(queuedAt)) {
+                // scanner clocks ahead of the server must not push deadlines into the future
+                scan.setScannedAt(queuedAt);
+            }
+            if (!queue.offer(new QueuedScan(scan, now))) {
+                rejectedCounter.increment(scans.size() - accepted);
+                break;
+            }
+            accepted++;
+        }
+        receivedCounter.increment(accepted);
+        return accepted;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getRemainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    private void drainLoop() {
+        List<QueuedScan> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                pruneCoalesceWindow();
+                QueuedScan first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                long start = System.nanoTime();
+                applyBatch(batch);
+                batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Scan batch of {} failed", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void applyBatch(List<QueuedScan> batch) {
+        List<QueuedScan> pending = coalesce(batch);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (QueuedScan scan : pending) {
+                    apply(scan.request);
+                }
+            });
+            pending.forEach(this::recordApplied);
+        } catch (RuntimeException batchFailure) {
+            logger.debug("Scan batch rolled back, applying {} scans individually", pending.size(), batchFailure);
+            for (QueuedScan scan : pending) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> apply(scan.request));
+                    recordApplied(scan);
+                } catch (RuntimeException e) {
+                    failedCounter.increment();
+                    forget(scan.request);
+                    logger.warn("Scan {} of sample {} at {} failed: {}", scan.request.getAction(),
+                            scan.request.getSampleNumber(), scan.request.getStation(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop repeat scans within the window and scans that would not move the sample forward
+     */
+    private List<QueuedScan> coalesce(List<QueuedScan> batch) {
+        List<QueuedScan> unique = new ArrayList<>(batch.size());
+        for (QueuedScan scan : batch) {
+            if (scan.request.getAction() == ScanAction.STORE
+                    && (scan.request.getLocation() == null || scan.request.getLocation().isBlank())) {
+                // the station is where the tube was scanned, not where it is kept
+                failedCounter.increment();
+                logger.warn("Scan STORE at {} for sample {} has no storage location", scan.request.getStation(),
+                        scan.request.getSampleNumber());
+                continue;
+            }
+            String key = key(scan.request);
+            long scannedAt = scan.request.getScannedAt().atZone(zone).toInstant().toEpochMilli();
+            Long last = lastAppliedScan.get(key);
+            if (last != null && Math.abs(scannedAt - last) < coalesceWindowMillis) {
+                coalescedCounter.increment();
+                continue;
+            }
+            lastAppliedScan.put(key, scannedAt);
+            unique.add(scan);
+        }
+        if (unique.isEmpty()) {
+            return unique;
+        }
+
+        Map<String, Sample> samples = sampleRepository.findBySampleNumberIn(
+                        unique.stream().map(scan -> scan.request.getSampleNumber()).distinct().collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(Sample::getSampleNumber, Function.identity()));
+        List<QueuedScan> pending = new ArrayList<>(unique.size());
+        for (QueuedScan scan : unique) {
+            Sample sample = samples.get(scan.request.getSampleNumber());
+            ScanAction action = scan.request.getAction();
+            if (sample == null) {
+                failedCounter.increment();
+                forget(scan.request);
+                logger.warn("Scan {} at {} for unknown sample {}", action, scan.request.getStation(), scan.request.getSampleNumber());
+            } else if (sample.getStatus() == action.getTargetStatus()) {
+                coalescedCounter.increment();
+            } else {
+                pending.add(scan);
+            }
+        }
+        return pending;
+    }
+
+    private void apply(ScanEventRequest scan) {
+        String sampleNumber = scan.getSampleNumber();
+        String person = scan.getScannedBy() != null ? scan.getScannedBy() : scan.getStation();
+        switch (scan.getAction()) {
+            case RECEIVE:
+                sampleService.receiveSample(sampleNumber, person, null, null, scan.getScannedAt(), scan.getStation());
+                break;
+            case PROCESS:
+                sampleService.startProcessing(sampleNumber, person, null, null, scan.getScannedAt(), scan.getStation());
+                break;
+            case ANALYZE:
+                sampleService.startAnalysis(sampleNumber, person);
+                break;
+            case COMPLETE:
+                sampleService.completeAnalysis(sampleNumber, person, null);
+                break;
+            case REVIEW:
+                sampleService.reviewSample(sampleNumber, person);
+                break;
+            case STORE:
+                sampleService.storeSample(sampleNumber, scan.getLocation(), null, null, person, scan.getStation());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported scan action: " + scan.getAction());
+        }
+    }
+
+    private void recordApplied(QueuedScan scan) {
+        appliedCounter.increment();
+        lagTimer.record(System.nanoTime() - scan.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A scan that was not applied must not suppress a retry within the window
+     */
+    private void forget(ScanEventRequest scan) {
+        lastAppliedScan.remove(key(scan));
+    }
+
+    private void pruneCoalesceWindow() {
+        long now = System.currentTimeMillis();
+        if (now - lastPruneMillis < coalesceWindowMillis) {
+            return;
+        }
+        lastPruneMillis = now;
+        long cutoff = now - coalesceWindowMillis;
+        Iterator<Map.Entry<String, Long>> entries = lastAppliedScan.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().getValue() < cutoff) {
+                entries.remove();
+            }
+        }
+    }
+
+    private static String key(ScanEventRequest scan) {
+        return scan.getSampleNumber() + "|" + scan.getAction();
+    }
+
+    private static final class QueuedScan {
+        private final ScanEventRequest request;
+        private final long enqueuedAtNanos;
+
+        private QueuedScan(ScanEventRequest request, long enqueuedAtNanos) {
+            this.request = request;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+}
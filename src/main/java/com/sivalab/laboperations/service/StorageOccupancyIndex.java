@@ -0,0 +1,297 @@
+package com.sivalab.laboperations.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory freezer/rack/box occupancy index
+ *
+ * Every box keeps an occupancy bitmap (one bit per slot) and the sample number held by each slot.
+ * Boxes with at least one free slot are kept in insertion-ordered sets per scope (freezer,
+ * freezer/rack and freezer/rack/box), so allocating a free slot in any scope takes the first box of
+ * the set and the first clear bit of its bitmap without scanning full boxes.
+ *
+ * Locations are written as FREEZER/RACK/BOX/SLOT, with slots labelled by row letter and column
+ * number (A1, A2, ... B1, ...).
+ *
+ * Not thread-safe: callers serialise access.
+ */
+public class StorageOccupancyIndex {
+
+    public static final int MAX_ROWS = 26;
+
+    private final Map<Long, Box> boxesById = new HashMap<>();
+    private final Map<String, Box> boxesByPath = new HashMap<>();
+    private final Map<String, Set<Box>> boxesWithFreeSlots = new HashMap<>();
+    private final Map<String, Slot> locations = new HashMap<>();
+
+    /**
+     * Register an (empty) box
+     */
+    public void addBox(Long boxId, String freezerCode, String rackCode, String boxCode, int rows, int columns) {
+        if (rows <= 0 || rows > MAX_ROWS || columns <= 0) {
+            throw new IllegalArgumentException("Invalid box geometry: " + rows + "x" + columns);
+        }
+        Box box = new Box(boxId, freezerCode, rackCode, boxCode, rows, columns);
+        if (boxesByPath.containsKey(box.path)) {
+            throw new IllegalArgumentException("Storage box already exists: " + box.path);
+        }
+        boxesById.put(boxId, box);
+        boxesByPath.put(box.path, box);
+        markHasFreeSlots(box);
+    }
+
+    public boolean hasBox(String path) {
+        return boxesByPath.containsKey(path);
+    }
+
+    /**
+     * True when the location names a known freezer, rack, box or slot
+     */
+    public boolean isManagedLocation(String location) {
+        if (location == null) {
+            return false;
+        }
+        // every registered scope keeps its (possibly empty) free-box set
+        return boxesWithFreeSlots.containsKey(location) || parseSlot(location) != null;
+    }
+
+    /**
+     * First free slot in the given scope (freezer, freezer/rack or freezer/rack/box), or null when the scope is full
+     */
+    public Slot findFreeSlot(String scope) {
+        Set<Box> candidates = boxesWithFreeSlots.get(scope);
+        if (candidates == null || candidates.isEmpty()) {
+            return null;
+        }
+        Box box = candidates.iterator().next();
+        return new Slot(box.boxId, box.firstFreeSlot());
+    }
+
+    /**
+     * Parse a full slot location (FREEZER/RACK/BOX/A1); null when it does not name a slot of a known box
+     */
+    public Slot parseSlot(String location) {
+        int separator = location.lastIndexOf('/');
+        if (separator <= 0) {
+            return null;
+        }
+        Box box = boxesByPath.get(location.substring(0, separator));
+        if (box == null) {
+            return null;
+        }
+        int slotIndex = box.slotIndex(location.substring(separator + 1));
+        return slotIndex >= 0 ? new Slot(box.boxId, slotIndex) : null;
+    }
+
+    public boolean isFree(Slot slot) {
+        return !box(slot).isOccupied(slot.slotIndex);
+    }
+
+    /**
+     * Occupy the slot with the sample and point the sample's location at it.
+     * A slot the sample previously held stays occupied until it is vacated.
+     */
+    public void reserve(Slot slot, String sampleNumber) {
+        Box box = box(slot);
+        if (box.isOccupied(slot.slotIndex)) {
+            throw new IllegalStateException("Storage slot " + describe(slot) + " is already occupied by "
+                    + box.samples[slot.slotIndex]);
+        }
+        box.occupy(slot.slotIndex, sampleNumber);
+        if (box.freeSlots == 0) {
+            unmarkHasFreeSlots(box);
+        }
+        locations.put(sampleNumber, slot);
+    }
+
+    /**
+     * Clear the slot if it is still held by the sample; forgets the sample's location if it pointed there
+     */
+    public void vacate(Slot slot, String sampleNumber) {
+        Box box = boxesById.get(slot.boxId);
+        if (box != null && sampleNumber.equals(box.samples[slot.slotIndex])) {
+            boolean wasFull = box.freeSlots == 0;
+            box.clear(slot.slotIndex);
+            if (wasFull) {
+                markHasFreeSlots(box);
+            }
+        }
+        locations.remove(sampleNumber, slot);
+    }
+
+    /**
+     * Point the sample back at a slot it still holds (used when a move is rolled back)
+     */
+    public void restoreLocation(String sampleNumber, Slot slot) {
+        locations.put(sampleNumber, slot);
+    }
+
+    public Slot locate(String sampleNumber) {
+        return locations.get(sampleNumber);
+    }
+
+    public String describe(Slot slot) {
+        Box box = box(slot);
+        return box.path + "/" + box.slotLabel(slot.slotIndex);
+    }
+
+    /**
+     * Slot label to sample number for every slot of the box, in slot order (null for free slots)
+     */
+    public Map<String, String> contents(String path) {
+        Box box = boxesByPath.get(path);
+        if (box == null) {
+            return null;
+        }
+        Map<String, String> contents = new LinkedHashMap<>();
+        for (int i = 0; i < box.samples.length; i++) {
+            contents.put(box.slotLabel(i), box.samples[i]);
+        }
+        return contents;
+    }
+
+    public int occupiedSlots(String path) {
+        Box box = boxesByPath.get(path);
+        return box != null ? box.samples.length - box.freeSlots : 0;
+    }
+
+    public Collection<String> boxPaths() {
+        return boxesByPath.keySet();
+    }
+
+    public int sampleCount() {
+        return locations.size();
+    }
+
+    public void clear() {
+        boxesById.clear();
+        boxesByPath.clear();
+        boxesWithFreeSlots.clear();
+        locations.clear();
+    }
+
+    private Box box(Slot slot) {
+        Box box = boxesById.get(slot.boxId);
+        if (box == null) {
+            throw new IllegalArgumentException("Unknown storage box: " + slot.boxId);
+        }
+        return box;
+    }
+
+    private void markHasFreeSlots(Box box) {
+        for (String scope : box.scopes) {
+            boxesWithFreeSlots.computeIfAbsent(scope, key -> new LinkedHashSet<>()).add(box);
+        }
+    }
+
+    private void unmarkHasFreeSlots(Box box) {
+        for (String scope : box.scopes) {
+            Set<Box> boxes = boxesWithFreeSlots.get(scope);
+            if (boxes != null) {
+                boxes.remove(box);
+            }
+        }
+    }
+
+    /**
+     * A slot of a box, identified by box ID and zero-based slot index (row * columns + column)
+     */
+    public static final class Slot {
+        private final Long boxId;
+        private final int slotIndex;
+
+        public Slot(Long boxId, int slotIndex) {
+            this.boxId = boxId;
+            this.slotIndex = slotIndex;
+        }
+
+        public Long getBoxId() { return boxId; }
+        public int getSlotIndex() { return slotIndex; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Slot)) return false;
+            Slot other = (Slot) o;
+            return slotIndex == other.slotIndex && boxId.equals(other.boxId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * boxId.hashCode() + slotIndex;
+        }
+    }
+
+    private static final class Box {
+        private final Long boxId;
+        private final String path;
+        private final String[] scopes;
+        private final int columns;
+        private final long[] occupied;
+        private final String[] samples;
+        private int freeSlots;
+
+        private Box(Long boxId, String freezerCode, String rackCode, String boxCode, int rows, int columns) {
+            this.boxId = boxId;
+            this.path = freezerCode + "/" + rackCode + "/" + boxCode;
+            this.scopes = new String[] {freezerCode, freezerCode + "/" + rackCode, path};
+            this.columns = columns;
+            this.samples = new String[rows * columns];
+            this.occupied = new long[(samples.length + 63) >>> 6];
+            this.freeSlots = samples.length;
+        }
+
+        private boolean isOccupied(int slotIndex) {
+            return (occupied[slotIndex >>> 6] & (1L << slotIndex)) != 0;
+        }
+
+        private void occupy(int slotIndex, String sampleNumber) {
+            occupied[slotIndex >>> 6] |= 1L << slotIndex;
+            samples[slotIndex] = sampleNumber;
+            freeSlots--;
+        }
+
+        private void clear(int slotIndex) {
+            occupied[slotIndex >>> 6] &= ~(1L << slotIndex);
+            samples[slotIndex] = null;
+            freeSlots++;
+        }
+
+        private int firstFreeSlot() {
+            for (int word = 0; word < occupied.length; word++) {
+                long free = ~occupied[word];
+                if (free != 0) {
+                    int slotIndex = (word << 6) + Long.numberOfTrailingZeros(free);
+                    return slotIndex < samples.length ? slotIndex : -1;
+                }
+            }
+            return -1;
+        }
+
+        private String slotLabel(int slotIndex) {
+            return (char) ('A' + slotIndex / columns) + Integer.toString(slotIndex % columns + 1);
+        }
+
+        private int slotIndex(String label) {
+            if (label.length() < 2) {
+                return -1;
+            }
+            int row = Character.toUpperCase(label.charAt(0)) - 'A';
+            int column;
+            try {
+                column = Integer.parseInt(label.substring(1)) - 1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+            if (row < 0 || column < 0 || column >= columns || row * columns + column >= samples.length) {
+                return -1;
+            }
+            return row * columns + column;
+        }
+    }
+}
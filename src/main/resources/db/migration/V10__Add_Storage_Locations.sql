@@ -0,0 +1,26 @@
+-- NABL 112 Compliance: Structured sample storage
+-- Version 10: Freezer/rack/box layout and slot assignments
+
+-- Storage boxes (freezer -> rack -> box)
+CREATE TABLE storage_boxes (
+    box_id BIGSERIAL PRIMARY KEY,
+    freezer_code VARCHAR(50) NOT NULL,
+    rack_code VARCHAR(50) NOT NULL,
+    box_code VARCHAR(50) NOT NULL,
+    slot_rows INTEGER NOT NULL CHECK (slot_rows BETWEEN 1 AND 26),
+    slot_columns INTEGER NOT NULL CHECK (slot_columns > 0),
+    storage_temperature DOUBLE PRECISION,
+    is_active BOOLEAN DEFAULT true,
+    created_at TIMESTAMP DEFAULT NOW(),
+    UNIQUE(freezer_code, rack_code, box_code)
+);
+
+-- Occupied slots (one row per stored sample)
+CREATE TABLE storage_slot_assignments (
+    assignment_id BIGSERIAL PRIMARY KEY,
+    box_id BIGINT NOT NULL REFERENCES storage_boxes(box_id),
+    slot_index INTEGER NOT NULL, -- row * slot_columns + column, zero based
+    sample_number VARCHAR(50) UNIQUE NOT NULL,
+    stored_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    UNIQUE(box_id, slot_index)
+);
@@ -0,0 +1,64 @@
+-- NABL 112 Compliance: Reproducible reports without duplicated content
+-- Version 11: Immutable test template snapshots referenced from report data, and compaction of existing reports
+
+CREATE TABLE test_template_snapshots (
+    snapshot_id BIGSERIAL PRIMARY KEY,
+    template_id BIGINT NOT NULL REFERENCES test_templates(template_id),
+    version INTEGER NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    description TEXT,
+    parameters JSONB NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    UNIQUE(template_id, version)
+);
+
+-- One snapshot per distinct parameter set embedded in existing reports, plus the current template,
+-- numbered in the order they first appeared
+INSERT INTO test_template_snapshots (template_id, version, name, description, parameters, created_at)
+SELECT c.template_id,
+       ROW_NUMBER() OVER (PARTITION BY c.template_id ORDER BY c.first_seen, c.is_current),
+       t.name, t.description, c.parameters, c.first_seen
+FROM (
+    SELECT template_id, parameters, MIN(first_seen) AS first_seen, BOOL_OR(is_current) AS is_current
+    FROM (
+        SELECT lt.test_template_id AS template_id, test.elem->'parameters' AS parameters,
+               COALESCE(r.created_at, NOW()) AS first_seen, false AS is_current
+        FROM lab_reports r
+        CROSS JOIN LATERAL jsonb_array_elements(r.report_data::jsonb->'tests') AS test(elem)
+        JOIN lab_tests lt ON lt.test_id = (test.elem->>'testId')::bigint
+        WHERE jsonb_typeof(r.report_data::jsonb->'tests') = 'array'
+          AND test.elem ? 'parameters' AND jsonb_typeof(test.elem->'parameters') <> 'null'
+        UNION ALL
+        SELECT template_id, parameters, NOW(), true
+        FROM test_templates
+    ) seen
+    GROUP BY template_id, parameters
+) c
+JOIN test_templates t ON t.template_id = c.template_id;
+
+-- Replace embedded template parameters with snapshot references
+UPDATE lab_reports r
+SET report_data = jsonb_set(r.report_data::jsonb, '{tests}', (
+        SELECT jsonb_agg(
+                   CASE WHEN s.snapshot_id IS NULL THEN test.elem
+                        ELSE (test.elem - 'parameters')
+                             || jsonb_build_object('templateRef',
+                                    jsonb_build_object('templateId', s.template_id, 'version', s.version))
+                   END ORDER BY test.ord)
+        FROM jsonb_array_elements(r.report_data::jsonb->'tests') WITH ORDINALITY AS test(elem, ord)
+        LEFT JOIN lab_tests lt ON lt.test_id = (test.elem->>'testId')::bigint
+        LEFT JOIN test_template_snapshots s
+               ON s.template_id = lt.test_template_id AND s.parameters = test.elem->'parameters'
+    ))::json
+WHERE jsonb_typeof(r.report_data::jsonb->'tests') = 'array'
+  AND jsonb_array_length(r.report_data::jsonb->'tests') > 0;
+
+-- Drop patient details that only repeat the visit's
+UPDATE lab_reports r
+SET report_data = (r.report_data::jsonb #- '{patient,details}')::json
+FROM visits v
+WHERE v.visit_id = r.visit_id
+  AND r.report_data::jsonb->'patient'->'details' = v.patient_details;
+
+COMMENT ON TABLE test_template_snapshots IS 'Immutable versions of test templates referenced by report data (templateRef)';
+COMMENT ON COLUMN lab_reports.report_data IS 'Report content; template parameters as templateRef, amendments as {amendmentOf, changes} merge patches';
@@ -0,0 +1,6 @@
+-- NABL 112 Compliance: Turnaround time breaches are reported exactly once
+-- Version 12: Last reported breach per sample, so breaches that happen while the application is down
+-- are reported on startup and breaches already reported are not reported again
+
+ALTER TABLE samples ADD COLUMN tat_breach_phase VARCHAR(20);
+ALTER TABLE samples ADD COLUMN tat_breach_reported_at TIMESTAMP;
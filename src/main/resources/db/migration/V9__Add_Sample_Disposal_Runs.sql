@@ -0,0 +1,37 @@
+-- NABL 112 Compliance: Chunked sample disposal
+-- Version 9: Disposal run checkpoints and per-batch manifests
+
+-- Disposal run checkpoint (resumable after a crash)
+CREATE TABLE sample_disposal_runs (
+    run_id BIGSERIAL PRIMARY KEY,
+    run_code VARCHAR(50) UNIQUE NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING', -- RUNNING, COMPLETED, FAILED
+    cutoff_date TIMESTAMP NOT NULL, -- samples received before this are eligible
+    disposal_method VARCHAR(255) NOT NULL,
+    disposed_by VARCHAR(255) NOT NULL,
+    last_sample_id BIGINT NOT NULL DEFAULT 0, -- keyset checkpoint
+    batches_completed INTEGER NOT NULL DEFAULT 0,
+    samples_disposed BIGINT NOT NULL DEFAULT 0,
+    error_message TEXT,
+    started_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP,
+    completed_at TIMESTAMP
+);
+
+-- One manifest per disposal batch
+CREATE TABLE sample_disposal_manifests (
+    manifest_id BIGSERIAL PRIMARY KEY,
+    run_id BIGINT NOT NULL REFERENCES sample_disposal_runs(run_id),
+    disposal_batch VARCHAR(100) UNIQUE NOT NULL,
+    sample_count INTEGER NOT NULL,
+    disposal_method VARCHAR(255) NOT NULL,
+    disposed_by VARCHAR(255) NOT NULL,
+    samples JSON, -- [{sampleNumber, sampleType, receivedAt, storageLocation}]
+    created_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX idx_disposal_runs_status ON sample_disposal_runs(status);
+CREATE INDEX idx_disposal_manifests_run ON sample_disposal_manifests(run_id);
+
+-- Keyset scan of disposal candidates
+CREATE INDEX idx_samples_stored_disposal ON samples(sample_id, received_at) WHERE status = 'STORED';
@@ -0,0 +1,42 @@
+package com.sivalab.laboperations.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimitedDataSourceTest {
+
+    private final ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(
+            new DriverManagerDataSource("jdbc:h2:mem:limited;DB_CLOSE_DELAY=-1", "sa", ""), 2, Duration.ofMillis(100));
+
+    @Test
+    void connectionsBeyondTheLimitFailAfterTheAcquireTimeout() throws Exception {
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        assertThat(dataSource.getInUse()).isEqualTo(2);
+
+        assertThatThrownBy(dataSource::getConnection)
+                .isInstanceOf(SQLTransientConnectionException.class)
+                .hasMessageContaining("2 connections in use");
+        assertThat(dataSource.getRejectedCount()).isEqualTo(1);
+
+        // closing twice returns the permit once
+        first.close();
+        first.close();
+        assertThat(dataSource.getInUse()).isEqualTo(1);
+        try (Connection third = dataSource.getConnection(); Statement statement = third.createStatement()) {
+            assertThat(statement.execute("SELECT 1")).isTrue();
+            assertThat(((ConnectionProxy) third).getTargetConnection()).isNotSameAs(third);
+        }
+        second.close();
+        assertThat(dataSource.getInUse()).isZero();
+    }
+}
@@ -0,0 +1,114 @@
+package com.sivalab.laboperations.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.entity.ReportType;
+import com.sivalab.laboperations.entity.TestTemplate;
+import com.sivalab.laboperations.entity.TestTemplateSnapshot;
+import com.sivalab.laboperations.entity.Visit;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import com.sivalab.laboperations.repository.LabTestRepository;
+import com.sivalab.laboperations.repository.TestTemplateSnapshotRepository;
+import com.sivalab.laboperations.service.ReportSnapshotService;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ReportJsonConfigTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TestTemplateSnapshotRepository snapshotRepository = mock(TestTemplateSnapshotRepository.class);
+    private final LabReportRepository labReportRepository = mock(LabReportRepository.class);
+    private final ReportSnapshotService reportSnapshotService = new ReportSnapshotService(
+            snapshotRepository, labReportRepository, mock(LabTestRepository.class));
+    private final ObjectMapper apiMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .registerModule(ReportJsonConfig.resolvedReportData());
+
+    @Test
+    void amendedReportIsWrittenWithTheCompleteDataOfTheReportItAmends() throws Exception {
+        JsonNode parameters = objectMapper.readTree("{\"hemoglobin\": {\"unit\": \"g/dL\", \"range\": \"13-17\"}}");
+        TestTemplate template = new TestTemplate("CBC", "Complete blood count", parameters, BigDecimal.TEN);
+        template.setTemplateId(3L);
+        when(snapshotRepository.findByTemplateIdIn(Set.of(3L)))
+                .thenReturn(List.of(new TestTemplateSnapshot(template, 1), new TestTemplateSnapshot(template, 2)));
+
+        Visit visit = new Visit(objectMapper.readTree("{\"name\": \"Asha\", \"age\": 41}"));
+        LabReport original = report(1L, visit, objectMapper.readTree(
+                "{\"priority\": \"STAT\", \"patient\": {\"visitId\": 7},"
+                        + " \"tests\": [{\"testId\": 5, \"templateRef\": {\"templateId\": 3, \"version\": 1},"
+                        + " \"results\": {\"hemoglobin\": 14.2}}]}"));
+        when(labReportRepository.findAllById(Set.of(1L))).thenReturn(List.of(original));
+        LabReport amended = report(2L, visit, reportSnapshotService.amendmentOf(original));
+        LabReport second = report(3L, visit, reportSnapshotService.amendmentOf(original));
+
+        // the amended reports' base is not in the list: one query for it, one for all template snapshots
+        reportSnapshotService.resolveAll(List.of(amended, second));
+        verify(labReportRepository).findAllById(Set.of(1L));
+        verify(labReportRepository, never()).findById(anyLong());
+        verify(snapshotRepository).findByTemplateIdIn(Set.of(3L));
+        verify(snapshotRepository, never()).findByTemplateIdAndVersion(anyLong(), anyInt());
+
+        JsonNode complete = objectMapper.readTree(
+                "{\"priority\": \"STAT\", \"patient\": {\"visitId\": 7, \"details\": {\"name\": \"Asha\", \"age\": 41}},"
+                        + " \"tests\": [{\"testId\": 5, \"templateRef\": {\"templateId\": 3, \"version\": 1},"
+                        + " \"results\": {\"hemoglobin\": 14.2}, \"parameters\": " + parameters + "}]}");
+        clearInvocations(labReportRepository);
+        clearInvocations(snapshotRepository);
+        JsonNode amendedJson = apiMapper.valueToTree(amended);
+        JsonNode secondJson = apiMapper.valueToTree(second);
+
+        // writing the response does not touch the database
+        verifyNoInteractions(labReportRepository, snapshotRepository);
+        assertThat(amendedJson.get("reportData")).isEqualTo(complete);
+        assertThat(secondJson.get("reportData")).isEqualTo(complete);
+        assertThat(amendedJson.has("resolvedReportData")).isFalse();
+        // the stored form is left alone
+        assertThat(amended.getReportData().has(ReportSnapshotService.AMENDMENT_OF)).isTrue();
+    }
+
+    @Test
+    void reportsInTheListAreNotLoadedAgainAndCachedSnapshotsAreNotQueried() throws Exception {
+        LabReport original = report(1L, new Visit(), objectMapper.readTree("{\"priority\": \"ROUTINE\"}"));
+        LabReport amended = report(2L, new Visit(), reportSnapshotService.amendmentOf(original));
+
+        reportSnapshotService.resolveAll(List.of(original, amended));
+
+        verify(labReportRepository, never()).findAllById(any());
+        verify(snapshotRepository, never()).findByTemplateIdIn(any());
+        assertThat(apiMapper.valueToTree(amended).get("reportData").path("priority").asText()).isEqualTo("ROUTINE");
+    }
+
+    @Test
+    void reportWithoutDataIsWrittenWithNull() {
+        LabReport report = report(4L, new Visit(), null);
+        reportSnapshotService.resolveAll(List.of(report));
+
+        JsonNode json = apiMapper.valueToTree(report);
+
+        assertThat(json.has("reportData")).isTrue();
+        assertThat(json.get("reportData").isNull()).isTrue();
+    }
+
+    private static LabReport report(Long reportId, Visit visit, JsonNode reportData) {
+        LabReport report = new LabReport(visit, ReportType.STANDARD);
+        report.setReportId(reportId);
+        report.setReportData(reportData);
+        return report;
+    }
+}
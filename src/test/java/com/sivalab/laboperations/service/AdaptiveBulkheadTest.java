@@ -0,0 +1,92 @@
+package com.sivalab.laboperations.service;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveBulkheadTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void callsBeyondTheLimitAreRejectedAfterTheWait() {
+        AdaptiveBulkhead bulkhead = bulkhead(2, Duration.ofMillis(50));
+        bulkhead.acquirePermission();
+        bulkhead.acquirePermission();
+        assertThatThrownBy(bulkhead::acquirePermission).isInstanceOf(BulkheadFullException.class);
+        assertThat(bulkhead.getMetrics().getAvailableConcurrentCalls()).isZero();
+        assertThat(registry.get("lab.concurrency.rejected").tag("resource", "test").counter().count()).isEqualTo(1);
+        assertThat(registry.get("lab.concurrency.in-flight").tag("resource", "test").gauge().value()).isEqualTo(2);
+
+        bulkhead.onComplete();
+        assertThat(bulkhead.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void waitingForTheLockCountsAgainstTheMaxWait() throws Exception {
+        AdaptiveBulkhead bulkhead = bulkhead(1, Duration.ofMillis(300));
+        bulkhead.acquirePermission();
+        ReentrantLock lock = (ReentrantLock) ReflectionTestUtils.getField(bulkhead, "lock");
+        CountDownLatch held = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            lock.lock();
+            try {
+                held.countDown();
+                Thread.sleep(250);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        holder.start();
+        assertThat(held.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long start = System.nanoTime();
+        assertThat(bulkhead.tryAcquirePermission()).isFalse();
+        long waited = System.nanoTime() - start;
+        holder.join();
+
+        // 250ms for the lock leaves only 50ms to wait for a permit, not another 300ms
+        assertThat(Duration.ofNanos(waited)).isLessThan(Duration.ofMillis(450));
+    }
+
+    @Test
+    void limitGrowsWhileCallsStayFastAndSaturateIt() throws Exception {
+        AdaptiveBulkhead bulkhead = bulkhead(2, Duration.ZERO);
+        AtomicInteger finished = new AtomicInteger();
+        bulkhead.getEventPublisher().onCallFinished(event -> finished.incrementAndGet());
+
+        long until = System.nanoTime() + Duration.ofMillis(300).toNanos();
+        while (System.nanoTime() < until) {
+            int limit = bulkhead.getLimit();
+            for (int i = 0; i < limit; i++) {
+                assertThat(bulkhead.tryAcquirePermission()).isTrue();
+            }
+            Thread.sleep(1);
+            for (int i = 0; i < limit; i++) {
+                bulkhead.onComplete();
+            }
+        }
+        assertThat(bulkhead.getLimit()).isGreaterThan(2).isLessThanOrEqualTo(20);
+        assertThat(bulkhead.getMetrics().getMaxAllowedConcurrentCalls()).isEqualTo(bulkhead.getLimit());
+        assertThat(bulkhead.getInFlight()).isZero();
+        assertThat(finished.get()).isPositive();
+    }
+
+    private AdaptiveBulkhead bulkhead(int initialLimit, Duration maxWait) {
+        BulkheadConfig config = BulkheadConfig.custom().maxConcurrentCalls(20).maxWaitDuration(maxWait).build();
+        return new AdaptiveBulkhead("test", config, initialLimit, 1, Duration.ofMillis(10), 2, registry);
+    }
+}
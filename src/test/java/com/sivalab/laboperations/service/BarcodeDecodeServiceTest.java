@@ -0,0 +1,80 @@
+package com.sivalab.laboperations.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import com.sivalab.laboperations.repository.SampleRepository;
+import com.sivalab.laboperations.repository.VisitRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class BarcodeDecodeServiceTest {
+
+    @Test
+    void referenceForReadsQrPayloadsAndLinearValues() {
+        BarcodeService barcodes = new BarcodeService(null);
+
+        assertReference(barcodes.generateSampleQRData("20251018WB-12-0001", "Whole Blood", "Nurse",
+                "2025-10-18", "COLLECTED", "/samples/20251018WB-12-0001"),
+                BarcodeDecodeService.ReferenceType.SAMPLE, "20251018WB-12-0001");
+        assertReference(barcodes.generateVisitQRData(42L, "Ravi", "P-1", "2025-10-18", "PENDING", "/visits/42"),
+                BarcodeDecodeService.ReferenceType.VISIT, "42");
+        assertReference(barcodes.generateReportQRData("SLN/2025/000001", "Ravi", "P-1", "DRAFT", null, "/r"),
+                BarcodeDecodeService.ReferenceType.REPORT, "SLN/2025/000001");
+
+        assertReference("0042", BarcodeDecodeService.ReferenceType.VISIT, "42");
+        assertReference(barcodes.ulrBarcodeData("SLN/2025/000001"),
+                BarcodeDecodeService.ReferenceType.REPORT, "SLN/2025/000001");
+        assertReference("20251018WB-12-0001", BarcodeDecodeService.ReferenceType.SAMPLE, "20251018WB-12-0001");
+        assertThat(BarcodeDecodeService.referenceFor("free\ntext")).isNull();
+    }
+
+    @Test
+    void expectedFormatAcceptsShortNames() {
+        assertThat(BarcodeDecodeService.expectedFormat("code128")).isEqualTo(BarcodeFormat.CODE_128);
+        assertThat(BarcodeDecodeService.expectedFormat("CODE_39")).isEqualTo(BarcodeFormat.CODE_39);
+        assertThat(BarcodeDecodeService.expectedFormat("qr")).isEqualTo(BarcodeFormat.QR_CODE);
+        assertThat(BarcodeDecodeService.expectedFormat(" ")).isNull();
+        assertThatThrownBy(() -> BarcodeDecodeService.expectedFormat("ean13"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void refusesImagesOverThePixelLimitBeforeDecoding() throws IOException {
+        BarcodeDecodeService service = new BarcodeDecodeService(mock(SampleRepository.class), mock(VisitRepository.class),
+                mock(LabReportRepository.class), mock(BarcodeExecutor.class), mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 50, 10_000);
+
+        BarcodeDecodeService.DecodeResult large = service.decode(
+                new BarcodeDecodeService.ImageUpload("large.png", png(200, 100)), null);
+        BarcodeDecodeService.DecodeResult small = service.decode(
+                new BarcodeDecodeService.ImageUpload("small.png", png(100, 100)), BarcodeFormat.QR_CODE);
+        BarcodeDecodeService.DecodeResult text = service.decode(
+                new BarcodeDecodeService.ImageUpload("notes.txt", "not an image".getBytes()), null);
+
+        assertThat(large.getError()).isEqualTo("Image of 200x100 pixels exceeds the limit of 10000 pixels");
+        assertThat(small.getError()).isEqualTo("No QR_CODE barcode found");
+        assertThat(text.getError()).isEqualTo("Unsupported or unreadable image");
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY), "png", out);
+        return out.toByteArray();
+    }
+
+    private static void assertReference(String text, BarcodeDecodeService.ReferenceType type, String identifier) {
+        BarcodeDecodeService.Reference reference = BarcodeDecodeService.referenceFor(text);
+        assertThat(reference.getType()).isEqualTo(type);
+        assertThat(reference.getIdentifier()).isEqualTo(identifier);
+    }
+}
@@ -0,0 +1,80 @@
+package com.sivalab.laboperations.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BarcodeImageCacheTest {
+
+    @Test
+    void reusesEncodingsAndStaysWithinBudget() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BarcodeImageCache cache = new BarcodeImageCache(registry, new RequestCoalescer(registry), 4096, 64,
+                Duration.ofSeconds(5));
+        AtomicInteger encodings = new AtomicInteger();
+        BarcodeImageCache.Encoder encoder = () -> {
+            encodings.incrementAndGet();
+            return new byte[1000];
+        };
+
+        byte[] first = cache.get("QR", "SLN/2025/000001", 120, 120, encoder);
+        assertThat(cache.get("QR", "SLN/2025/000001", 120, 120, encoder)).isSameAs(first);
+        cache.get("QR", "SLN/2025/000001", 200, 200, encoder);
+        cache.get("CODE128", "SLN/2025/000001", 120, 120, encoder);
+        assertThat(encodings).hasValue(3);
+        assertThat(cache.hitRatio()).isEqualTo(0.25);
+
+        for (int i = 0; i < 10; i++) {
+            cache.get("CODE128", "S" + i, 300, 50, encoder);
+        }
+        assertThat(cache.getBytes()).isLessThanOrEqualTo(4096);
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(registry.get("lab.barcodes.image.cache.evictions").counter().count()).isEqualTo(10);
+
+        String longPayload = "x".repeat(65);
+        cache.get("QR", longPayload, 120, 120, encoder);
+        cache.get("QR", longPayload, 120, 120, encoder);
+        assertThat(encodings).hasValue(15);
+    }
+
+    @Test
+    void entityTagFollowsEveryKeyPart() {
+        String tag = BarcodeImageCache.entityTag("CODE128", "SLN2025000001", 300, 50);
+
+        assertThat(tag).matches("\"[0-9a-f]{32}\"");
+        assertThat(BarcodeImageCache.entityTag("CODE128", "SLN2025000001", 300, 50)).isEqualTo(tag);
+        assertThat(BarcodeImageCache.entityTag("CODE128_SVG", "SLN2025000001", 300, 50)).isNotEqualTo(tag);
+        assertThat(BarcodeImageCache.entityTag("CODE128", "SLN2025000002", 300, 50)).isNotEqualTo(tag);
+        assertThat(BarcodeImageCache.entityTag("CODE128", "SLN2025000001", 300, 51)).isNotEqualTo(tag);
+    }
+
+    @Test
+    void sharesQrModulesAcrossReportRenders() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BarcodeImageCache cache = new BarcodeImageCache(registry, new RequestCoalescer(registry), 1 << 20, 64,
+                Duration.ofSeconds(5));
+        BarcodeService barcodes = new BarcodeService(cache);
+        String payload = "{\"reportId\":7,\"type\":\"LAB_REPORT\"}";
+        BitMatrix expected = new QRCodeWriter().encode(payload, BarcodeFormat.QR_CODE, 0, 0, Map.of(
+                EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M, EncodeHintType.CHARACTER_SET, "UTF-8",
+                EncodeHintType.MARGIN, 1));
+
+        BitMatrix first = barcodes.qrModules(payload);
+        first.flip(0, 0);
+        BitMatrix second = barcodes.qrModules(payload);
+
+        assertThat(second).isEqualTo(expected);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+}
@@ -0,0 +1,54 @@
+package com.sivalab.laboperations.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BarcodePngEncoderTest {
+
+    @Test
+    void qrPixelsMatchTheMatrix() throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode("LAB_REPORT\nULR: SLN/2025/000123", BarcodeFormat.QR_CODE, 121, 121);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(BarcodePngEncoder.encode(matrix)));
+
+        assertThat(image.getWidth()).isEqualTo(matrix.getWidth());
+        assertThat(image.getHeight()).isEqualTo(matrix.getHeight());
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                int expected = matrix.get(x, y) ? 0x000000 : 0xFFFFFF;
+                assertThat(image.getRGB(x, y) & 0xFFFFFF).as("pixel %d,%d", x, y).isEqualTo(expected);
+            }
+        }
+        assertThat(decode(image)).isEqualTo("LAB_REPORT\nULR: SLN/2025/000123");
+    }
+
+    @Test
+    void linearBarcodeScansAndHasTheRequestedLayout() throws Exception {
+        boolean[] modules = new Code128Writer().encode("SMP-2025-000042");
+
+        byte[] png = BarcodePngEncoder.encodeLinear(modules, 2, 10, 40, "SMP-2025-000042", 10);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+
+        assertThat(image.getWidth()).isEqualTo((modules.length + 20) * 2);
+        assertThat(image.getHeight()).isEqualTo(50);
+        assertThat(decode(image)).isEqualTo("SMP-2025-000042");
+    }
+
+    private static String decode(BufferedImage image) throws Exception {
+        return new MultiFormatReader().decode(new BinaryBitmap(new HybridBinarizer(
+                new BufferedImageLuminanceSource(image)))).getText();
+    }
+}
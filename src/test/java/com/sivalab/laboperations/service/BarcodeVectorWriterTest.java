@@ -0,0 +1,79 @@
+package com.sivalab.laboperations.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BarcodeVectorWriterTest {
+
+    private static final Pattern QR_RUN = Pattern.compile("M(\\d+) (\\d+)h(\\d+)v1h-(\\d+)z");
+    private static final Pattern BAR = Pattern.compile("M(\\d+) 0h(\\d+)v([\\d.]+)h-(\\d+)z");
+
+    @Test
+    void qrPathCoversExactlyTheDarkModules() throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode("LAB_REPORT\nULR: SLN/2025/000123", BarcodeFormat.QR_CODE, 0, 0);
+        StringBuilder svg = new StringBuilder();
+
+        BarcodeVectorWriter.writeSvg(matrix, 200, svg);
+
+        assertThat(svg.toString())
+                .startsWith("<svg xmlns=\"http://www.w3.org/2000/svg\"")
+                .contains("width=\"200\" height=\"200\" viewBox=\"0 0 " + matrix.getWidth() + " " + matrix.getHeight() + "\"")
+                .endsWith("</svg>");
+        BitMatrix drawn = new BitMatrix(matrix.getWidth(), matrix.getHeight());
+        Matcher run = QR_RUN.matcher(svg);
+        while (run.find()) {
+            assertThat(run.group(3)).isEqualTo(run.group(4));
+            drawn.setRegion(Integer.parseInt(run.group(1)), Integer.parseInt(run.group(2)),
+                    Integer.parseInt(run.group(3)), 1);
+        }
+        assertThat(drawn).isEqualTo(matrix);
+    }
+
+    @Test
+    void linearSvgDrawsOneRectanglePerBarAndEscapesText() throws Exception {
+        boolean[] modules = new Code128Writer().encode("A<B&C");
+        StringBuilder svg = new StringBuilder();
+
+        BarcodeVectorWriter.writeLinearSvg(modules, 10, 300, 40, "A<B&C", 10, svg);
+
+        int total = modules.length + 20;
+        assertThat(svg.toString()).contains("width=\"300\" height=\"50\" viewBox=\"0 0 " + total + " ");
+        boolean[] drawn = new boolean[modules.length];
+        Matcher bar = BAR.matcher(svg);
+        while (bar.find()) {
+            int x = Integer.parseInt(bar.group(1)) - 10;
+            for (int i = 0; i < Integer.parseInt(bar.group(2)); i++) {
+                assertThat(drawn[x + i]).isFalse();
+                drawn[x + i] = true;
+            }
+        }
+        assertThat(drawn).isEqualTo(modules);
+        assertThat(svg.toString()).contains(">A&lt;B&amp;C</text>");
+    }
+
+    @Test
+    void controlCharactersInTheTextKeepTheSvgWellFormed() throws Exception {
+        String payload = "SLN\u0001042\t7";
+        boolean[] modules = new Code128Writer().encode(payload);
+        StringBuilder svg = new StringBuilder();
+
+        BarcodeVectorWriter.writeLinearSvg(modules, 10, 300, 40, payload, 10, svg);
+
+        assertThat(svg.toString()).contains(">SLN?042?7</text>");
+        String text = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(svg.toString().getBytes(StandardCharsets.UTF_8)))
+                .getElementsByTagName("text").item(0).getTextContent();
+        assertThat(text).isEqualTo("SLN?042?7");
+    }
+}
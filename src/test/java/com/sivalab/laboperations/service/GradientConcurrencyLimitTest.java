@@ -0,0 +1,41 @@
+package com.sivalab.laboperations.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientConcurrencyLimitTest {
+
+    @Test
+    void growsWhileLatencyHoldsAndShrinksWhenItRises() {
+        GradientConcurrencyLimit gradient = new GradientConcurrencyLimit(10, 2, 50);
+        for (int i = 0; i < 20; i++) {
+            gradient.update(100, gradient.getLimit());
+        }
+        int grown = gradient.getLimit();
+        assertThat(grown).isGreaterThan(10).isLessThanOrEqualTo(50);
+
+        // queueing triples the latency
+        for (int i = 0; i < 20; i++) {
+            gradient.update(300, gradient.getLimit());
+        }
+        assertThat(gradient.getLimit()).isLessThan(grown).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdleAndRespectsTheCeiling() {
+        GradientConcurrencyLimit gradient = new GradientConcurrencyLimit(10, 1, 12);
+        for (int i = 0; i < 20; i++) {
+            gradient.update(100, 3);
+        }
+        assertThat(gradient.getLimit()).isEqualTo(10);
+
+        for (int i = 0; i < 20; i++) {
+            gradient.update(100, gradient.getLimit());
+        }
+        assertThat(gradient.getLimit()).isEqualTo(12);
+
+        gradient.setMaxLimit(4);
+        assertThat(gradient.getLimit()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,66 @@
+package com.sivalab.laboperations.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 1000;
+
+    @Test
+    void firesEachKeyOnItsDeadlineTick() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 0);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long deadline = (1 + random.nextInt(400_000)) * TICK;
+            deadlines.add(deadline);
+            assertThat(wheel.schedule("S" + i, deadline)).isFalse();
+        }
+
+        int fired = 0;
+        for (long now = TICK; now <= 400_000 * TICK; now += 7 * TICK) {
+            for (HierarchicalTimingWheel.Expired<String> expired : wheel.advanceTo(now)) {
+                int index = Integer.parseInt(expired.getKey().substring(1));
+                assertThat(deadlines.get(index)).isLessThanOrEqualTo(now).isGreaterThan(now - 7 * TICK);
+                fired++;
+            }
+        }
+        assertThat(fired).isEqualTo(2000);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cancelledAndRearmedKeysDoNotFireEarly() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 0);
+        wheel.schedule("A", 10 * TICK);
+        wheel.schedule("B", 10 * TICK);
+        assertThat(wheel.cancel("A")).isTrue();
+        wheel.schedule("B", 5_000 * TICK);
+
+        assertThat(wheel.advanceTo(4_999 * TICK)).isEmpty();
+        assertThat(wheel.advanceTo(5_000 * TICK)).extracting(HierarchicalTimingWheel.Expired::getKey).containsExactly("B");
+    }
+
+    @Test
+    void pastDeadlinesAreReportedImmediately() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 100 * TICK);
+        assertThat(wheel.schedule("late", 50 * TICK)).isTrue();
+        assertThat(wheel.contains("late")).isFalse();
+    }
+
+    @Test
+    void deadlinesBeyondTheOutermostLevelAreParkedAndStillFire() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 2, 0);
+        long deadline = 10_000 * TICK; // two levels cover 4096 ticks
+        wheel.schedule("far", deadline);
+
+        assertThat(wheel.advanceTo(deadline - TICK)).isEmpty();
+        assertThat(wheel.advanceTo(deadline)).extracting(HierarchicalTimingWheel.Expired::getKey).containsExactly("far");
+    }
+}
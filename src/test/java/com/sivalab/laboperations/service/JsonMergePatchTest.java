@@ -0,0 +1,28 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonMergePatchTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void diffRoundTripsThroughApply() throws Exception {
+        JsonNode original = mapper.readTree("{\"patient\":{\"visitId\":1,\"status\":\"OPEN\"},"
+                + "\"tests\":[{\"testId\":1,\"results\":{\"hb\":13}}],\"summary\":{\"totalTests\":1}}");
+        JsonNode amended = mapper.readTree("{\"patient\":{\"visitId\":1,\"status\":\"CLOSED\"},"
+                + "\"tests\":[{\"testId\":1,\"results\":{\"hb\":14}}],\"reason\":\"Transcription error\"}");
+
+        JsonNode patch = JsonMergePatch.diff(original, amended);
+
+        assertThat(patch).isEqualTo(mapper.readTree("{\"summary\":null,\"patient\":{\"status\":\"CLOSED\"},"
+                + "\"tests\":[{\"testId\":1,\"results\":{\"hb\":14}}],\"reason\":\"Transcription error\"}"));
+        assertThat(JsonMergePatch.apply(original, patch)).isEqualTo(amended);
+        assertThat(JsonMergePatch.diff(original, original)).isEqualTo(mapper.createObjectNode());
+        assertThat(original.get("summary")).isNotNull();
+    }
+}
@@ -0,0 +1,255 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.oned.Code128Writer;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfCanvasProcessor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.TextRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.SampleType;
+import com.sivalab.laboperations.entity.Visit;
+import com.sivalab.laboperations.repository.SampleRepository;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LabelSheetServiceTest {
+
+    private static final float MM = 72f / 25.4f;
+    private static final String LONG_NAME = "Bartholomew Alexander Montgomery-Fitzwilliam of Little Snoring Parva";
+
+    private final SampleRepository sampleRepository = mock(SampleRepository.class);
+    private final BarcodeService barcodeService = mock(BarcodeService.class);
+    private final Set<String> encodingThreads = ConcurrentHashMap.newKeySet();
+    private BarcodeExecutor barcodeExecutor;
+
+    @AfterEach
+    void tearDown() {
+        if (barcodeExecutor != null) {
+            barcodeExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void a4GridFillsRowsLeftToRightThenStartsANewPage() throws Exception {
+        LabelSheetService service = service(realExecutor());
+        List<String> sampleNumbers = sampleNumbers(26);
+
+        List<List<TextLine>> pages = render(service, service.loadLabels(sampleNumbers), LabelSheetLayout.A4_GRID);
+
+        assertThat(pages).hasSize(2);
+        assertThat(pages.get(0)).hasSize(24 * 3);
+        assertThat(pages.get(1)).hasSize(2 * 3);
+        assertThat(encodingThreads).allMatch(name -> name.startsWith("barcode-"));
+        float cellWidth = 70 * MM;
+        float cellHeight = 297f / 8 * MM;
+        TextLine first = sampleNumberLine(pages.get(0), 0);
+        assertThat(first.text).isEqualTo("S-01");
+        assertThat(first.x).isCloseTo(3 * MM, within(0.1f));
+        for (int slot = 1; slot < 24; slot++) {
+            TextLine line = sampleNumberLine(pages.get(0), slot);
+            assertThat(line.text).isEqualTo(sampleNumbers.get(slot));
+            assertThat(line.x).isCloseTo(first.x + (slot % 3) * cellWidth, within(0.1f));
+            assertThat(line.y).isCloseTo(first.y - (slot / 3) * cellHeight, within(0.1f));
+        }
+        // the 25th label starts the second page in the first slot
+        TextLine overflow = sampleNumberLine(pages.get(1), 0);
+        assertThat(overflow.text).isEqualTo("S-25");
+        assertThat(overflow.x).isCloseTo(first.x, within(0.1f));
+        assertThat(overflow.y).isCloseTo(first.y, within(0.1f));
+        assertThat(sampleNumberLine(pages.get(1), 1).text).isEqualTo("S-26");
+    }
+
+    @Test
+    void rollPrintsOneLabelPerPageAtTheConfiguredSize() throws Exception {
+        LabelSheetService service = service(realExecutor());
+        // repeats print repeatedly, in the order given
+        List<LabelSheetService.SheetLabel> labels = service.loadLabels(List.of("S-02", "S-01", "S-02"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeSheet(labels, LabelSheetLayout.ROLL, out);
+
+        List<String> numbers = new ArrayList<>();
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(new ByteArrayInputStream(out.toByteArray())))) {
+            assertThat(pdf.getNumberOfPages()).isEqualTo(3);
+            for (int i = 1; i <= pdf.getNumberOfPages(); i++) {
+                Rectangle size = pdf.getPage(i).getPageSize();
+                assertThat(size.getWidth()).isCloseTo(50 * MM, within(0.01f));
+                assertThat(size.getHeight()).isCloseTo(25 * MM, within(0.01f));
+                numbers.add(lines(pdf, i).get(0).text);
+            }
+        }
+        assertThat(numbers).containsExactly("S-02", "S-01", "S-02");
+    }
+
+    @Test
+    void unknownSampleNumbersAreRefusedBeforeAnythingIsWritten() {
+        LabelSheetService service = service(mock(BarcodeExecutor.class));
+
+        assertThatThrownBy(() -> service.loadLabels(List.of("S-01", "X-1", "S-02", "X-2")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Samples not found: [X-1, X-2]");
+        assertThatThrownBy(() -> service.loadLabels(List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.loadLabels(sampleNumbers(31)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("At most 30 labels per sheet, got 31");
+    }
+
+    @Test
+    void requestThreadEncodesWhenTheBarcodeExecutorIsSaturated() throws Exception {
+        BarcodeExecutor saturated = mock(BarcodeExecutor.class);
+        when(saturated.getPoolSize()).thenReturn(2);
+        when(saturated.executor()).thenReturn(command -> {
+            throw new RejectedExecutionException("Barcode executor saturated");
+        });
+        LabelSheetService service = service(saturated);
+
+        List<List<TextLine>> pages = render(service, service.loadLabels(sampleNumbers(5)), LabelSheetLayout.A4_GRID);
+
+        assertThat(pages).hasSize(1);
+        assertThat(sampleNumberLine(pages.get(0), 4).text).isEqualTo("S-05");
+        assertThat(encodingThreads).containsOnly(Thread.currentThread().getName());
+    }
+
+    @Test
+    void longTextIsCutToTheLongestPrefixThatFits() throws Exception {
+        LabelSheetService service = service(realExecutor());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.writeSheet(List.of(new LabelSheetService.SheetLabel("S-01", LONG_NAME, "Serum"),
+                new LabelSheetService.SheetLabel("S-02", "Ravi", "Serum")), LabelSheetLayout.ROLL, out);
+
+        List<TextLine> truncated;
+        List<TextLine> untouched;
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(new ByteArrayInputStream(out.toByteArray())))) {
+            truncated = lines(pdf, 1);
+            untouched = lines(pdf, 2);
+        }
+        float maxWidth = 50 * MM - 2 * 3 * MM;
+        TextLine name = truncated.get(1);
+        assertThat(name.text).endsWith("\u2026").hasSizeLessThan(LONG_NAME.length());
+        String kept = name.text.substring(0, name.text.length() - 1);
+        assertThat(LONG_NAME).startsWith(kept);
+        var helvetica = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+        assertThat(helvetica.getWidth(name.text, name.fontSize)).isLessThanOrEqualTo(maxWidth);
+        // one more character would not have fitted
+        assertThat(helvetica.getWidth(LONG_NAME.substring(0, kept.length() + 1) + "\u2026", name.fontSize))
+                .isGreaterThan(maxWidth);
+        assertThat(untouched.get(1).text).isEqualTo("Ravi");
+    }
+
+    @Test
+    void charactersTheFontCannotShowArePrintedVisiblyAsQuestionMarks() throws Exception {
+        LabelSheetService service = service(realExecutor());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.writeSheet(List.of(new LabelSheetService.SheetLabel("S-01", "\u0C30\u0C2E\u0C47\u0C37\u0C4D Kumar",
+                "Serum"), new LabelSheetService.SheetLabel("S-02", "Zo\u00EB M\u00FCller", "Serum")),
+                LabelSheetLayout.ROLL, out);
+
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(new ByteArrayInputStream(out.toByteArray())))) {
+            assertThat(lines(pdf, 1).get(1).text).isEqualTo("????? Kumar");
+            // Latin-1 names are unaffected
+            assertThat(lines(pdf, 2).get(1).text).isEqualTo("Zo\u00EB M\u00FCller");
+        }
+    }
+
+    private LabelSheetService service(BarcodeExecutor executor) {
+        when(sampleRepository.findWithVisitBySampleNumberIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> requested = invocation.getArgument(0);
+            return requested.stream().filter(number -> number.startsWith("S-")).map(LabelSheetServiceTest::sample).toList();
+        });
+        when(barcodeService.encodeLinearModules(eq(BarcodeFormat.CODE_128), anyString())).thenAnswer(invocation -> {
+            encodingThreads.add(Thread.currentThread().getName());
+            return new Code128Writer().encode(invocation.getArgument(1));
+        });
+        return new LabelSheetService(sampleRepository, barcodeService, executor, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 50, 25, 30);
+    }
+
+    private BarcodeExecutor realExecutor() {
+        barcodeExecutor = new BarcodeExecutor(new SimpleMeterRegistry(), BulkheadRegistry.ofDefaults(), 2, 8);
+        return barcodeExecutor;
+    }
+
+    private static List<List<TextLine>> render(LabelSheetService service, List<LabelSheetService.SheetLabel> labels,
+                                               LabelSheetLayout layout) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeSheet(labels, layout, out);
+        List<List<TextLine>> pages = new ArrayList<>();
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(new ByteArrayInputStream(out.toByteArray())))) {
+            for (int i = 1; i <= pdf.getNumberOfPages(); i++) {
+                pages.add(lines(pdf, i));
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Every label draws three lines, sample number first
+     */
+    private static TextLine sampleNumberLine(List<TextLine> page, int slot) {
+        return page.get(slot * 3);
+    }
+
+    private static List<TextLine> lines(PdfDocument pdf, int pageNumber) {
+        List<TextLine> lines = new ArrayList<>();
+        new PdfCanvasProcessor(new IEventListener() {
+            @Override
+            public void eventOccurred(IEventData data, EventType type) {
+                TextRenderInfo info = (TextRenderInfo) data;
+                var start = info.getBaseline().getStartPoint();
+                lines.add(new TextLine(info.getText(), start.get(0), start.get(1), info.getFontSize()));
+            }
+
+            @Override
+            public Set<EventType> getSupportedEvents() {
+                return Set.of(EventType.RENDER_TEXT);
+            }
+        }).processPageContent(pdf.getPage(pageNumber));
+        return lines;
+    }
+
+    private static List<String> sampleNumbers(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(i -> String.format("S-%02d", i)).toList();
+    }
+
+    private static Sample sample(String sampleNumber) {
+        Visit visit = new Visit(new ObjectMapper().createObjectNode().put("name", "Patient " + sampleNumber));
+        return new Sample(sampleNumber, visit, SampleType.SERUM, "Nurse", LocalDateTime.of(2025, 10, 18, 9, 30));
+    }
+
+    private record TextLine(String text, float x, float y, float fontSize) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.sivalab.laboperations.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.properties.Property;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfReportResourcesTest {
+
+    private final PdfReportResources resources = new PdfReportResources();
+
+    @Test
+    void stylesAndFontsAreCreatedOncePerDocument() {
+        try (PdfDocument first = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+             PdfDocument second = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()))) {
+            PdfReportResources.DocumentResources firstResources = resources.forDocument(first);
+            PdfReportResources.DocumentResources secondResources = resources.forDocument(second);
+
+            assertThat(firstResources.label()).isSameAs(firstResources.label());
+            // headings share the document's bold font
+            Object boldFont = firstResources.label().<Object>getProperty(Property.FONT);
+            assertThat(firstResources.sectionHeading().<Object>getProperty(Property.FONT)).isSameAs(boldFont);
+            assertThat(firstResources.testHeading().<Object>getProperty(Property.FONT)).isSameAs(boldFont);
+            assertThat(firstResources.note().<Object>getProperty(Property.FONT))
+                    .isSameAs(firstResources.footerNote().<Object>getProperty(Property.FONT));
+            // another document gets its own
+            assertThat(secondResources.label()).isNotSameAs(firstResources.label());
+            assertThat(secondResources.label().<Object>getProperty(Property.FONT)).isNotSameAs(boldFont);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.sivalab.laboperations.service;
+
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.element.Paragraph;
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.entity.ReportType;
+import com.sivalab.laboperations.entity.Visit;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReportBundleServiceTest {
+
+    private static final PdfReportResources RESOURCES = new PdfReportResources();
+
+    @TempDir
+    Path directory;
+
+    private final LabReportRepository labReportRepository = mock(LabReportRepository.class);
+    private final PdfReportService pdfReportService = mock(PdfReportService.class);
+    private ReportBundleService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void mergedBundleKeepsReportOrderAndSharesTheLetterhead() throws Exception {
+        ReportBundleService service = service(2, 100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.writeBundle(List.of(5L, 1L, 4L, 2L, 3L, 6L, 7L), ReportBundleService.BundleFormat.PDF, out);
+
+        List<String> pages = new ArrayList<>();
+        Set<Integer> xObjects = new HashSet<>();
+        Set<Integer> fonts = new HashSet<>();
+        try (PdfDocument bundle = new PdfDocument(new PdfReader(new ByteArrayInputStream(out.toByteArray())))) {
+            for (int i = 1; i <= bundle.getNumberOfPages(); i++) {
+                pages.add(PdfTextExtractor.getTextFromPage(bundle.getPage(i)).trim());
+                PdfDictionary resources = bundle.getPage(i).getResources().getPdfObject();
+                xObjects.addAll(objectNumbers(resources.getAsDictionary(PdfName.XObject)));
+                fonts.addAll(objectNumbers(resources.getAsDictionary(PdfName.Font)));
+            }
+        }
+        assertThat(pages).extracting(page -> page.substring(page.lastIndexOf('\n') + 1))
+                .containsExactly("ULR-5", "ULR-1", "ULR-4", "ULR-2", "ULR-3", "ULR-6", "ULR-7");
+        assertThat(pages.get(0)).contains(PdfReportResources.LAB_NAME);
+        // every report brought its own letterhead and font; the bundle holds one of each
+        assertThat(xObjects).hasSize(1);
+        assertThat(fonts).hasSize(1);
+    }
+
+    @Test
+    void zipBundleKeepsReportOrder() throws Exception {
+        ReportBundleService service = service(3, 100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.writeBundle(List.of(3L, 1L, 2L), ReportBundleService.BundleFormat.ZIP, out);
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+                assertThat(new String(zip.readNBytes(5))).isEqualTo("%PDF-");
+            }
+        }
+        assertThat(entries).containsExactly("report_ULR-3.pdf", "report_ULR-1.pdf", "report_ULR-2.pdf");
+    }
+
+    @Test
+    void entriesEvictedWhileWaitingInTheWindowAreStillWritten() throws Exception {
+        ByteArrayOutputStream one = new ByteArrayOutputStream();
+        writePdf(report(1L), one);
+        // no memory tier and room on disk for a single report: each rendering evicts the ones ahead of it
+        ReportBundleService service = service(2, 100, 0, one.size() + one.size() / 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.writeBundle(List.of(1L, 2L, 3L, 4L, 5L, 6L), ReportBundleService.BundleFormat.ZIP, out);
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+                assertThat(new String(zip.readNBytes(5))).isEqualTo("%PDF-");
+            }
+        }
+        assertThat(entries).hasSize(6).first().isEqualTo("report_ULR-1.pdf");
+    }
+
+    @Test
+    void renderingFailurePropagatesFromTheBundle() {
+        ReportBundleService service = service(2, 100);
+        failRendering(3L);
+
+        assertThatThrownBy(() -> service.writeBundle(List.of(1L, 2L, 3L, 4L), ReportBundleService.BundleFormat.PDF,
+                OutputStream.nullOutputStream()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("renderer down");
+        // a failure before the first page is not hidden by closing the empty bundle
+        assertThatThrownBy(() -> service.writeBundle(List.of(3L, 1L), ReportBundleService.BundleFormat.PDF,
+                OutputStream.nullOutputStream()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("renderer down");
+        assertThatThrownBy(() -> service.writeBundle(List.of(1L, 3L), ReportBundleService.BundleFormat.ZIP,
+                OutputStream.nullOutputStream()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("renderer down");
+    }
+
+    @Test
+    void missingReportFailsTheBundle() {
+        ReportBundleService service = service(2, 100);
+
+        assertThatThrownBy(() -> service.writeBundle(List.of(1L, 99L), ReportBundleService.BundleFormat.ZIP,
+                OutputStream.nullOutputStream()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Report not found with ID: 99");
+    }
+
+    private ReportBundleService service(int parallelism, int maxReports) {
+        return service(parallelism, maxReports, 1_000_000, 10_000_000);
+    }
+
+    private ReportBundleService service(int parallelism, int maxReports, long memoryMaxBytes, long diskMaxBytes) {
+        when(labReportRepository.findById(anyLong())).thenAnswer(invocation -> {
+            Long reportId = invocation.getArgument(0);
+            return reportId > 50 ? Optional.empty() : Optional.of(report(reportId));
+        });
+        try {
+            doAnswer(invocation -> {
+                writePdf(invocation.getArgument(0), invocation.getArgument(1));
+                return null;
+            }).when(pdfReportService).writePdfReport(any(), any());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReportPdfCache cache = new ReportPdfCache(registry, LabReport::getReportData, new RequestCoalescer(registry),
+                memoryMaxBytes, diskMaxBytes, directory.toString(), Duration.ofSeconds(30));
+        service = new ReportBundleService(labReportRepository, pdfReportService, cache,
+                mock(PlatformTransactionManager.class), registry, parallelism, maxReports);
+        return service;
+    }
+
+    private void failRendering(Long reportId) {
+        try {
+            doAnswer(invocation -> {
+                LabReport report = invocation.getArgument(0);
+                if (report.getReportId().equals(reportId)) {
+                    throw new IOException("renderer down");
+                }
+                writePdf(report, invocation.getArgument(1));
+                return null;
+            }).when(pdfReportService).writePdfReport(any(), any());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void writePdf(LabReport report, OutputStream out) {
+        PdfWriter writer = new PdfWriter(out);
+        writer.setCloseStream(false);
+        PdfDocument pdf = new PdfDocument(writer);
+        try (Document document = new Document(pdf)) {
+            document.add(new Image(RESOURCES.forDocument(pdf).getHeader()));
+            document.add(new Paragraph(report.getUlrNumber()));
+        }
+    }
+
+    private static Set<Integer> objectNumbers(PdfDictionary entries) {
+        Set<Integer> numbers = new HashSet<>();
+        if (entries != null) {
+            for (PdfName name : entries.keySet()) {
+                numbers.add(entries.get(name).getIndirectReference().getObjNumber());
+            }
+        }
+        return numbers;
+    }
+
+    private static LabReport report(Long reportId) {
+        LabReport report = new LabReport(new Visit(), ReportType.STANDARD);
+        report.setReportId(reportId);
+        report.setUlrNumber("ULR-" + reportId);
+        return report;
+    }
+}
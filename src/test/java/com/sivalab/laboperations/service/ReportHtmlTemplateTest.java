@@ -0,0 +1,33 @@
+package com.sivalab.laboperations.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReportHtmlTemplateTest {
+
+    @Test
+    void escapesValuesAndRepeatsSections() {
+        ReportHtmlTemplate template = ReportHtmlTemplate.compile("test",
+                "<p>{{ulr}}</p>{{#rows}}<td>{{name}}={{value}} ({{ulr}})</td>{{/rows}}{{^rows}}none{{/rows}}");
+
+        String html = template.render(Map.of(
+                "ulr", "TC/1",
+                "rows", List.of(Map.of("name", "<b>Hb</b>", "value", "13 & 5"), Map.of("name", "WBC", "value", "7"))));
+
+        assertThat(html).isEqualTo("<p>TC/1</p><td>&lt;b&gt;Hb&lt;/b&gt;=13 &amp; 5 (TC/1)</td><td>WBC=7 (TC/1)</td>");
+        assertThat(template.render(Map.of("ulr", "x", "rows", List.of()))).isEqualTo("<p>x</p>none");
+    }
+
+    @Test
+    void rejectsUnbalancedSections() {
+        assertThatThrownBy(() -> ReportHtmlTemplate.compile("test", "{{#rows}}x"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ReportHtmlTemplate.compile("test", "{{#rows}}x{{/cols}}"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,180 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.LabReport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReportPdfCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void servesEvictedMemoryEntriesFromDisk() throws IOException {
+        ReportPdfCache cache = cache(10, 1_000);
+        cache.put(1L, "1-aaa", new byte[] {1, 2, 3, 4, 5, 6});
+        cache.put(2L, "2-bbb", new byte[] {7, 8, 9, 10, 11, 12});
+
+        ReportPdfCache.CachedPdf first = cache.get("1-aaa");
+        assertThat(first).isNotNull();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        first.writeTo(out);
+        assertThat(out.toByteArray()).containsExactly(1, 2, 3, 4, 5, 6);
+
+        ReportPdfCache reloaded = cache(10, 1_000);
+        assertThat(reloaded.get("2-bbb")).isNotNull();
+        reloaded.invalidate(2L);
+        assertThat(reloaded.get("2-bbb")).isNull();
+        assertThat(directory.resolve("2-bbb.pdf")).doesNotExist();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedFromDisk() {
+        ReportPdfCache cache = cache(0, 10);
+        cache.put(1L, "1-aaa", new byte[4]);
+        cache.put(2L, "2-bbb", new byte[4]);
+        cache.get("1-aaa");
+        cache.put(3L, "3-ccc", new byte[4]);
+
+        assertThat(cache.get("1-aaa")).isNotNull();
+        assertThat(cache.get("2-bbb")).isNull();
+        assertThat(cache.get("3-ccc")).isNotNull();
+    }
+
+    @Test
+    void cachesStreamedRenderingOnlyWhenCommitted() throws IOException {
+        ReportPdfCache cache = cache(0, 1_000);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try (ReportPdfCache.CachingOutputStream out = cache.open(response, 1L, "1-aaa")) {
+            out.write(new byte[] {1, 2, 3});
+        }
+        assertThat(response.toByteArray()).containsExactly(1, 2, 3);
+        assertThat(cache.get("1-aaa")).isNull();
+
+        try (ReportPdfCache.CachingOutputStream out = cache.open(OutputStream.nullOutputStream(), 1L, "1-aaa")) {
+            out.write(new byte[] {1, 2, 3});
+            assertThat(out.commit()).isTrue();
+        }
+        ReportPdfCache.CachedPdf cached = cache.get("1-aaa");
+        assertThat(cached).isNotNull();
+        assertThat(cached.getLength()).isEqualTo(3);
+        try (var files = Files.list(directory)) {
+            assertThat(files).containsExactly(directory.resolve("1-aaa.pdf"));
+        }
+    }
+
+    @Test
+    void pinnedDiskEntryIsStillWrittenAfterItIsEvicted() throws IOException {
+        ReportPdfCache cache = cache(0, 1_000);
+        cache.put(1L, "1-aaa", new byte[] {1, 2, 3});
+
+        ReportPdfCache.CachedPdf pinned = cache.get("1-aaa").pin();
+        ReportPdfCache.CachedPdf unpinned = cache.get("1-aaa");
+        cache.invalidate(1L);
+        assertThat(directory.resolve("1-aaa.pdf")).doesNotExist();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pinned.writeTo(out);
+        assertThat(out.toByteArray()).containsExactly(1, 2, 3);
+        assertThat(pinned.getLength()).isEqualTo(3);
+        // an entry that went away before it was pinned is reported as gone
+        assertThat(unpinned.pin()).isNull();
+    }
+
+    @Test
+    void missStreamsToTheCallerAndWaitersGetTheCommittedFile() throws Exception {
+        ReportPdfCache cache = cache(0, 1_000);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger renders = new AtomicInteger();
+        ReportPdfCache.Renderer renderer = out -> {
+            renders.incrementAndGet();
+            out.write(new byte[] {1, 2});
+            await(release);
+            out.write(new byte[] {3});
+        };
+
+        ByteArrayOutputStream leaderResponse = new ByteArrayOutputStream();
+        Thread leader = start(() -> cache.getOrRender(1L, "1-aaa", leaderResponse, renderer));
+        // the leader has streamed the first bytes before the document is finished
+        while (leaderResponse.size() < 2) {
+            Thread.onSpinWait();
+        }
+        ByteArrayOutputStream waiterResponse = new ByteArrayOutputStream();
+        Thread waiter = start(() -> cache.getOrRender(1L, "1-aaa", waiterResponse, renderer));
+        while (waiter.getState() != Thread.State.WAITING && waiter.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        leader.join();
+        waiter.join();
+
+        assertThat(renders).hasValue(1);
+        assertThat(leaderResponse.toByteArray()).containsExactly(1, 2, 3);
+        assertThat(waiterResponse.toByteArray()).containsExactly(1, 2, 3);
+        assertThat(directory.resolve("1-aaa.pdf")).hasBinaryContent(new byte[] {1, 2, 3});
+    }
+
+    @Test
+    void disconnectedClientStillCompletesTheCachedRendering() throws IOException {
+        ReportPdfCache cache = cache(0, 1_000);
+        OutputStream brokenPipe = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        assertThatThrownBy(() -> cache.getOrRender(1L, "1-aaa", brokenPipe, out -> out.write(new byte[] {4, 5})))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        cache.getOrRender(1L, "1-aaa", response, out -> {
+            throw new AssertionError("served from the cache");
+        });
+        assertThat(response.toByteArray()).containsExactly(4, 5);
+    }
+
+    private static Thread start(IoAction action) {
+        Thread thread = new Thread(() -> {
+            try {
+                action.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ReportPdfCache cache(long memoryMaxBytes, long diskMaxBytes) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new ReportPdfCache(registry, LabReport::getReportData, new RequestCoalescer(registry),
+                memoryMaxBytes, diskMaxBytes, directory.toString(), Duration.ofSeconds(30));
+    }
+}
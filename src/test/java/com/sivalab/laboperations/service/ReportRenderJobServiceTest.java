@@ -0,0 +1,219 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.LabReport;
+import com.sivalab.laboperations.entity.ReportType;
+import com.sivalab.laboperations.entity.Visit;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReportRenderJobServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final LabReportRepository labReportRepository = mock(LabReportRepository.class);
+    private final PdfReportService pdfReportService = mock(PdfReportService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Long> rendered = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirst = new CountDownLatch(1);
+    private ReportPdfCache cache;
+    private ReportRenderJobService service;
+
+    @AfterEach
+    void tearDown() {
+        releaseFirst.countDown();
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void statJobsRunBeforeQueuedRoutineJobs() throws Exception {
+        service = service(10);
+        ReportRenderJobService.RenderJob first = service.submit(report(1L), ReportRenderJobService.RenderPriority.ROUTINE);
+        assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        service.submit(report(2L), ReportRenderJobService.RenderPriority.ROUTINE);
+        service.submit(report(3L), ReportRenderJobService.RenderPriority.ROUTINE);
+        ReportRenderJobService.RenderJob stat = service.submit(report(4L), ReportRenderJobService.RenderPriority.STAT);
+        service.submit(report(5L), ReportRenderJobService.RenderPriority.STAT);
+        assertThat(stat.getStatus()).isEqualTo(ReportRenderJobService.JobStatus.QUEUED);
+        assertThat(first.getStatus()).isEqualTo(ReportRenderJobService.JobStatus.RUNNING);
+        releaseFirst.countDown();
+
+        awaitRendered(5);
+        assertThat(rendered).containsExactly(1L, 4L, 5L, 2L, 3L);
+        assertThat(stat.getStatus()).isEqualTo(ReportRenderJobService.JobStatus.COMPLETED);
+        assertThat(service.getResult(stat)).isPresent();
+    }
+
+    @Test
+    void sameRenderingIsQueuedOnce() throws Exception {
+        service = service(10);
+        service.submit(report(1L), ReportRenderJobService.RenderPriority.ROUTINE);
+        assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ReportRenderJobService.RenderJob queued = service.submit(report(2L), ReportRenderJobService.RenderPriority.ROUTINE);
+        ReportRenderJobService.RenderJob again = service.submit(report(2L), ReportRenderJobService.RenderPriority.STAT);
+        assertThat(again).isSameAs(queued);
+        releaseFirst.countDown();
+        awaitRendered(2);
+
+        // once rendered, a new submission is answered from the cache
+        ReportRenderJobService.RenderJob cached = service.submit(report(2L), ReportRenderJobService.RenderPriority.ROUTINE);
+        assertThat(cached).isNotSameAs(queued);
+        assertThat(cached.getStatus()).isEqualTo(ReportRenderJobService.JobStatus.COMPLETED);
+        assertThat(service.getJob(cached.getJobId())).containsSame(cached);
+        assertThat(rendered).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void fullQueueRefusesNewJobs() throws Exception {
+        service = service(2);
+        service.submit(report(1L), ReportRenderJobService.RenderPriority.ROUTINE);
+        assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        service.submit(report(2L), ReportRenderJobService.RenderPriority.ROUTINE);
+        service.submit(report(3L), ReportRenderJobService.RenderPriority.STAT);
+
+        assertThatThrownBy(() -> service.submit(report(4L), ReportRenderJobService.RenderPriority.STAT))
+                .isInstanceOf(ReportRenderJobService.RenderQueueFullException.class)
+                .hasMessageContaining("2 jobs");
+        // a rendering that is already queued is still found
+        assertThat(service.submit(report(2L), ReportRenderJobService.RenderPriority.ROUTINE).getStatus())
+                .isEqualTo(ReportRenderJobService.JobStatus.QUEUED);
+        assertThat(meterRegistry.get("lab.reports.render.rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("lab.reports.render.queue.depth").tag("priority", "STAT").gauge().value()).isEqualTo(1);
+
+        releaseFirst.countDown();
+        awaitRendered(3);
+    }
+
+    @Test
+    void concurrentSubmissionsCannotOvershootTheQueue() throws Exception {
+        service = service(3);
+        service.submit(report(1L), ReportRenderJobService.RenderPriority.ROUTINE);
+        assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ExecutorService submitters = Executors.newFixedThreadPool(8);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        List<Future<?>> submissions = new ArrayList<>();
+        for (long reportId = 2; reportId < 26; reportId++) {
+            LabReport report = report(reportId);
+            submissions.add(submitters.submit(() -> {
+                go.await();
+                try {
+                    service.submit(report, ReportRenderJobService.RenderPriority.ROUTINE);
+                    accepted.incrementAndGet();
+                } catch (ReportRenderJobService.RenderQueueFullException e) {
+                    refused.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        go.countDown();
+        for (Future<?> submission : submissions) {
+            submission.get(5, TimeUnit.SECONDS);
+        }
+        submitters.shutdown();
+
+        assertThat(accepted.get()).isEqualTo(3);
+        assertThat(refused.get()).isEqualTo(21);
+        releaseFirst.countDown();
+        awaitRendered(4);
+        // rendering frees the slots again
+        service.submit(report(30L), ReportRenderJobService.RenderPriority.ROUTINE);
+        awaitRendered(5);
+    }
+
+    @Test
+    void jobResultIsPinnedAgainstEviction() throws Exception {
+        // no memory tier, so the result is served from its disk file
+        service = service(10, 0);
+        ReportRenderJobService.RenderJob job = service.submit(report(2L), ReportRenderJobService.RenderPriority.ROUTINE);
+        awaitRendered(1);
+
+        ReportPdfCache.CachedPdf pdf = service.getResult(job).orElseThrow();
+        cache.invalidate(2L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pdf.writeTo(out);
+
+        assertThat(out.toString()).isEqualTo("%PDF-2");
+        assertThat(pdf.getLength()).isEqualTo(6);
+        // gone for the next poll, which answers 410 so the client resubmits
+        assertThat(service.getResult(job)).isEmpty();
+    }
+
+    private void awaitRendered(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rendered.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(rendered).hasSize(count);
+        // the job is marked complete just after its PDF is written
+        Thread.sleep(50);
+    }
+
+    private ReportRenderJobService service(int queueCapacity) throws Exception {
+        return service(queueCapacity, 1_000_000);
+    }
+
+    private ReportRenderJobService service(int queueCapacity, long memoryMaxBytes) throws Exception {
+        when(labReportRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(report(invocation.getArgument(0))));
+        doAnswer(invocation -> {
+            LabReport report = invocation.getArgument(0);
+            if (report.getReportId() == 1L) {
+                firstStarted.countDown();
+                releaseFirst.await(5, TimeUnit.SECONDS);
+            }
+            invocation.<OutputStream>getArgument(1).write(("%PDF-" + report.getReportId()).getBytes());
+            rendered.add(report.getReportId());
+            return null;
+        }).when(pdfReportService).writePdfReport(any(), any());
+
+        cache = new ReportPdfCache(meterRegistry, LabReport::getReportData, new RequestCoalescer(meterRegistry),
+                memoryMaxBytes, 10_000_000, directory.toString(), Duration.ofSeconds(30));
+        // one render thread, so the queue order is observable
+        Bulkhead pdfBulkhead = Bulkhead.of("pdf", BulkheadConfig.custom().maxConcurrentCalls(1).build());
+        return new ReportRenderJobService(labReportRepository, pdfReportService, cache,
+                mock(PlatformTransactionManager.class), pdfBulkhead, meterRegistry, queueCapacity, Duration.ofMinutes(30));
+    }
+
+    private static LabReport report(Long reportId) {
+        LabReport report = new LabReport(new Visit(), ReportType.STANDARD);
+        report.setReportId(reportId);
+        report.setUlrNumber("ULR-" + reportId);
+        return report;
+    }
+}
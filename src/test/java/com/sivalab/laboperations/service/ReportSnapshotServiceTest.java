@@ -0,0 +1,65 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivalab.laboperations.entity.TestTemplate;
+import com.sivalab.laboperations.entity.TestTemplateSnapshot;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import com.sivalab.laboperations.repository.LabTestRepository;
+import com.sivalab.laboperations.repository.TestTemplateSnapshotRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReportSnapshotServiceTest {
+
+    private final TestTemplateSnapshotRepository snapshotRepository = mock(TestTemplateSnapshotRepository.class);
+    private final ReportSnapshotService service = new ReportSnapshotService(snapshotRepository,
+            mock(LabReportRepository.class), mock(LabTestRepository.class));
+
+    @Test
+    void newVersionIsAllocatedWhileTheTemplateRowIsLocked() throws Exception {
+        TestTemplate template = template("{\"hemoglobin\": {\"unit\": \"g/dL\"}}");
+        TestTemplate previous = template("{\"hemoglobin\": {\"unit\": \"mmol/L\"}}");
+        when(snapshotRepository.findTopByTemplateIdOrderByVersionDesc(3L))
+                .thenReturn(Optional.of(new TestTemplateSnapshot(previous, 4)));
+        when(snapshotRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TestTemplateSnapshot snapshot = service.snapshotOf(template);
+
+        assertThat(snapshot.getVersion()).isEqualTo(5);
+        InOrder order = inOrder(snapshotRepository);
+        order.verify(snapshotRepository).lockTemplate(3L);
+        order.verify(snapshotRepository).findTopByTemplateIdOrderByVersionDesc(3L);
+        order.verify(snapshotRepository).save(snapshot);
+    }
+
+    @Test
+    void committedMatchingSnapshotIsCachedAndNeedsNoLock() throws Exception {
+        TestTemplate template = template("{\"hemoglobin\": {\"unit\": \"g/dL\"}}");
+        TestTemplateSnapshot latest = new TestTemplateSnapshot(template, 2);
+        when(snapshotRepository.findTopByTemplateIdOrderByVersionDesc(3L)).thenReturn(Optional.of(latest));
+
+        assertThat(service.snapshotOf(template)).isSameAs(latest);
+        assertThat(service.snapshotOf(template)).isSameAs(latest);
+
+        verify(snapshotRepository).lockTemplate(3L);
+        verify(snapshotRepository, never()).save(any());
+    }
+
+    private static TestTemplate template(String parameters) throws Exception {
+        TestTemplate template = new TestTemplate("CBC", "Complete blood count",
+                new ObjectMapper().readTree(parameters), BigDecimal.TEN);
+        template.setTemplateId(3L);
+        return template;
+    }
+}
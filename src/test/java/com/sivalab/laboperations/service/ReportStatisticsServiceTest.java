@@ -0,0 +1,123 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.ReportStatus;
+import com.sivalab.laboperations.repository.LabReportRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReportStatisticsServiceTest {
+
+    private final LabReportRepository labReportRepository = mock(LabReportRepository.class);
+    private final AtomicInteger queries = new AtomicInteger();
+    private final AtomicReference<Supplier<List<Object[]>>> counts = new AtomicReference<>();
+    // every snapshot is stale as soon as it is loaded
+    private final ReportStatisticsService service = new ReportStatisticsService(labReportRepository,
+            mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), Duration.ZERO);
+
+    @BeforeEach
+    void setUp() {
+        when(labReportRepository.countReportsByStatus()).thenAnswer(invocation -> {
+            queries.incrementAndGet();
+            return counts.get().get();
+        });
+        when(labReportRepository.countReportsGeneratedBetween(any(), any())).thenReturn(1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void servesTheStaleSnapshotWhileOneRefreshRuns() throws Exception {
+        stubCounts(() -> rows(2, 3));
+        assertThat(service.getReportStatistics().getTotalReports()).isEqualTo(5);
+        assertThat(queries).hasValue(1);
+
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch releaseRefresh = new CountDownLatch(1);
+        stubCounts(() -> {
+            refreshStarted.countDown();
+            await(releaseRefresh);
+            return rows(4, 3);
+        });
+        ReportStatisticsService.ReportStatistics stale = service.getReportStatistics();
+        assertThat(refreshStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 20; i++) {
+            assertThat(service.getReportStatistics()).isSameAs(stale);
+        }
+        assertThat(stale.getDraftReports()).isEqualTo(2);
+        assertThat(stale.getSentReports()).isEqualTo(3);
+        assertThat(queries).hasValue(2);
+
+        releaseRefresh.countDown();
+        assertThat(awaitTotal(7)).isTrue();
+        assertThat(service.getReportStatistics().getDraftReports()).isEqualTo(4);
+    }
+
+    @Test
+    void failedRefreshKeepsTheOldSnapshotAndIsRetried() throws Exception {
+        stubCounts(() -> rows(1, 1));
+        ReportStatisticsService.ReportStatistics initial = service.getReportStatistics();
+
+        stubCounts(() -> {
+            throw new IllegalStateException("connection refused");
+        });
+        for (int i = 0; i < 5; i++) {
+            assertThat(service.getReportStatistics()).isSameAs(initial);
+            Thread.sleep(20);
+        }
+        int failedRefreshes = queries.get() - 1;
+        assertThat(failedRefreshes).isGreaterThanOrEqualTo(1);
+
+        stubCounts(() -> rows(1, 5));
+        assertThat(awaitTotal(6)).isTrue();
+    }
+
+    private boolean awaitTotal(long total) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (service.getReportStatistics().getTotalReports() == total) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private void stubCounts(Supplier<List<Object[]>> rows) {
+        counts.set(rows);
+    }
+
+    private static List<Object[]> rows(long drafts, long sent) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{ReportStatus.DRAFT, drafts});
+        rows.add(new Object[]{ReportStatus.SENT, sent});
+        return rows;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
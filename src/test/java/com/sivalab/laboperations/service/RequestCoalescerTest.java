@@ -0,0 +1,108 @@
+package com.sivalab.laboperations.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestCoalescerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RequestCoalescer coalescer = new RequestCoalescer(registry);
+
+    @Test
+    void concurrentCallersShareOneComputation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        RequestCoalescer.Call<byte[], IOException> render = () -> {
+            calls.incrementAndGet();
+            await(release);
+            return new byte[] {1, 2, 3};
+        };
+
+        List<CompletableFuture<byte[]>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(callAndPark("1-abc", Duration.ofSeconds(30), render));
+        }
+        release.countDown();
+
+        byte[] first = results.get(0).get();
+        for (CompletableFuture<byte[]> result : results) {
+            assertThat(result.get()).isSameAs(first);
+        }
+        assertThat(calls).hasValue(1);
+        assertThat(count("leader")).isEqualTo(1);
+        assertThat(count("coalesced")).isEqualTo(3);
+
+        // the flight is over, so the next call computes again
+        coalescer.execute("pdf", "1-abc", Duration.ofSeconds(30), () -> new byte[0]);
+        assertThat(count("leader")).isEqualTo(2);
+    }
+
+    @Test
+    void waitersShareFailuresAndStopWaitingAfterTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RequestCoalescer.Call<String, IOException> failing = () -> {
+            await(release);
+            throw new IOException("render failed");
+        };
+        CompletableFuture<String> leader = callAndPark("2-def", Duration.ofSeconds(30), failing);
+        CompletableFuture<String> waiter = callAndPark("2-def", Duration.ofSeconds(30), failing);
+        release.countDown();
+        assertThatThrownBy(leader::get).hasRootCauseMessage("render failed");
+        assertThatThrownBy(waiter::get).hasRootCauseMessage("render failed");
+        assertThat(count("coalesced")).isEqualTo(1);
+
+        // a stuck flight is only waited for until its timeout, then the waiter computes on its own
+        CountDownLatch stuck = new CountDownLatch(1);
+        CompletableFuture<String> slow = callAndPark("3-ghi", Duration.ofMillis(200), () -> {
+            await(stuck);
+            return "slow";
+        });
+        assertThat(coalescer.execute("pdf", "3-ghi", Duration.ofMillis(200), () -> "own")).isEqualTo("own");
+        assertThat(count("timed-out")).isEqualTo(1);
+        stuck.countDown();
+        assertThat(slow.get()).isEqualTo("slow");
+    }
+
+    /**
+     * Call from a new thread and return once that thread is parked, computing or waiting for a flight
+     */
+    private <T> CompletableFuture<T> callAndPark(String key, Duration timeout,
+                                                 RequestCoalescer.Call<T, IOException> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Thread caller = new Thread(() -> {
+            try {
+                result.complete(coalescer.execute("pdf", key, timeout, call));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        caller.start();
+        while (caller.getState() != Thread.State.WAITING && caller.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        return result;
+    }
+
+    private double count(String result) {
+        return registry.get("lab.coalescing.requests").tag("group", "pdf").tag("result", result).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.config.FaultToleranceConfig;
+import com.sivalab.laboperations.controller.ResilientBarcodeController;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResilientBarcodeServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BarcodeService barcodeService = mock(BarcodeService.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BarcodeExecutor barcodeExecutor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (barcodeExecutor != null) {
+            barcodeExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void saturatedExecutorRejectsWorkBeyondItsThreadsAndQueue() throws Exception {
+        barcodeExecutor = saturatedExecutor();
+
+        assertThatThrownBy(() -> barcodeExecutor.executor().execute(() -> { }))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessage("Barcode executor saturated: 1 encoding, 1 queued");
+        assertThat(barcodeExecutor.getRejectedCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("lab.barcodes.executor.rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("lab.barcodes.executor.queue.depth").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void saturationIsPassedOnAndAnsweredWith503() throws Exception {
+        barcodeExecutor = saturatedExecutor();
+        ResilientBarcodeService service = service();
+
+        CompletableFuture<byte[]> qrCode = service.generateQRCodeResilient("S-1", 200, BarcodeImageFormat.PNG);
+        assertThatThrownBy(qrCode::get).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        // the fallback does not encode an error image while the executor is saturated
+        RejectedExecutionException saturated = new RejectedExecutionException("Barcode executor saturated");
+        assertThatThrownBy(service.fallbackQRCode("S-1", 200, BarcodeImageFormat.PNG, saturated)::get)
+                .hasCause(saturated);
+        assertThatThrownBy(service.fallbackBarcode("S-1", 200, 50, BarcodeImageFormat.PNG, saturated)::get)
+                .hasCause(saturated);
+        verify(barcodeService, never()).generateQRCode(anyString(), anyInt(), any());
+        verify(barcodeService, never()).generateCode128Barcode(anyString(), anyInt(), anyInt(), any());
+
+        ResilientBarcodeController controller = new ResilientBarcodeController();
+        ReflectionTestUtils.setField(controller, "resilientBarcodeService", service);
+        ResponseEntity<byte[]> response = controller.generateQRCode(Map.of("data", "S-1"), "png").get(5, TimeUnit.SECONDS);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void otherFailuresStillFallBackToAnErrorImage() throws Exception {
+        ResilientBarcodeService service = service();
+        byte[] errorImage = {1, 2, 3};
+        when(barcodeService.generateQRCode("ERROR_GENERATING_QR_FOR_S-1", 200, BarcodeImageFormat.PNG)).thenReturn(errorImage);
+
+        byte[] image = service.fallbackQRCode("S-1", 200, BarcodeImageFormat.PNG, new IllegalStateException("encoder bug"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(image).isEqualTo(errorImage);
+    }
+
+    @Test
+    void visitAndSampleQrPayloadsAreTheSameOnEveryCall() throws Exception {
+        barcodeExecutor = new BarcodeExecutor(meterRegistry, registry(), 1, 4);
+        ResilientBarcodeService service = service();
+        when(barcodeService.generateQRCode(anyString(), anyInt(), any())).thenReturn(new byte[]{1});
+
+        for (int i = 0; i < 2; i++) {
+            service.generateVisitQRCodeResilient(7L, 200, BarcodeImageFormat.PNG).get(5, TimeUnit.SECONDS);
+            service.generateSampleQRCodeResilient("S-1", 200, BarcodeImageFormat.PNG).get(5, TimeUnit.SECONDS);
+        }
+
+        // repeat calls hit the same image cache entry instead of filling the cache with one-off keys
+        verify(barcodeService, times(2)).generateQRCode("VISIT_ID:7_SIZE:200", 200, BarcodeImageFormat.PNG);
+        verify(barcodeService, times(2)).generateQRCode("SAMPLE:S-1_SIZE:200", 200, BarcodeImageFormat.PNG);
+    }
+
+    @Test
+    void barcodeBulkheadIsResizedToTheExecutorCapacityAtStartup() {
+        BulkheadRegistry plain = registry();
+        barcodeExecutor = new BarcodeExecutor(meterRegistry, plain, 3, 16);
+        assertThat(plain.bulkhead("barcode").getBulkheadConfig().getMaxConcurrentCalls()).isEqualTo(19);
+        assertThat(plain.bulkhead("barcode").getBulkheadConfig().getMaxWaitDuration()).isEqualTo(Duration.ofSeconds(3));
+        barcodeExecutor.shutdown();
+
+        // with the adaptive bulkhead already registered, the capacity becomes its ceiling
+        BulkheadRegistry adaptive = registry();
+        new FaultToleranceConfig(adaptive, meterRegistry, true, 1, Duration.ofSeconds(1), 10).barcodeBulkhead(8);
+        barcodeExecutor = new BarcodeExecutor(meterRegistry, adaptive, 2, 4);
+        assertThat(adaptive.bulkhead("barcode")).isInstanceOf(AdaptiveBulkhead.class);
+        assertThat(adaptive.bulkhead("barcode").getBulkheadConfig().getMaxConcurrentCalls()).isEqualTo(6);
+        // the limit itself still adapts, below the ceiling
+        assertThat(((AdaptiveBulkhead) adaptive.bulkhead("barcode")).getLimit()).isBetween(1, 6);
+    }
+
+    /**
+     * One barcode thread held on a latch and one task queued behind it
+     */
+    private BarcodeExecutor saturatedExecutor() throws InterruptedException {
+        BarcodeExecutor executor = new BarcodeExecutor(meterRegistry, registry(), 1, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.executor().execute(() -> {
+            running.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.executor().execute(() -> { });
+        return executor;
+    }
+
+    private ResilientBarcodeService service() {
+        ResilientBarcodeService service = new ResilientBarcodeService();
+        ReflectionTestUtils.setField(service, "barcodeService", barcodeService);
+        ReflectionTestUtils.setField(service, "barcodeExecutor", barcodeExecutor);
+        return service;
+    }
+
+    private static BulkheadRegistry registry() {
+        return BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(5)
+                .maxWaitDuration(Duration.ofSeconds(3))
+                .build());
+    }
+}
@@ -0,0 +1,171 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivalab.laboperations.entity.DisposalRunStatus;
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.SampleDisposalManifest;
+import com.sivalab.laboperations.entity.SampleDisposalRun;
+import com.sivalab.laboperations.entity.SampleType;
+import com.sivalab.laboperations.repository.SampleDisposalManifestRepository;
+import com.sivalab.laboperations.repository.SampleDisposalRunRepository;
+import com.sivalab.laboperations.repository.SampleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SampleDisposalJobTest {
+
+    private final SampleRepository sampleRepository = mock(SampleRepository.class);
+    private final SampleDisposalRunRepository runRepository = mock(SampleDisposalRunRepository.class);
+    private final SampleDisposalManifestRepository manifestRepository = mock(SampleDisposalManifestRepository.class);
+    private final SampleService sampleService = mock(SampleService.class);
+    private final List<Long> stored = new ArrayList<>(LongStream.rangeClosed(1, 5).boxed().toList());
+    private final List<Long> afterIds = new ArrayList<>();
+    private final List<SampleDisposalManifest> manifests = new ArrayList<>();
+    private final SampleDisposalJob job = new SampleDisposalJob(sampleRepository, runRepository, manifestRepository,
+            sampleService, new ObjectMapper(), mock(PlatformTransactionManager.class),
+            true, Duration.ofDays(7), 2, "System", "AUTOCLAVE");
+
+    @BeforeEach
+    void setUp() {
+        when(sampleRepository.findDisposalCandidateIds(any(), any(), any())).thenAnswer(invocation -> {
+            Long afterId = invocation.getArgument(1);
+            Pageable page = invocation.getArgument(2);
+            afterIds.add(afterId);
+            return stored.stream().filter(id -> id > afterId).limit(page.getPageSize()).toList();
+        });
+        when(sampleService.disposeSamplesInBatch(anyList(), anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            stored.removeAll(ids);
+            return ids.stream().map(SampleDisposalJobTest::sample).toList();
+        });
+        when(manifestRepository.save(any())).thenAnswer(invocation -> {
+            manifests.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(runRepository.save(any())).thenAnswer(invocation -> {
+            SampleDisposalRun run = invocation.getArgument(0);
+            if (run.getRunId() == null) {
+                run.setRunId(42L);
+            }
+            return run;
+        });
+    }
+
+    @Test
+    void disposesInChunksAndCheckpointsEachOne() {
+        SampleDisposalRun run = job.runDisposal().orElseThrow();
+
+        assertThat(run.getStatus()).isEqualTo(DisposalRunStatus.COMPLETED);
+        assertThat(run.getSamplesDisposed()).isEqualTo(5);
+        assertThat(run.getBatchesCompleted()).isEqualTo(3);
+        assertThat(run.getLastSampleId()).isEqualTo(5);
+        assertThat(run.getCutoffDate()).isBefore(LocalDateTime.now().minusDays(7).plusMinutes(1));
+        // each query continues after the previous chunk's last sample
+        assertThat(afterIds).containsExactly(0L, 2L, 4L, 5L);
+        assertThat(manifests).extracting(SampleDisposalManifest::getDisposalBatch)
+                .containsExactly(run.getRunCode() + "-0001", run.getRunCode() + "-0002", run.getRunCode() + "-0003");
+        assertThat(manifests).extracting(SampleDisposalManifest::getSampleCount).containsExactly(2, 2, 1);
+        assertThat(manifests.get(0).getSamples().get(1).get("sampleNumber").asText()).isEqualTo("S-2");
+    }
+
+    @Test
+    void failedChunkLeavesTheCheckpointAtTheLastCommittedChunk() {
+        when(sampleService.disposeSamplesInBatch(eq(List.of(3L, 4L)), anyString(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("sample 3 is not in storage"));
+        when(runRepository.findById(42L)).thenAnswer(invocation -> Optional.of(savedRun()));
+
+        SampleDisposalRun run = job.runDisposal().orElseThrow();
+
+        assertThat(run.getStatus()).isEqualTo(DisposalRunStatus.FAILED);
+        assertThat(run.getErrorMessage()).isEqualTo("sample 3 is not in storage");
+        assertThat(run.getLastSampleId()).isEqualTo(2);
+        assertThat(run.getSamplesDisposed()).isEqualTo(2);
+        assertThat(manifests).hasSize(1);
+        assertThat(job.isRunning()).isFalse();
+    }
+
+    @Test
+    void resumesTheOldestUnfinishedRunAfterItsCheckpoint() {
+        SampleDisposalRun failed = new SampleDisposalRun("DSP-20250101-023000",
+                LocalDateTime.now().minusDays(30), "INCINERATION", "Night shift");
+        failed.setRunId(7L);
+        failed.recordBatch(2L, 2);
+        failed.markFailed("connection reset");
+        stored.removeAll(List.of(1L, 2L));
+        when(runRepository.findByStatusInOrderByStartedAtAsc(List.of(DisposalRunStatus.RUNNING, DisposalRunStatus.FAILED)))
+                .thenReturn(List.of(failed));
+
+        SampleDisposalRun run = job.runDisposal().orElseThrow();
+
+        assertThat(run).isSameAs(failed);
+        assertThat(run.getStatus()).isEqualTo(DisposalRunStatus.COMPLETED);
+        assertThat(run.getErrorMessage()).isNull();
+        assertThat(run.getSamplesDisposed()).isEqualTo(5);
+        assertThat(afterIds).containsExactly(2L, 4L, 5L);
+        // the resumed run keeps its own cutoff, method and batch numbering
+        verify(sampleRepository, never()).findDisposalCandidateIds(any(), eq(0L), any());
+        verify(sampleService).disposeSamplesInBatch(List.of(3L, 4L), "Night shift", "INCINERATION", "DSP-20250101-023000-0002");
+        assertThat(manifests).extracting(SampleDisposalManifest::getRunId).containsOnly(7L);
+    }
+
+    @Test
+    void startedRunIsProcessedInTheBackground() throws InterruptedException {
+        SampleDisposalRun started = job.startDisposal().orElseThrow();
+
+        assertThat(started.getRunId()).isEqualTo(42L);
+        assertThat(started.getRunCode()).startsWith("DSP-");
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (job.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(job.isRunning()).isFalse();
+        assertThat(stored).isEmpty();
+        assertThat(manifests).hasSize(3);
+        assertThat(started.getStatus()).isEqualTo(DisposalRunStatus.COMPLETED);
+    }
+
+    @Test
+    void scheduledRunDoesNothingWhenDisabled() {
+        SampleDisposalJob disabled = new SampleDisposalJob(sampleRepository, runRepository, manifestRepository,
+                sampleService, new ObjectMapper(), mock(PlatformTransactionManager.class),
+                false, Duration.ofDays(7), 2, "System", "AUTOCLAVE");
+
+        disabled.scheduledRun();
+
+        verify(runRepository, never()).save(any());
+        verify(sampleService, never()).disposeSamplesInBatch(anyList(), anyString(), anyString(), anyString());
+    }
+
+    private SampleDisposalRun savedRun() {
+        // state of the run as of its last committed checkpoint
+        SampleDisposalRun run = new SampleDisposalRun("DSP-saved", LocalDateTime.now().minusDays(7), "AUTOCLAVE", "System");
+        run.setRunId(42L);
+        run.recordBatch(2L, 2);
+        return run;
+    }
+
+    private static Sample sample(Long id) {
+        Sample sample = new Sample("S-" + id, null, SampleType.SERUM, "Nurse", LocalDateTime.now().minusDays(10));
+        sample.setSampleId(id);
+        return sample;
+    }
+}
@@ -0,0 +1,51 @@
+package com.sivalab.laboperations.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.SampleType;
+import com.sivalab.laboperations.entity.Visit;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SampleLabelServiceTest {
+
+    private final SampleLabelService labels = new SampleLabelService(null, 203, 50, 25, 500);
+
+    @Test
+    void zplUsesPrinterBarcodeAndEscapesFieldData() throws Exception {
+        StringBuilder out = new StringBuilder();
+
+        labels.writeLabel(sample("Ravi ^Kumar_"), LabelFormat.ZPL, 2, out);
+
+        String zpl = out.toString();
+        assertThat(zpl).startsWith("^XA\n^CI28\n^PW400\n^LL200\n").endsWith("^PQ2\n^XZ\n");
+        assertThat(zpl).contains("^BCN,72,N,N,N,A^FH^FD20251018WB-12-0001^FS");
+        assertThat(zpl).contains("^FDRavi _5EKumar_5F^FS");
+        assertThat(zpl).contains("^FDWhole Blood  18-10-2025 09:30^FS");
+        assertThat(zpl.length()).isLessThan(400);
+    }
+
+    @Test
+    void eplQuotesFieldsAndRejectsBadCopies() throws Exception {
+        StringBuilder out = new StringBuilder();
+
+        labels.writeLabel(sample("Anne \"Jo\" Müller"), LabelFormat.EPL, 1, out);
+
+        String epl = out.toString();
+        assertThat(epl).startsWith("\nN\nq400\nQ200,24\nB").endsWith("P1\n");
+        assertThat(epl).contains(",0,1,1,1,72,N,\"20251018WB-12-0001\"\n");
+        assertThat(epl).contains(",0,2,1,1,N,\"Anne \\\"Jo\\\" M?ller\"\n");
+        assertThatThrownBy(() -> labels.writeLabel(sample("A"), LabelFormat.EPL, 0, new StringBuilder()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Sample sample(String patientName) throws Exception {
+        Visit visit = new Visit(new ObjectMapper().createObjectNode().put("name", patientName));
+        return new Sample("20251018WB-12-0001", visit, SampleType.WHOLE_BLOOD, "Nurse",
+                LocalDateTime.of(2025, 10, 18, 9, 30));
+    }
+}
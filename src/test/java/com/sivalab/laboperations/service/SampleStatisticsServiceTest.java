@@ -0,0 +1,166 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.SampleStatus;
+import com.sivalab.laboperations.entity.SampleType;
+import com.sivalab.laboperations.event.SampleStatusChangedEvent;
+import com.sivalab.laboperations.repository.SampleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SampleStatisticsServiceTest {
+
+    private final SampleRepository sampleRepository = mock(SampleRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SampleStatisticsService service = new SampleStatisticsService(sampleRepository, meterRegistry,
+            mock(PlatformTransactionManager.class));
+
+    @Test
+    void transitionsMoveOneCountBetweenCells() {
+        service.onSampleStatusChanged(event(SampleType.SERUM, null, SampleStatus.COLLECTED));
+        service.onSampleStatusChanged(event(SampleType.SERUM, null, SampleStatus.COLLECTED));
+        service.onSampleStatusChanged(event(SampleType.PLASMA, null, SampleStatus.COLLECTED));
+        service.onSampleStatusChanged(event(SampleType.SERUM, SampleStatus.COLLECTED, SampleStatus.PROCESSING));
+        service.onSampleStatusChanged(event(SampleType.PLASMA, SampleStatus.COLLECTED, SampleStatus.REJECTED));
+        // re-saves in the same status do not count
+        service.onSampleStatusChanged(event(SampleType.SERUM, SampleStatus.PROCESSING, SampleStatus.PROCESSING));
+
+        SampleStatisticsService.SampleStatistics statistics = service.getSampleStatistics();
+        assertThat(statistics.getTotalSamples()).isEqualTo(3);
+        assertThat(statistics.getRejectedSamples()).isEqualTo(1);
+        assertThat(statistics.getActiveSamples()).isEqualTo(1);
+        assertThat(statistics.getSamplesByStatus()).containsOnlyKeys(
+                SampleStatus.COLLECTED, SampleStatus.PROCESSING, SampleStatus.REJECTED);
+        assertThat(statistics.getSamplesByType()).containsEntry(SampleType.SERUM, 2L).containsEntry(SampleType.PLASMA, 1L);
+        assertThat(service.countByStatusAndType(SampleStatus.COLLECTED, SampleType.SERUM)).isEqualTo(1);
+        assertThat(meterRegistry.get("lab.samples.count").tag("status", "PROCESSING").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void reconcileReplacesDriftedCountersWithTheDatabaseCounts() {
+        service.onSampleStatusChanged(event(SampleType.SERUM, null, SampleStatus.COLLECTED));
+        when(sampleRepository.countSamplesByStatusAndType()).thenReturn(rows(
+                new Object[]{SampleStatus.STORED, SampleType.SERUM, 4L, 1L},
+                new Object[]{SampleStatus.DISPOSED, SampleType.WHOLE_BLOOD, 2L, 0L},
+                new Object[]{null, SampleType.SERUM, 9L, 0L}));
+
+        service.reconcile();
+
+        SampleStatisticsService.SampleStatistics statistics = service.getSampleStatistics();
+        assertThat(statistics.getTotalSamples()).isEqualTo(6);
+        assertThat(statistics.getRejectedSamples()).isEqualTo(1);
+        assertThat(statistics.getDisposedSamples()).isEqualTo(2);
+        assertThat(service.countByStatus(SampleStatus.COLLECTED)).isZero();
+    }
+
+    @Test
+    void transitionsCommittedDuringReconcileAreNotLost() throws Exception {
+        service.onSampleStatusChanged(event(SampleType.SERUM, null, SampleStatus.COLLECTED));
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(sampleRepository.countSamplesByStatusAndType()).thenAnswer(invocation -> {
+            queried.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            // the query's snapshot: the one collected sample, before the transition below
+            return rows(new Object[]{SampleStatus.COLLECTED, SampleType.SERUM, 1L, 0L});
+        });
+        when(sampleRepository.findStatusesBySampleNumberIn(anyCollection()))
+                .thenReturn(rows(new Object[]{"S-1", SampleStatus.COLLECTED}));
+
+        CompletableFuture<Void> reconcile = CompletableFuture.runAsync(service::reconcile);
+        assertThat(queried.await(5, TimeUnit.SECONDS)).isTrue();
+        service.onSampleStatusChanged(event(SampleType.SERUM, SampleStatus.COLLECTED, SampleStatus.RECEIVED));
+        // readers keep seeing the live counters while the query runs
+        assertThat(service.countByStatus(SampleStatus.RECEIVED)).isEqualTo(1);
+        release.countDown();
+        reconcile.get(5, TimeUnit.SECONDS);
+
+        assertThat(service.countByStatus(SampleStatus.COLLECTED)).isZero();
+        assertThat(service.countByStatus(SampleStatus.RECEIVED)).isEqualTo(1);
+        assertThat(service.getSampleStatistics().getTotalSamples()).isEqualTo(1);
+
+        // later transitions are no longer recorded for replay
+        service.onSampleStatusChanged(event(SampleType.SERUM, SampleStatus.RECEIVED, SampleStatus.PROCESSING));
+        when(sampleRepository.countSamplesByStatusAndType()).thenReturn(rows(
+                new Object[]{SampleStatus.PROCESSING, SampleType.SERUM, 1L, 0L}));
+        when(sampleRepository.findStatusesBySampleNumberIn(anyCollection())).thenReturn(rows());
+        service.reconcile();
+        assertThat(service.countByStatus(SampleStatus.PROCESSING)).isEqualTo(1);
+        assertThat(service.getSampleStatistics().getTotalSamples()).isEqualTo(1);
+    }
+
+    @Test
+    void transitionAlreadyInTheSnapshotIsNotReplayed() {
+        service.onSampleStatusChanged(event(SampleType.SERUM, null, SampleStatus.COLLECTED));
+        service.onSampleStatusChanged(event("S-2", SampleType.PLASMA, null, SampleStatus.COLLECTED));
+        when(sampleRepository.countSamplesByStatusAndType()).thenAnswer(invocation -> {
+            // S-1 is received after recording started but commits before the query's snapshot is taken
+            service.onSampleStatusChanged(event(SampleType.SERUM, SampleStatus.COLLECTED, SampleStatus.RECEIVED));
+            return rows(new Object[]{SampleStatus.RECEIVED, SampleType.SERUM, 1L, 0L},
+                    new Object[]{SampleStatus.COLLECTED, SampleType.PLASMA, 1L, 0L});
+        });
+        AtomicBoolean receivedAfterSnapshot = new AtomicBoolean();
+        when(sampleRepository.findStatusesBySampleNumberIn(anyCollection())).thenAnswer(invocation -> {
+            // S-2 is received after the snapshot, while the recorded samples' statuses are read
+            if (receivedAfterSnapshot.compareAndSet(false, true)) {
+                service.onSampleStatusChanged(event("S-2", SampleType.PLASMA, SampleStatus.COLLECTED, SampleStatus.RECEIVED));
+            }
+            List<Object[]> statuses = new ArrayList<>();
+            for (Object sampleNumber : (Collection<?>) invocation.getArgument(0)) {
+                statuses.add(new Object[]{sampleNumber, "S-1".equals(sampleNumber)
+                        ? SampleStatus.RECEIVED : SampleStatus.COLLECTED});
+            }
+            return statuses;
+        });
+
+        service.reconcile();
+
+        assertThat(service.countByStatusAndType(SampleStatus.RECEIVED, SampleType.SERUM)).isEqualTo(1);
+        assertThat(service.countByStatusAndType(SampleStatus.RECEIVED, SampleType.PLASMA)).isEqualTo(1);
+        assertThat(service.countByStatus(SampleStatus.COLLECTED)).isZero();
+        assertThat(service.getSampleStatistics().getTotalSamples()).isEqualTo(2);
+    }
+
+    @Test
+    void failedReconcileKeepsCountingOnTheLiveCounters() {
+        service.onSampleStatusChanged(event(SampleType.SERUM, null, SampleStatus.COLLECTED));
+        when(sampleRepository.countSamplesByStatusAndType()).thenThrow(new IllegalStateException("database unavailable"));
+
+        assertThatThrownBy(service::reconcile).hasMessage("database unavailable");
+        service.onSampleStatusChanged(event(SampleType.SERUM, SampleStatus.COLLECTED, SampleStatus.RECEIVED));
+
+        assertThat(service.countByStatus(SampleStatus.RECEIVED)).isEqualTo(1);
+        assertThat(service.getSampleStatistics().getTotalSamples()).isEqualTo(1);
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    private static SampleStatusChangedEvent event(SampleType type, SampleStatus previous, SampleStatus next) {
+        return event("S-1", type, previous, next);
+    }
+
+    private static SampleStatusChangedEvent event(String sampleNumber, SampleType type, SampleStatus previous,
+                                                  SampleStatus next) {
+        Sample sample = new Sample(sampleNumber, null, type, "Nurse", LocalDateTime.now());
+        sample.setStatus(next);
+        return new SampleStatusChangedEvent(sample, previous);
+    }
+}
@@ -0,0 +1,122 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.StorageBox;
+import com.sivalab.laboperations.entity.StorageSlotAssignment;
+import com.sivalab.laboperations.repository.StorageBoxRepository;
+import com.sivalab.laboperations.repository.StorageSlotAssignmentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SampleStorageServiceTest {
+
+    private final StorageBoxRepository boxRepository = mock(StorageBoxRepository.class);
+    private final StorageSlotAssignmentRepository assignmentRepository = mock(StorageSlotAssignmentRepository.class);
+    private final SampleStorageService service = new SampleStorageService(boxRepository, assignmentRepository);
+
+    @BeforeEach
+    void setUp() {
+        StorageBox box = new StorageBox("FRZ1", "R1", "B1", 1, 3);
+        box.setBoxId(1L);
+        when(boxRepository.findByIsActiveTrue()).thenReturn(List.of(box));
+        service.rebuildIndex();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void slotIsReservedBeforeTheWriteAndTheWriteRunsWithoutTheLock() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(assignmentRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            if (Thread.currentThread().getName().equals("slow-save")) {
+                saving.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return invocation.getArgument(0);
+        });
+
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        Thread thread = new Thread(() -> slow.complete(service.assignSlot("S-1", "FRZ1")), "slow-save");
+        thread.start();
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+        // another assignment and readers go ahead while the first write is in flight, and skip its slot
+        assertThat(service.assignSlot("S-2", "FRZ1")).isEqualTo("FRZ1/R1/B1/A2");
+        assertThat(service.locateSample("S-1")).isEqualTo("FRZ1/R1/B1/A1");
+        release.countDown();
+
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("FRZ1/R1/B1/A1");
+        assertThat(service.getOccupancy()).containsEntry("FRZ1/R1/B1", 2);
+    }
+
+    @Test
+    void rollbackUndoesTheReservationsAndRestoresThePreviousSlots() {
+        when(assignmentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        service.assignSlot("S-1", "FRZ1/R1/B1/A1");
+        when(assignmentRepository.findBySampleNumberIn(anyCollection()))
+                .thenReturn(List.of(new StorageSlotAssignment(1L, 0, "S-1")));
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(service.moveSamples(List.of("S-1", "S-2"), "FRZ1"))
+                .containsEntry("S-1", "FRZ1/R1/B1/A2")
+                .containsEntry("S-2", "FRZ1/R1/B1/A3");
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(service.locateSample("S-1")).isEqualTo("FRZ1/R1/B1/A1");
+        assertThat(service.locateSample("S-2")).isNull();
+        assertThat(service.getBoxContents("FRZ1/R1/B1"))
+                .containsEntry("A1", "S-1").containsEntry("A2", null).containsEntry("A3", null);
+    }
+
+    @Test
+    void commitFreesThePreviousSlot() {
+        when(assignmentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        service.assignSlot("S-1", "FRZ1/R1/B1/A1");
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.assignSlot("S-1", "FRZ1/R1/B1/A3");
+        // until the move commits the old slot stays held
+        assertThat(service.getBoxContents("FRZ1/R1/B1")).containsEntry("A1", "S-1").containsEntry("A3", "S-1");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(service.locateSample("S-1")).isEqualTo("FRZ1/R1/B1/A3");
+        assertThat(service.getBoxContents("FRZ1/R1/B1")).containsEntry("A1", null).containsEntry("A3", "S-1");
+    }
+
+    @Test
+    void moveThatRunsOutOfSpaceReleasesWhatItHadReserved() {
+        assertThatThrownBy(() -> service.moveSamples(List.of("S-1", "S-2", "S-3", "S-4"), "FRZ1/R1"))
+                .hasMessage("No free storage slot in FRZ1/R1");
+        assertThat(service.getOccupancy()).containsEntry("FRZ1/R1/B1", 0);
+
+        when(assignmentRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database unavailable"));
+        assertThatThrownBy(() -> service.assignSlot("S-1", "FRZ1")).hasMessage("database unavailable");
+        assertThat(service.locateSample("S-1")).isNull();
+        assertThat(service.getOccupancy()).containsEntry("FRZ1/R1/B1", 0);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
@@ -0,0 +1,122 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.SampleStatus;
+import com.sivalab.laboperations.entity.SampleType;
+import com.sivalab.laboperations.event.SampleOverdueEvent;
+import com.sivalab.laboperations.event.SampleStatusChangedEvent;
+import com.sivalab.laboperations.repository.SampleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SampleTurnaroundMonitorTest {
+
+    private final SampleRepository sampleRepository = mock(SampleRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SampleTurnaroundMonitor monitor = new SampleTurnaroundMonitor(sampleRepository, eventPublisher,
+            meterRegistry, Duration.ofHours(4), Duration.ofHours(24), 1000);
+
+    @Test
+    void armsTheReceiptDeadlineOnReceipt() {
+        monitor.onSampleStatusChanged(statusChange("S-1", SampleStatus.COLLECTED, SampleStatus.RECEIVED,
+                LocalDateTime.now()));
+
+        assertThat(monitor.getArmedCount()).isEqualTo(1);
+        assertThat(monitor.getOverdueSamples()).isEmpty();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void disarmsOnATerminalTransition() {
+        LocalDateTime receivedAt = LocalDateTime.now().minusHours(5);
+        monitor.onSampleStatusChanged(statusChange("S-1", SampleStatus.COLLECTED, SampleStatus.RECEIVED, receivedAt));
+        monitor.onSampleStatusChanged(statusChange("S-2", SampleStatus.COLLECTED, SampleStatus.RECEIVED,
+                LocalDateTime.now()));
+        assertThat(monitor.getOverdueSamples()).extracting(SampleOverdueEvent::getSampleNumber).containsExactly("S-1");
+
+        monitor.onSampleStatusChanged(statusChange("S-1", SampleStatus.RECEIVED, SampleStatus.REJECTED, receivedAt));
+        monitor.onSampleStatusChanged(statusChange("S-2", SampleStatus.RECEIVED, SampleStatus.REJECTED,
+                LocalDateTime.now()));
+
+        assertThat(monitor.getArmedCount()).isZero();
+        assertThat(monitor.getOverdueSamples()).isEmpty();
+    }
+
+    @Test
+    void tickReportsADeadlineThatFallsDue() throws Exception {
+        SampleTurnaroundMonitor fastMonitor = new SampleTurnaroundMonitor(sampleRepository, eventPublisher,
+                meterRegistry, Duration.ofMillis(50), Duration.ofHours(24), 10);
+        fastMonitor.onSampleStatusChanged(statusChange("S-1", SampleStatus.COLLECTED, SampleStatus.RECEIVED,
+                LocalDateTime.now()));
+        fastMonitor.tick();
+        assertThat(fastMonitor.getOverdueSamples()).isEmpty();
+
+        Thread.sleep(100);
+        fastMonitor.tick();
+
+        assertThat(fastMonitor.getArmedCount()).isZero();
+        assertThat(fastMonitor.getOverdueSamples()).extracting(SampleOverdueEvent::getSampleNumber)
+                .containsExactly("S-1");
+        assertThat(breaches(SampleStatus.RECEIVED)).isEqualTo(1);
+        verify(eventPublisher).publishEvent(any(SampleOverdueEvent.class));
+        verify(sampleRepository).markTurnaroundBreachReported(eq("S-1"), eq(SampleStatus.RECEIVED), any());
+    }
+
+    @Test
+    void reportsABreachThatHappenedWhileDownExactlyOnceAcrossRestarts() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = List.of(
+                new Object[]{"S-1", SampleStatus.RECEIVED, now.minusHours(6), null, null},
+                new Object[]{"S-2", SampleStatus.PROCESSING, now.minusHours(2), now.minusHours(30), SampleStatus.PROCESSING},
+                new Object[]{"S-3", SampleStatus.RECEIVED, now.minusHours(1), null, null},
+                new Object[]{"S-4", SampleStatus.ACCESSIONED, now.minusHours(5), null, SampleStatus.RECEIVED});
+        when(sampleRepository.findTurnaroundTrackingSnapshot()).thenReturn(rows);
+        when(sampleRepository.markTurnaroundBreachReported(anyString(), any(), any())).thenAnswer(invocation -> {
+            rows.stream().filter(row -> row[0].equals(invocation.getArgument(0)))
+                    .forEach(row -> row[4] = invocation.getArgument(1));
+            return 1;
+        });
+
+        monitor.rebuildFromDatabase();
+        monitor.rebuildFromDatabase();
+
+        assertThat(monitor.getOverdueSamples()).extracting(SampleOverdueEvent::getSampleNumber)
+                .containsExactly("S-2", "S-1", "S-4");
+        assertThat(monitor.getArmedCount()).isEqualTo(1);
+        assertThat(breaches(SampleStatus.RECEIVED)).isEqualTo(1);
+        assertThat(breaches(SampleStatus.ACCESSIONED)).isEqualTo(1);
+        assertThat(breaches(SampleStatus.PROCESSING)).isZero();
+        verify(eventPublisher, times(2)).publishEvent(any(Object.class));
+        verify(eventPublisher).publishEvent(argThat((SampleOverdueEvent event) -> event.getSampleNumber().equals("S-1")));
+        verify(eventPublisher).publishEvent(argThat((SampleOverdueEvent event) -> event.getSampleNumber().equals("S-4")));
+    }
+
+    private double breaches(SampleStatus phase) {
+        return meterRegistry.get("lab.samples.tat.breaches").tag("phase", phase.name()).counter().count();
+    }
+
+    private static SampleStatusChangedEvent statusChange(String sampleNumber, SampleStatus previous,
+                                                         SampleStatus status, LocalDateTime receivedAt) {
+        Sample sample = new Sample(sampleNumber, null, SampleType.WHOLE_BLOOD, "phlebotomist", receivedAt);
+        sample.setStatus(status);
+        sample.setReceivedAt(receivedAt);
+        return new SampleStatusChangedEvent(sample, previous);
+    }
+}
@@ -0,0 +1,162 @@
+package com.sivalab.laboperations.service;
+
+import com.sivalab.laboperations.dto.ScanAction;
+import com.sivalab.laboperations.dto.ScanEventRequest;
+import com.sivalab.laboperations.entity.Sample;
+import com.sivalab.laboperations.entity.SampleStatus;
+import com.sivalab.laboperations.entity.SampleType;
+import com.sivalab.laboperations.repository.SampleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScanIngestionServiceTest {
+
+    private final SampleService sampleService = mock(SampleService.class);
+    private final SampleRepository sampleRepository = mock(SampleRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, SampleStatus> statuses = new ConcurrentHashMap<>();
+    private final Set<String> writerThreads = ConcurrentHashMap.newKeySet();
+    private ScanIngestionService service; // started by the test, stopped after it
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void refusesScansOnceTheQueueIsFull() {
+        ScanIngestionService service = service(2);
+
+        int accepted = service.submit(List.of(scan("S-1", ScanAction.RECEIVE, null),
+                scan("S-2", ScanAction.RECEIVE, null), scan("S-3", ScanAction.RECEIVE, null)));
+
+        assertThat(accepted).isEqualTo(2);
+        assertThat(service.getQueueDepth()).isEqualTo(2);
+        assertThat(service.getRemainingCapacity()).isZero();
+        assertThat(meterRegistry.get("lab.scans.received").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("lab.scans.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void writerThreadAppliesScansAtTheirScanTime() {
+        service = service(100);
+        statuses.put("S-1", SampleStatus.IN_TRANSIT);
+        statuses.put("S-2", SampleStatus.ACCEPTED);
+        // scanned ten minutes ago, applied now: the deadlines count from the scan
+        LocalDateTime scannedAt = LocalDateTime.now().minusMinutes(10);
+        LocalDateTime future = LocalDateTime.now().plusHours(1);
+        service.start();
+
+        service.submit(List.of(scan("S-1", ScanAction.RECEIVE, scannedAt), scan("S-2", ScanAction.PROCESS, future)));
+
+        verify(sampleService, timeout(5000)).receiveSample("S-1", "Desk", null, null, scannedAt, "Desk");
+        verify(sampleService, timeout(5000)).startProcessing(eq("S-2"), eq("Desk"), eq(null), eq(null),
+                any(LocalDateTime.class), eq("Desk"));
+        verify(sampleService, after(200).never()).startProcessing(anyString(), anyString(), any(), any(), eq(future), anyString());
+        assertThat(writerThreads).containsOnly("scan-writer");
+        assertThat(meterRegistry.get("lab.scans.applied").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void dropsRepeatScansAndScansThatWouldNotMoveTheSample() {
+        service = service(100);
+        statuses.put("S-1", SampleStatus.IN_TRANSIT);
+        statuses.put("S-2", SampleStatus.PROCESSING);
+        LocalDateTime scannedAt = LocalDateTime.now().minusMinutes(1);
+        // queued before the writer starts, so they arrive in one batch
+        service.submit(List.of(
+                scan("S-1", ScanAction.RECEIVE, scannedAt),
+                scan("S-1", ScanAction.RECEIVE, scannedAt.plusSeconds(2)),
+                scan("S-2", ScanAction.PROCESS, scannedAt),
+                scan("S-9", ScanAction.RECEIVE, scannedAt),
+                scan("S-1", ScanAction.RECEIVE, scannedAt.plusSeconds(30))));
+        service.start();
+
+        verify(sampleService, timeout(5000)).receiveSample("S-1", "Desk", null, null, scannedAt.plusSeconds(30), "Desk");
+        verify(sampleService, after(200).times(1)).receiveSample("S-1", "Desk", null, null, scannedAt, "Desk");
+        verify(sampleService, never()).receiveSample(eq("S-1"), anyString(), any(), any(), eq(scannedAt.plusSeconds(2)), anyString());
+        verify(sampleService, never()).startProcessing(anyString(), anyString(), any(), any(), any(), anyString());
+        verify(sampleService, never()).receiveSample(eq("S-9"), anyString(), any(), any(), any(), anyString());
+        assertThat(meterRegistry.get("lab.scans.coalesced").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("lab.scans.failed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("lab.scans.applied").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void failedScanDoesNotRollBackTheRestOfItsBatch() {
+        service = service(100);
+        statuses.put("S-1", SampleStatus.IN_TRANSIT);
+        statuses.put("S-2", SampleStatus.IN_TRANSIT);
+        LocalDateTime scannedAt = LocalDateTime.now().minusMinutes(1);
+        when(sampleService.receiveSample(eq("S-1"), anyString(), any(), any(), any(), anyString()))
+                .thenThrow(new RuntimeException("Invalid status transition from DISPOSED to RECEIVED"));
+        service.submit(List.of(scan("S-2", ScanAction.RECEIVE, scannedAt), scan("S-1", ScanAction.RECEIVE, scannedAt)));
+        service.start();
+
+        // both run in the batch, which rolls back, then each runs in its own transaction
+        verify(sampleService, timeout(5000).times(2)).receiveSample("S-1", "Desk", null, null, scannedAt, "Desk");
+        verify(sampleService, timeout(5000).times(2)).receiveSample("S-2", "Desk", null, null, scannedAt, "Desk");
+        verify(sampleService, after(200).times(2)).receiveSample("S-1", "Desk", null, null, scannedAt, "Desk");
+        assertThat(meterRegistry.get("lab.scans.failed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("lab.scans.applied").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void storeScansNeedALocationAndKeepTheStationOnTheCustodyEntry() {
+        service = service(100);
+        statuses.put("S-1", SampleStatus.REVIEWED);
+        statuses.put("S-2", SampleStatus.REVIEWED);
+        LocalDateTime scannedAt = LocalDateTime.now().minusMinutes(1);
+        ScanEventRequest stored = scan("S-2", ScanAction.STORE, scannedAt);
+        stored.setLocation("FRZ-1/R2/B3");
+        service.submit(List.of(scan("S-1", ScanAction.STORE, scannedAt), stored));
+        service.start();
+
+        verify(sampleService, timeout(5000)).storeSample("S-2", "FRZ-1/R2/B3", null, null, "Desk", "Desk");
+        verify(sampleService, after(200).never()).storeSample(eq("S-1"), any(), any(), any(), any(), any());
+        verify(sampleService, never()).storeSample(any(), eq("Desk"), any(), any(), any(), any());
+        assertThat(meterRegistry.get("lab.scans.failed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("lab.scans.applied").counter().count()).isEqualTo(1);
+    }
+
+    private ScanIngestionService service(int queueCapacity) {
+        when(sampleRepository.findBySampleNumberIn(anyCollection())).thenAnswer(invocation -> {
+            writerThreads.add(Thread.currentThread().getName());
+            List<String> sampleNumbers = List.copyOf(invocation.getArgument(0));
+            return sampleNumbers.stream().filter(statuses::containsKey).map(number -> {
+                Sample sample = new Sample(number, null, SampleType.SERUM, "Nurse", LocalDateTime.now().minusHours(1));
+                sample.setStatus(statuses.get(number));
+                return sample;
+            }).toList();
+        });
+        return new ScanIngestionService(sampleService, sampleRepository, mock(PlatformTransactionManager.class),
+                meterRegistry, queueCapacity, 50, Duration.ofSeconds(5));
+    }
+
+    private static ScanEventRequest scan(String sampleNumber, ScanAction action, LocalDateTime scannedAt) {
+        return new ScanEventRequest(sampleNumber, "Desk", action, scannedAt);
+    }
+}
@@ -0,0 +1,48 @@
+package com.sivalab.laboperations.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StorageOccupancyIndexTest {
+
+    @Test
+    void allocatesFreeSlotsAcrossBoxesOfAScope() {
+        StorageOccupancyIndex index = new StorageOccupancyIndex();
+        index.addBox(1L, "FRZ1", "R1", "B1", 1, 2);
+        index.addBox(2L, "FRZ1", "R2", "B1", 9, 9);
+
+        for (int i = 0; i < 83; i++) {
+            StorageOccupancyIndex.Slot slot = index.findFreeSlot("FRZ1");
+            assertThat(slot).isNotNull();
+            index.reserve(slot, "S" + i);
+        }
+        assertThat(index.findFreeSlot("FRZ1")).isNull();
+        assertThat(index.findFreeSlot("FRZ1/R1")).isNull();
+        assertThat(index.describe(index.locate("S0"))).isEqualTo("FRZ1/R1/B1/A1");
+        assertThat(index.describe(index.locate("S82"))).isEqualTo("FRZ1/R2/B1/I9");
+
+        index.vacate(index.locate("S1"), "S1");
+        assertThat(index.locate("S1")).isNull();
+        assertThat(index.describe(index.findFreeSlot("FRZ1"))).isEqualTo("FRZ1/R1/B1/A2");
+        assertThat(index.contents("FRZ1/R1/B1")).containsEntry("A1", "S0").containsEntry("A2", null);
+    }
+
+    @Test
+    void resolvesExactSlotsAndRejectsDoubleBooking() {
+        StorageOccupancyIndex index = new StorageOccupancyIndex();
+        index.addBox(1L, "FRZ1", "R1", "B1", 8, 12);
+
+        StorageOccupancyIndex.Slot slot = index.parseSlot("FRZ1/R1/B1/H12");
+        assertThat(slot.getSlotIndex()).isEqualTo(95);
+        assertThat(index.parseSlot("FRZ1/R1/B1/I1")).isNull();
+        assertThat(index.parseSlot("FRZ1/R1/B1/A13")).isNull();
+        assertThat(index.isManagedLocation("FRZ1/R1")).isTrue();
+        assertThat(index.isManagedLocation("Fridge shelf 2")).isFalse();
+
+        index.reserve(slot, "S1");
+        assertThatThrownBy(() -> index.reserve(slot, "S2")).isInstanceOf(IllegalStateException.class);
+        assertThat(index.findFreeSlot("FRZ1/R1/B1").getSlotIndex()).isZero();
+    }
+}